@@ -29,6 +29,7 @@ import java.io.Serializable;
 public class WorkspaceBackOptions implements Serializable {
 
     private static final boolean SEND_EMAILS_DEFAULT = true;
+    private static final boolean PRE_CONVERT_FILES_DEFAULT = false;
 
     @Id
     @OneToOne(optional = false, fetch = FetchType.EAGER)
@@ -42,17 +43,29 @@ public class WorkspaceBackOptions implements Serializable {
      */
     private boolean sendEmails;
 
+    /**
+     * Indicates that the office files attached to checked in iterations
+     * are converted in background, ahead of their first viewing.
+     */
+    private boolean preConvertFiles;
+
     public WorkspaceBackOptions() {
     }
 
     public WorkspaceBackOptions(Workspace workspace) {
         this.workspace = workspace;
         this.sendEmails = SEND_EMAILS_DEFAULT;
+        this.preConvertFiles = PRE_CONVERT_FILES_DEFAULT;
     }
 
     public WorkspaceBackOptions(Workspace workspace, boolean sendEmails) {
+        this(workspace, sendEmails, PRE_CONVERT_FILES_DEFAULT);
+    }
+
+    public WorkspaceBackOptions(Workspace workspace, boolean sendEmails, boolean preConvertFiles) {
         this.workspace = workspace;
         this.sendEmails = sendEmails;
+        this.preConvertFiles = preConvertFiles;
     }
 
     public Workspace getWorkspace() {
@@ -71,6 +84,14 @@ public class WorkspaceBackOptions implements Serializable {
         this.sendEmails = sendEmails;
     }
 
+    public boolean isPreConvertFiles() {
+        return preConvertFiles;
+    }
+
+    public void setPreConvertFiles(boolean preConvertFiles) {
+        this.preConvertFiles = preConvertFiles;
+    }
+
     public String getWorkspaceId() {
         return workspace.getId();
     }
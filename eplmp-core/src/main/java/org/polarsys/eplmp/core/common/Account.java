@@ -146,7 +146,9 @@ public class Account implements Serializable, Cloneable {
         } catch (CloneNotSupportedException e) {
             throw new InternalError();
         }
-        clone.creationDate = (Date) creationDate.clone();
+        if (creationDate != null) {
+            clone.creationDate = (Date) creationDate.clone();
+        }
         return clone;
     }
 }
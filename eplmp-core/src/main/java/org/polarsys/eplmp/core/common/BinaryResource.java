@@ -35,7 +35,10 @@ import java.util.Date;
 @Table(name="BINARYRESOURCE")
 @Inheritance()
 @NamedQueries ({
-        @NamedQuery(name="BinaryResource.diskUsageInPath", query = "SELECT sum(br.contentLength) FROM BinaryResource br WHERE br.fullName like :path")
+        @NamedQuery(name="BinaryResource.diskUsageInPath", query = "SELECT sum(br.contentLength) FROM BinaryResource br WHERE br.fullName like :path"),
+        @NamedQuery(name="BinaryResource.findContentHashes", query = "SELECT br.fullName, br.contentHash FROM BinaryResource br WHERE br.fullName IN :fullNames AND br.contentHash IS NOT NULL"),
+        @NamedQuery(name="BinaryResource.findWithoutContentHash", query = "SELECT br FROM BinaryResource br WHERE br.contentHash IS NULL AND br.fullName > :after ORDER BY br.fullName"),
+        @NamedQuery(name="BinaryResource.findUnlocated", query = "SELECT br FROM BinaryResource br WHERE br.location IS NULL AND br.fullName > :after ORDER BY br.fullName")
 })
 @Entity
 public class BinaryResource implements Serializable, Comparable<BinaryResource>{
@@ -48,6 +51,21 @@ public class BinaryResource implements Serializable, Comparable<BinaryResource>{
 
     @javax.persistence.Temporal(javax.persistence.TemporalType.TIMESTAMP)
     private Date lastModified;
+
+    /**
+     * Hex encoded SHA-256 of the content, computed when the content is stored.
+     * Null for content stored before content hashes were introduced.
+     */
+    @Column(length=64)
+    private String contentHash;
+
+    /**
+     * Full name of the binary resource whose file holds the content: this resource once its
+     * content has been stored, a previous iteration when it has been checked out unchanged.
+     * Null until resolved for content stored before locations were introduced.
+     */
+    @Column(length=722)
+    private String location;
     
     public BinaryResource() {
     }
@@ -152,7 +170,11 @@ public class BinaryResource implements Serializable, Comparable<BinaryResource>{
         iteration--;
         if(iteration>0){
             String previousFullName=parts[0] + "/" + parts[1] + "/" + parts[2] + "/" + holderRevision  + "/" + iteration + (fileType==null?"":"/" + fileType) + "/" + name;
-            return new BinaryResource(previousFullName, contentLength, lastModified);
+            // Only looked up when this resource shares the content of the previous iteration
+            BinaryResource previous = new BinaryResource(previousFullName, contentLength, lastModified);
+            previous.setContentHash(contentHash);
+            previous.setLocation(location);
+            return previous;
         }else {
             return null;
         }
@@ -207,4 +229,20 @@ public class BinaryResource implements Serializable, Comparable<BinaryResource>{
         this.lastModified = lastModified;
     }
 
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public void setLocation(String location) {
+        this.location = location;
+    }
+
 }
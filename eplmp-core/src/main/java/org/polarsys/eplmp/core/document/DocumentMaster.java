@@ -34,7 +34,8 @@ import java.util.List;
 @IdClass(org.polarsys.eplmp.core.document.DocumentMasterKey.class)
 @Entity
 @NamedQueries ({
-    @NamedQuery(name="DocumentMaster.findByWorkspace", query="SELECT dm FROM DocumentMaster dm WHERE dm.workspace.id = :workspaceId ORDER BY dm.creationDate DESC")
+    @NamedQuery(name="DocumentMaster.findByWorkspace", query="SELECT dm FROM DocumentMaster dm WHERE dm.workspace.id = :workspaceId ORDER BY dm.creationDate DESC"),
+    @NamedQuery(name="DocumentMaster.findByWorkspaceAfter", query="SELECT dm FROM DocumentMaster dm WHERE dm.workspace.id = :workspaceId AND dm.id > :after ORDER BY dm.id")
 })
 public class DocumentMaster implements Serializable, Comparable<DocumentMaster> {
 
@@ -14,6 +14,7 @@ import org.polarsys.eplmp.core.common.Workspace;
 
 import javax.persistence.*;
 import java.io.Serializable;
+import java.util.Date;
 
 /**
  * This class is a webhook applicable on a specific {@link Workspace}.
@@ -46,6 +47,24 @@ public class Webhook implements Serializable {
     @OneToOne(orphanRemoval = true, fetch = FetchType.EAGER, cascade = CascadeType.ALL)
     private WebhookApp webhookApp;
 
+    /**
+     * Number of notifications delivered
+     */
+    private long deliveredCount;
+
+    /**
+     * Number of notifications abandoned after their last attempt
+     */
+    private long failedCount;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date lastDeliveryDate;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date lastFailureDate;
+
+    private String lastError;
+
     public Webhook(WebhookApp webhookApp, String name, boolean active, Workspace workspace) {
         this.webhookApp = webhookApp;
         this.name = name;
@@ -96,6 +115,46 @@ public class Webhook implements Serializable {
         this.webhookApp = webhookApp;
     }
 
+    public long getDeliveredCount() {
+        return deliveredCount;
+    }
+
+    public void setDeliveredCount(long deliveredCount) {
+        this.deliveredCount = deliveredCount;
+    }
+
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    public void setFailedCount(long failedCount) {
+        this.failedCount = failedCount;
+    }
+
+    public Date getLastDeliveryDate() {
+        return lastDeliveryDate;
+    }
+
+    public void setLastDeliveryDate(Date lastDeliveryDate) {
+        this.lastDeliveryDate = lastDeliveryDate;
+    }
+
+    public Date getLastFailureDate() {
+        return lastFailureDate;
+    }
+
+    public void setLastFailureDate(Date lastFailureDate) {
+        this.lastFailureDate = lastFailureDate;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
     public String getAppName() {
         return webhookApp.getAppName();
     }
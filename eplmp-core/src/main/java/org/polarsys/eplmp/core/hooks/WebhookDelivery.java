@@ -0,0 +1,120 @@
+/*******************************************************************************
+  * Copyright (c) 2017-2019 DocDoku.
+  * All rights reserved. This program and the accompanying materials
+  * are made available under the terms of the Eclipse Public License v1.0
+  * which accompanies this distribution, and is available at
+  * http://www.eclipse.org/legal/epl-v10.html
+  *
+  * Contributors:
+  *    DocDoku - initial API and implementation
+  *******************************************************************************/
+
+package org.polarsys.eplmp.core.hooks;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * The WebhookDelivery class represents a notification waiting to be
+ * delivered to a {@link Webhook}.
+ *
+ * Deliveries are sent in the background, and retried until they succeed
+ * or their maximum number of attempts is reached.
+ */
+@Table(name = "WEBHOOKDELIVERY")
+@Entity
+@NamedQueries({
+        @NamedQuery(name = "WebhookDelivery.findPending", query = "SELECT d FROM WebhookDelivery d WHERE d.nextAttemptDate <= :now ORDER BY d.id"),
+        @NamedQuery(name = "WebhookDelivery.findPendingExcludingWebhooks", query = "SELECT d FROM WebhookDelivery d WHERE d.nextAttemptDate <= :now AND d.webhookId NOT IN :webhookIds ORDER BY d.id"),
+        @NamedQuery(name = "WebhookDelivery.removeByWebhook", query = "DELETE FROM WebhookDelivery d WHERE d.webhookId = :webhookId")
+})
+public class WebhookDelivery implements Serializable {
+
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Id
+    private long id;
+
+    private int webhookId;
+
+    private String login;
+
+    private String email;
+
+    private String name;
+
+    private String subject;
+
+    @Lob
+    private String content;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date creationDate;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date nextAttemptDate;
+
+    private int attempts;
+
+    public WebhookDelivery() {
+    }
+
+    public WebhookDelivery(Webhook webhook, String login, String email, String name, String subject, String content) {
+        this.webhookId = webhook.getId();
+        this.login = login;
+        this.email = email;
+        this.name = name;
+        this.subject = subject;
+        this.content = content;
+        this.creationDate = new Date();
+        this.nextAttemptDate = creationDate;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public int getWebhookId() {
+        return webhookId;
+    }
+
+    public String getLogin() {
+        return login;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public Date getCreationDate() {
+        return creationDate;
+    }
+
+    public Date getNextAttemptDate() {
+        return nextAttemptDate;
+    }
+
+    public void setNextAttemptDate(Date nextAttemptDate) {
+        this.nextAttemptDate = nextAttemptDate;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+}
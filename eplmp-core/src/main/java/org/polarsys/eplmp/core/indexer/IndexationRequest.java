@@ -0,0 +1,159 @@
+/*******************************************************************************
+  * Copyright (c) 2017-2019 DocDoku.
+  * All rights reserved. This program and the accompanying materials
+  * are made available under the terms of the Eclipse Public License v1.0
+  * which accompanies this distribution, and is available at
+  * http://www.eclipse.org/legal/epl-v10.html
+  *
+  * Contributors:
+  *    DocDoku - initial API and implementation
+  *******************************************************************************/
+
+package org.polarsys.eplmp.core.indexer;
+
+import org.polarsys.eplmp.core.document.DocumentIterationKey;
+import org.polarsys.eplmp.core.product.PartIterationKey;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * The IndexationRequest class represents a pending update of the search index,
+ * recorded in the same transaction as the change of the indexed iteration.
+ *
+ * Requests are sent to the indexer in the background, the requests of an iteration
+ * being coalesced into its last one.
+ */
+@Table(name="INDEXATIONREQUEST")
+@Entity
+@NamedQueries ({
+        @NamedQuery(name="IndexationRequest.findPending", query="SELECT r FROM IndexationRequest r WHERE r.nextAttemptDate <= :now ORDER BY r.id"),
+        @NamedQuery(name="IndexationRequest.removeByIteration", query="DELETE FROM IndexationRequest r WHERE r.targetType = :targetType AND r.workspaceId = :workspaceId AND r.targetId = :targetId AND r.version = :version AND r.iteration = :iteration AND r.id <= :maxId"),
+        @NamedQuery(name="IndexationRequest.count", query="SELECT count(r) FROM IndexationRequest r"),
+        @NamedQuery(name="IndexationRequest.oldestCreationDate", query="SELECT min(r.creationDate) FROM IndexationRequest r")
+})
+public class IndexationRequest implements Serializable {
+
+    public enum TargetType {
+        DOCUMENT, PART
+    }
+
+    public enum Action {
+        INDEX, REMOVE
+    }
+
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Id
+    private long id;
+
+    @Enumerated(EnumType.STRING)
+    private TargetType targetType;
+
+    @Enumerated(EnumType.STRING)
+    private Action action;
+
+    private String workspaceId;
+
+    /**
+     * Id of the document master or number of the part master
+     */
+    private String targetId;
+
+    private String version;
+
+    private int iteration;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date creationDate;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date nextAttemptDate;
+
+    private int attempts;
+
+    public IndexationRequest() {
+    }
+
+    public IndexationRequest(DocumentIterationKey key, Action action) {
+        this(TargetType.DOCUMENT, action, key.getWorkspaceId(), key.getDocumentMasterId(), key.getDocumentRevisionVersion(), key.getIteration());
+    }
+
+    public IndexationRequest(PartIterationKey key, Action action) {
+        this(TargetType.PART, action, key.getWorkspaceId(), key.getPartMasterNumber(), key.getPartRevisionVersion(), key.getIteration());
+    }
+
+    private IndexationRequest(TargetType targetType, Action action, String workspaceId, String targetId, String version, int iteration) {
+        this.targetType = targetType;
+        this.action = action;
+        this.workspaceId = workspaceId;
+        this.targetId = targetId;
+        this.version = version;
+        this.iteration = iteration;
+        this.creationDate = new Date();
+        this.nextAttemptDate = creationDate;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public TargetType getTargetType() {
+        return targetType;
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    public String getWorkspaceId() {
+        return workspaceId;
+    }
+
+    public String getTargetId() {
+        return targetId;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public int getIteration() {
+        return iteration;
+    }
+
+    public Date getCreationDate() {
+        return creationDate;
+    }
+
+    public Date getNextAttemptDate() {
+        return nextAttemptDate;
+    }
+
+    public void setNextAttemptDate(Date nextAttemptDate) {
+        this.nextAttemptDate = nextAttemptDate;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public DocumentIterationKey getDocumentIterationKey() {
+        return new DocumentIterationKey(workspaceId, targetId, version, iteration);
+    }
+
+    public PartIterationKey getPartIterationKey() {
+        return new PartIterationKey(workspaceId, targetId, version, iteration);
+    }
+
+    /**
+     * @return A key identifying the indexed iteration among documents and parts.
+     */
+    public String getTargetKey() {
+        return targetType + ":" + (targetType == TargetType.DOCUMENT ? getDocumentIterationKey() : getPartIterationKey());
+    }
+}
@@ -0,0 +1,115 @@
+/*******************************************************************************
+  * Copyright (c) 2017-2019 DocDoku.
+  * All rights reserved. This program and the accompanying materials
+  * are made available under the terms of the Eclipse Public License v1.0
+  * which accompanies this distribution, and is available at
+  * http://www.eclipse.org/legal/epl-v10.html
+  *
+  * Contributors:
+  *    DocDoku - initial API and implementation
+  *******************************************************************************/
+
+package org.polarsys.eplmp.core.indexer;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * The WorkspaceIndexation class is the checkpoint of a running reindexation of a workspace.
+ *
+ * Masters are indexed in the order of their key, documents first then parts. The checkpoint
+ * holds the key of the last master whose iterations have been sent to the indexer, an
+ * interrupted reindexation resumes after it.
+ */
+@Table(name="WORKSPACEINDEXATION")
+@Entity
+public class WorkspaceIndexation implements Serializable {
+
+    public enum Phase {
+        DOCUMENTS, PARTS
+    }
+
+    @Id
+    private String workspaceId = "";
+
+    @Enumerated(EnumType.STRING)
+    private Phase phase = Phase.DOCUMENTS;
+
+    /**
+     * Id of the last indexed document master or number of the last indexed part master,
+     * null when the phase has not started
+     */
+    private String lastKey;
+
+    private long indexedIterations;
+
+    private long failedIterations;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date startDate;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date checkpointDate;
+
+    public WorkspaceIndexation() {
+    }
+
+    public WorkspaceIndexation(String workspaceId) {
+        this.workspaceId = workspaceId;
+        this.startDate = new Date();
+        this.checkpointDate = startDate;
+    }
+
+    public String getWorkspaceId() {
+        return workspaceId;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    public void setPhase(Phase phase) {
+        this.phase = phase;
+    }
+
+    public String getLastKey() {
+        return lastKey;
+    }
+
+    public void setLastKey(String lastKey) {
+        this.lastKey = lastKey;
+    }
+
+    public long getIndexedIterations() {
+        return indexedIterations;
+    }
+
+    public void setIndexedIterations(long indexedIterations) {
+        this.indexedIterations = indexedIterations;
+    }
+
+    public long getFailedIterations() {
+        return failedIterations;
+    }
+
+    public void setFailedIterations(long failedIterations) {
+        this.failedIterations = failedIterations;
+    }
+
+    public Date getStartDate() {
+        return startDate;
+    }
+
+    public void setStartDate(Date startDate) {
+        this.startDate = startDate;
+    }
+
+    public Date getCheckpointDate() {
+        return checkpointDate;
+    }
+
+    public void setCheckpointDate(Date checkpointDate) {
+        this.checkpointDate = checkpointDate;
+    }
+}
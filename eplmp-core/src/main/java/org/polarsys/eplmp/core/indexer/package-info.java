@@ -0,0 +1,17 @@
+/*******************************************************************************
+  * Copyright (c) 2017-2019 DocDoku.
+  * All rights reserved. This program and the accompanying materials
+  * are made available under the terms of the Eclipse Public License v1.0
+  * which accompanies this distribution, and is available at
+  * http://www.eclipse.org/legal/epl-v10.html
+  *
+  * Contributors:
+  *    DocDoku - initial API and implementation
+  *******************************************************************************/
+
+/**
+ * Provides classes for tracking the updates of the search index.
+ *
+ * @since 2.5
+ */
+package org.polarsys.eplmp.core.indexer;
@@ -34,6 +34,7 @@ import java.util.*;
 @Table(name="PARTITERATION", indexes = {@Index(name = "INDEX_PART_WKS_PARTNUMBER_VERSION", columnList = "WORKSPACE_ID, PARTMASTER_PARTNUMBER, PARTREVISION_VERSION")})
 @IdClass(org.polarsys.eplmp.core.product.PartIterationKey.class)
 @NamedQueries({
+        @NamedQuery(name="PartIteration.findByRevisions", query="SELECT p FROM PartIteration p WHERE p.partRevision.partMasterWorkspaceId = :workspaceId AND p.partRevision.partMasterNumber IN :numbers AND p.partRevision.version IN :versions AND p.iteration IN :iterations"),
         @NamedQuery(name="PartIteration.findUsedByAsSubstitute", query="SELECT p FROM PartIteration p JOIN p.components l JOIN l.substitutes s WHERE s.substitute = :partMaster"),
         @NamedQuery(name="PartIteration.findUsedByAsComponent", query="SELECT p FROM PartIteration p JOIN p.components l WHERE l.component = :partMaster"),
         @NamedQuery(name="PartIteration.findDistinctInstanceAttributes", query="SELECT DISTINCT p.instanceAttributes FROM PartIteration p WHERE p.partRevision.partMaster.workspace.id = :workspaceId"),
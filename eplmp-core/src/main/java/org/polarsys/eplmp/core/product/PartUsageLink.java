@@ -26,6 +26,7 @@ import java.util.List;
 @Table(name = "PARTUSAGELINK")
 @Entity
 @NamedQueries({
+    @NamedQuery(name="PartUsageLink.findByIds",query="SELECT u FROM PartUsageLink u WHERE u.id IN :ids"),
     @NamedQuery(name="PartUsageLink.findByComponent",query="SELECT u FROM PartUsageLink u WHERE u.component.number LIKE :partNumber AND u.component.workspace.id = :workspaceId"),
     @NamedQuery(name="PartUsageLink.getPartOwner",query="SELECT p FROM PartIteration p WHERE :usage MEMBER OF p.components"),
     @NamedQuery(name="PartUsageLink.findOrphans",query="SELECT p FROM PartUsageLink p WHERE NOT EXISTS (SELECT pi FROM PartIteration pi WHERE p member of pi.components) ")
@@ -11,8 +11,12 @@
 
 package org.polarsys.eplmp.core.product;
 
+import org.polarsys.eplmp.core.util.Tools;
+
 import javax.persistence.*;
 import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * Represents a directional link between two parts in the context of
@@ -38,10 +42,12 @@ import java.io.Serializable;
         @NamedQuery(name="PathToPathLink.findRootPathToPathLinkForGivenProductInstanceIterationAndType", query="SELECT DISTINCT p FROM ProductInstanceIteration pi JOIN pi.pathToPathLinks p WHERE p.type = :type AND pi = :productInstanceIteration AND p.sourcePath not in (SELECT _p.targetPath FROM PathToPathLink _p WHERE _p member of pi.pathToPathLinks AND _p.type = :type)"),
         @NamedQuery(name="PathToPathLink.findRootPathToPathLinkForGivenProductBaselineAndType", query="SELECT DISTINCT p FROM ProductBaseline pb JOIN pb.pathToPathLinks p WHERE p.type = :type AND pb = :productBaseline AND p.sourcePath not in (SELECT _p.targetPath FROM PathToPathLink _p WHERE _p member of pb.pathToPathLinks AND _p.type = :type)"),
         @NamedQuery(name="PathToPathLink.findRootPathToPathLinkForGivenProductAndType", query="SELECT DISTINCT p FROM ConfigurationItem ci JOIN ci.pathToPathLinks p WHERE p.type = :type AND ci = :configurationItem AND p.sourcePath not in (SELECT _p.targetPath FROM PathToPathLink _p WHERE _p member of ci.pathToPathLinks AND _p.type = :type)"),
-        @NamedQuery(name="PathToPathLink.findPathToPathLinkByPathListInProduct", query="SELECT DISTINCT p FROM ConfigurationItem ci JOIN ci.pathToPathLinks p WHERE ci = :configurationItem AND p.sourcePath in :paths AND p.targetPath in :paths"),
+        @NamedQuery(name="PathToPathLink.findPathToPathLinkByProduct", query="SELECT DISTINCT p FROM ConfigurationItem ci JOIN ci.pathToPathLinks p WHERE ci = :configurationItem"),
         @NamedQuery(name="PathToPathLink.findSourcesPathToPathLinkInProduct", query="SELECT DISTINCT p FROM ConfigurationItem ci JOIN ci.pathToPathLinks p WHERE ci = :configurationItem AND p.sourcePath = :source AND p.type = :type"),
         @NamedQuery(name="PathToPathLink.findSourcesPathToPathLinkInProductBaseline", query="SELECT DISTINCT p FROM ProductBaseline pb JOIN pb.pathToPathLinks p WHERE pb = :productBaseline AND p.sourcePath = :source AND p.type = :type"),
         @NamedQuery(name="PathToPathLink.findLinksWherePartialPathIsPresent", query="SELECT DISTINCT p FROM PathToPathLink p WHERE p.targetPath LIKE :endOfChain OR p.targetPath LIKE :inChain OR p.sourcePath LIKE :endOfChain OR p.sourcePath LIKE :inChain"),
+        @NamedQuery(name="PathToPathLink.findLinksByPartLink", query="SELECT DISTINCT p FROM PathToPathLink p JOIN p.partLinkFullIds f WHERE f = :partLinkFullId"),
+        @NamedQuery(name="PathToPathLink.findUnindexed", query="SELECT p FROM PathToPathLink p WHERE p.partLinkFullIds IS EMPTY AND p.id > :after ORDER BY p.id"),
         @NamedQuery(name="PathToPathLink.isSourceInProductInstanceContext", query="SELECT p FROM PathToPathLink p JOIN ProductInstanceIteration pi WHERE pi = :productInstanceIteration AND p member of pi.pathToPathLinks AND p.sourcePath = :path"),
         @NamedQuery(name="PathToPathLink.isTargetInProductInstanceContext", query="SELECT p FROM PathToPathLink p JOIN ProductInstanceIteration pi WHERE pi = :productInstanceIteration AND p member of pi.pathToPathLinks AND p.targetPath = :path"),
         @NamedQuery(name="PathToPathLink.isSourceInConfigurationItemContext", query="SELECT p FROM PathToPathLink p JOIN ConfigurationItem ci WHERE ci = :configurationItem AND p member of ci.pathToPathLinks AND p.sourcePath = :path"),
@@ -61,6 +67,23 @@ public class PathToPathLink implements Serializable, Cloneable{
     @Lob
     private String description;
 
+    /**
+     * Full ids of the part links the source and target paths are made of, so that the links
+     * going through a given part link are looked up by index rather than by matching the paths.
+     */
+    @ElementCollection(fetch = FetchType.LAZY)
+    @CollectionTable(name = "PATHTOPATHLINK_PARTLINK",
+            joinColumns = {
+                    @JoinColumn(name = "PATHTOPATHLINK_ID", referencedColumnName = "ID")
+            },
+            indexes = {
+                    @Index(name = "INDEX_P2P_PARTLINK", columnList = "PARTLINK_FULLID"),
+                    @Index(name = "INDEX_P2P_PARTLINK_LINK", columnList = "PATHTOPATHLINK_ID")
+            }
+    )
+    @Column(name = "PARTLINK_FULLID")
+    private Set<String> partLinkFullIds = new HashSet<>();
+
     public PathToPathLink() {
     }
 
@@ -69,6 +92,7 @@ public class PathToPathLink implements Serializable, Cloneable{
         this.sourcePath = sourcePath;
         this.targetPath = targetPath;
         this.description = description;
+        indexPartLinks();
     }
 
     public int getId() {
@@ -85,6 +109,7 @@ public class PathToPathLink implements Serializable, Cloneable{
 
     public void setSourcePath(String pathFrom) {
         this.sourcePath = pathFrom;
+        indexPartLinks();
     }
 
     public String getTargetPath() {
@@ -93,6 +118,7 @@ public class PathToPathLink implements Serializable, Cloneable{
 
     public void setTargetPath(String pathTo) {
         this.targetPath = pathTo;
+        indexPartLinks();
     }
 
     public String getType() {
@@ -142,7 +168,23 @@ public class PathToPathLink implements Serializable, Cloneable{
         } catch (CloneNotSupportedException e) {
             throw new InternalError();
         }
+        clone.partLinkFullIds = new HashSet<>();
+        clone.indexPartLinks();
         return clone;
     }
 
+    public Set<String> getPartLinkFullIds() {
+        return partLinkFullIds;
+    }
+
+    /**
+     * Rebuild the full ids of the part links from the current paths.
+     */
+    public void indexPartLinks() {
+        Set<String> fullIds = Tools.getPartLinkFullIds(sourcePath);
+        fullIds.addAll(Tools.getPartLinkFullIds(targetPath));
+        partLinkFullIds.retainAll(fullIds);
+        partLinkFullIds.addAll(fullIds);
+    }
+
 }
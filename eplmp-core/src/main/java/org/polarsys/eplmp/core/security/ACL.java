@@ -33,7 +33,9 @@ import java.util.Map;
 @Entity
 @NamedQueries ({
     @NamedQuery(name="ACL.removeUserEntries", query = "DELETE FROM ACLUserEntry a WHERE a.acl.id = :aclId"),
-    @NamedQuery(name="ACL.removeUserGroupEntries", query = "DELETE FROM ACLUserGroupEntry a WHERE a.acl.id = :aclId")
+    @NamedQuery(name="ACL.removeUserGroupEntries", query = "DELETE FROM ACLUserGroupEntry a WHERE a.acl.id = :aclId"),
+    @NamedQuery(name="ACL.findUserPermissions", query = "SELECT a.acl.id, a.permission FROM ACLUserEntry a WHERE a.principal.workspaceId = :workspaceId AND a.principal.login = :login"),
+    @NamedQuery(name="ACL.findUserGroupPermissions", query = "SELECT a.acl.id, a.permission FROM ACLUserGroupEntry a WHERE a.principal.workspaceId = :workspaceId AND :user MEMBER OF a.principal.users")
 })
 public class ACL implements Serializable, Cloneable{
 
@@ -18,14 +18,23 @@ import org.polarsys.eplmp.core.exceptions.StorageException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Date;
+import java.util.Map;
 
 public interface IBinaryStorageManagerLocal {
     InputStream getBinaryResourceInputStream(BinaryResource binaryResource) throws StorageException;
     OutputStream getBinaryResourceOutputStream(BinaryResource binaryResource) throws StorageException;
+    void saveContentHash(String fullName, String contentHash);
+    void saveContentLocation(String fullName, String location);
+    void indexContentLocations();
+    String indexContentLocationBatch(String afterFullName, int maxResults);
+    void importContentHashes();
+    String saveContentHashBatch(Map<String, String> contentHashes, String afterFullName, int maxResults);
+    String getContentLocation(BinaryResource binaryResource) throws StorageException;
     boolean exists(BinaryResource binaryResource, String generatedFileName) throws StorageException;
     Date getLastModified(BinaryResource binaryResource, String generatedFileName) throws StorageException;
     InputStream getGeneratedFileInputStream(BinaryResource binaryResource, String generatedFileName) throws StorageException;
     OutputStream getGeneratedFileOutputStream(BinaryResource binaryResource, String generatedFileName) throws StorageException;
+    void deleteGeneratedFiles(BinaryResource binaryResource, String generatedFileNamePrefix, String generatedFileNameSuffix, String keptFileName);
     void copyData(BinaryResource source, BinaryResource destination) throws StorageException;
     void deleteData(BinaryResource binaryResource) throws StorageException;
     void renameFile(BinaryResource binaryResource, String pNewName) throws StorageException, FileNotFoundException;
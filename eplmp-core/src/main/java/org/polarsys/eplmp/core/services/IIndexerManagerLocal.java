@@ -48,4 +48,8 @@ public interface IIndexerManagerLocal {
     void indexWorkspaceData(String workspaceId) throws WorkspaceNotFoundException, AccountNotFoundException, AccessRightException;
 
     boolean ping();
+
+    long getIndexationQueueDepth();
+
+    long getIndexationLag();
 }
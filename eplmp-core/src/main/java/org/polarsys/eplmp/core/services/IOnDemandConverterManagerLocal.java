@@ -16,6 +16,7 @@ import org.polarsys.eplmp.core.exceptions.*;
 
 import java.io.InputStream;
 import java.util.Locale;
+import java.util.Map;
 
 public interface IOnDemandConverterManagerLocal {
     InputStream getDocumentConvertedResource(String outputFormat, BinaryResource binaryResource, Locale locale)
@@ -24,4 +25,14 @@ public interface IOnDemandConverterManagerLocal {
     InputStream getPartConvertedResource(String outputFormat, BinaryResource binaryResource, Locale locale)
             throws WorkspaceNotFoundException, UserNotActiveException, UserNotFoundException, ConvertedResourceException, WorkspaceNotEnabledException;
 
+    /**
+     * @return false if the converters are busy and the conversion has to be retried later
+     */
+    boolean preConvertResource(String outputFormat, String fullName);
+
+    /**
+     * @return the statistics of each converter having some, by converter name
+     */
+    Map<String, Map<String, Long>> getConverterStats();
+
 }
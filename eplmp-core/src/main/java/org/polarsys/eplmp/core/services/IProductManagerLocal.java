@@ -63,6 +63,15 @@ public interface IProductManagerLocal {
 
     BinaryResource getBinaryResource(String fullName) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, FileNotFoundException, NotAllowedException, AccessRightException, WorkspaceNotEnabledException;
 
+    /**
+     * Get the content hashes of some part files of a workspace, checking the access rights once per part iteration.
+     *
+     * @param workspaceId The workspace of the files.
+     * @param fullNames   The full names of the files.
+     * @return The content hash by full name. Files that don't exist, can't be read, or don't have a content hash are missing.
+     */
+    Map<String, String> getBinaryResourceContentHashes(String workspaceId, List<String> fullNames) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, WorkspaceNotEnabledException;
+
     BinaryResource getTemplateBinaryResource(String pFullName) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, FileNotFoundException, WorkspaceNotEnabledException;
 
     List<ConfigurationItem> getConfigurationItems(String pWorkspaceId) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, WorkspaceNotEnabledException;
@@ -225,6 +234,8 @@ public interface IProductManagerLocal {
 
     List<PartRevision> searchPartRevisions(String workspaceId, Query query) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, WorkspaceNotEnabledException;
 
+    List<PartRevision> searchPartRevisions(String workspaceId, Query query, PartRevisionKey after, int maxResults) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, WorkspaceNotEnabledException;
+
     List<Query> getQueries(String workspaceId) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, WorkspaceNotEnabledException;
 
     Query getQuery(String workspaceId, int queryId) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, WorkspaceNotEnabledException;
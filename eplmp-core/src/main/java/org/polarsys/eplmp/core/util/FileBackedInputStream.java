@@ -0,0 +1,41 @@
+/*******************************************************************************
+  * Copyright (c) 2017-2019 DocDoku.
+  * All rights reserved. This program and the accompanying materials
+  * are made available under the terms of the Eclipse Public License v1.0
+  * which accompanies this distribution, and is available at
+  * http://www.eclipse.org/legal/epl-v10.html
+  *
+  * Contributors:
+  *    DocDoku - initial API and implementation
+  *******************************************************************************/
+
+package org.polarsys.eplmp.core.util;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.nio.channels.FileChannel;
+
+/**
+ * Buffered stream on a file, which also gives access to the channel of the file.
+ *
+ * Storage providers backed by the file system return this stream, so that consumers
+ * can serve byte ranges with positional reads or {@link FileChannel#transferTo}
+ * instead of skipping and copying through the stream.
+ */
+public class FileBackedInputStream extends BufferedInputStream {
+
+    private final FileChannel channel;
+
+    public FileBackedInputStream(FileInputStream in) {
+        super(in);
+        this.channel = in.getChannel();
+    }
+
+    /**
+     * Positional operations on the returned channel don't change the position of the stream.
+     * The channel is closed with the stream.
+     */
+    public FileChannel getChannel() {
+        return channel;
+    }
+}
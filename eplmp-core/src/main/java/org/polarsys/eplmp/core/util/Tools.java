@@ -20,8 +20,10 @@ import javax.swing.text.MaskFormatter;
 import java.text.Normalizer;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
@@ -206,6 +208,23 @@ public class Tools {
         return String.join("-", ids); // java 8
     }
 
+    /**
+     * Get the full ids of the part links a path, as built by {@link #getPathAsString(List)}, is made of.
+     * The root of the path is left out.
+     */
+    public static Set<String> getPartLinkFullIds(String path) {
+        Set<String> fullIds = new HashSet<>();
+        if (path != null) {
+            for (String fullId : path.split("-")) {
+                // The root of the path, "-1", splits into an empty string and a bare id
+                if (!fullId.isEmpty() && !Character.isDigit(fullId.charAt(0))) {
+                    fullIds.add(fullId);
+                }
+            }
+        }
+        return fullIds;
+    }
+
     public static String getPathInstanceAsString(List<PartLink> path, List<Integer> instancesIds) {
 
         if(path.size() != instancesIds.size()){
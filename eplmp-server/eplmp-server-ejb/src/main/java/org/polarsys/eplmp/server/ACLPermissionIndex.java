@@ -0,0 +1,214 @@
+/*******************************************************************************
+  * Copyright (c) 2017-2019 DocDoku.
+  * All rights reserved. This program and the accompanying materials
+  * are made available under the terms of the Eclipse Public License v1.0
+  * which accompanies this distribution, and is available at
+  * http://www.eclipse.org/legal/epl-v10.html
+  *
+  * Contributors:
+  *    DocDoku - initial API and implementation
+  *******************************************************************************/
+
+package org.polarsys.eplmp.server;
+
+import org.polarsys.eplmp.core.common.User;
+import org.polarsys.eplmp.core.security.ACL;
+import org.polarsys.eplmp.core.security.ACLPermission;
+import org.polarsys.eplmp.server.dao.ACLDAO;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Index of the effective permission of users on the ACLs of their workspace.
+ *
+ * The permissions of a user are resolved with two queries the first time they are needed, then each
+ * check is a map lookup instead of a walk through the entries and groups of the ACL. They are dropped
+ * whenever an ACL or a group membership of the workspace changes.
+ *
+ * A user entry overrides the group entries; among groups, the highest permission wins.
+ */
+@ApplicationScoped
+public class ACLPermissionIndex {
+
+    private static final Logger LOGGER = Logger.getLogger(ACLPermissionIndex.class.getName());
+    private static final String TRANSACTION_RESOURCE = ACLPermissionIndex.class.getName();
+
+    @Inject
+    private ConfigManager configManager;
+
+    @Inject
+    private ACLDAO aclDAO;
+
+    @Resource
+    private TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+    private int maxSize;
+
+    // Guarded by this
+    private Map<Key, Map<Integer, ACLPermission>> permissions;
+    private long changeCounter;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        maxSize = configManager.getACLPermissionIndexSize();
+        permissions = new LinkedHashMap<Key, Map<Integer, ACLPermission>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Map<Integer, ACLPermission>> eldest) {
+                return size() > maxSize;
+            }
+        };
+        if (isEnabled()) {
+            LOGGER.log(Level.INFO, "ACL permission index enabled, up to {0} users", maxSize);
+        }
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    public boolean hasReadAccess(User user, ACL acl) {
+        if (!isEnabled()) {
+            return acl.hasReadAccess(user);
+        }
+        ACLPermission permission = getPermission(user, acl.getId());
+        return permission != null && permission != ACLPermission.FORBIDDEN;
+    }
+
+    public boolean hasWriteAccess(User user, ACL acl) {
+        if (!isEnabled()) {
+            return acl.hasWriteAccess(user);
+        }
+        return getPermission(user, acl.getId()) == ACLPermission.FULL_ACCESS;
+    }
+
+    /**
+     * @return the effective permission of the user on the given ACL, or null if none of its entries applies
+     */
+    public ACLPermission getPermission(User user, int aclId) {
+        return getPermissions(user).get(aclId);
+    }
+
+    /**
+     * @return the effective permission of the user on each ACL of its workspace which applies to him
+     */
+    public Map<Integer, ACLPermission> getPermissions(User user) {
+        Key key = new Key(user.getWorkspaceId(), user.getLogin());
+        long counter;
+        synchronized (this) {
+            Map<Integer, ACLPermission> userPermissions = permissions.get(key);
+            if (userPermissions != null) {
+                hitCount.incrementAndGet();
+                return userPermissions;
+            }
+            counter = changeCounter;
+        }
+        missCount.incrementAndGet();
+        Map<Integer, ACLPermission> userPermissions = Collections.unmodifiableMap(aclDAO.getPermissions(user));
+        // Changes not committed yet must not be seen by other transactions
+        if (!hasPendingChanges()) {
+            synchronized (this) {
+                if (counter == changeCounter) {
+                    permissions.put(key, userPermissions);
+                }
+            }
+        }
+        return userPermissions;
+    }
+
+    /**
+     * Drop the permissions indexed for the given workspace.
+     */
+    public synchronized void invalidate(String workspaceId) {
+        changeCounter++;
+        permissions.keySet().removeIf(key -> key.workspaceId.equals(workspaceId));
+    }
+
+    /**
+     * Drop the permissions indexed for the given workspace now and once the current transaction completes,
+     * so that neither the state before the change nor an uncommitted one outlives it.
+     */
+    public void invalidateAfterTransaction(String workspaceId) {
+        invalidate(workspaceId);
+        if (transactionSynchronizationRegistry == null || transactionSynchronizationRegistry.getTransactionKey() == null
+                || transactionSynchronizationRegistry.getTransactionStatus() != Status.STATUS_ACTIVE) {
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Set<String> workspaceIds = (Set<String>) transactionSynchronizationRegistry.getResource(TRANSACTION_RESOURCE);
+        if (workspaceIds == null) {
+            Set<String> changedWorkspaceIds = new HashSet<>();
+            transactionSynchronizationRegistry.putResource(TRANSACTION_RESOURCE, changedWorkspaceIds);
+            transactionSynchronizationRegistry.registerInterposedSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                    // Nothing to do before completion
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    changedWorkspaceIds.forEach(ACLPermissionIndex.this::invalidate);
+                }
+            });
+            workspaceIds = changedWorkspaceIds;
+        }
+        workspaceIds.add(workspaceId);
+    }
+
+    public synchronized int size() {
+        return permissions.size();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    private boolean hasPendingChanges() {
+        return transactionSynchronizationRegistry != null && transactionSynchronizationRegistry.getTransactionKey() != null
+                && transactionSynchronizationRegistry.getResource(TRANSACTION_RESOURCE) != null;
+    }
+
+    private static final class Key {
+
+        private final String workspaceId;
+        private final String login;
+
+        private Key(String workspaceId, String login) {
+            this.workspaceId = workspaceId;
+            this.login = login;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return workspaceId.equals(key.workspaceId) && login.equals(key.login);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(workspaceId, login);
+        }
+    }
+}
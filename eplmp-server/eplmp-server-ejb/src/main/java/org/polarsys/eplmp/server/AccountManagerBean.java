@@ -24,11 +24,15 @@ import org.polarsys.eplmp.i18n.PropertiesLoader;
 import org.polarsys.eplmp.server.dao.AccountDAO;
 import org.polarsys.eplmp.server.dao.GCMAccountDAO;
 import org.polarsys.eplmp.server.dao.OrganizationDAO;
+import org.polarsys.eplmp.server.events.AccountEvent;
+import org.polarsys.eplmp.server.events.Updated;
 
 import javax.annotation.security.DeclareRoles;
 import javax.annotation.security.RolesAllowed;
 import javax.ejb.Local;
 import javax.ejb.Stateless;
+import javax.enterprise.event.Event;
+import javax.enterprise.util.AnnotationLiteral;
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
 import java.util.Arrays;
@@ -65,12 +69,23 @@ public class AccountManagerBean implements IAccountManagerLocal {
     @Inject
     private ConfigManager configManager;
 
+    @Inject
+    private AuthenticationCache authenticationCache;
+
+    @Inject
+    private Event<AccountEvent> accountEvent;
+
     public AccountManagerBean() {
     }
 
     @Override
     public Account authenticateAccount(String login, String password) {
-        Account account = null;
+        Account account = authenticationCache.getAccount(login, password);
+        if (account != null) {
+            return account;
+        }
+
+        long changeCounter = authenticationCache.getChangeCounter();
 
         if (accountDAO.authenticate(login, password, configManager.getDigestAlgorithm())) {
 
@@ -79,6 +94,7 @@ public class AccountManagerBean implements IAccountManagerLocal {
             } catch (AccountNotFoundException e) {
                 return null;
             }
+            authenticationCache.put(changeCounter, login, password, account, em.find(UserGroupMapping.class, login));
         }
 
         return account;
@@ -86,7 +102,8 @@ public class AccountManagerBean implements IAccountManagerLocal {
 
     @Override
     public UserGroupMapping getUserGroupMapping(String login) {
-        return em.find(UserGroupMapping.class, login);
+        UserGroupMapping userGroupMapping = authenticationCache.getUserGroupMapping(login);
+        return userGroupMapping != null ? userGroupMapping : em.find(UserGroupMapping.class, login);
     }
 
     @Override
@@ -132,6 +149,8 @@ public class AccountManagerBean implements IAccountManagerLocal {
         if (pPassword != null) {
             accountDAO.updateCredential(account.getLogin(), pPassword, configManager.getDigestAlgorithm());
         }
+        accountEvent.select(new AnnotationLiteral<Updated>() {
+        }).fire(new AccountEvent(account.getLogin()));
         return account;
     }
 
@@ -210,6 +229,8 @@ public class AccountManagerBean implements IAccountManagerLocal {
         if (!callerPrincipalLogin.equals(login)) {
             Account account = getAccount(login);
             account.setEnabled(enabled);
+            accountEvent.select(new AnnotationLiteral<Updated>() {
+            }).fire(new AccountEvent(login));
             return account;
         } else {
             throw new NotAllowedException("NotAllowedException67");
@@ -233,6 +254,8 @@ public class AccountManagerBean implements IAccountManagerLocal {
         if (pPassword != null) {
             accountDAO.updateCredential(otherAccount.getLogin(), pPassword, configManager.getDigestAlgorithm());
         }
+        accountEvent.select(new AnnotationLiteral<Updated>() {
+        }).fire(new AccountEvent(otherAccount.getLogin()));
         return otherAccount;
     }
     private Boolean  isTimeZoneAvailable(String value) {
@@ -11,6 +11,7 @@
 
 package org.polarsys.eplmp.server;
 
+import org.polarsys.eplmp.core.services.IBinaryStorageManagerLocal;
 import org.polarsys.eplmp.core.services.IOAuthManagerLocal;
 
 import javax.annotation.PostConstruct;
@@ -30,10 +31,22 @@ public class ApplicationStart {
     @Inject
     private IOAuthManagerLocal oAuthManager;
 
+    @Inject
+    private IBinaryStorageManagerLocal storageManager;
+
+    @Inject
+    private PathPartLinkIndexer pathPartLinkIndexer;
+
     @PostConstruct
     private void start() {
         LOGGER.log(Level.INFO, "ApplicationStart");
         oAuthManager.loadProvidersFromProperties();
+        // Resolves in the background the files stored before their location was recorded
+        storageManager.indexContentLocations();
+        // Saves in the background the content hashes computed by a vault migration
+        storageManager.importContentHashes();
+        // Indexes in the background the part links of the paths stored before they were decomposed
+        pathPartLinkIndexer.indexPaths();
     }
 
     @PreDestroy
@@ -0,0 +1,171 @@
+/*******************************************************************************
+  * Copyright (c) 2017-2019 DocDoku.
+  * All rights reserved. This program and the accompanying materials
+  * are made available under the terms of the Eclipse Public License v1.0
+  * which accompanies this distribution, and is available at
+  * http://www.eclipse.org/legal/epl-v10.html
+  *
+  * Contributors:
+  *    DocDoku - initial API and implementation
+  *******************************************************************************/
+
+package org.polarsys.eplmp.server;
+
+import org.polarsys.eplmp.core.common.Account;
+import org.polarsys.eplmp.core.security.UserGroupMapping;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Size bounded, least recently used, cache of the credentials verified by {@link AccountManagerBean},
+ * sparing a database round trip to the clients authenticating on each request.
+ *
+ * Entries expire after a short delay, and are evicted once a change on their account is committed.
+ * Passwords are not kept: entries hold a salted digest of the password they were verified with.
+ *
+ * Entries hold detached copies of the accounts and group mappings, each caller is given its own copy.
+ */
+@ApplicationScoped
+public class AuthenticationCache {
+
+    private static final Logger LOGGER = Logger.getLogger(AuthenticationCache.class.getName());
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    @Inject
+    private ConfigManager configManager;
+
+    private int maxSize;
+    private long timeToLive;
+    private final byte[] salt = new byte[16];
+
+    // Guarded by this
+    private Map<String, Entry> entries;
+    private long changeCounter;
+
+    @PostConstruct
+    void init() {
+        maxSize = configManager.getAuthenticationCacheSize();
+        timeToLive = TimeUnit.SECONDS.toMillis(configManager.getAuthenticationCacheTTL());
+        new SecureRandom().nextBytes(salt);
+        entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+        if (isEnabled()) {
+            LOGGER.log(Level.INFO, "Authentication cache enabled, up to {0} accounts", maxSize);
+        }
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0 && timeToLive > 0;
+    }
+
+    /**
+     * @return the account verified with the given credentials, or null if they are not cached
+     */
+    public Account getAccount(String login, String password) {
+        if (!isEnabled() || password == null) {
+            return null;
+        }
+        byte[] passwordDigest = digest(password);
+        Entry entry = getEntry(login);
+        return entry != null && MessageDigest.isEqual(entry.passwordDigest, passwordDigest) ? entry.account.clone() : null;
+    }
+
+    /**
+     * @return the group mapping of an account whose credentials are cached, or null
+     */
+    public UserGroupMapping getUserGroupMapping(String login) {
+        if (!isEnabled()) {
+            return null;
+        }
+        Entry entry = getEntry(login);
+        return entry != null ? copy(entry.userGroupMapping) : null;
+    }
+
+    /**
+     * Read the change counter, to be done before verifying credentials which will be given
+     * to {@link #put(long, String, String, Account, UserGroupMapping)}.
+     */
+    public synchronized long getChangeCounter() {
+        return changeCounter;
+    }
+
+    /**
+     * Store verified credentials, unless an account changed since they were verified.
+     */
+    public void put(long changeCounter, String login, String password, Account account, UserGroupMapping userGroupMapping) {
+        if (!isEnabled() || password == null) {
+            return;
+        }
+        Entry entry = new Entry(digest(password), account.clone(), copy(userGroupMapping), System.currentTimeMillis() + timeToLive);
+        synchronized (this) {
+            if (changeCounter == this.changeCounter) {
+                entries.put(login, entry);
+            }
+        }
+    }
+
+    /**
+     * Evict the credentials of the given account.
+     */
+    public synchronized void invalidate(String login) {
+        changeCounter++;
+        entries.remove(login);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private synchronized Entry getEntry(String login) {
+        Entry entry = entries.get(login);
+        if (entry != null && entry.expirationTime <= System.currentTimeMillis()) {
+            entries.remove(login);
+            return null;
+        }
+        return entry;
+    }
+
+    private static UserGroupMapping copy(UserGroupMapping userGroupMapping) {
+        return userGroupMapping != null ? new UserGroupMapping(userGroupMapping.getLogin(), userGroupMapping.getGroupName()) : null;
+    }
+
+    private byte[] digest(String password) {
+        try {
+            MessageDigest md = MessageDigest.getInstance(DIGEST_ALGORITHM);
+            md.update(salt);
+            return md.digest(password.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Entry {
+
+        private final byte[] passwordDigest;
+        private final Account account;
+        private final UserGroupMapping userGroupMapping;
+        private final long expirationTime;
+
+        private Entry(byte[] passwordDigest, Account account, UserGroupMapping userGroupMapping, long expirationTime) {
+            this.passwordDigest = passwordDigest;
+            this.account = account;
+            this.userGroupMapping = userGroupMapping;
+            this.expirationTime = expirationTime;
+        }
+    }
+}
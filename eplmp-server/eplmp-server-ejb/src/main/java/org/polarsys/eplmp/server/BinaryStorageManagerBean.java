@@ -15,18 +15,38 @@ import org.polarsys.eplmp.core.exceptions.FileNotFoundException;
 import org.polarsys.eplmp.core.exceptions.StorageException;
 import org.polarsys.eplmp.core.security.UserGroupMapping;
 import org.polarsys.eplmp.core.services.IBinaryStorageManagerLocal;
+import org.polarsys.eplmp.core.util.Tools;
+import org.polarsys.eplmp.server.dao.BinaryResourceDAO;
+import org.polarsys.eplmp.server.storage.ContentHashOutputStream;
 import org.polarsys.eplmp.server.storage.StorageProvider;
+import org.polarsys.eplmp.server.storage.filesystem.ContentAddressedStorageProvider;
 import org.polarsys.eplmp.server.storage.filesystem.FileStorageProvider;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
 import javax.annotation.security.DeclareRoles;
+import javax.ejb.Asynchronous;
 import javax.ejb.Local;
+import javax.ejb.Schedule;
+import javax.ejb.SessionContext;
 import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
 import javax.inject.Inject;
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 
 @DeclareRoles(UserGroupMapping.REGULAR_USER_ROLE_ID)
@@ -34,76 +54,228 @@ import java.util.Date;
 @Stateless(name = "BinaryStorageManagerBean")
 public class BinaryStorageManagerBean implements IBinaryStorageManagerLocal {
 
+    private static final Logger LOGGER = Logger.getLogger(BinaryStorageManagerBean.class.getName());
+
+    private static final int LOCATION_BATCH_SIZE = 500;
+    private static final int CONTENT_HASH_BATCH_SIZE = 500;
+
     @Inject
     private ConfigManager configManager;
 
+    @Inject
+    private BinaryResourceDAO binaryResourceDAO;
+
+    @Resource
+    private SessionContext ctx;
+
     private StorageProvider defaultStorageProvider;
 
     @PostConstruct
     private void init() {
-        StorageProvider fileStorageProvider = new FileStorageProvider(configManager.getVaultPath());
-        defaultStorageProvider = fileStorageProvider;
+        String vaultPath = configManager.getVaultPath();
+        if (configManager.isContentAddressedVault() && ContentAddressedStorageProvider.isSupported(vaultPath)) {
+            defaultStorageProvider = new ContentAddressedStorageProvider(vaultPath);
+        } else {
+            if (configManager.isContentAddressedVault()) {
+                LOGGER.log(Level.SEVERE, "The file system of the vault doesn't support hard links, content addressed storage disabled");
+            }
+            defaultStorageProvider = new FileStorageProvider(vaultPath);
+        }
     }
 
     @Override
     public InputStream getBinaryResourceInputStream(BinaryResource binaryResource) throws StorageException {
         try {
-            return defaultStorageProvider.getBinaryResourceInputStream(binaryResource);
+            return defaultStorageProvider.getBinaryResourceInputStream(resolve(binaryResource));
         } catch (FileNotFoundException e) {
-            BinaryResource previous = binaryResource.getPrevious();
-            if (previous != null) {
-                return getBinaryResourceInputStream(previous);
-            } else {
-                throw new StorageException("Can't find " + binaryResource.getFullName());
-            }
+            throw new StorageException("Can't find " + binaryResource.getFullName(), e);
         }
     }
 
     @Override
     public OutputStream getBinaryResourceOutputStream(BinaryResource binaryResource) throws StorageException {
-        return defaultStorageProvider.getBinaryResourceOutputStream(binaryResource);
+        OutputStream outputStream = defaultStorageProvider.getBinaryResourceOutputStream(binaryResource);
+        String fullName = binaryResource.getFullName();
+        // The stream is usually closed by the caller, once this method has returned: go through
+        // the business object to save the hash in a transaction
+        IBinaryStorageManagerLocal businessObject = ctx.getBusinessObject(IBinaryStorageManagerLocal.class);
+        // Content addressed providers already hash the content
+        ContentHashOutputStream contentHashOutputStream = outputStream instanceof ContentHashOutputStream ?
+                (ContentHashOutputStream) outputStream : new ContentHashOutputStream(outputStream);
+        contentHashOutputStream.addListener(contentHash -> {
+            binaryResource.setContentHash(contentHash);
+            binaryResource.setLocation(fullName);
+            try {
+                businessObject.saveContentHash(fullName, contentHash);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Cannot save the content hash of " + fullName, e);
+            }
+        });
+        return contentHashOutputStream;
+    }
+
+    @Override
+    public void saveContentHash(String fullName, String contentHash) {
+        BinaryResource binaryResource = binaryResourceDAO.findBinaryResource(fullName);
+        if (binaryResource != null) {
+            binaryResource.setContentHash(contentHash);
+            // The content has been stored in the file of the binary resource
+            binaryResource.setLocation(fullName);
+        }
+    }
+
+    @Override
+    public void saveContentLocation(String fullName, String location) {
+        BinaryResource binaryResource = binaryResourceDAO.findBinaryResource(fullName);
+        if (binaryResource != null) {
+            binaryResource.setLocation(location);
+        }
+    }
+
+    @Override
+    @Asynchronous
+    public void indexContentLocations() {
+        IBinaryStorageManagerLocal businessObject = ctx.getBusinessObject(IBinaryStorageManagerLocal.class);
+        String lastFullName = "";
+        try {
+            while (lastFullName != null) {
+                lastFullName = businessObject.indexContentLocationBatch(lastFullName, LOCATION_BATCH_SIZE);
+            }
+            LOGGER.log(Level.INFO, "Binary resource locations indexed");
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Binary resource locations indexing interrupted, will resume on next start", e);
+        }
+    }
+
+    @Override
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public String indexContentLocationBatch(String afterFullName, int maxResults) {
+        List<BinaryResource> binaryResources = binaryResourceDAO.findUnlocatedBinaryResources(afterFullName, maxResults);
+        for (BinaryResource binaryResource : binaryResources) {
+            try {
+                binaryResource.setLocation(findLocation(binaryResource));
+            } catch (StorageException e) {
+                // Left unresolved, reads will fail as they did before
+                LOGGER.log(Level.FINE, e.getMessage());
+            }
+        }
+        return binaryResources.size() < maxResults ? null : binaryResources.get(binaryResources.size() - 1).getFullName();
+    }
+
+    @Override
+    @Asynchronous
+    public void importContentHashes() {
+        if (!(defaultStorageProvider instanceof ContentAddressedStorageProvider)) {
+            return;
+        }
+        Path contentHashesFile = ((ContentAddressedStorageProvider) defaultStorageProvider).getContentHashesFile();
+        if (!Files.exists(contentHashesFile)) {
+            return;
+        }
+        IBinaryStorageManagerLocal businessObject = ctx.getBusinessObject(IBinaryStorageManagerLocal.class);
+        try (BufferedReader reader = Files.newBufferedReader(contentHashesFile, StandardCharsets.UTF_8)) {
+            // The file lists vault paths, which are unaccented full names: the binary resources
+            // are walked and matched on their own unaccented name
+            Map<String, String> contentHashes = new HashMap<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // "hash path", paths may contain spaces
+                int separator = line.indexOf(' ');
+                if (separator > 0) {
+                    contentHashes.put(line.substring(separator + 1), line.substring(0, separator));
+                }
+            }
+            String lastFullName = "";
+            while (lastFullName != null) {
+                lastFullName = businessObject.saveContentHashBatch(contentHashes, lastFullName, CONTENT_HASH_BATCH_SIZE);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Content hashes import interrupted, will resume on next start", e);
+            return;
+        }
+        try {
+            Files.delete(contentHashesFile);
+            LOGGER.log(Level.INFO, "Content hashes of the migrated vault imported");
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Cannot delete " + contentHashesFile, e);
+        }
+    }
+
+    @Override
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public String saveContentHashBatch(Map<String, String> contentHashes, String afterFullName, int maxResults) {
+        // Hashes saved since the migration are more recent
+        List<BinaryResource> binaryResources = binaryResourceDAO.findBinaryResourcesWithoutContentHash(afterFullName, maxResults);
+        for (BinaryResource binaryResource : binaryResources) {
+            String location = binaryResource.getLocation() != null ? binaryResource.getLocation() : binaryResource.getFullName();
+            String contentHash = contentHashes.get(Tools.unAccent(location));
+            if (contentHash != null) {
+                binaryResource.setContentHash(contentHash);
+            }
+        }
+        return binaryResources.size() < maxResults ? null : binaryResources.get(binaryResources.size() - 1).getFullName();
+    }
+
+    /**
+     * Delete the blobs of content addressed vaults which are no longer referenced, for instance
+     * by binary resources deleted before their content hash was known.
+     */
+    @Schedule(hour = "3", persistent = false)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void collectGarbage() {
+        if (defaultStorageProvider instanceof ContentAddressedStorageProvider) {
+            ((ContentAddressedStorageProvider) defaultStorageProvider).collectGarbage();
+        }
     }
 
     @Override
     public InputStream getGeneratedFileInputStream(BinaryResource binaryResource, String generatedFileName) throws StorageException {
         try {
-            return defaultStorageProvider.getGeneratedFileInputStream(binaryResource, generatedFileName);
+            return defaultStorageProvider.getGeneratedFileInputStream(resolve(binaryResource), generatedFileName);
         } catch (FileNotFoundException e) {
-            BinaryResource previous = binaryResource.getPrevious();
-            if (previous != null) {
-                return getGeneratedFileInputStream(previous, generatedFileName);
-            } else {
-                throw new StorageException("Can't find generated file " + generatedFileName + " of " + binaryResource.getFullName());
-            }
+            throw new StorageException("Can't find generated file " + generatedFileName + " of " + binaryResource.getFullName(), e);
         }
     }
 
     @Override
     public OutputStream getGeneratedFileOutputStream(BinaryResource binaryResource, String generatedFileName) throws StorageException {
-        return defaultStorageProvider.getGeneratedFileOutputStream(binaryResource, generatedFileName);
+        return defaultStorageProvider.getGeneratedFileOutputStream(resolve(binaryResource), generatedFileName);
     }
 
     @Override
-    public boolean exists(BinaryResource binaryResource, String generatedFileName) throws StorageException {
-        if (defaultStorageProvider.exists(binaryResource, generatedFileName)) {
-            return true;
-        } else {
-            BinaryResource previous = binaryResource.getPrevious();
-            return previous != null && exists(previous, generatedFileName);
+    public void deleteGeneratedFiles(BinaryResource binaryResource, String generatedFileNamePrefix, String generatedFileNameSuffix, String keptFileName) {
+        try {
+            defaultStorageProvider.deleteGeneratedFiles(resolve(binaryResource), generatedFileNamePrefix, generatedFileNameSuffix, keptFileName);
+        } catch (StorageException e) {
+            LOGGER.log(Level.WARNING, "Cannot delete the generated files of " + binaryResource.getFullName(), e);
+        }
+    }
+
+    /**
+     * @return the full name of the binary resource whose file holds the content of the given one,
+     * and whose folder holds the generated files
+     */
+    @Override
+    public String getContentLocation(BinaryResource binaryResource) throws StorageException {
+        return resolve(binaryResource).getFullName();
+    }
+
+    @Override
+    public boolean exists(BinaryResource binaryResource, String generatedFileName) {
+        try {
+            return defaultStorageProvider.exists(resolve(binaryResource), generatedFileName);
+        } catch (StorageException e) {
+            LOGGER.log(Level.FINE, null, e);
+            return false;
         }
     }
 
     @Override
     public Date getLastModified(BinaryResource binaryResource, String generatedFileName) throws StorageException {
         try {
-            return defaultStorageProvider.getLastModified(binaryResource, generatedFileName);
+            return defaultStorageProvider.getLastModified(resolve(binaryResource), generatedFileName);
         } catch (FileNotFoundException e) {
-            BinaryResource previous = binaryResource.getPrevious();
-            if (previous != null) {
-                return getLastModified(previous, generatedFileName);
-            } else {
-                throw new StorageException("Can't find source file to get last modified date " + binaryResource.getFullName());
-            }
+            throw new StorageException("Can't find source file to get last modified date " + binaryResource.getFullName(), e);
         }
     }
 
@@ -111,14 +283,11 @@ public class BinaryStorageManagerBean implements IBinaryStorageManagerLocal {
     @Override
     public void copyData(BinaryResource source, BinaryResource destination) throws StorageException {
         try {
-            defaultStorageProvider.copyData(source, destination);
+            defaultStorageProvider.copyData(resolve(source), destination);
+            destination.setContentHash(source.getContentHash());
+            destination.setLocation(destination.getFullName());
         } catch (FileNotFoundException e) {
-            BinaryResource previous = source.getPrevious();
-            if (previous != null) {
-                copyData(previous, destination);
-            } else {
-                throw new StorageException("Can't find source file to copy " + source.getFullName());
-            }
+            throw new StorageException("Can't find source file to copy " + source.getFullName(), e);
         }
     }
 
@@ -127,30 +296,14 @@ public class BinaryStorageManagerBean implements IBinaryStorageManagerLocal {
         defaultStorageProvider.delData(binaryResource);
     }
 
-    private File getEffectiveBinaryResourceFile(BinaryResource binaryResource) throws StorageException {
-        try {
-            return defaultStorageProvider.getBinaryResourceFile(binaryResource);
-        } catch (FileNotFoundException e) {
-            BinaryResource previous = binaryResource.getPrevious();
-            if (previous != null) {
-                return getEffectiveBinaryResourceFile(previous);
-            } else {
-                throw new StorageException("Can't find resource " + binaryResource.getFullName());
-            }
-        }
-    }
-
     @Override
     public void renameFile(BinaryResource binaryResource, String pNewName) throws StorageException, FileNotFoundException {
-        //because we do not duplicate file from iteration to iteration if nothing has changed
-        //file could be share among iterations
-        File file = getEffectiveBinaryResourceFile(binaryResource);
+        BinaryResource storedResource = resolve(binaryResource);
+        File file = defaultStorageProvider.getBinaryResourceFile(storedResource);
 
-        try {
-            //hence we check if file is only used by the current BinaryResource
-            defaultStorageProvider.getBinaryResourceFile(binaryResource);
-        } catch (FileNotFoundException e) {
-            //we have got an exception, that means file is shared
+        //file could be shared among iterations, as we do not duplicate it from iteration to iteration
+        //if nothing has changed: rename a copy which is only used by the current BinaryResource
+        if (storedResource != binaryResource) {
             file = defaultStorageProvider.copyFile(file, binaryResource);
         }
 
@@ -172,4 +325,44 @@ public class BinaryStorageManagerBean implements IBinaryStorageManagerLocal {
         defaultStorageProvider.deleteWorkspaceFolder(workspaceId);
     }
 
+    /**
+     * @return The binary resource whose file holds the content of the given one, which may be itself.
+     */
+    private BinaryResource resolve(BinaryResource binaryResource) throws StorageException {
+        String fullName = binaryResource.getFullName();
+        String location = binaryResource.getLocation();
+        if (location == null) {
+            location = findLocation(binaryResource);
+            binaryResource.setLocation(location);
+            try {
+                ctx.getBusinessObject(IBinaryStorageManagerLocal.class).saveContentLocation(fullName, location);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Cannot save the location of " + fullName, e);
+            }
+        }
+        if (location.equals(fullName)) {
+            return binaryResource;
+        }
+        BinaryResource storedResource = new BinaryResource(location, binaryResource.getContentLength(), binaryResource.getLastModified());
+        storedResource.setContentHash(binaryResource.getContentHash());
+        storedResource.setLocation(location);
+        return storedResource;
+    }
+
+    /**
+     * Look for the file of a binary resource whose location has not been indexed yet:
+     * iterations checked out without changes share the file of a previous iteration.
+     */
+    private String findLocation(BinaryResource binaryResource) throws StorageException {
+        for (BinaryResource candidate = binaryResource; candidate != null; candidate = candidate.getPrevious()) {
+            try {
+                defaultStorageProvider.getBinaryResourceFile(candidate);
+                return candidate.getFullName();
+            } catch (FileNotFoundException e) {
+                LOGGER.log(Level.FINEST, null, e);
+            }
+        }
+        throw new StorageException("Can't find " + binaryResource.getFullName());
+    }
+
 }
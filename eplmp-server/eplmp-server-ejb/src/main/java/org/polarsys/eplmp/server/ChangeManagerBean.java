@@ -44,6 +44,9 @@ import java.util.stream.Collectors;
 @Stateless(name = "ChangeManagerBean")
 public class ChangeManagerBean implements IChangeManagerLocal {
 
+    @Inject
+    private ACLPermissionIndex aclPermissionIndex;
+
     @Inject
     private EntityManager em;
 
@@ -883,7 +886,7 @@ public class ChangeManagerBean implements IChangeManagerLocal {
         }
         if (pChangeItem.getACL() == null) {
             return userManager.checkWorkspaceWriteAccess(pChangeItem.getWorkspaceId());
-        } else if (pChangeItem.getACL().hasWriteAccess(pUser)) {
+        } else if (aclPermissionIndex.hasWriteAccess(pUser, pChangeItem.getACL())) {
             return pUser;
         } else {
             throw new AccessRightException(pUser);
@@ -893,7 +896,7 @@ public class ChangeManagerBean implements IChangeManagerLocal {
     private User checkChangeItemReadAccess(ChangeItem pChangeItem, User pUser) throws AccessRightException {
         if (pUser.isAdministrator() ||
                 pChangeItem.getACL() == null ||
-                pChangeItem.getACL().hasReadAccess(pUser)) {
+                aclPermissionIndex.hasReadAccess(pUser, pChangeItem.getACL())) {
             return pUser;
         } else {
             throw new AccessRightException(pUser);
@@ -906,7 +909,7 @@ public class ChangeManagerBean implements IChangeManagerLocal {
         }
         if (pMilestone.getACL() == null) {
             return userManager.checkWorkspaceWriteAccess(pMilestone.getWorkspaceId());
-        } else if (pMilestone.getACL().hasWriteAccess(pUser)) {
+        } else if (aclPermissionIndex.hasWriteAccess(pUser, pMilestone.getACL())) {
             return pUser;
         } else {
             throw new AccessRightException(pUser);
@@ -916,7 +919,7 @@ public class ChangeManagerBean implements IChangeManagerLocal {
     private User checkMilestoneReadAccess(Milestone pMilestone, User pUser) throws AccessRightException {
         if (pUser.isAdministrator() ||
                 pMilestone.getACL() == null ||
-                pMilestone.getACL().hasReadAccess(pUser)) {
+                aclPermissionIndex.hasReadAccess(pUser, pMilestone.getACL())) {
             return pUser;
         } else {
             throw new AccessRightException(pUser);
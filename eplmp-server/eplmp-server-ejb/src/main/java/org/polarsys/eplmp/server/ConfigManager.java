@@ -39,4 +39,116 @@ public class ConfigManager {
         return Optional.ofNullable(properties.getProperty("digestAlgorithm")).orElse("MD5");
     }
 
+    /**
+     * Whether the vault stores each distinct content once, see {@link org.polarsys.eplmp.server.storage.filesystem.ContentAddressedStorageProvider}
+     */
+    public boolean isContentAddressedVault() {
+        return Boolean.parseBoolean(properties.getProperty("contentAddressedVault"));
+    }
+
+    /**
+     * Maximum number of resolved product structures kept in memory, 0 disables the cache
+     */
+    public int getProductStructureCacheSize() {
+        return Integer.parseInt(Optional.ofNullable(properties.getProperty("productStructureCacheSize")).orElse("100"));
+    }
+
+    /**
+     * Number of concurrent text extractions while reindexing a workspace
+     */
+    public int getReindexParallelism() {
+        return Integer.parseInt(Optional.ofNullable(properties.getProperty("reindexParallelism")).orElse("4"));
+    }
+
+    /**
+     * Number of masters indexed per bulk request while reindexing a workspace
+     */
+    public int getReindexPageSize() {
+        return Integer.parseInt(Optional.ofNullable(properties.getProperty("reindexPageSize")).orElse("200"));
+    }
+
+    /**
+     * Size in bytes above which the text of a file is not extracted for indexing
+     */
+    public long getIndexedFileMaxSize() {
+        return Long.parseLong(Optional.ofNullable(properties.getProperty("indexedFileMaxSize")).orElse("104857600"));
+    }
+
+    /**
+     * Maximum number of characters extracted from a file for indexing
+     */
+    public int getIndexedTextMaxLength() {
+        return Integer.parseInt(Optional.ofNullable(properties.getProperty("indexedTextMaxLength")).orElse("1000000"));
+    }
+
+    /**
+     * Delay in seconds during which the notifications to a same address are grouped into one email, 0 (the default) disables grouping
+     */
+    public int getMailDigestWindow() {
+        return Integer.parseInt(Optional.ofNullable(properties.getProperty("mailDigestWindow")).orElse("0"));
+    }
+
+    /**
+     * Maximum number of emails sent per second to the mail server, 0 (the default) for no limit
+     */
+    public int getMailRateLimit() {
+        return Integer.parseInt(Optional.ofNullable(properties.getProperty("mailRateLimit")).orElse("0"));
+    }
+
+    /**
+     * Connection and response timeout in seconds of webhook calls
+     */
+    public int getWebhookTimeout() {
+        return Integer.parseInt(Optional.ofNullable(properties.getProperty("webhookTimeout")).orElse("10"));
+    }
+
+    /**
+     * Maximum number of concurrent calls to a same webhook
+     */
+    public int getWebhookConcurrency() {
+        return Integer.parseInt(Optional.ofNullable(properties.getProperty("webhookConcurrency")).orElse("4"));
+    }
+
+    /**
+     * Maximum number of verified credentials kept in memory, 0 disables the cache
+     */
+    public int getAuthenticationCacheSize() {
+        return Integer.parseInt(Optional.ofNullable(properties.getProperty("authenticationCacheSize")).orElse("1000"));
+    }
+
+    /**
+     * Delay in seconds after which verified credentials are checked again against the database
+     */
+    public int getAuthenticationCacheTTL() {
+        return Integer.parseInt(Optional.ofNullable(properties.getProperty("authenticationCacheTTL")).orElse("60"));
+    }
+
+    /**
+     * Maximum number of granted workspace accesses kept in memory, 0 disables the cache
+     */
+    public int getWorkspaceAccessCacheSize() {
+        return Integer.parseInt(Optional.ofNullable(properties.getProperty("workspaceAccessCacheSize")).orElse("10000"));
+    }
+
+    /**
+     * Delay in seconds after which a granted workspace access is checked again
+     */
+    public int getWorkspaceAccessCacheTTL() {
+        return Integer.parseInt(Optional.ofNullable(properties.getProperty("workspaceAccessCacheTTL")).orElse("30"));
+    }
+
+    /**
+     * Maximum number of users whose effective ACL permissions are kept indexed, 0 disables the index
+     */
+    public int getACLPermissionIndexSize() {
+        return Integer.parseInt(Optional.ofNullable(properties.getProperty("aclPermissionIndexSize")).orElse("1000"));
+    }
+
+    /**
+     * Maximum number of files waiting for their conversion ahead of the first viewing, further ones are left to on demand conversion
+     */
+    public int getPreConversionQueueSize() {
+        return Integer.parseInt(Optional.ofNullable(properties.getProperty("preConversionQueueSize")).orElse("1000"));
+    }
+
 }
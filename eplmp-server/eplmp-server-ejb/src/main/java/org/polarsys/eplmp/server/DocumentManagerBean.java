@@ -51,6 +51,9 @@ import java.util.logging.Logger;
 @Stateless(name = "DocumentManagerBean")
 public class DocumentManagerBean implements IDocumentManagerLocal {
 
+    @Inject
+    private ACLPermissionIndex aclPermissionIndex;
+
     @Inject
     private EntityManager em;
 
@@ -938,6 +941,8 @@ public class DocumentManagerBean implements IDocumentManagerLocal {
                 Date lastModified = sourceFile.getLastModified();
                 String fullName = docR.getWorkspaceId() + "/documents/" + docRId + "/" + docR.getVersion() + "/" + newDoc.getIteration() + "/" + fileName;
                 BinaryResource targetFile = new BinaryResource(fullName, length, lastModified);
+                targetFile.setContentHash(sourceFile.getContentHash());
+                targetFile.setLocation(sourceFile.getLocation());
                 binaryResourceDAO.createBinaryResource(targetFile);
                 newDoc.addFile(targetFile);
             }
@@ -1096,6 +1101,9 @@ public class DocumentManagerBean implements IDocumentManagerLocal {
 
             indexerManager.indexDocumentIteration(lastIteration);
 
+            documentRevisionEvent.select(new AnnotationLiteral<CheckedIn>() {
+            }).fire(new DocumentRevisionEvent(docR));
+
             return docR;
         } else {
             throw new NotAllowedException("NotAllowedException20");
@@ -1319,6 +1327,7 @@ public class DocumentManagerBean implements IDocumentManagerLocal {
                 document.removeFile(file);
                 binaryResourceDAO.removeBinaryResource(file);
                 BinaryResource newFile = new BinaryResource(file.getNewFullName(pNewName), file.getContentLength(), file.getLastModified());
+                newFile.setContentHash(file.getContentHash());
                 binaryResourceDAO.createBinaryResource(newFile);
                 document.addFile(newFile);
                 return newFile;
@@ -1370,6 +1379,7 @@ public class DocumentManagerBean implements IDocumentManagerLocal {
             binaryResourceDAO.removeBinaryResource(file);
 
             BinaryResource newFile = new BinaryResource(file.getNewFullName(pNewName), file.getContentLength(), file.getLastModified());
+            newFile.setContentHash(file.getContentHash());
             binaryResourceDAO.createBinaryResource(newFile);
             template.addFile(newFile);
             return newFile;
@@ -1950,15 +1960,15 @@ public class DocumentManagerBean implements IDocumentManagerLocal {
     }
 
     private boolean isACLGrantReadAccess(User user, DocumentRevision documentRevision) {
-        return documentRevision.getACL() == null || documentRevision.getACL().hasReadAccess(user);
+        return documentRevision.getACL() == null || aclPermissionIndex.hasReadAccess(user, documentRevision.getACL());
     }
 
     private boolean isACLGrantReadAccess(User user, DocumentMasterTemplate template) {
-        return template.getAcl() == null || template.getAcl().hasReadAccess(user);
+        return template.getAcl() == null || aclPermissionIndex.hasReadAccess(user, template.getAcl());
     }
 
     private boolean isACLGrantWriteAccess(User user, DocumentRevision documentRevision) {
-        return documentRevision.getACL() == null || documentRevision.getACL().hasWriteAccess(user);
+        return documentRevision.getACL() == null || aclPermissionIndex.hasWriteAccess(user, documentRevision.getACL());
     }
 
     private boolean isAnotherUserHomeFolder(User user, Folder folder) {
@@ -2007,7 +2017,7 @@ public class DocumentManagerBean implements IDocumentManagerLocal {
         if (docTemplate.getAcl() == null) {
             // Check if the item haven't ACL
             return userManager.checkWorkspaceWriteAccess(docTemplate.getWorkspaceId());
-        } else if (docTemplate.getAcl().hasWriteAccess(user)) {
+        } else if (aclPermissionIndex.hasWriteAccess(user, docTemplate.getAcl())) {
             // Check if there is a write access
             return user;
         } else {
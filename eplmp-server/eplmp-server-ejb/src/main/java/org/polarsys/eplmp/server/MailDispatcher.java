@@ -0,0 +1,307 @@
+/*******************************************************************************
+  * Copyright (c) 2017-2019 DocDoku.
+  * All rights reserved. This program and the accompanying materials
+  * are made available under the terms of the Eclipse Public License v1.0
+  * which accompanies this distribution, and is available at
+  * http://www.eclipse.org/legal/epl-v10.html
+  *
+  * Contributors:
+  *    DocDoku - initial API and implementation
+  *******************************************************************************/
+
+package org.polarsys.eplmp.server;
+
+import org.polarsys.eplmp.i18n.PropertiesLoader;
+
+import javax.annotation.PreDestroy;
+import javax.ejb.*;
+import javax.inject.Inject;
+import javax.mail.*;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.io.UnsupportedEncodingException;
+import java.text.MessageFormat;
+import java.time.Clock;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Queue of the emails sent by {@link NotifierBean}.
+ *
+ * The queue is periodically drained, the emails of a mail session being sent through a single
+ * connected transport. When "mailRateLimit" is set, each run sends at most the emails allowed
+ * until the next run, the others being deferred to the following runs. Emails which could not
+ * be sent are retried later, up to {@value #MAX_ATTEMPTS} times. Emails which can't be built
+ * are not retried.
+ *
+ * When "mailDigestWindow" is set, the notifications sent to a same address within that many
+ * seconds are grouped into a single email: the window starts with the first notification
+ * queued for the address, the ones queued later being sent along with it.
+ */
+@Singleton(name = "MailDispatcher")
+@Startup
+@Lock(LockType.READ)
+public class MailDispatcher {
+
+    static final int MAX_ATTEMPTS = 5;
+    // Delay before the first retry of a failed email, doubled on each attempt
+    private static final long RETRY_DELAY = TimeUnit.SECONDS.toMillis(30);
+    // Seconds between two runs, see the schedule of dispatch()
+    private static final int DISPATCH_PERIOD = 2;
+
+    @Inject
+    private ConfigManager configManager;
+
+    private final Map<Session, Queue<Mail>> queues = new ConcurrentHashMap<>();
+    private final AtomicBoolean dispatching = new AtomicBoolean(false);
+    // Replaced by tests
+    Clock clock = Clock.systemUTC();
+
+    private static final Logger LOGGER = Logger.getLogger(MailDispatcher.class.getName());
+
+    /**
+     * An email waiting to be sent
+     */
+    public static class Mail {
+
+        private final String email;
+        private final String name;
+        private final Locale locale;
+        private final String subject;
+        private final String content;
+        private final boolean digestible;
+        private long dueTime;
+        private int attempts;
+
+        /**
+         * @param subject localized subject, without the subject template
+         * @param content localized html content, without the body template
+         * @param digestible whether the email can be grouped with other notifications
+         */
+        public Mail(String email, String name, Locale locale, String subject, String content, boolean digestible) {
+            this.email = email;
+            this.name = name;
+            this.locale = locale;
+            this.subject = subject;
+            this.content = content;
+            this.digestible = digestible;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+
+        public String getSubject() {
+            return subject;
+        }
+
+        public String getContent() {
+            return content;
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+    }
+
+    /**
+     * Queue an email, to be sent with the given mail session
+     */
+    public void enqueue(Session mailSession, Mail mail) {
+        long digestWindow = mail.digestible ? TimeUnit.SECONDS.toMillis(configManager.getMailDigestWindow()) : 0;
+        mail.dueTime = clock.millis() + digestWindow;
+        queues.computeIfAbsent(mailSession, session -> new ConcurrentLinkedQueue<>()).add(mail);
+    }
+
+    @Schedule(hour = "*", minute = "*", second = "*/2", persistent = false)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void dispatch() {
+        dispatch(false);
+    }
+
+    @PreDestroy
+    private void flush() {
+        dispatch(true);
+    }
+
+    /**
+     * Send the due emails of each mail session
+     *
+     * @param all send all queued emails, due or not
+     */
+    void dispatch(boolean all) {
+        // Runs are skipped rather than queued while the previous one is still sending
+        if (!dispatching.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long now = clock.millis();
+            for (Map.Entry<Session, Queue<Mail>> entry : queues.entrySet()) {
+                List<Mail> dueMails = pollDueMails(entry.getValue(), all ? Long.MAX_VALUE : now);
+                if (!dueMails.isEmpty()) {
+                    send(entry.getKey(), dueMails, all);
+                }
+            }
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Error while dispatching emails", e);
+        } finally {
+            dispatching.set(false);
+        }
+    }
+
+    int getQueueSize() {
+        return queues.values().stream().mapToInt(Queue::size).sum();
+    }
+
+    private List<Mail> pollDueMails(Queue<Mail> queue, long now) {
+        List<Mail> mails = new ArrayList<>();
+        Mail mail;
+        while ((mail = queue.poll()) != null) {
+            mails.add(mail);
+        }
+
+        // Once the digest window of an address is over, the notifications queued since are sent with it
+        Set<String> dueDigests = new HashSet<>();
+        for (Mail queued : mails) {
+            if (queued.digestible && queued.dueTime <= now) {
+                dueDigests.add(queued.email);
+            }
+        }
+
+        List<Mail> dueMails = new ArrayList<>();
+        for (Mail queued : mails) {
+            boolean due = queued.dueTime <= now
+                    || queued.digestible && queued.attempts == 0 && dueDigests.contains(queued.email);
+            if (due) {
+                dueMails.add(queued);
+            } else {
+                queue.add(queued);
+            }
+        }
+        return dueMails;
+    }
+
+    /**
+     * @param all ignore the rate limit, the emails which are not sent being lost
+     */
+    private void send(Session session, List<Mail> mails, boolean all) {
+        // Notifications to the same address are sent as one email
+        List<List<Mail>> messages = new ArrayList<>();
+        Map<String, List<Mail>> digests = new HashMap<>();
+        for (Mail mail : mails) {
+            List<Mail> messageMails = mail.digestible ? digests.get(mail.email) : null;
+            if (messageMails == null) {
+                messageMails = new ArrayList<>();
+                messages.add(messageMails);
+                if (mail.digestible) {
+                    digests.put(mail.email, messageMails);
+                }
+            }
+            messageMails.add(mail);
+        }
+
+        int rateLimit = configManager.getMailRateLimit();
+        int remainingMessages = rateLimit > 0 && !all ? rateLimit * DISPATCH_PERIOD : Integer.MAX_VALUE;
+
+        Transport transport = null;
+        try {
+            for (List<Mail> recipientMails : messages) {
+                if (remainingMessages == 0) {
+                    // Deferred to the next run, which regroups them
+                    queues.get(session).addAll(recipientMails);
+                    continue;
+                }
+
+                Message message;
+                try {
+                    message = createMessage(session, recipientMails);
+                } catch (MessagingException e) {
+                    // Building it again would fail the same way
+                    LOGGER.log(Level.WARNING, "Mail can't be built for " + recipientMails.get(0).email + ": " + e.getMessage());
+                    continue;
+                }
+
+                remainingMessages--;
+                try {
+                    if (transport == null || !transport.isConnected()) {
+                        transport = session.getTransport();
+                        transport.connect();
+                    }
+                    transport.sendMessage(message, message.getAllRecipients());
+                } catch (SendFailedException e) {
+                    if (e.getValidUnsentAddresses() != null && e.getValidUnsentAddresses().length > 0) {
+                        retry(session, recipientMails, e);
+                    } else {
+                        LOGGER.log(Level.WARNING, "Mail can't be sent to " + recipientMails.get(0).email + ": " + e.getMessage());
+                    }
+                } catch (MessagingException e) {
+                    retry(session, recipientMails, e);
+                    closeQuietly(transport);
+                    transport = null;
+                }
+            }
+        } finally {
+            closeQuietly(transport);
+        }
+    }
+
+    private Message createMessage(Session session, List<Mail> mails) throws MessagingException {
+        Mail first = mails.get(0);
+        String subject;
+        String content;
+        if (mails.size() == 1) {
+            subject = first.subject;
+            content = first.content;
+        } else {
+            subject = MessageFormat.format(getString("DigestNotification_title", first.locale), mails.size());
+            StringJoiner contents = new StringJoiner("<hr/>");
+            mails.forEach(mail -> contents.add(mail.content));
+            content = contents.toString();
+        }
+
+        Message message = new MimeMessage(session);
+        try {
+            message.addRecipient(Message.RecipientType.TO, new InternetAddress(first.email, first.name));
+        } catch (UnsupportedEncodingException e) {
+            throw new MessagingException("Unsupported encoding: " + e.getMessage(), e);
+        }
+        message.setSubject(getString("MailSubjectTemplate", first.locale) + " " + subject);
+        message.setSentDate(new Date());
+        message.setContent(MessageFormat.format(getString("MailBodyTemplate", first.locale), content), "text/html; charset=utf-8");
+        message.setFrom();
+        return message;
+    }
+
+    private void retry(Session session, List<Mail> mails, MessagingException e) {
+        for (Mail mail : mails) {
+            mail.attempts++;
+            if (mail.attempts < MAX_ATTEMPTS) {
+                mail.dueTime = clock.millis() + (RETRY_DELAY << (mail.attempts - 1));
+                queues.get(session).add(mail);
+            } else {
+                LOGGER.log(Level.SEVERE, "Mail can't be sent to " + mail.email + " after " + mail.attempts + " attempts", e);
+            }
+        }
+        LOGGER.log(Level.FINE, null, e);
+    }
+
+    private String getString(String key, Locale locale) {
+        Properties properties = PropertiesLoader.loadLocalizedProperties(locale, NotifierBean.TEMPLATE_BASE_NAME, getClass());
+        return properties.getProperty(key).replaceAll("'", "’");
+    }
+
+    private static void closeQuietly(Transport transport) {
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                LOGGER.log(Level.FINE, null, e);
+            }
+        }
+    }
+}
@@ -16,9 +16,8 @@ import org.polarsys.eplmp.core.common.User;
 import org.polarsys.eplmp.core.common.Workspace;
 import org.polarsys.eplmp.core.document.DocumentRevision;
 import org.polarsys.eplmp.core.exceptions.*;
-import org.polarsys.eplmp.core.hooks.SNSWebhookApp;
-import org.polarsys.eplmp.core.hooks.SimpleWebhookApp;
 import org.polarsys.eplmp.core.hooks.Webhook;
+import org.polarsys.eplmp.core.hooks.WebhookDelivery;
 import org.polarsys.eplmp.core.meta.Tag;
 import org.polarsys.eplmp.core.product.PartRevision;
 import org.polarsys.eplmp.core.services.INotifierLocal;
@@ -29,22 +28,14 @@ import org.polarsys.eplmp.core.util.FileIO;
 import org.polarsys.eplmp.core.workflow.Task;
 import org.polarsys.eplmp.core.workflow.WorkspaceWorkflow;
 import org.polarsys.eplmp.i18n.PropertiesLoader;
-import org.polarsys.eplmp.server.hooks.SNSWebhookRunner;
-import org.polarsys.eplmp.server.hooks.SimpleWebhookRunner;
-import org.polarsys.eplmp.server.hooks.WebhookRunner;
+import org.polarsys.eplmp.server.dao.WebhookDeliveryDAO;
 
 import javax.annotation.Resource;
 import javax.ejb.Asynchronous;
 import javax.ejb.Local;
 import javax.ejb.Stateless;
 import javax.inject.Inject;
-import javax.mail.Message;
-import javax.mail.MessagingException;
 import javax.mail.Session;
-import javax.mail.Transport;
-import javax.mail.internet.InternetAddress;
-import javax.mail.internet.MimeMessage;
-import java.io.UnsupportedEncodingException;
 import java.text.MessageFormat;
 import java.util.*;
 import java.util.logging.Level;
@@ -59,7 +50,7 @@ import java.util.logging.Logger;
 @Stateless(name = "MailerBean")
 public class NotifierBean implements INotifierLocal {
 
-    private static final String TEMPLATE_BASE_NAME = "/org/polarsys/eplmp/server/templates/NotificationText";
+    static final String TEMPLATE_BASE_NAME = "/org/polarsys/eplmp/server/templates/NotificationText";
 
     @Inject
     private ConfigManager configManager;
@@ -73,6 +64,12 @@ public class NotifierBean implements INotifierLocal {
     @Inject
     private IWebhookManagerLocal webhookManager;
 
+    @Inject
+    private WebhookDeliveryDAO webhookDeliveryDAO;
+
+    @Inject
+    private MailDispatcher mailDispatcher;
+
     @Resource(name = "mail/docdokuSMTP")
     private Session mailSession;
 
@@ -85,12 +82,8 @@ public class NotifierBean implements INotifierLocal {
 
         LOGGER.info("Sending state notification emails \n\tfor the document " + pDocumentRevision.getLastIteration());
 
-        try {
-            for (User pSubscriber : pSubscribers) {
-                sendStateNotification(pSubscriber, pDocumentRevision);
-            }
-        } catch (MessagingException pMEx) {
-            logMessagingException(pMEx);
+        for (User pSubscriber : pSubscribers) {
+            sendStateNotification(pSubscriber, pDocumentRevision);
         }
     }
 
@@ -101,12 +94,8 @@ public class NotifierBean implements INotifierLocal {
 
         LOGGER.info("Sending iteration notification emails \n\tfor the document " + pDocumentRevision.getLastIteration());
 
-        try {
-            for (User pSubscriber : pSubscribers) {
-                sendIterationNotification(pSubscriber, pDocumentRevision);
-            }
-        } catch (MessagingException pMEx) {
-            logMessagingException(pMEx);
+        for (User pSubscriber : pSubscribers) {
+            sendIterationNotification(pSubscriber, pDocumentRevision);
         }
     }
 
@@ -116,12 +105,8 @@ public class NotifierBean implements INotifierLocal {
 
         LOGGER.info("Sending tagged notification emails \n\tfor the document " + pDocR.getLastIteration());
 
-        try {
-            for (User pSubscriber : pSubscribers) {
-                sendTaggedNotification(pSubscriber, pDocR, pTag);
-            }
-        } catch (MessagingException pMEx) {
-            logMessagingException(pMEx);
+        for (User pSubscriber : pSubscribers) {
+            sendTaggedNotification(pSubscriber, pDocR, pTag);
         }
     }
 
@@ -131,12 +116,8 @@ public class NotifierBean implements INotifierLocal {
 
         LOGGER.info("Sending tagged notification emails \n\tfor the part " + pPartR.getLastIteration());
 
-        try {
-            for (User pSubscriber : pSubscribers) {
-                sendTaggedNotification(pSubscriber, pPartR, pTag);
-            }
-        } catch (MessagingException pMEx) {
-            logMessagingException(pMEx);
+        for (User pSubscriber : pSubscribers) {
+            sendTaggedNotification(pSubscriber, pPartR, pTag);
         }
     }
 
@@ -146,12 +127,8 @@ public class NotifierBean implements INotifierLocal {
 
         LOGGER.info("Sending untagged notification emails \n\tfor the document " + pDocR.getLastIteration());
 
-        try {
-            for (User pSubscriber : pSubscribers) {
-                sendUntaggedNotification(pSubscriber, pDocR, pTag);
-            }
-        } catch (MessagingException pMEx) {
-            logMessagingException(pMEx);
+        for (User pSubscriber : pSubscribers) {
+            sendUntaggedNotification(pSubscriber, pDocR, pTag);
         }
     }
 
@@ -161,12 +138,8 @@ public class NotifierBean implements INotifierLocal {
 
         LOGGER.info("Sending untagged notification emails \n\tfor the part " + pPartR.getLastIteration());
 
-        try {
-            for (User pSubscriber : pSubscribers) {
-                sendUntaggedNotification(pSubscriber, pPartR, pTag);
-            }
-        } catch (MessagingException pMEx) {
-            logMessagingException(pMEx);
+        for (User pSubscriber : pSubscribers) {
+            sendUntaggedNotification(pSubscriber, pPartR, pTag);
         }
     }
 
@@ -177,12 +150,8 @@ public class NotifierBean implements INotifierLocal {
 
         LOGGER.info("Sending approval emails \n\tfor the document " + pDocumentRevision.getLastIteration());
 
-        try {
-            for (Task task : pRunningTasks) {
-                sendApproval(task, pDocumentRevision);
-            }
-        } catch (MessagingException pMEx) {
-            logMessagingException(pMEx);
+        for (Task task : pRunningTasks) {
+            sendApproval(task, pDocumentRevision);
         }
     }
 
@@ -192,12 +161,8 @@ public class NotifierBean implements INotifierLocal {
 
         LOGGER.info("Sending approval required emails \n\tfor the part " + partRevision.getLastIteration());
 
-        try {
-            for (Task task : pRunningTasks) {
-                sendApproval(task, partRevision);
-            }
-        } catch (MessagingException pMEx) {
-            logMessagingException(pMEx);
+        for (Task task : pRunningTasks) {
+            sendApproval(task, partRevision);
         }
     }
 
@@ -207,12 +172,8 @@ public class NotifierBean implements INotifierLocal {
 
         LOGGER.info("Sending approval required emails \n\tfor the workspace workflow " + workspaceWorkflow.getId());
 
-        try {
-            for (Task task : pRunningTasks) {
-                sendApproval(task, workspaceWorkflow);
-            }
-        } catch (MessagingException pMEx) {
-            logMessagingException(pMEx);
+        for (Task task : pRunningTasks) {
+            sendApproval(task, workspaceWorkflow);
         }
     }
 
@@ -227,11 +188,7 @@ public class NotifierBean implements INotifierLocal {
                 account.getLogin()
         };
 
-        try {
-            sendMessage(account, "Recovery_title", "Recovery_text", args);
-        } catch (MessagingException pMEx) {
-            logMessagingException(pMEx);
-        }
+        sendMessage(account, "Recovery_title", "Recovery_text", args);
     }
 
     @Asynchronous
@@ -244,12 +201,8 @@ public class NotifierBean implements INotifierLocal {
                 workspaceId
         };
 
-        try {
-            //User admin does not exist anymore as the workspace has been deleted
-            sendMessage(admin, "WorkspaceDeletion_title", "WorkspaceDeletion_text", args);
-        } catch (MessagingException pMEx) {
-            logMessagingException(pMEx);
-        }
+        //User admin does not exist anymore as the workspace has been deleted
+        sendMessage(admin, "WorkspaceDeletion_title", "WorkspaceDeletion_text", args);
     }
 
     @Asynchronous
@@ -261,12 +214,8 @@ public class NotifierBean implements INotifierLocal {
         Object[] args = {
                 workspaceId
         };
-        try {
-            User adminUser = new User(new Workspace(workspaceId), admin);
-            sendMessage(adminUser, "WorkspaceDeletion_title", "WorkspaceDeletionError_text", args);
-        } catch (MessagingException pMEx) {
-            logMessagingException(pMEx);
-        }
+        User adminUser = new User(new Workspace(workspaceId), admin);
+        sendMessage(adminUser, "WorkspaceDeletion_title", "WorkspaceDeletionError_text", args);
     }
 
 
@@ -327,12 +276,8 @@ public class NotifierBean implements INotifierLocal {
                 extraMessage
         };
 
-        try {
-            User adminUser = new User(new Workspace(workspaceId), account);
-            sendMessage(adminUser, "Indexer_success_title", "Indexer_success_text", args);
-        } catch (MessagingException pMEx) {
-            logMessagingException(pMEx);
-        }
+        User adminUser = new User(new Workspace(workspaceId), account);
+        sendMessage(adminUser, "Indexer_success_title", "Indexer_success_text", args);
     }
 
     @Asynchronous
@@ -344,22 +289,14 @@ public class NotifierBean implements INotifierLocal {
                 extraMessage
         };
 
-        try {
-            User adminUser = new User(new Workspace(workspaceId), account);
-            sendMessage(adminUser, "Indexer_failure_title", "Indexer_failure_text", args);
-        } catch (MessagingException pMEx) {
-            logMessagingException(pMEx);
-        }
+        User adminUser = new User(new Workspace(workspaceId), account);
+        sendMessage(adminUser, "Indexer_failure_title", "Indexer_failure_text", args);
     }
 
     @Override
     public void sendBulkIndexationSuccess(Account account) {
         Object[] args = {};
-        try {
-            sendMessage(account, "Indexer_bulk_success_title", "Indexer_bulk_success_text", args);
-        } catch (MessagingException pMEx) {
-            logMessagingException(pMEx);
-        }
+        sendMessage(account, "Indexer_bulk_success_title", "Indexer_bulk_success_text", args);
     }
 
     @Override
@@ -367,11 +304,7 @@ public class NotifierBean implements INotifierLocal {
         Object[] args = {
                 failureMessage
         };
-        try {
-            sendMessage(account, "Indexer_bulk_failure_title", "Indexer_bulk_failure_text", args);
-        } catch (MessagingException pMEx) {
-            logMessagingException(pMEx);
-        }
+        sendMessage(account, "Indexer_bulk_failure_title", "Indexer_bulk_failure_text", args);
     }
 
     @Asynchronous
@@ -392,14 +325,10 @@ public class NotifierBean implements INotifierLocal {
                 accountDisabledMessage
         };
 
-        try {
-            sendMessage(account, "SignUp_success_title", "SignUp_success_text", args);
-        } catch (MessagingException pMEx) {
-            logMessagingException(pMEx);
-        }
+        sendMessage(account, "SignUp_success_title", "SignUp_success_text", args);
     }
 
-    private void sendStateNotification(User pSubscriber, DocumentRevision pDocumentRevision) throws MessagingException {
+    private void sendStateNotification(User pSubscriber, DocumentRevision pDocumentRevision) {
 
         LOGGER.info("Sending state notification emails \n\tfor the document " + pDocumentRevision.getLastIteration() + " to user " + pSubscriber.getLogin());
 
@@ -418,7 +347,7 @@ public class NotifierBean implements INotifierLocal {
     }
 
     private void sendIterationNotification(User pSubscriber,
-                                           DocumentRevision pDocumentRevision) throws MessagingException {
+                                           DocumentRevision pDocumentRevision) {
 
         LOGGER.info("Sending iteration notification emails \n\tfor the document " + pDocumentRevision.getLastIteration());
 
@@ -433,16 +362,16 @@ public class NotifierBean implements INotifierLocal {
 
     }
 
-    private void sendTaggedNotification(User pSubscriber, DocumentRevision pDocumentRevision, Tag pTag) throws MessagingException {
+    private void sendTaggedNotification(User pSubscriber, DocumentRevision pDocumentRevision, Tag pTag) {
         sendTaggedNotification(pSubscriber, pDocumentRevision, pTag, true);
     }
 
-    private void sendUntaggedNotification(User pSubscriber, DocumentRevision pDocumentRevision, Tag pTag) throws MessagingException {
+    private void sendUntaggedNotification(User pSubscriber, DocumentRevision pDocumentRevision, Tag pTag) {
         sendTaggedNotification(pSubscriber, pDocumentRevision, pTag, false);
     }
 
     private void sendTaggedNotification(User pSubscriber,
-                                        DocumentRevision pDocumentRevision, Tag pTag, boolean tagged) throws MessagingException {
+                                        DocumentRevision pDocumentRevision, Tag pTag, boolean tagged) {
         LOGGER.info("Sending tag notification emails \n\tfor the document " + pDocumentRevision.getLastIteration() + " to subscriber : " + pSubscriber.getLogin());
         Object[] args = {
                 pTag,
@@ -452,15 +381,15 @@ public class NotifierBean implements INotifierLocal {
         sendMessage(pSubscriber, "TagNotification_title", tagged ? "TagNotificationTagged_text" : "TagNotificationUntagged_text", args);
     }
 
-    private void sendTaggedNotification(User pSubscriber, PartRevision pPartRevision, Tag pTag) throws MessagingException {
+    private void sendTaggedNotification(User pSubscriber, PartRevision pPartRevision, Tag pTag) {
         sendTaggedNotification(pSubscriber, pPartRevision, pTag, true);
     }
 
-    private void sendUntaggedNotification(User pSubscriber, PartRevision pPartRevision, Tag pTag) throws MessagingException {
+    private void sendUntaggedNotification(User pSubscriber, PartRevision pPartRevision, Tag pTag) {
         sendTaggedNotification(pSubscriber, pPartRevision, pTag, false);
     }
 
-    private void sendTaggedNotification(User pSubscriber, PartRevision pPartRevision, Tag pTag, boolean tagged) throws MessagingException {
+    private void sendTaggedNotification(User pSubscriber, PartRevision pPartRevision, Tag pTag, boolean tagged) {
         LOGGER.info("Sending tag notification emails \n\tfor the part " + pPartRevision.getLastIteration() + " to subscriber : " + pSubscriber.getLogin());
         Object[] args = {
                 pTag,
@@ -470,7 +399,7 @@ public class NotifierBean implements INotifierLocal {
         sendMessage(pSubscriber, "TagNotification_title", tagged ? "TagNotificationTagged_text" : "TagNotificationUntagged_text", args);
     }
 
-    private void sendApproval(Task task, DocumentRevision pDocumentRevision) throws MessagingException {
+    private void sendApproval(Task task, DocumentRevision pDocumentRevision) {
 
         LOGGER.info("Sending approval required emails \n\tfor the document " + pDocumentRevision.getLastIteration());
 
@@ -483,7 +412,7 @@ public class NotifierBean implements INotifierLocal {
         }
     }
 
-    private void sendApproval(Task task, PartRevision partRevision) throws MessagingException {
+    private void sendApproval(Task task, PartRevision partRevision) {
 
         LOGGER.info("Sending approval required emails \n\tfor the part " + partRevision.getLastIteration());
 
@@ -496,7 +425,7 @@ public class NotifierBean implements INotifierLocal {
         }
     }
 
-    private void sendApproval(Task task, WorkspaceWorkflow workspaceWorkflow) throws MessagingException {
+    private void sendApproval(Task task, WorkspaceWorkflow workspaceWorkflow) {
 
         LOGGER.info("Sending approval required emails \n\tfor the workspace workflow " + workspaceWorkflow.getId());
 
@@ -510,7 +439,7 @@ public class NotifierBean implements INotifierLocal {
     }
 
 
-    private void sendApprovalToUser(User worker, Task task, DocumentRevision pDocumentRevision) throws MessagingException {
+    private void sendApprovalToUser(User worker, Task task, DocumentRevision pDocumentRevision) {
 
         LOGGER.info("Sending approval email \n\tfor the document " + pDocumentRevision.getLastIteration() + " to user: " + worker.getLogin());
 
@@ -526,7 +455,7 @@ public class NotifierBean implements INotifierLocal {
     }
 
 
-    private void sendApprovalToUser(User worker, Task pTask, PartRevision partRevision) throws MessagingException {
+    private void sendApprovalToUser(User worker, Task pTask, PartRevision partRevision) {
 
         LOGGER.info("Sending approval email \n\tfor the part " + partRevision.getLastIteration() + " to user: " + worker.getLogin());
 
@@ -541,7 +470,7 @@ public class NotifierBean implements INotifierLocal {
         sendMessage(worker, "Approval_title", "Approval_part_text", args);
     }
 
-    private void sendApprovalToUser(User worker, Task pTask, WorkspaceWorkflow workspaceWorkflow) throws MessagingException {
+    private void sendApprovalToUser(User worker, Task pTask, WorkspaceWorkflow workspaceWorkflow) {
 
         LOGGER.info("Sending approval email \n\tfor the workspace workflow " + workspaceWorkflow.getId() + " to user: " + worker.getLogin());
 
@@ -561,11 +490,7 @@ public class NotifierBean implements INotifierLocal {
                 user.getWorkspace().getId(),
                 partRevision.getWorkflow().getLifeCycleState()
         };
-        try {
-            sendMessage(user, "Workflow_relaunched_title", "PartRevision_workflow_relaunched_text", args);
-        } catch (MessagingException pMEx) {
-            logMessagingException(pMEx);
-        }
+        sendMessage(user, "Workflow_relaunched_title", "PartRevision_workflow_relaunched_text", args);
     }
 
 
@@ -575,11 +500,7 @@ public class NotifierBean implements INotifierLocal {
                 user.getWorkspace().getId(),
                 documentRevision.getWorkflow().getLifeCycleState()
         };
-        try {
-            sendMessage(user, "Workflow_relaunched_title", "DocumentRevision_workflow_relaunched_text", args);
-        } catch (MessagingException pMEx) {
-            logMessagingException(pMEx);
-        }
+        sendMessage(user, "Workflow_relaunched_title", "DocumentRevision_workflow_relaunched_text", args);
     }
 
 
@@ -588,11 +509,7 @@ public class NotifierBean implements INotifierLocal {
                 user.getWorkspace().getId(),
                 workspaceWorkflow.getWorkflow().getLifeCycleState()
         };
-        try {
-            sendMessage(user, "Workflow_relaunched_title", "WorkspaceWorkflow_workflow_relaunched_text", args);
-        } catch (MessagingException pMEx) {
-            logMessagingException(pMEx);
-        }
+        sendMessage(user, "Workflow_relaunched_title", "WorkspaceWorkflow_workflow_relaunched_text", args);
     }
 
     // URIs
@@ -614,11 +531,6 @@ public class NotifierBean implements INotifierLocal {
 
 
     // Log shortcuts
-    private void logMessagingException(MessagingException pMEx) {
-        String logMessage = "Message format error. \n\tMail can't be sent. \n\t" + pMEx.getMessage();
-        LOGGER.log(Level.SEVERE, logMessage, pMEx);
-    }
-
     // Template utils methods
 
     private Properties getProperties(Locale pLocale) {
@@ -633,11 +545,6 @@ public class NotifierBean implements INotifierLocal {
         return MessageFormat.format(getString(string, pLocale).replaceAll("'", "’"), args);
     }
 
-    private String getHTMLBody(String content, Locale pLocale) {
-        String mailBodyTemplate = getString("MailBodyTemplate", pLocale);
-        return MessageFormat.format(mailBodyTemplate, content);
-    }
-
     private String getSubject(String string, Locale pLocale) {
         String mailSubjectTemplate = getString("MailSubjectTemplate", pLocale);
         return mailSubjectTemplate + " " + getString(string, pLocale);
@@ -645,17 +552,16 @@ public class NotifierBean implements INotifierLocal {
 
     // Direct account message
     // Only emails should be sent
-    private void sendMessage(Account account, String subjectKey, String contentKey, Object[] contentArgs) throws MessagingException {
+    private void sendMessage(Account account, String subjectKey, String contentKey, Object[] contentArgs) {
         Locale locale = account.getLocale();
-        String subject = getSubject(subjectKey, locale);
         String content = format(contentKey, contentArgs, locale);
         String name = account.getName();
         String email = account.getEmail();
-        sendEmail(email, name, subject, getHTMLBody(content, locale));
+        sendEmail(email, name, locale, getString(subjectKey, locale), content, false);
     }
 
     // User in workspace message
-    private void sendMessage(User user, String subjectKey, String contentKey, Object[] contentArgs) throws MessagingException {
+    private void sendMessage(User user, String subjectKey, String contentKey, Object[] contentArgs) {
         Locale userLocale = user.getLocale();
         String subject = getSubject(subjectKey, userLocale);
         String content = format(contentKey, contentArgs, userLocale);
@@ -673,7 +579,7 @@ public class NotifierBean implements INotifierLocal {
         }
 
         if (workspaceBackOptions.isSendEmails()) {
-            sendEmail(email, name, subject, getHTMLBody(content, userLocale));
+            sendEmail(email, name, userLocale, getString(subjectKey, userLocale), content, true);
         }
 
         List<Webhook> activeWebHooks;
@@ -691,46 +597,19 @@ public class NotifierBean implements INotifierLocal {
 
     }
 
-    private void sendEmail(String email, String name, String subject, String content) throws MessagingException {
+    private void sendEmail(String email, String name, Locale locale, String subject, String content, boolean digestible) {
 
         if (email == null || email.isEmpty()) {
             LOGGER.log(Level.WARNING, "Cannot send mail, email is empty");
             return;
         }
 
-        try {
-            InternetAddress emailAddress = new InternetAddress(email, name);
-            Message message = new MimeMessage(mailSession);
-            message.addRecipient(Message.RecipientType.TO, emailAddress);
-            message.setSubject(subject);
-            message.setSentDate(new Date());
-            message.setContent(content, "text/html; charset=utf-8");
-            message.setFrom();
-            Transport.send(message);
-        } catch (UnsupportedEncodingException e) {
-            String logMessage = "Unsupported encoding: " + e.getMessage();
-            LOGGER.log(Level.SEVERE, logMessage, e);
-        }
+        mailDispatcher.enqueue(mailSession, new MailDispatcher.Mail(email, name, locale, subject, content, digestible));
     }
 
     private void runHook(Webhook webhook, String login, String email, String name, String subject, String content) {
-        LOGGER.log(Level.INFO, " Running hook " + webhook.getName());
-        String appName = webhook.getAppName();
-        WebhookRunner runner;
-
-        switch (appName) {
-            case SNSWebhookApp.APP_NAME:
-                runner = new SNSWebhookRunner();
-                break;
-            case SimpleWebhookApp.APP_NAME:
-                runner = new SimpleWebhookRunner();
-                break;
-            default:
-                LOGGER.log(Level.SEVERE, "Unsupported webhook " + webhook);
-                return;
-        }
-
-        runner.run(webhook, login, email, name, subject, content);
+        LOGGER.log(Level.FINE, "Queuing notification for hook " + webhook.getName());
+        webhookDeliveryDAO.createDelivery(new WebhookDelivery(webhook, login, email, name, subject, content));
     }
 
 }
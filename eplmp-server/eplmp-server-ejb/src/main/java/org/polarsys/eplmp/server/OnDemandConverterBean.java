@@ -19,11 +19,17 @@ import org.polarsys.eplmp.server.converters.OnDemandConverter;
 import org.polarsys.eplmp.server.dao.BinaryResourceDAO;
 
 import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
 import javax.enterprise.inject.Any;
 import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
 import java.io.InputStream;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 
 /**
@@ -33,6 +39,8 @@ import java.util.Locale;
 @Stateless(name = "OnDemandConverterBean")
 public class OnDemandConverterBean implements IOnDemandConverterManagerLocal {
 
+    private static final Logger LOGGER = Logger.getLogger(OnDemandConverterBean.class.getName());
+
     @Inject
     private BinaryResourceDAO binaryResourceDAO;
 
@@ -67,6 +75,39 @@ public class OnDemandConverterBean implements IOnDemandConverterManagerLocal {
         return null;
     }
 
+    @Override
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public boolean preConvertResource(String outputFormat, String fullName) {
+        BinaryResource binaryResource = binaryResourceDAO.findBinaryResource(fullName);
+        if (binaryResource == null) {
+            return true;
+        }
+
+        OnDemandConverter selectedOnDemandConverter = selectOnDemandConverter(outputFormat, binaryResource);
+        if (selectedOnDemandConverter == null) {
+            return true;
+        }
+
+        try {
+            return selectedOnDemandConverter.preConvert(outputFormat, binaryResource);
+        } catch (ConvertedResourceException e) {
+            LOGGER.log(Level.WARNING, "Cannot convert " + fullName + " in advance", e);
+            return true;
+        }
+    }
+
+    @Override
+    public Map<String, Map<String, Long>> getConverterStats() {
+        Map<String, Map<String, Long>> converterStats = new HashMap<>();
+        for (OnDemandConverter onDemandConverter : documentResourceGetters) {
+            Map<String, Long> stats = onDemandConverter.getStats();
+            if (!stats.isEmpty()) {
+                converterStats.put(onDemandConverter.getClass().getSimpleName(), stats);
+            }
+        }
+        return converterStats;
+    }
+
     private OnDemandConverter selectOnDemandConverter(String outputFormat, BinaryResource binaryResource) {
         OnDemandConverter selectedOnDemandConverter = null;
         for (OnDemandConverter onDemandConverter : documentResourceGetters) {
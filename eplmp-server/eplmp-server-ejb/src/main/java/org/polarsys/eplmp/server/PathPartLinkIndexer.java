@@ -0,0 +1,81 @@
+/*******************************************************************************
+  * Copyright (c) 2017-2019 DocDoku.
+  * All rights reserved. This program and the accompanying materials
+  * are made available under the terms of the Eclipse Public License v1.0
+  * which accompanies this distribution, and is available at
+  * http://www.eclipse.org/legal/epl-v10.html
+  *
+  * Contributors:
+  *    DocDoku - initial API and implementation
+  *******************************************************************************/
+
+package org.polarsys.eplmp.server;
+
+import org.polarsys.eplmp.core.product.PathToPathLink;
+import org.polarsys.eplmp.server.dao.PathToPathLinkDAO;
+
+import javax.annotation.Resource;
+import javax.ejb.*;
+import javax.inject.Inject;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Indexes the part links of the path to path links stored before their paths were decomposed, so
+ * that looking up the links going through a part link no longer matches path strings.
+ *
+ * Until done, lookups fall back on matching the paths.
+ */
+@Singleton(name = "PathPartLinkIndexer")
+public class PathPartLinkIndexer {
+
+    private static final int BATCH_SIZE = 500;
+
+    @Inject
+    private PathToPathLinkDAO pathToPathLinkDAO;
+
+    @Resource
+    private SessionContext ctx;
+
+    private final AtomicBoolean indexed = new AtomicBoolean(false);
+
+    private static final Logger LOGGER = Logger.getLogger(PathPartLinkIndexer.class.getName());
+
+    /**
+     * @return true once every path has been indexed
+     */
+    @Lock(LockType.READ)
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public boolean isIndexed() {
+        return indexed.get();
+    }
+
+    @Asynchronous
+    @Lock(LockType.READ)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void indexPaths() {
+        PathPartLinkIndexer businessObject = ctx.getBusinessObject(PathPartLinkIndexer.class);
+        try {
+            Integer lastId = 0;
+            while (lastId != null) {
+                lastId = businessObject.indexPathToPathLinkBatch(lastId, BATCH_SIZE);
+            }
+            indexed.set(true);
+            LOGGER.log(Level.INFO, "Path part links indexed");
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Path part links indexing interrupted, will resume on next start", e);
+        }
+    }
+
+    @Lock(LockType.READ)
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public Integer indexPathToPathLinkBatch(int afterId, int maxResults) {
+        List<PathToPathLink> pathToPathLinks = pathToPathLinkDAO.findUnindexedPathToPathLinks(afterId, maxResults);
+        for (PathToPathLink pathToPathLink : pathToPathLinks) {
+            pathToPathLink.indexPartLinks();
+        }
+        return pathToPathLinks.size() < maxResults ? null : pathToPathLinks.get(pathToPathLinks.size() - 1).getId();
+    }
+}
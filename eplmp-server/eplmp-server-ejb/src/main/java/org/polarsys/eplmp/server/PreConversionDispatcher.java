@@ -0,0 +1,89 @@
+/*******************************************************************************
+  * Copyright (c) 2017-2019 DocDoku.
+  * All rights reserved. This program and the accompanying materials
+  * are made available under the terms of the Eclipse Public License v1.0
+  * which accompanies this distribution, and is available at
+  * http://www.eclipse.org/legal/epl-v10.html
+  *
+  * Contributors:
+  *    DocDoku - initial API and implementation
+  *******************************************************************************/
+
+package org.polarsys.eplmp.server;
+
+import org.polarsys.eplmp.core.services.IOnDemandConverterManagerLocal;
+
+import javax.annotation.Resource;
+import javax.ejb.*;
+import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.inject.Inject;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Periodically converts the queued files, one at a time and only while the converters have room
+ * for it, so that conversions requested by users never wait behind them. Conversions run on the
+ * managed executor, leaving the timer thread free.
+ *
+ * @see PreConversionQueue
+ */
+@Singleton(name = "PreConversionDispatcher")
+@Startup
+public class PreConversionDispatcher {
+
+    private static final String OUTPUT_FORMAT = "pdf";
+    // Leaves room for the next run if the queue cannot be drained at once
+    private static final long MAX_DISPATCH_DURATION = TimeUnit.MINUTES.toMillis(5);
+
+    @Inject
+    private PreConversionQueue preConversionQueue;
+
+    @Inject
+    private IOnDemandConverterManagerLocal onDemandConverterManager;
+
+    @Resource
+    private ManagedExecutorService executor;
+
+    private final AtomicBoolean dispatching = new AtomicBoolean(false);
+
+    private static final Logger LOGGER = Logger.getLogger(PreConversionDispatcher.class.getName());
+
+    @Schedule(hour = "*", minute = "*", second = "*/10", persistent = false)
+    @Lock(LockType.READ)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void dispatch() {
+        // Runs are skipped rather than queued while the previous one is still converting
+        if (!dispatching.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(this::convertQueuedFiles);
+        } catch (RejectedExecutionException e) {
+            LOGGER.log(Level.FINE, "Pre-conversions postponed to the next run", e);
+            dispatching.set(false);
+        }
+    }
+
+    private void convertQueuedFiles() {
+        try {
+            long deadline = System.currentTimeMillis() + MAX_DISPATCH_DURATION;
+            String fullName;
+            while (System.currentTimeMillis() < deadline && (fullName = preConversionQueue.peek()) != null) {
+                try {
+                    if (!onDemandConverterManager.preConvertResource(OUTPUT_FORMAT, fullName)) {
+                        // Converters are busy, try again on next run
+                        return;
+                    }
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Error while converting " + fullName + " in advance", e);
+                }
+                preConversionQueue.remove(fullName);
+            }
+        } finally {
+            dispatching.set(false);
+        }
+    }
+}
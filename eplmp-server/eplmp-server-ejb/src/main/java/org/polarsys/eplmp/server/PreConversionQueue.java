@@ -0,0 +1,78 @@
+/*******************************************************************************
+  * Copyright (c) 2017-2019 DocDoku.
+  * All rights reserved. This program and the accompanying materials
+  * are made available under the terms of the Eclipse Public License v1.0
+  * which accompanies this distribution, and is available at
+  * http://www.eclipse.org/legal/epl-v10.html
+  *
+  * Contributors:
+  *    DocDoku - initial API and implementation
+  *******************************************************************************/
+
+package org.polarsys.eplmp.server;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded queue of the files to convert ahead of their first viewing, drained by {@link PreConversionDispatcher}.
+ *
+ * Files offered while the queue is full are dropped: they will be converted on demand, as before.
+ */
+@ApplicationScoped
+public class PreConversionQueue {
+
+    @Inject
+    private ConfigManager configManager;
+
+    private int maxSize;
+
+    // Guarded by this
+    private final Set<String> fullNames = new LinkedHashSet<>();
+
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        maxSize = configManager.getPreConversionQueueSize();
+    }
+
+    /**
+     * @return false if the queue is full and the file has been dropped
+     */
+    public synchronized boolean offer(String fullName) {
+        if (fullNames.contains(fullName)) {
+            return true;
+        }
+        if (fullNames.size() >= maxSize) {
+            droppedCount.incrementAndGet();
+            return false;
+        }
+        return fullNames.add(fullName);
+    }
+
+    /**
+     * @return the oldest file of the queue, left in the queue, or null if the queue is empty
+     */
+    public synchronized String peek() {
+        Iterator<String> iterator = fullNames.iterator();
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    public synchronized void remove(String fullName) {
+        fullNames.remove(fullName);
+    }
+
+    public synchronized int size() {
+        return fullNames.size();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+}
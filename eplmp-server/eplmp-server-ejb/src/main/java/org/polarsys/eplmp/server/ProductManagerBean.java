@@ -30,8 +30,10 @@ import org.polarsys.eplmp.core.sharing.SharedPart;
 import org.polarsys.eplmp.core.util.NamingConvention;
 import org.polarsys.eplmp.core.util.Tools;
 import org.polarsys.eplmp.core.workflow.*;
+import org.polarsys.eplmp.server.configuration.BatchPSFilterVisitor;
 import org.polarsys.eplmp.server.configuration.PSFilterVisitor;
 import org.polarsys.eplmp.server.configuration.PSFilterVisitorCallbacks;
+import org.polarsys.eplmp.server.configuration.ProductStructureCache;
 import org.polarsys.eplmp.server.configuration.filter.LatestCheckedInPSFilter;
 import org.polarsys.eplmp.server.configuration.filter.UpdatePartIterationPSFilter;
 import org.polarsys.eplmp.server.configuration.filter.WIPPSFilter;
@@ -62,6 +64,9 @@ import java.util.stream.Collectors;
 @Stateless(name = "ProductManagerBean")
 public class ProductManagerBean implements IProductManagerLocal {
 
+    @Inject
+    private ACLPermissionIndex aclPermissionIndex;
+
     @Inject
     private EntityManager em;
 
@@ -202,6 +207,12 @@ public class ProductManagerBean implements IProductManagerLocal {
 
     @Inject
     private PSFilterVisitor psFilterVisitor;
+
+    @Inject
+    private BatchPSFilterVisitor batchPSFilterVisitor;
+
+    @Inject
+    private ProductStructureCache productStructureCache;
     
     private static final Logger LOGGER = Logger.getLogger(ProductManagerBean.class.getName());
 
@@ -499,6 +510,8 @@ public class ProductManagerBean implements IProductManagerLocal {
                 Date lastModified = sourceFile.getLastModified();
                 String fullName = partR.getWorkspaceId() + "/parts/" + partNumber + "/" + partR.getVersion() + "/" + newPartIteration.getIteration() + "/attachedfiles/" + fileName;
                 BinaryResource targetFile = new BinaryResource(fullName, length, lastModified);
+                targetFile.setContentHash(sourceFile.getContentHash());
+                targetFile.setLocation(sourceFile.getLocation());
                 binaryResourceDAO.createBinaryResource(targetFile);
                 newPartIteration.addAttachedFile(targetFile);
             }
@@ -512,6 +525,8 @@ public class ProductManagerBean implements IProductManagerLocal {
                 Date lastModified = sourceFile.getLastModified();
                 String fullName = partR.getWorkspaceId() + "/parts/" + partNumber + "/" + partR.getVersion() + "/" + newPartIteration.getIteration() + "/" + fileName;
                 Geometry targetFile = new Geometry(quality, fullName, length, lastModified);
+                targetFile.setContentHash(sourceFile.getContentHash());
+                targetFile.setLocation(sourceFile.getLocation());
                 binaryResourceDAO.createBinaryResource(targetFile);
                 newPartIteration.addGeometry(targetFile);
             }
@@ -523,6 +538,8 @@ public class ProductManagerBean implements IProductManagerLocal {
                 Date lastModified = nativeCADFile.getLastModified();
                 String fullName = partR.getWorkspaceId() + "/parts/" + partNumber + "/" + partR.getVersion() + "/" + newPartIteration.getIteration() + "/nativecad/" + fileName;
                 BinaryResource targetFile = new BinaryResource(fullName, length, lastModified);
+                targetFile.setContentHash(nativeCADFile.getContentHash());
+                targetFile.setLocation(nativeCADFile.getLocation());
                 binaryResourceDAO.createBinaryResource(targetFile);
                 newPartIteration.setNativeCADFile(targetFile);
             }
@@ -617,6 +634,36 @@ public class ProductManagerBean implements IProductManagerLocal {
         }
     }
 
+    @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID})
+    @Override
+    public Map<String, String> getBinaryResourceContentHashes(String workspaceId, List<String> fullNames) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, WorkspaceNotEnabledException {
+        User user = userManager.checkWorkspaceReadAccess(workspaceId);
+
+        List<String> partFiles = fullNames.stream()
+                .filter(fullName -> fullName.startsWith(workspaceId + "/parts/") && BinaryResource.parseHolderRevision(fullName) != null)
+                .collect(Collectors.toList());
+
+        Map<String, String> contentHashes = binaryResourceDAO.findContentHashes(partFiles);
+        Map<PartIterationKey, Boolean> accessRights = new HashMap<>();
+
+        contentHashes.keySet().removeIf(fullName -> {
+            PartIterationKey partIKey = new PartIterationKey(workspaceId, BinaryResource.parseHolderId(fullName),
+                    BinaryResource.parseHolderRevision(fullName), BinaryResource.parseHolderIteration(fullName));
+            return !accessRights.computeIfAbsent(partIKey, key -> canUserAccessQuietly(user, key));
+        });
+
+        return contentHashes;
+    }
+
+    private boolean canUserAccessQuietly(User user, PartIterationKey partIKey) {
+        try {
+            return canUserAccess(user, partIKey);
+        } catch (PartRevisionNotFoundException | PartIterationNotFoundException e) {
+            LOGGER.log(Level.FINEST, null, e);
+            return false;
+        }
+    }
+
     @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID})
     @Override
     public BinaryResource getTemplateBinaryResource(String pFullName) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, FileNotFoundException, WorkspaceNotEnabledException {
@@ -1404,6 +1451,9 @@ public class ProductManagerBean implements IProductManagerLocal {
         }
 
         partRevision.release(user);
+
+        partRevisionEvent.select(new AnnotationLiteral<Released>() {
+        }).fire(new PartRevisionEvent(partRevision));
         return partRevision;
     }
 
@@ -1419,6 +1469,9 @@ public class ProductManagerBean implements IProductManagerLocal {
         }
 
         partRevision.markAsObsolete(user);
+
+        partRevisionEvent.select(new AnnotationLiteral<Released>() {
+        }).fire(new PartRevisionEvent(partRevision));
         return partRevision;
     }
 
@@ -1532,6 +1585,7 @@ public class ProductManagerBean implements IProductManagerLocal {
             binaryResourceDAO.removeBinaryResource(file);
 
             BinaryResource newFile = new BinaryResource(file.getNewFullName(pNewName), file.getContentLength(), file.getLastModified());
+            newFile.setContentHash(file.getContentHash());
 
             binaryResourceDAO.createBinaryResource(newFile);
 
@@ -1940,6 +1994,7 @@ public class ProductManagerBean implements IProductManagerLocal {
         binaryResourceDAO.removeBinaryResource(file);
 
         BinaryResource newFile = new BinaryResource(file.getNewFullName(pNewName), file.getContentLength(), file.getLastModified());
+        newFile.setContentHash(file.getContentHash());
 
         binaryResourceDAO.createBinaryResource(newFile);
         template.setAttachedFile(newFile);
@@ -2249,6 +2304,9 @@ public class ProductManagerBean implements IProductManagerLocal {
             mailer.sendApproval(partR.getWorkspaceId(), runningTasks, partR);
         }
 
+        partRevisionEvent.select(new AnnotationLiteral<Created>() {
+        }).fire(new PartRevisionEvent(partR));
+
         return partR;
 
     }
@@ -2385,7 +2443,7 @@ public class ProductManagerBean implements IProductManagerLocal {
         }
 
         if (partRevision.getACL() != null) {
-            return partRevision.getACL().hasWriteAccess(user);
+            return aclPermissionIndex.hasWriteAccess(user, partRevision.getACL());
         }
 
         try {
@@ -2403,15 +2461,34 @@ public class ProductManagerBean implements IProductManagerLocal {
         String workspaceId = ciKey.getWorkspace();
         userManager.checkWorkspaceReadAccess(workspaceId);
 
+        ProductStructureCache.Key cacheKey = productStructureCache.createKey(ciKey, filter, path, pDepth);
+        if (cacheKey != null) {
+            ProductStructureCache.Snapshot cached = productStructureCache.get(cacheKey);
+            if (cached != null) {
+                Component component = cached.toComponent(path, partMasterDAO, partIterationDAO, partUsageLinkDAO);
+                if (component != null) {
+                    return component;
+                }
+            }
+        }
+        // Read before resolving, a concurrent change makes the result not cacheable
+        long changeCounter = productStructureCache.getChangeCounter(workspaceId);
+
         PSFilterVisitorCallbacks callbacks = new PSFilterVisitorCallbacks(){};
 
+        Component component;
         if (path == null) {
             ConfigurationItem ci = configurationItemDAO.loadConfigurationItem(ciKey);
-            return psFilterVisitor.visit(workspaceId, filter, ci.getDesignItem(), pDepth, callbacks);
+            component = batchPSFilterVisitor.visit(workspaceId, filter, ci.getDesignItem(), pDepth, callbacks);
         } else {
-            return psFilterVisitor.visit(workspaceId, filter, path, pDepth, callbacks);
+            component = batchPSFilterVisitor.visit(workspaceId, filter, path, pDepth, callbacks);
         }
 
+        if (cacheKey != null) {
+            productStructureCache.put(cacheKey, changeCounter, component);
+        }
+        return component;
+
     }
 
 
@@ -2458,7 +2535,7 @@ public class ProductManagerBean implements IProductManagerLocal {
 
 
         // 1 Get flat list of paths in the structure for filtering path to path links
-        List<String> discoveredPaths = new ArrayList<>();
+        Set<String> discoveredPaths = new HashSet<>();
 
         PSFilterVisitorCallbacks callbacks = new PSFilterVisitorCallbacks() {
             @Override
@@ -2469,7 +2546,7 @@ public class ProductManagerBean implements IProductManagerLocal {
         };
 
         ConfigurationItem ci = configurationItemDAO.loadConfigurationItem(ciKey);
-        psFilterVisitor.visit(workspaceId, filter, ci.getDesignItem(), -1, callbacks);
+        batchPSFilterVisitor.visit(workspaceId, filter, ci.getDesignItem(), -1, callbacks);
 
         // 2 find all path to path source and target links in configuration item and retain only discovered paths
         Component component;
@@ -2731,6 +2808,54 @@ public class ProductManagerBean implements IProductManagerLocal {
         return parts;
     }
 
+    @RolesAllowed(UserGroupMapping.REGULAR_USER_ROLE_ID)
+    @Override
+    public List<PartRevision> searchPartRevisions(String workspaceId, Query query, PartRevisionKey after, int maxResults) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, WorkspaceNotEnabledException {
+        User user = userManager.checkWorkspaceReadAccess(workspaceId);
+
+        Workspace workspace = workspaceDAO.loadWorkspace(workspaceId);
+
+        List<PartRevision> parts = new ArrayList<>();
+        PartRevisionKey lastKey = after;
+        List<PartRevision> batch;
+
+        // Revisions which are not visible are skipped, read batches of the page size until the page is full.
+        // The page ends on its last revision, the rows read beyond it are read again by the next page.
+        do {
+            batch = partRevisionQueryDAO.runQuery(user.getTimeZone(), workspace, query, lastKey, maxResults);
+
+            for (PartRevision partR : batch) {
+                if (parts.size() == maxResults) {
+                    em.detach(partR);
+                    continue;
+                }
+
+                lastKey = partR.getKey();
+
+                if (partR.getLastCheckedInIteration() == null) {
+                    em.detach(partR);
+                    continue;
+                }
+
+                if (isCheckoutByAnotherUser(user, partR)) {
+                    em.detach(partR);
+                    partR.removeLastIteration();
+                }
+
+                if (partR.getLastIteration() != null && !hasPartRevisionReadAccess(user, partR)) {
+                    // Don't let the persistence context grow with the rejected revisions
+                    em.detach(partR);
+                    continue;
+                }
+
+                parts.add(partR);
+            }
+
+        } while (batch.size() == maxResults && parts.size() < maxResults);
+
+        return parts;
+    }
+
     @RolesAllowed(UserGroupMapping.REGULAR_USER_ROLE_ID)
     @Override
     public Query getQuery(String workspaceId, int queryId) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, WorkspaceNotEnabledException {
@@ -2965,75 +3090,80 @@ public class ProductManagerBean implements IProductManagerLocal {
         ConfigurationItem ci = configurationItemDAO.loadConfigurationItem(ciKey);
         PartMaster root = ci.getDesignItem();
 
-        PSFilterVisitorCallbacks callbacks = new PSFilterVisitorCallbacks() {
+        // Walk the structure first, then gather the binaries of each distinct part only once
+        Set<PartMaster> visitedParts = new HashSet<>();
 
+        PSFilterVisitorCallbacks callbacks = new PSFilterVisitorCallbacks() {
             @Override
             public boolean onPathWalk(List<PartLink> path, List<PartMaster> parts) {
-                PartMaster part = parts.get(parts.size() - 1);
-                List<PartIteration> partIterations = psFilter.filter(part);
+                visitedParts.add(parts.get(parts.size() - 1));
+                return true;
+            }
+        };
 
-                if (!partIterations.isEmpty()) {
+        psFilterVisitor.visit(workspaceId, psFilter, root, -1, callbacks);
 
-                    PartIteration partIteration = partIterations.get(0);
-                    String partFolderName = partIteration.toString();
-                    Set<BinaryResource> binaryResources = result.get(partFolderName);
+        for (PartMaster part : visitedParts) {
+            List<PartIteration> partIterations = psFilter.filter(part);
 
-                    if (binaryResources == null) {
-                        binaryResources = new HashSet<>();
-                        result.put(partFolderName, binaryResources);
-                    }
+            if (!partIterations.isEmpty()) {
 
-                    if (exportNativeCADFiles) {
-                        BinaryResource nativeCADFile = partIteration.getNativeCADFile();
-                        if (nativeCADFile != null) {
-                            binaryResources.add(nativeCADFile);
-                        }
+                PartIteration partIteration = partIterations.get(0);
+                String partFolderName = partIteration.toString();
+                Set<BinaryResource> binaryResources = result.get(partFolderName);
 
-                        if (exportDocumentLinks) {
-                            for (BinaryResource attachedFile : partIteration.getAttachedFiles()) {
-                                if (attachedFile != null) {
-                                    binaryResources.add(attachedFile);
-                                }
+                if (binaryResources == null) {
+                    binaryResources = new HashSet<>();
+                    result.put(partFolderName, binaryResources);
+                }
+
+                if (exportNativeCADFiles) {
+                    BinaryResource nativeCADFile = partIteration.getNativeCADFile();
+                    if (nativeCADFile != null) {
+                        binaryResources.add(nativeCADFile);
+                    }
+
+                    if (exportDocumentLinks) {
+                        for (BinaryResource attachedFile : partIteration.getAttachedFiles()) {
+                            if (attachedFile != null) {
+                                binaryResources.add(attachedFile);
                             }
                         }
                     }
+                }
 
-                    if (exportDocumentLinks && baselineId == null) {
-                        Set<DocumentLink> linkedDocuments = partIteration.getLinkedDocuments();
+                if (exportDocumentLinks && baselineId == null) {
+                    Set<DocumentLink> linkedDocuments = partIteration.getLinkedDocuments();
 
-                        for (DocumentLink documentLink : linkedDocuments) {
+                    for (DocumentLink documentLink : linkedDocuments) {
 
-                            DocumentIteration lastCheckedInIteration = documentLink.getTargetDocument().getLastCheckedInIteration();
+                        DocumentIteration lastCheckedInIteration = documentLink.getTargetDocument().getLastCheckedInIteration();
 
-                            if (null != lastCheckedInIteration) {
+                        if (null != lastCheckedInIteration) {
 
-                                String linkedDocumentFolderName = "links/" + lastCheckedInIteration.toString();
+                            String linkedDocumentFolderName = "links/" + lastCheckedInIteration.toString();
 
-                                Set<BinaryResource> linkedBinaryResources = result.get(linkedDocumentFolderName);
+                            Set<BinaryResource> linkedBinaryResources = result.get(linkedDocumentFolderName);
 
-                                if (linkedBinaryResources == null) {
-                                    linkedBinaryResources = new HashSet<>();
-                                    result.put(linkedDocumentFolderName, linkedBinaryResources);
-                                }
+                            if (linkedBinaryResources == null) {
+                                linkedBinaryResources = new HashSet<>();
+                                result.put(linkedDocumentFolderName, linkedBinaryResources);
+                            }
 
-                                Set<BinaryResource> attachedFiles = lastCheckedInIteration.getAttachedFiles();
+                            Set<BinaryResource> attachedFiles = lastCheckedInIteration.getAttachedFiles();
 
-                                for (BinaryResource binary : attachedFiles) {
-                                    if (!linkedBinaryResources.contains(binary)) {
-                                        linkedBinaryResources.add(binary);
-                                    }
+                            for (BinaryResource binary : attachedFiles) {
+                                if (!linkedBinaryResources.contains(binary)) {
+                                    linkedBinaryResources.add(binary);
                                 }
-
                             }
+
                         }
                     }
-
                 }
-                return true;
-            }
-        };
 
-        psFilterVisitor.visit(workspaceId, psFilter, root, -1, callbacks);
+            }
+        }
 
         return result;
     }
@@ -3424,7 +3554,7 @@ public class ProductManagerBean implements IProductManagerLocal {
         if (partRevision.getACL() == null) {                                                                                // Check if the part haven't ACL
             return userManager.checkWorkspaceWriteAccess(workspaceId);
         }
-        if (partRevision.getACL().hasWriteAccess(user)) {                                                                 // Check if the ACL grant write access
+        if (aclPermissionIndex.hasWriteAccess(user, partRevision.getACL())) {                                                                 // Check if the ACL grant write access
             return user;
         }
         throw new AccessRightException(user);                                            // Else throw a AccessRightException
@@ -3439,7 +3569,7 @@ public class ProductManagerBean implements IProductManagerLocal {
         if (template.getAcl() == null) {
             // Check if the item haven't ACL
             return userManager.checkWorkspaceWriteAccess(template.getWorkspaceId());
-        } else if (template.getAcl().hasWriteAccess(user)) {
+        } else if (aclPermissionIndex.hasWriteAccess(user, template.getAcl())) {
             // Check if there is a write access
             return user;
         } else {
@@ -3486,7 +3616,7 @@ public class ProductManagerBean implements IProductManagerLocal {
      */
     private boolean hasPartOrWorkspaceWriteAccess(User user, PartRevision partRevision) throws WorkspaceNotFoundException, WorkspaceNotEnabledException {
         return partRevision.getACL() == null ?
-                userManager.hasWorkspaceWriteAccess(user, partRevision.getWorkspaceId()) : partRevision.getACL().hasWriteAccess(user);
+                userManager.hasWorkspaceWriteAccess(user, partRevision.getWorkspaceId()) : aclPermissionIndex.hasWriteAccess(user, partRevision.getACL());
     }
 
     private boolean isAuthor(User user, PartRevision partRevision) {
@@ -3494,15 +3624,15 @@ public class ProductManagerBean implements IProductManagerLocal {
     }
 
     private boolean isACLGrantReadAccess(User user, PartRevision partRevision) {
-        return partRevision.getACL() == null || partRevision.getACL().hasReadAccess(user);
+        return partRevision.getACL() == null || aclPermissionIndex.hasReadAccess(user, partRevision.getACL());
     }
 
     private boolean isACLGrantReadAccess(User user, PartMasterTemplate template) {
-        return template.getAcl() == null || template.getAcl().hasReadAccess(user);
+        return template.getAcl() == null || aclPermissionIndex.hasReadAccess(user, template.getAcl());
     }
 
     private boolean isACLGrantWriteAccess(User user, PartRevision partRevision) {
-        return partRevision.getACL() == null || partRevision.getACL().hasWriteAccess(user);
+        return partRevision.getACL() == null || aclPermissionIndex.hasWriteAccess(user, partRevision.getACL());
     }
 
     private boolean isCheckoutByUser(User user, PartRevision partRevision) {
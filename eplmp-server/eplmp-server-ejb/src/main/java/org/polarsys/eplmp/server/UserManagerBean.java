@@ -59,6 +59,15 @@ public class UserManagerBean implements IUserManagerLocal {
     @Inject
     private Event<UserGroupEvent> groupEvent;
 
+    @Inject
+    private Event<AccountEvent> accountEvent;
+
+    @Inject
+    private Event<WorkspaceEvent> workspaceEvent;
+
+    @Inject
+    private WorkspaceAccessCache workspaceAccessCache;
+
     @Inject
     private IContextManagerLocal contextManager;
 
@@ -86,6 +95,7 @@ public class UserManagerBean implements IUserManagerLocal {
 
         userDAO.removeUserMembership(new WorkspaceUserMembershipKey(pGroupKey.getWorkspaceId(), pGroupKey.getWorkspaceId(), pLogin));
         group.addUser(userToAdd);
+        fireMembershipChange(pGroupKey.getWorkspaceId());
     }
 
     @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID, UserGroupMapping.ADMIN_ROLE_ID})
@@ -100,6 +110,7 @@ public class UserManagerBean implements IUserManagerLocal {
             userDAO.createUser(userToAdd);
         }
         userDAO.addUserMembership(workspace, userToAdd);
+        fireMembershipChange(pWorkspaceId);
     }
 
     @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID, UserGroupMapping.ADMIN_ROLE_ID})
@@ -115,6 +126,7 @@ public class UserManagerBean implements IUserManagerLocal {
         }).fire(new UserEvent(user));
         userDAO.removeUser(user);
 
+        fireMembershipChange(pWorkspaceId);
         return workspace;
     }
 
@@ -127,6 +139,7 @@ public class UserManagerBean implements IUserManagerLocal {
             User userToRemove = em.getReference(User.class, new UserKey(pGroupKey.getWorkspaceId(), login));
             group.removeUser(userToRemove);
         }
+        fireMembershipChange(pGroupKey.getWorkspaceId());
     }
 
     @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID, UserGroupMapping.ADMIN_ROLE_ID})
@@ -136,6 +149,7 @@ public class UserManagerBean implements IUserManagerLocal {
         UserGroup group = userGroupDAO.loadUserGroup(pGroupKey);
         User userToRemove = em.getReference(User.class, new UserKey(pGroupKey.getWorkspaceId(), login));
         group.removeUser(userToRemove);
+        fireMembershipChange(pGroupKey.getWorkspaceId());
         return group;
     }
 
@@ -233,6 +247,7 @@ public class UserManagerBean implements IUserManagerLocal {
                 ms.setReadOnly(pReadOnly);
             }
         }
+        fireMembershipChange(pWorkspaceId);
     }
 
     @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID, UserGroupMapping.ADMIN_ROLE_ID})
@@ -243,6 +258,7 @@ public class UserManagerBean implements IUserManagerLocal {
         if (ms != null) {
             ms.setReadOnly(pReadOnly);
         }
+        fireMembershipChange(pWorkspaceId);
         return ms;
     }
 
@@ -256,6 +272,7 @@ public class UserManagerBean implements IUserManagerLocal {
             ms.setReadOnly(pReadOnly);
         }
 
+        fireMembershipChange(pWorkspaceId);
         return ms;
     }
 
@@ -269,6 +286,7 @@ public class UserManagerBean implements IUserManagerLocal {
                 ms.setReadOnly(pReadOnly);
             }
         }
+        fireMembershipChange(pWorkspaceId);
     }
 
     @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID, UserGroupMapping.ADMIN_ROLE_ID})
@@ -280,6 +298,7 @@ public class UserManagerBean implements IUserManagerLocal {
             User member = em.getReference(User.class, new UserKey(pWorkspaceId, login));
             userDAO.addUserMembership(workspace, member);
         }
+        fireMembershipChange(pWorkspaceId);
     }
 
     @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID, UserGroupMapping.ADMIN_ROLE_ID})
@@ -291,6 +310,7 @@ public class UserManagerBean implements IUserManagerLocal {
             UserGroup member = em.getReference(UserGroup.class, new UserGroupKey(pWorkspaceId, id));
             userGroupDAO.addUserGroupMembership(workspace, member);
         }
+        fireMembershipChange(pWorkspaceId);
     }
 
     @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID, UserGroupMapping.ADMIN_ROLE_ID})
@@ -300,7 +320,7 @@ public class UserManagerBean implements IUserManagerLocal {
         Workspace workspace = em.getReference(Workspace.class, pWorkspaceId);
         User member = em.getReference(User.class, new UserKey(pWorkspaceId, login));
         userDAO.addUserMembership(workspace, member);
-
+        fireMembershipChange(pWorkspaceId);
     }
 
     @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID, UserGroupMapping.ADMIN_ROLE_ID})
@@ -310,7 +330,7 @@ public class UserManagerBean implements IUserManagerLocal {
         Workspace workspace = em.getReference(Workspace.class, pWorkspaceId);
         UserGroup member = em.getReference(UserGroup.class, new UserGroupKey(pWorkspaceId, groupId));
         userGroupDAO.addUserGroupMembership(workspace, member);
-
+        fireMembershipChange(pWorkspaceId);
     }
 
 
@@ -321,6 +341,7 @@ public class UserManagerBean implements IUserManagerLocal {
         for (String id : pGroupIds) {
             userGroupDAO.removeUserGroupMembership(new WorkspaceUserGroupMembershipKey(pWorkspaceId, pWorkspaceId, id));
         }
+        fireMembershipChange(pWorkspaceId);
     }
 
     @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID, UserGroupMapping.ADMIN_ROLE_ID})
@@ -330,6 +351,7 @@ public class UserManagerBean implements IUserManagerLocal {
         for (String login : pLogins) {
             userDAO.removeUserMembership(new WorkspaceUserMembershipKey(pWorkspaceId, pWorkspaceId, login));
         }
+        fireMembershipChange(pWorkspaceId);
     }
 
     @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID, UserGroupMapping.ADMIN_ROLE_ID})
@@ -337,7 +359,7 @@ public class UserManagerBean implements IUserManagerLocal {
     public void passivateUserGroup(String pWorkspaceId, String groupId) throws AccessRightException, AccountNotFoundException, WorkspaceNotFoundException {
         checkAdmin(pWorkspaceId);
         userGroupDAO.removeUserGroupMembership(new WorkspaceUserGroupMembershipKey(pWorkspaceId, pWorkspaceId, groupId));
-
+        fireMembershipChange(pWorkspaceId);
     }
 
     @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID, UserGroupMapping.ADMIN_ROLE_ID})
@@ -350,7 +372,7 @@ public class UserManagerBean implements IUserManagerLocal {
             }).fire(new UserEvent(user));
             userDAO.removeUser(user);
         }
-
+        fireMembershipChange(pWorkspaceId);
     }
 
     @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID, UserGroupMapping.ADMIN_ROLE_ID})
@@ -358,7 +380,7 @@ public class UserManagerBean implements IUserManagerLocal {
     public void passivateUser(String pWorkspaceId, String login) throws AccessRightException, AccountNotFoundException, WorkspaceNotFoundException {
         checkAdmin(pWorkspaceId);
         userDAO.removeUserMembership(new WorkspaceUserMembershipKey(pWorkspaceId, pWorkspaceId, login));
-
+        fireMembershipChange(pWorkspaceId);
     }
 
     @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID, UserGroupMapping.ADMIN_ROLE_ID})
@@ -375,6 +397,7 @@ public class UserManagerBean implements IUserManagerLocal {
             }).fire(new UserGroupEvent(group));
             userGroupDAO.removeUserGroup(group);
         }
+        fireMembershipChange(pWorkspaceId);
     }
 
 
@@ -383,6 +406,8 @@ public class UserManagerBean implements IUserManagerLocal {
         PasswordRecoveryRequest passwdRR = passwordRecoveryRequestDAO.loadPasswordRecoveryRequest(pPasswdRRUuid);
         accountDAO.updateCredential(passwdRR.getLogin(), pPassword, configManager.getDigestAlgorithm());
         passwordRecoveryRequestDAO.removePasswordRecoveryRequest(passwdRR);
+        accountEvent.select(new AnnotationLiteral<Updated>() {
+        }).fire(new AccountEvent(passwdRR.getLogin()));
     }
 
     @Override
@@ -397,24 +422,38 @@ public class UserManagerBean implements IUserManagerLocal {
     @Override
     public User checkWorkspaceReadAccess(String pWorkspaceId) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, WorkspaceNotEnabledException {
         String login = contextManager.getCallerPrincipalLogin();
-        WorkspaceUserMembership userMS = userDAO.loadUserMembership(new WorkspaceUserMembershipKey(pWorkspaceId, pWorkspaceId, login));
-        Workspace wks = workspaceDAO.loadWorkspace(pWorkspaceId);
-        User user = userDAO.loadUser(new UserKey(pWorkspaceId, login));
 
-        if (!wks.isEnabled()) {
-            throw new WorkspaceNotEnabledException(pWorkspaceId);
-        } else if (userMS != null) {
-            user = userMS.getMember();
-        } else if (!wks.getAdmin().getLogin().equals(login)) {
-            WorkspaceUserGroupMembership[] groupMS = userGroupDAO.getUserGroupMemberships(pWorkspaceId, user);
-            if (groupMS.length == 0) {
-                throw new UserNotActiveException(login);
+        // Already checked in this transaction
+        User user = workspaceAccessCache.getUser(login, pWorkspaceId, WorkspaceAccessCache.Mode.READ);
+        if (user != null) {
+            return user;
+        }
+
+        if (workspaceAccessCache.isGranted(login, pWorkspaceId, WorkspaceAccessCache.Mode.READ)) {
+            user = userDAO.loadUser(new UserKey(pWorkspaceId, login));
+        } else {
+            long changeCounter = workspaceAccessCache.getChangeCounter();
+            WorkspaceUserMembership userMS = userDAO.loadUserMembership(new WorkspaceUserMembershipKey(pWorkspaceId, pWorkspaceId, login));
+            Workspace wks = workspaceDAO.loadWorkspace(pWorkspaceId);
+            user = userDAO.loadUser(new UserKey(pWorkspaceId, login));
+
+            if (!wks.isEnabled()) {
+                throw new WorkspaceNotEnabledException(pWorkspaceId);
+            } else if (userMS != null) {
+                user = userMS.getMember();
+            } else if (!wks.getAdmin().getLogin().equals(login)) {
+                WorkspaceUserGroupMembership[] groupMS = userGroupDAO.getUserGroupMemberships(pWorkspaceId, user);
+                if (groupMS.length == 0) {
+                    throw new UserNotActiveException(login);
+                }
             }
+            workspaceAccessCache.putGranted(changeCounter, login, pWorkspaceId, WorkspaceAccessCache.Mode.READ);
         }
 
         workspaceAccessEvent.select(new AnnotationLiteral<Read>() {
         }).fire(new WorkspaceAccessEvent(user));
 
+        workspaceAccessCache.putUser(login, pWorkspaceId, WorkspaceAccessCache.Mode.READ, user);
         return user;
     }
 
@@ -423,13 +462,24 @@ public class UserManagerBean implements IUserManagerLocal {
     public User checkWorkspaceWriteAccess(String pWorkspaceId) throws UserNotFoundException, WorkspaceNotFoundException, AccessRightException, WorkspaceNotEnabledException {
         String login = contextManager.getCallerPrincipalLogin();
 
-        User user = userDAO.loadUser(new UserKey(pWorkspaceId, login));
-        if (!hasWorkspaceWriteAccess(user, pWorkspaceId)) {
-            throw new AccessRightException(user);
+        // Already checked in this transaction
+        User user = workspaceAccessCache.getUser(login, pWorkspaceId, WorkspaceAccessCache.Mode.WRITE);
+        if (user != null) {
+            return user;
+        }
+
+        user = userDAO.loadUser(new UserKey(pWorkspaceId, login));
+        if (!workspaceAccessCache.isGranted(login, pWorkspaceId, WorkspaceAccessCache.Mode.WRITE)) {
+            long changeCounter = workspaceAccessCache.getChangeCounter();
+            if (!hasWorkspaceWriteAccess(user, pWorkspaceId)) {
+                throw new AccessRightException(user);
+            }
+            workspaceAccessCache.putGranted(changeCounter, login, pWorkspaceId, WorkspaceAccessCache.Mode.WRITE);
         }
         workspaceAccessEvent.select(new AnnotationLiteral<Write>() {
         }).fire(new WorkspaceAccessEvent(user));
 
+        workspaceAccessCache.putUser(login, pWorkspaceId, WorkspaceAccessCache.Mode.WRITE, user);
         return user;
     }
 
@@ -504,6 +554,11 @@ public class UserManagerBean implements IUserManagerLocal {
         return account;
     }
 
+    private void fireMembershipChange(String workspaceId) {
+        workspaceEvent.select(new AnnotationLiteral<Updated>() {
+        }).fire(new WorkspaceEvent(em.getReference(Workspace.class, workspaceId)));
+    }
+
     private void checkAdmin(Workspace workspace, Account account) throws AccessRightException {
         if (!contextManager.isCallerInRole(UserGroupMapping.ADMIN_ROLE_ID) && !workspace.getAdmin().equals(account)) {
             throw new AccessRightException(account);
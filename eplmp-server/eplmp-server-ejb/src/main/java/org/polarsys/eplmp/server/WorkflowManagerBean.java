@@ -36,6 +36,9 @@ import java.util.*;
 @Stateless(name = "WorkflowManagerBean")
 public class WorkflowManagerBean implements IWorkflowManagerLocal {
 
+    @Inject
+    private ACLPermissionIndex aclPermissionIndex;
+
     @Inject
     private ACLDAO aclDAO;
 
@@ -148,7 +151,7 @@ public class WorkflowManagerBean implements IWorkflowManagerLocal {
     }
 
     private boolean isACLGrantReadAccess(User user, WorkflowModel workflowModel) {
-        return workflowModel.getAcl() == null || workflowModel.getAcl().hasReadAccess(user);
+        return workflowModel.getAcl() == null || aclPermissionIndex.hasReadAccess(user, workflowModel.getAcl());
     }
 
     @RolesAllowed(UserGroupMapping.REGULAR_USER_ROLE_ID)
@@ -592,7 +595,7 @@ public class WorkflowManagerBean implements IWorkflowManagerLocal {
         if (workflow.getAcl() == null) {
             // Check if the item haven't ACL
             userManager.checkWorkspaceWriteAccess(workflow.getWorkspaceId());
-        } else if (!workflow.getAcl().hasWriteAccess(user)) {
+        } else if (!aclPermissionIndex.hasWriteAccess(user, workflow.getAcl())) {
             // Check if there is a write access
             // Else throw a AccessRightException
             throw new AccessRightException(user);
@@ -0,0 +1,223 @@
+/*******************************************************************************
+  * Copyright (c) 2017-2019 DocDoku.
+  * All rights reserved. This program and the accompanying materials
+  * are made available under the terms of the Eclipse Public License v1.0
+  * which accompanies this distribution, and is available at
+  * http://www.eclipse.org/legal/epl-v10.html
+  *
+  * Contributors:
+  *    DocDoku - initial API and implementation
+  *******************************************************************************/
+
+package org.polarsys.eplmp.server;
+
+import org.polarsys.eplmp.core.common.User;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Memoizes the workspace access checks of {@link UserManagerBean}, at two levels:
+ * <ul>
+ * <li>within a transaction, the user granted the access is returned again without any lookup,</li>
+ * <li>across transactions, granted accesses are remembered for a short while so that only the user
+ * has to be loaded. They are evicted once a change on the memberships of their workspace is committed.</li>
+ * </ul>
+ * Denied accesses are never cached.
+ */
+@ApplicationScoped
+public class WorkspaceAccessCache {
+
+    public enum Mode {
+        READ, WRITE
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(WorkspaceAccessCache.class.getName());
+    private static final String TRANSACTION_RESOURCE = WorkspaceAccessCache.class.getName();
+
+    @Inject
+    private ConfigManager configManager;
+
+    @Resource
+    private TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+    private int maxSize;
+    private long timeToLive;
+
+    // Guarded by this
+    private Map<Key, Long> grantedAccesses;
+    private long changeCounter;
+
+    private final AtomicLong transactionHitCount = new AtomicLong();
+    private final AtomicLong sharedHitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        maxSize = configManager.getWorkspaceAccessCacheSize();
+        timeToLive = TimeUnit.SECONDS.toMillis(configManager.getWorkspaceAccessCacheTTL());
+        grantedAccesses = new LinkedHashMap<Key, Long>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Long> eldest) {
+                return size() > maxSize;
+            }
+        };
+        if (isEnabled()) {
+            LOGGER.log(Level.INFO, "Workspace access cache enabled, up to {0} accesses", maxSize);
+        }
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0 && timeToLive > 0;
+    }
+
+    /**
+     * @return the user granted the access in the current transaction, or null
+     */
+    public User getUser(String login, String workspaceId, Mode mode) {
+        Map<Key, User> users = getTransactionUsers(false);
+        User user = users == null ? null : users.get(new Key(login, workspaceId, mode));
+        if (user != null) {
+            transactionHitCount.incrementAndGet();
+        }
+        return user;
+    }
+
+    /**
+     * @return true if the access has been granted recently, in another transaction
+     */
+    public boolean isGranted(String login, String workspaceId, Mode mode) {
+        if (!isEnabled()) {
+            missCount.incrementAndGet();
+            return false;
+        }
+        Key key = new Key(login, workspaceId, mode);
+        synchronized (this) {
+            Long expirationTime = grantedAccesses.get(key);
+            if (expirationTime != null && expirationTime > System.currentTimeMillis()) {
+                sharedHitCount.incrementAndGet();
+                return true;
+            }
+            if (expirationTime != null) {
+                grantedAccesses.remove(key);
+            }
+        }
+        missCount.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Read the change counter, to be done before checking an access which will be given
+     * to {@link #putGranted(long, String, String, Mode)}.
+     */
+    public synchronized long getChangeCounter() {
+        return changeCounter;
+    }
+
+    /**
+     * Remember a granted access, unless memberships changed since it was checked.
+     */
+    public void putGranted(long changeCounter, String login, String workspaceId, Mode mode) {
+        if (!isEnabled()) {
+            return;
+        }
+        Key key = new Key(login, workspaceId, mode);
+        long expirationTime = System.currentTimeMillis() + timeToLive;
+        synchronized (this) {
+            if (changeCounter == this.changeCounter) {
+                grantedAccesses.put(key, expirationTime);
+            }
+        }
+    }
+
+    /**
+     * Remember the user granted the access until the end of the current transaction.
+     */
+    public void putUser(String login, String workspaceId, Mode mode, User user) {
+        Map<Key, User> users = getTransactionUsers(true);
+        if (users != null) {
+            users.put(new Key(login, workspaceId, mode), user);
+        }
+    }
+
+    /**
+     * Forget the accesses granted in the given workspace.
+     */
+    public synchronized void invalidate(String workspaceId) {
+        changeCounter++;
+        grantedAccesses.keySet().removeIf(key -> key.workspaceId.equals(workspaceId));
+    }
+
+    public synchronized int size() {
+        return grantedAccesses.size();
+    }
+
+    /**
+     * @return the number of checks answered by the current transaction
+     */
+    public long getTransactionHitCount() {
+        return transactionHitCount.get();
+    }
+
+    /**
+     * @return the number of checks answered by an access granted in another transaction
+     */
+    public long getSharedHitCount() {
+        return sharedHitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Key, User> getTransactionUsers(boolean create) {
+        if (transactionSynchronizationRegistry == null || transactionSynchronizationRegistry.getTransactionKey() == null) {
+            return null;
+        }
+        Map<Key, User> users = (Map<Key, User>) transactionSynchronizationRegistry.getResource(TRANSACTION_RESOURCE);
+        if (users == null && create) {
+            users = new HashMap<>();
+            transactionSynchronizationRegistry.putResource(TRANSACTION_RESOURCE, users);
+        }
+        return users;
+    }
+
+    private static final class Key {
+
+        private final String login;
+        private final String workspaceId;
+        private final Mode mode;
+
+        private Key(String login, String workspaceId, Mode mode) {
+            this.login = login;
+            this.workspaceId = workspaceId;
+            this.mode = mode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return mode == key.mode && login.equals(key.login) && workspaceId.equals(key.workspaceId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(login, workspaceId, mode);
+        }
+    }
+}
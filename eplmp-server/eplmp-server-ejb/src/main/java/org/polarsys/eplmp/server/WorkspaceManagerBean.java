@@ -24,12 +24,16 @@ import org.polarsys.eplmp.core.util.NamingConvention;
 import org.polarsys.eplmp.server.dao.AccountDAO;
 import org.polarsys.eplmp.server.dao.UserDAO;
 import org.polarsys.eplmp.server.dao.WorkspaceDAO;
+import org.polarsys.eplmp.server.events.Updated;
+import org.polarsys.eplmp.server.events.WorkspaceEvent;
 
 import javax.annotation.security.DeclareRoles;
 import javax.annotation.security.RolesAllowed;
 import javax.ejb.Asynchronous;
 import javax.ejb.Local;
 import javax.ejb.Stateless;
+import javax.enterprise.event.Event;
+import javax.enterprise.util.AnnotationLiteral;
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
 import java.util.Arrays;
@@ -71,6 +75,9 @@ public class WorkspaceManagerBean implements IWorkspaceManagerLocal {
     @Inject
     private IBinaryStorageManagerLocal storageManager;
 
+    @Inject
+    private Event<WorkspaceEvent> workspaceEvent;
+
     private static final Logger LOGGER = Logger.getLogger(WorkspaceManagerBean.class.getName());
 
     @RolesAllowed(UserGroupMapping.ADMIN_ROLE_ID)
@@ -88,6 +95,7 @@ public class WorkspaceManagerBean implements IWorkspaceManagerLocal {
             userManager.checkAdmin(workspaceId);
         }
         Workspace workspace = workspaceDAO.loadWorkspace(workspaceId);
+        fireWorkspaceUpdate(workspace);
         doDeleteWorkspace(workspace);
     }
 
@@ -126,6 +134,7 @@ public class WorkspaceManagerBean implements IWorkspaceManagerLocal {
                 throw new NotAllowedException("NotAllowedException70");
             }
             workspace.setAdmin(account);
+            fireWorkspaceUpdate(workspace);
         } else {
             User user = userManager.whoAmI(workspaceId);
             throw new AccessRightException(user);
@@ -139,6 +148,7 @@ public class WorkspaceManagerBean implements IWorkspaceManagerLocal {
     public Workspace enableWorkspace(String workspaceId, boolean enabled) throws WorkspaceNotFoundException {
         Workspace workspace = workspaceDAO.loadWorkspace(workspaceId);
         workspace.setEnabled(enabled);
+        fireWorkspaceUpdate(workspace);
         return workspace;
     }
 
@@ -264,4 +274,8 @@ public class WorkspaceManagerBean implements IWorkspaceManagerLocal {
         return workspaceBackOptions;
     }
 
+    private void fireWorkspaceUpdate(Workspace workspace) {
+        workspaceEvent.select(new AnnotationLiteral<Updated>() {
+        }).fire(new WorkspaceEvent(workspace));
+    }
 }
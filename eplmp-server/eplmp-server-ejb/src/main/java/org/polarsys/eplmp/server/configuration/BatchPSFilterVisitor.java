@@ -0,0 +1,221 @@
+/*******************************************************************************
+ * Copyright (c) 2017-2019 DocDoku.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    DocDoku - initial API and implementation
+ *******************************************************************************/
+
+package org.polarsys.eplmp.server.configuration;
+
+import org.polarsys.eplmp.core.configuration.ProductStructureFilter;
+import org.polarsys.eplmp.core.exceptions.EntityConstraintException;
+import org.polarsys.eplmp.core.exceptions.NotAllowedException;
+import org.polarsys.eplmp.core.exceptions.PartMasterNotFoundException;
+import org.polarsys.eplmp.core.product.*;
+import org.polarsys.eplmp.server.dao.PartMasterDAO;
+
+import javax.enterprise.context.RequestScoped;
+import javax.inject.Inject;
+import java.util.*;
+
+/**
+ * Walker mode of {@link PSFilterVisitor} tuned for large product structures.
+ *
+ * It honors the same {@link PSFilterVisitorCallbacks} contract, but:
+ * <ul>
+ * <li>the children part masters of a node are loaded in a single batch before being visited,</li>
+ * <li>the iterations retained by the filter are computed once per part master for the whole walk,</li>
+ * <li>paths are {@link PersistentPath}s shared between a node and its children instead of copies.</li>
+ * </ul>
+ *
+ * Lists handed to the callbacks and stored in the {@link Component}s are immutable.
+ */
+@RequestScoped
+public class BatchPSFilterVisitor {
+
+    @Inject
+    private PartMasterDAO partMasterDAO;
+
+    private String workspaceId;
+    private ProductStructureFilter filter;
+    private int stopAtDepth = -1;
+    private boolean stopped = false;
+
+    private PSFilterVisitorCallbacks callbacks;
+
+    private Map<String, PartMaster> partMasters;
+    private Map<PartMaster, List<PartIteration>> filteredIterations;
+
+    /**
+     * Start the visitor with given part master
+     */
+    public Component visit(String workspaceId, ProductStructureFilter pFilter, PartMaster pNodeFrom, Integer pStopAtDepth, PSFilterVisitorCallbacks callbacks) throws PartMasterNotFoundException, EntityConstraintException, NotAllowedException {
+        init(workspaceId, pStopAtDepth, pFilter, callbacks);
+        return visit(pNodeFrom, PersistentPath.of(PSFilterVisitor.createVirtualRootLink(pNodeFrom)));
+    }
+
+    /**
+     * Start the visitor with given path
+     */
+    public Component visit(String workspaceId, ProductStructureFilter pFilter, List<PartLink> pStartingPath, Integer pStopAtDepth, PSFilterVisitorCallbacks callbacks) throws PartMasterNotFoundException, EntityConstraintException, NotAllowedException {
+        init(workspaceId, pStopAtDepth, pFilter, callbacks);
+        PartMaster rootNode = pStartingPath.get(pStartingPath.size() - 1).getComponent();
+        return visit(rootNode, PersistentPath.of(new ArrayList<>(pStartingPath)));
+    }
+
+    public void stop() {
+        stopped = true;
+    }
+
+    private void init(String workspaceId, Integer stopAtDepth, ProductStructureFilter filter, PSFilterVisitorCallbacks callbacks) {
+        this.workspaceId = workspaceId;
+        this.filter = filter;
+        this.callbacks = callbacks;
+        this.stopAtDepth = stopAtDepth == null ? -1 : stopAtDepth;
+        this.stopped = false;
+        this.partMasters = new HashMap<>();
+        this.filteredIterations = new HashMap<>();
+    }
+
+    private Component visit(PartMaster pNodeFrom, PersistentPath<PartLink> pStartingPath) throws NotAllowedException, EntityConstraintException, PartMasterNotFoundException {
+        partMasters.put(pNodeFrom.getNumber(), pNodeFrom);
+        Component component = new Component(pNodeFrom.getAuthor(), pNodeFrom, pStartingPath, null);
+        component.setComponents(getComponentsRecursively(component, null, PersistentPath.of(pNodeFrom), pStartingPath));
+        return component;
+    }
+
+    private List<Component> getComponentsRecursively(Component currentComponent, PersistentPath<PartIteration> pCurrentPathPartIterations, PersistentPath<PartMaster> pCurrentPathParts, PersistentPath<PartLink> pCurrentPath) throws PartMasterNotFoundException, NotAllowedException, EntityConstraintException {
+        List<Component> components = new ArrayList<>();
+
+        if (stopped) {
+            return components;
+        }
+
+        if (!callbacks.onPathWalk(pCurrentPath, pCurrentPathParts)) {
+            return components;
+        }
+
+        int currentDepth = pCurrentPathParts.size();
+        PartMaster currentUsagePartMaster = pCurrentPathParts.getLast();
+
+        List<PartIteration> partIterations = filter(currentUsagePartMaster);
+
+        if (partIterations.isEmpty()) {
+            callbacks.onUnresolvedVersion(currentUsagePartMaster);
+        }
+
+        if (partIterations.size() > 1) {
+            callbacks.onIndeterminateVersion(currentUsagePartMaster, new ArrayList<>(partIterations));
+        }
+
+        if (partIterations.size() == 1) {
+            currentComponent.setRetainedIteration(partIterations.get(0));
+        }
+
+        boolean goDeeper = stopAtDepth == -1 || stopAtDepth >= currentDepth;
+        if (goDeeper) {
+            prefetchChildren(partIterations);
+        }
+
+        for (PartIteration partIteration : partIterations) {
+
+            PersistentPath<PartIteration> pathPartIterations = pCurrentPathPartIterations == null ?
+                    PersistentPath.of(partIteration) : pCurrentPathPartIterations.append(partIteration);
+
+            if (partIteration.getComponents().isEmpty()) {
+                callbacks.onBranchDiscovered(pCurrentPath, pathPartIterations);
+            }
+
+            for (PartUsageLink usageLink : partIteration.getComponents()) {
+
+                PersistentPath<PartLink> currentPath = pCurrentPath.append(usageLink);
+
+                List<PartLink> eligiblePath = filter.filter(currentPath);
+
+                if (eligiblePath.isEmpty() && !usageLink.isOptional()) {
+                    callbacks.onUnresolvedPath(currentPath, pathPartIterations);
+                }
+
+                if (eligiblePath.size() > 1) {
+                    callbacks.onIndeterminatePath(currentPath, pathPartIterations);
+                }
+
+                if (eligiblePath.size() == 1 && eligiblePath.get(0).isOptional()) {
+                    callbacks.onOptionalPath(currentPath, pathPartIterations);
+                }
+
+                if (!goDeeper) {
+                    continue;
+                }
+
+                for (PartLink link : eligiblePath) {
+
+                    PartMaster pm = loadPartMaster(link.getComponent().getNumber());
+
+                    // Run cyclic integrity check here
+                    if (pCurrentPathParts.contains(pm)) {
+                        throw new EntityConstraintException("EntityConstraintException12");
+                    }
+
+                    PersistentPath<PartLink> nextPath = link == usageLink ? currentPath : pCurrentPath.append(link);
+
+                    Component subComponent = new Component(pm.getAuthor(), pm, nextPath, null);
+                    subComponent.setComponents(getComponentsRecursively(subComponent, pathPartIterations, pCurrentPathParts.append(pm), nextPath));
+                    components.add(subComponent);
+                }
+            }
+        }
+
+        return components;
+    }
+
+    private List<PartIteration> filter(PartMaster partMaster) {
+        List<PartIteration> partIterations = filteredIterations.get(partMaster);
+        if (partIterations == null) {
+            partIterations = Collections.unmodifiableList(filter.filter(partMaster));
+            filteredIterations.put(partMaster, partIterations);
+        }
+        return partIterations;
+    }
+
+    /**
+     * Load in one round trip every part master which may be reached from the given iterations,
+     * including substitutes.
+     */
+    private void prefetchChildren(List<PartIteration> partIterations) {
+        Set<String> numbers = new HashSet<>();
+        for (PartIteration partIteration : partIterations) {
+            for (PartUsageLink usageLink : partIteration.getComponents()) {
+                addIfNotLoaded(numbers, usageLink.getComponent());
+                if (usageLink.getSubstitutes() != null) {
+                    for (PartSubstituteLink substituteLink : usageLink.getSubstitutes()) {
+                        addIfNotLoaded(numbers, substituteLink.getComponent());
+                    }
+                }
+            }
+        }
+        if (!numbers.isEmpty()) {
+            partMasters.putAll(partMasterDAO.loadPartMasters(workspaceId, numbers));
+        }
+    }
+
+    private void addIfNotLoaded(Set<String> numbers, PartMaster partMaster) {
+        if (partMaster != null && !partMasters.containsKey(partMaster.getNumber())) {
+            numbers.add(partMaster.getNumber());
+        }
+    }
+
+    private PartMaster loadPartMaster(String partNumber) throws PartMasterNotFoundException {
+        PartMaster partMaster = partMasters.get(partNumber);
+        if (partMaster == null) {
+            partMaster = partMasterDAO.loadPartM(new PartMasterKey(workspaceId, partNumber));
+            partMasters.put(partNumber, partMaster);
+        }
+        return partMaster;
+    }
+
+}
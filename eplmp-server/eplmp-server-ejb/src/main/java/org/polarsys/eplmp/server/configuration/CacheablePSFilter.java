@@ -0,0 +1,28 @@
+/*******************************************************************************
+ * Copyright (c) 2017-2019 DocDoku.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    DocDoku - initial API and implementation
+ *******************************************************************************/
+
+package org.polarsys.eplmp.server.configuration;
+
+import org.polarsys.eplmp.core.configuration.ProductStructureFilter;
+
+/**
+ * A {@link ProductStructureFilter} whose result only depends on the stored parts,
+ * not on the user nor on the filter own state, so that the structures it resolves
+ * can be shared through the {@link ProductStructureCache}.
+ */
+public interface CacheablePSFilter extends ProductStructureFilter {
+
+    /**
+     * @return a key identifying this filter and its settings, or null if
+     * this instance must not be cached
+     */
+    String getCacheKey();
+}
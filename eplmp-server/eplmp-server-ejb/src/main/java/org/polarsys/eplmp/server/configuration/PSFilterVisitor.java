@@ -206,7 +206,7 @@ public class PSFilterVisitor {
         return partMasterDAO.loadPartM(new PartMasterKey(workspaceId, partNumber));
     }
 
-    private PartLink createVirtualRootLink(PartMaster pNodeFrom) {
+    static PartLink createVirtualRootLink(PartMaster pNodeFrom) {
 
         return new PartLink() {
             @Override
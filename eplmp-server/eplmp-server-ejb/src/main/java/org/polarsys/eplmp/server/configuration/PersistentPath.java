@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright (c) 2017-2019 DocDoku.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    DocDoku - initial API and implementation
+ *******************************************************************************/
+
+package org.polarsys.eplmp.server.configuration;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Immutable list used to represent a path in a product structure walk.
+ *
+ * Appending an element creates a new path which shares all of its
+ * ancestors with the original one, so branching the walk costs O(1)
+ * instead of copying the whole path on every edge.
+ *
+ * The array view used for indexed access is built lazily, only once,
+ * when a consumer actually reads the path.
+ */
+public final class PersistentPath<E> extends AbstractList<E> implements RandomAccess, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final PersistentPath<E> parent;
+    private final E last;
+    private final int size;
+
+    private transient volatile Object[] elements;
+
+    private PersistentPath(PersistentPath<E> parent, E last) {
+        this.parent = parent;
+        this.last = last;
+        this.size = parent == null ? 1 : parent.size + 1;
+    }
+
+    public static <E> PersistentPath<E> of(E element) {
+        return new PersistentPath<>(null, element);
+    }
+
+    public static <E> PersistentPath<E> of(List<E> elements) {
+        if (elements.isEmpty()) {
+            throw new IllegalArgumentException("Cannot create an empty path");
+        }
+        if (elements instanceof PersistentPath) {
+            return (PersistentPath<E>) elements;
+        }
+        PersistentPath<E> path = null;
+        for (E element : elements) {
+            path = new PersistentPath<>(path, element);
+        }
+        return path;
+    }
+
+    public PersistentPath<E> append(E element) {
+        return new PersistentPath<>(this, element);
+    }
+
+    public PersistentPath<E> getParent() {
+        return parent;
+    }
+
+    public E getLast() {
+        return last;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if (index == size - 1) {
+            return last;
+        }
+        return (E) toArrayView()[index];
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        for (PersistentPath<E> node = this; node != null; node = node.parent) {
+            if (o == null ? node.last == null : o.equals(node.last)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Object[] toArrayView() {
+        Object[] view = elements;
+        if (view == null) {
+            view = new Object[size];
+            int i = size;
+            for (PersistentPath<E> node = this; node != null; node = node.parent) {
+                view[--i] = node.last;
+            }
+            elements = view;
+        }
+        return view;
+    }
+
+}
@@ -0,0 +1,330 @@
+/*******************************************************************************
+ * Copyright (c) 2017-2019 DocDoku.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    DocDoku - initial API and implementation
+ *******************************************************************************/
+
+package org.polarsys.eplmp.server.configuration;
+
+import org.polarsys.eplmp.core.configuration.ProductStructureFilter;
+import org.polarsys.eplmp.core.product.*;
+import org.polarsys.eplmp.core.util.Tools;
+import org.polarsys.eplmp.server.ConfigManager;
+import org.polarsys.eplmp.server.dao.PartIterationDAO;
+import org.polarsys.eplmp.server.dao.PartMasterDAO;
+import org.polarsys.eplmp.server.dao.PartUsageLinkDAO;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Size bounded, least recently used, cache of the {@link Component} trees resolved by
+ * {@link CacheablePSFilter}s.
+ *
+ * Trees are keyed by configuration item, filter, starting path and depth. Each entry remembers
+ * the part masters it was built from: a change on one of these parts evicts it. A change counter
+ * is kept per workspace so that a tree resolved while a change was being committed is never
+ * stored.
+ *
+ * Entities are not shared between requests: entries only hold the part numbers, link ids and
+ * retained iteration keys of the tree, which is rebuilt from the links and iterations loaded
+ * by the caller.
+ */
+@ApplicationScoped
+public class ProductStructureCache {
+
+    private static final Logger LOGGER = Logger.getLogger(ProductStructureCache.class.getName());
+
+    @Inject
+    private ConfigManager configManager;
+
+    private int maxSize;
+
+    // Guarded by this
+    private Map<Key, Snapshot> entries;
+    private final Map<String, Long> changeCounters = new HashMap<>();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        maxSize = configManager.getProductStructureCacheSize();
+        entries = new LinkedHashMap<Key, Snapshot>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Snapshot> eldest) {
+                if (size() > maxSize) {
+                    evictionCount.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+        if (isEnabled()) {
+            LOGGER.log(Level.INFO, "Product structure cache enabled, up to {0} structures", maxSize);
+        }
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    /**
+     * @return the cache key of the given request, or null if its result can't be cached
+     */
+    public Key createKey(ConfigurationItemKey ciKey, ProductStructureFilter filter, List<PartLink> path, Integer depth) {
+        if (!isEnabled() || !(filter instanceof CacheablePSFilter)) {
+            return null;
+        }
+        String filterKey = ((CacheablePSFilter) filter).getCacheKey();
+        if (filterKey == null) {
+            return null;
+        }
+        return new Key(ciKey, filterKey, path == null ? null : Tools.getPathAsString(path), depth == null ? -1 : depth);
+    }
+
+    public Snapshot get(Key key) {
+        Snapshot snapshot;
+        synchronized (this) {
+            snapshot = entries.get(key);
+        }
+        if (snapshot == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return snapshot;
+    }
+
+    /**
+     * Read the change counter of a workspace, to be done before resolving a structure
+     * which will be given to {@link #put(Key, long, Component)}.
+     */
+    public synchronized long getChangeCounter(String workspaceId) {
+        return changeCounters.getOrDefault(workspaceId, 0L);
+    }
+
+    /**
+     * Store a resolved structure, unless the workspace changed since it was resolved.
+     */
+    public void put(Key key, long changeCounter, Component component) {
+        Set<String> partNumbers = new HashSet<>();
+        Node root = Node.of(component, true, partNumbers);
+        Snapshot snapshot = new Snapshot(key.ciKey.getWorkspace(), root, Collections.unmodifiableSet(partNumbers));
+        synchronized (this) {
+            if (changeCounter == getChangeCounter(key.ciKey.getWorkspace())) {
+                entries.put(key, snapshot);
+            }
+        }
+    }
+
+    /**
+     * Evict all the structures built from the given part.
+     */
+    public synchronized void invalidate(String workspaceId, String partNumber) {
+        changeCounters.merge(workspaceId, 1L, Long::sum);
+        Iterator<Map.Entry<Key, Snapshot>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Key, Snapshot> entry = iterator.next();
+            if (entry.getKey().ciKey.getWorkspace().equals(workspaceId) && entry.getValue().partNumbers.contains(partNumber)) {
+                iterator.remove();
+                invalidationCount.incrementAndGet();
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    public long getInvalidationCount() {
+        return invalidationCount.get();
+    }
+
+    public static final class Key {
+
+        private final ConfigurationItemKey ciKey;
+        private final String filterKey;
+        private final String path;
+        private final int depth;
+
+        private Key(ConfigurationItemKey ciKey, String filterKey, String path, int depth) {
+            this.ciKey = ciKey;
+            this.filterKey = filterKey;
+            this.path = path;
+            this.depth = depth;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return depth == key.depth && ciKey.equals(key.ciKey) && filterKey.equals(key.filterKey) && Objects.equals(path, key.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(ciKey, filterKey, path, depth);
+        }
+    }
+
+    /**
+     * Immutable copy of a cached structure.
+     */
+    public static final class Snapshot {
+
+        private final String workspaceId;
+        private final Node root;
+        private final Set<String> partNumbers;
+        private final Set<Integer> usageLinkIds;
+        private final Set<Integer> substituteLinkIds;
+        private final Set<PartIterationKey> iterationKeys;
+
+        private Snapshot(String workspaceId, Node root, Set<String> partNumbers) {
+            this.workspaceId = workspaceId;
+            this.root = root;
+            this.partNumbers = partNumbers;
+            Set<Integer> usageLinks = new HashSet<>();
+            Set<Integer> substituteLinks = new HashSet<>();
+            Set<PartIterationKey> iterations = new HashSet<>();
+            root.collect(usageLinks, substituteLinks, iterations);
+            this.usageLinkIds = Collections.unmodifiableSet(usageLinks);
+            this.substituteLinkIds = Collections.unmodifiableSet(substituteLinks);
+            this.iterationKeys = Collections.unmodifiableSet(iterations);
+        }
+
+        /**
+         * Rebuild the structure from the entities of the caller persistence context. Only the links
+         * and the retained iterations of the structure are loaded, one batch query for each kind.
+         *
+         * @param startingPath path of the root component, null if the structure starts at the root part
+         * @return the structure, or null if one of its parts, links or iterations no longer exists
+         */
+        public Component toComponent(List<PartLink> startingPath, PartMasterDAO partMasterDAO, PartIterationDAO partIterationDAO, PartUsageLinkDAO partUsageLinkDAO) {
+            Map<PartIterationKey, PartIteration> partIterations = iterationKeys.isEmpty() ? Collections.emptyMap()
+                    : partIterationDAO.loadPartIterations(workspaceId, iterationKeys);
+            Map<Integer, PartUsageLink> usageLinks = usageLinkIds.isEmpty() ? Collections.emptyMap()
+                    : partUsageLinkDAO.loadPartUsageLinks(usageLinkIds);
+            Map<Integer, PartSubstituteLink> substituteLinks = substituteLinkIds.isEmpty() ? Collections.emptyMap()
+                    : partUsageLinkDAO.loadPartSubstituteLinks(substituteLinkIds);
+            try {
+                PersistentPath<PartLink> rootPath;
+                if (startingPath != null) {
+                    rootPath = PersistentPath.of(new ArrayList<>(startingPath));
+                } else {
+                    PartMaster rootPart = root.retainedIteration != null ? Node.get(partIterations, root.retainedIteration).getPartRevision().getPartMaster()
+                            : Node.get(partMasterDAO.loadPartMasters(workspaceId, Collections.singleton(root.partNumber)), root.partNumber);
+                    rootPath = PersistentPath.of(PSFilterVisitor.createVirtualRootLink(rootPart));
+                }
+                return root.toComponent(rootPath, partIterations, usageLinks, substituteLinks);
+            } catch (NoSuchElementException e) {
+                LOGGER.log(Level.FINE, "Cached product structure no longer matches the stored parts", e);
+                return null;
+            }
+        }
+    }
+
+    private static final class Node {
+
+        private final String partNumber;
+        // Link from the parent, null for the root
+        private final Integer partLinkId;
+        private final boolean substituteLink;
+        private final PartIterationKey retainedIteration;
+        private final List<Node> children;
+
+        private Node(String partNumber, PartLink partLink, PartIteration retainedIteration, List<Node> children) {
+            this.partNumber = partNumber;
+            this.partLinkId = partLink == null ? null : partLink.getId();
+            this.substituteLink = partLink instanceof PartSubstituteLink;
+            this.retainedIteration = retainedIteration == null ? null : retainedIteration.getKey();
+            this.children = children;
+        }
+
+        private static Node of(Component component, boolean root, Set<String> partNumbers) {
+            partNumbers.add(component.getPartMaster().getNumber());
+            List<Node> children = null;
+            if (component.getComponents() != null) {
+                children = new ArrayList<>(component.getComponents().size());
+                for (Component subComponent : component.getComponents()) {
+                    children.add(of(subComponent, false, partNumbers));
+                }
+                children = Collections.unmodifiableList(children);
+            }
+            return new Node(component.getPartMaster().getNumber(), root ? null : component.getPartLink(),
+                    component.getRetainedIteration(), children);
+        }
+
+        private void collect(Set<Integer> usageLinkIds, Set<Integer> substituteLinkIds, Set<PartIterationKey> iterationKeys) {
+            if (partLinkId != null) {
+                (substituteLink ? substituteLinkIds : usageLinkIds).add(partLinkId);
+            }
+            if (retainedIteration != null) {
+                iterationKeys.add(retainedIteration);
+            }
+            if (children != null) {
+                for (Node child : children) {
+                    child.collect(usageLinkIds, substituteLinkIds, iterationKeys);
+                }
+            }
+        }
+
+        private Component toComponent(PersistentPath<PartLink> path, Map<PartIterationKey, PartIteration> partIterations,
+                                      Map<Integer, PartUsageLink> usageLinks, Map<Integer, PartSubstituteLink> substituteLinks) {
+            PartMaster partMaster = path.getLast().getComponent();
+            if (!partNumber.equals(partMaster.getNumber())) {
+                throw new NoSuchElementException(partNumber);
+            }
+            Component component = new Component(partMaster.getAuthor(), partMaster, path, null);
+            if (retainedIteration != null) {
+                component.setRetainedIteration(get(partIterations, retainedIteration));
+            }
+            if (children != null) {
+                List<Component> components = new ArrayList<>(children.size());
+                for (Node child : children) {
+                    PartLink link = child.substituteLink ? get(substituteLinks, child.partLinkId) : get(usageLinks, child.partLinkId);
+                    components.add(child.toComponent(path.append(link), partIterations, usageLinks, substituteLinks));
+                }
+                component.setComponents(components);
+            }
+            return component;
+        }
+
+        private static <K, T> T get(Map<K, T> map, K key) {
+            T value = map.get(key);
+            if (value == null) {
+                throw new NoSuchElementException(String.valueOf(key));
+            }
+            return value;
+        }
+    }
+}
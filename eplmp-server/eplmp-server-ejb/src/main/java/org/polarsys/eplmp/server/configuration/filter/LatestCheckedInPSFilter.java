@@ -12,11 +12,11 @@
 
 package org.polarsys.eplmp.server.configuration.filter;
 
-import org.polarsys.eplmp.core.configuration.ProductStructureFilter;
 import org.polarsys.eplmp.core.product.PartIteration;
 import org.polarsys.eplmp.core.product.PartLink;
 import org.polarsys.eplmp.core.product.PartMaster;
 import org.polarsys.eplmp.core.product.PartSubstituteLink;
+import org.polarsys.eplmp.server.configuration.CacheablePSFilter;
 
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -35,7 +35,7 @@ import java.util.List;
  *
  */
 
-public class LatestCheckedInPSFilter implements ProductStructureFilter, Serializable {
+public class LatestCheckedInPSFilter implements CacheablePSFilter, Serializable {
 
     private boolean diverge = false;
 
@@ -72,4 +72,9 @@ public class LatestCheckedInPSFilter implements ProductStructureFilter, Serializ
         return links;
     }
 
+    @Override
+    public String getCacheKey() {
+        return "latest:" + diverge;
+    }
+
 }
@@ -12,8 +12,8 @@
 
 package org.polarsys.eplmp.server.configuration.filter;
 
-import org.polarsys.eplmp.core.configuration.ProductStructureFilter;
 import org.polarsys.eplmp.core.product.*;
+import org.polarsys.eplmp.server.configuration.CacheablePSFilter;
 
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -29,7 +29,7 @@ import java.util.List;
  * @since   V2.0
  */
 
-public class LatestReleasedPSFilter implements ProductStructureFilter, Serializable {
+public class LatestReleasedPSFilter implements CacheablePSFilter, Serializable {
 
     private boolean diverge = false;
 
@@ -63,4 +63,9 @@ public class LatestReleasedPSFilter implements ProductStructureFilter, Serializa
         return links;
     }
 
+    @Override
+    public String getCacheKey() {
+        return "latest-released:" + diverge;
+    }
+
 }
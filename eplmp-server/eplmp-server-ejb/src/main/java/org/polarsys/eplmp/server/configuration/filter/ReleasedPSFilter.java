@@ -12,8 +12,8 @@
 
 package org.polarsys.eplmp.server.configuration.filter;
 
-import org.polarsys.eplmp.core.configuration.ProductStructureFilter;
 import org.polarsys.eplmp.core.product.*;
+import org.polarsys.eplmp.server.configuration.CacheablePSFilter;
 
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -28,7 +28,7 @@ import java.util.List;
  * @since   V2.0
  */
 
-public class ReleasedPSFilter implements ProductStructureFilter, Serializable {
+public class ReleasedPSFilter implements CacheablePSFilter, Serializable {
 
     private boolean diverge = false;
 
@@ -64,4 +64,9 @@ public class ReleasedPSFilter implements ProductStructureFilter, Serializable {
         return links;
     }
 
+    @Override
+    public String getCacheKey() {
+        return "released:" + diverge;
+    }
+
 }
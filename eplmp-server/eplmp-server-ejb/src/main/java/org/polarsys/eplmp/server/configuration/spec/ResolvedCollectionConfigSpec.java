@@ -17,6 +17,7 @@ import org.polarsys.eplmp.core.product.PartLink;
 import org.polarsys.eplmp.core.product.PartMaster;
 import org.polarsys.eplmp.core.product.PartSubstituteLink;
 import org.polarsys.eplmp.core.util.Tools;
+import org.polarsys.eplmp.server.configuration.CacheablePSFilter;
 
 import javax.validation.constraints.NotNull;
 import java.util.ArrayList;
@@ -27,11 +28,12 @@ import java.util.Set;
  *
  * @author Morgan Guimard
  */
-public class ResolvedCollectionConfigSpec extends ProductConfigSpec {
+public class ResolvedCollectionConfigSpec extends ProductConfigSpec implements CacheablePSFilter {
 
     private PartCollection partCollection;
     private Set<String> optionalUsageLinks;
     private Set<String> substitutesUsageLinks;
+    private String cacheKey;
 
     public ResolvedCollectionConfigSpec(@NotNull ResolvedCollection resolvedCollection) {
         this.partCollection = resolvedCollection.getPartCollection();
@@ -39,6 +41,14 @@ public class ResolvedCollectionConfigSpec extends ProductConfigSpec {
         this.substitutesUsageLinks = resolvedCollection.getSubstituteLinks();
     }
 
+    /**
+     * Baselines are frozen: the structures they resolve can be cached under the baseline id.
+     */
+    public ResolvedCollectionConfigSpec(@NotNull ProductBaseline productBaseline) {
+        this((ResolvedCollection) productBaseline);
+        this.cacheKey = "baseline:" + productBaseline.getId();
+    }
+
     @Override
     public PartIteration filterPartIteration(PartMaster part) {
         if(partCollection != null) {
@@ -75,4 +85,9 @@ public class ResolvedCollectionConfigSpec extends ProductConfigSpec {
 
     }
 
+    @Override
+    public String getCacheKey() {
+        return cacheKey;
+    }
+
 }
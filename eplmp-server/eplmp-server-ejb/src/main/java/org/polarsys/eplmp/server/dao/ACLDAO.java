@@ -14,14 +14,20 @@ package org.polarsys.eplmp.server.dao;
 import org.polarsys.eplmp.core.common.User;
 import org.polarsys.eplmp.core.common.UserGroup;
 import org.polarsys.eplmp.core.security.ACL;
+import org.polarsys.eplmp.core.security.ACLPermission;
 import org.polarsys.eplmp.core.security.ACLUserEntry;
 import org.polarsys.eplmp.core.security.ACLUserGroupEntry;
+import org.polarsys.eplmp.server.ACLPermissionIndex;
 
 import javax.enterprise.context.RequestScoped;
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
 import javax.persistence.Query;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
 
 @RequestScoped
 public class ACLDAO {
@@ -29,6 +35,9 @@ public class ACLDAO {
     @Inject
     private EntityManager em;
 
+    @Inject
+    private ACLPermissionIndex aclPermissionIndex;
+
     public ACLDAO() {
 
     }
@@ -43,9 +52,11 @@ public class ACLDAO {
         em.flush();
         acl.setGroupEntries(groupEntries);
         acl.setUserEntries(userEntries);
+        invalidatePermissions(acl);
     }
 
     public void removeACLEntries(ACL acl){
+        invalidatePermissions(acl);
         em.createNamedQuery("ACL.removeUserEntries").setParameter("aclId",acl.getId()).executeUpdate();
         em.createNamedQuery("ACL.removeUserGroupEntries").setParameter("aclId",acl.getId()).executeUpdate();
         em.flush();
@@ -54,6 +65,46 @@ public class ACLDAO {
     public void removeAclUserEntries(User pUser) {
         Query query = em.createQuery("DELETE FROM ACLUserEntry a WHERE a.principal = :user");
         query.setParameter("user", pUser).executeUpdate();
+        aclPermissionIndex.invalidateAfterTransaction(pUser.getWorkspaceId());
+    }
+
+    /**
+     * @return the permission granted to the user by each ACL of its workspace which has an entry for him
+     * or one of his groups
+     */
+    public Map<Integer, ACLPermission> getPermissions(User pUser) {
+        Map<Integer, ACLPermission> permissions = new HashMap<>();
+
+        // Any group of the user grants its permission
+        List<Object[]> groupPermissions = em.createNamedQuery("ACL.findUserGroupPermissions", Object[].class)
+                .setParameter("workspaceId", pUser.getWorkspaceId())
+                .setParameter("user", pUser)
+                .getResultList();
+        for (Object[] groupPermission : groupPermissions) {
+            permissions.merge((Integer) groupPermission[0], (ACLPermission) groupPermission[1],
+                    (permission1, permission2) -> permission1.compareTo(permission2) >= 0 ? permission1 : permission2);
+        }
+
+        // User entries override group entries
+        List<Object[]> userPermissions = em.createNamedQuery("ACL.findUserPermissions", Object[].class)
+                .setParameter("workspaceId", pUser.getWorkspaceId())
+                .setParameter("login", pUser.getLogin())
+                .getResultList();
+        for (Object[] userPermission : userPermissions) {
+            permissions.put((Integer) userPermission[0], (ACLPermission) userPermission[1]);
+        }
+
+        return permissions;
+    }
 
+    /**
+     * Invalidate the indexed permissions of the workspaces of the ACL entries
+     */
+    public void invalidatePermissions(ACL acl) {
+        Stream.concat(
+                acl.getUserEntries().keySet().stream().filter(Objects::nonNull).map(User::getWorkspaceId),
+                acl.getGroupEntries().keySet().stream().filter(Objects::nonNull).map(UserGroup::getWorkspaceId))
+                .distinct()
+                .forEach(aclPermissionIndex::invalidateAfterTransaction);
     }
 }
@@ -25,6 +25,10 @@ import org.polarsys.eplmp.core.product.PartMasterTemplate;
 import javax.enterprise.context.RequestScoped;
 import javax.inject.Inject;
 import javax.persistence.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -33,6 +37,9 @@ public class BinaryResourceDAO {
 
     private static final Logger LOGGER = Logger.getLogger(BinaryResourceDAO.class.getName());
 
+    // Keeps the IN clauses under the limits of the databases
+    private static final int MAX_NAMES_PER_QUERY = 500;
+
     @Inject
     private EntityManager em;
 
@@ -69,6 +76,10 @@ public class BinaryResourceDAO {
         return file;
     }
 
+    public BinaryResource findBinaryResource(String pFullName) {
+        return em.find(BinaryResource.class, pFullName);
+    }
+
     public boolean exists(String pFullName) {
         return em.find(BinaryResource.class, pFullName) != null;
     }
@@ -152,4 +163,43 @@ public class BinaryResourceDAO {
         }
     }
 
+    /**
+     * @return The content hash of each given binary resource, by full name. Binary resources which
+     * don't exist or don't have a content hash are missing from the map.
+     */
+    public Map<String, String> findContentHashes(List<String> pFullNames) {
+        Map<String, String> contentHashes = new HashMap<>();
+        List<String> fullNames = new ArrayList<>(pFullNames);
+        for (int from = 0; from < fullNames.size(); from += MAX_NAMES_PER_QUERY) {
+            List<String> names = fullNames.subList(from, Math.min(from + MAX_NAMES_PER_QUERY, fullNames.size()));
+            List<Object[]> rows = em.createNamedQuery("BinaryResource.findContentHashes", Object[].class)
+                    .setParameter("fullNames", names)
+                    .getResultList();
+            for (Object[] row : rows) {
+                contentHashes.put((String) row[0], (String) row[1]);
+            }
+        }
+        return contentHashes;
+    }
+
+    /**
+     * @return The next binary resources, ordered by full name, which don't have a content hash yet.
+     */
+    public List<BinaryResource> findBinaryResourcesWithoutContentHash(String pAfterFullName, int pMaxResults) {
+        return em.createNamedQuery("BinaryResource.findWithoutContentHash", BinaryResource.class)
+                .setParameter("after", pAfterFullName)
+                .setMaxResults(pMaxResults)
+                .getResultList();
+    }
+
+    /**
+     * @return The next binary resources, ordered by full name, whose location has not been resolved yet.
+     */
+    public List<BinaryResource> findUnlocatedBinaryResources(String pAfterFullName, int pMaxResults) {
+        return em.createNamedQuery("BinaryResource.findUnlocated", BinaryResource.class)
+                .setParameter("after", pAfterFullName)
+                .setMaxResults(pMaxResults)
+                .getResultList();
+    }
+
 }
@@ -67,10 +67,15 @@ public class DocumentMasterDAO {
         em.remove(pDocM);
     }
 
-    public List<DocumentMaster> getPaginatedByWorkspace(String workspaceId, int limit, int offset) {
-        return em.createNamedQuery("DocumentMaster.findByWorkspace",DocumentMaster.class)
-                .setParameter("workspaceId",workspaceId)
-                .setFirstResult(offset)
+    /**
+     * Keyset pagination over the masters of a workspace, ordered by their key.
+     *
+     * @param after key of the last master of the previous page, null for the first page
+     */
+    public List<DocumentMaster> getNextPageByWorkspace(String workspaceId, String after, int limit) {
+        return em.createNamedQuery("DocumentMaster.findByWorkspaceAfter", DocumentMaster.class)
+                .setParameter("workspaceId", workspaceId)
+                .setParameter("after", after == null ? "" : after)
                 .setMaxResults(limit)
                 .getResultList();
     }
@@ -0,0 +1,66 @@
+/*******************************************************************************
+  * Copyright (c) 2017-2019 DocDoku.
+  * All rights reserved. This program and the accompanying materials
+  * are made available under the terms of the Eclipse Public License v1.0
+  * which accompanies this distribution, and is available at
+  * http://www.eclipse.org/legal/epl-v10.html
+  *
+  * Contributors:
+  *    DocDoku - initial API and implementation
+  *******************************************************************************/
+
+package org.polarsys.eplmp.server.dao;
+
+import org.polarsys.eplmp.core.indexer.IndexationRequest;
+
+import javax.enterprise.context.RequestScoped;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import java.util.Date;
+import java.util.List;
+
+@RequestScoped
+public class IndexationRequestDAO {
+
+    @Inject
+    private EntityManager em;
+
+    public IndexationRequestDAO() {
+    }
+
+    public void createRequest(IndexationRequest pRequest) {
+        em.persist(pRequest);
+    }
+
+    /**
+     * @return The oldest requests which are not postponed at the given date.
+     */
+    public List<IndexationRequest> findPendingRequests(Date pNow, int pMaxResults) {
+        return em.createNamedQuery("IndexationRequest.findPending", IndexationRequest.class)
+                .setParameter("now", pNow)
+                .setMaxResults(pMaxResults)
+                .getResultList();
+    }
+
+    /**
+     * Remove the given request, and the previous requests of the same iteration it supersedes.
+     */
+    public void removeRequests(IndexationRequest pLastRequest) {
+        em.createNamedQuery("IndexationRequest.removeByIteration")
+                .setParameter("targetType", pLastRequest.getTargetType())
+                .setParameter("workspaceId", pLastRequest.getWorkspaceId())
+                .setParameter("targetId", pLastRequest.getTargetId())
+                .setParameter("version", pLastRequest.getVersion())
+                .setParameter("iteration", pLastRequest.getIteration())
+                .setParameter("maxId", pLastRequest.getId())
+                .executeUpdate();
+    }
+
+    public long countRequests() {
+        return em.createNamedQuery("IndexationRequest.count", Long.class).getSingleResult();
+    }
+
+    public Date getOldestRequestDate() {
+        return em.createNamedQuery("IndexationRequest.oldestCreationDate", Date.class).getSingleResult();
+    }
+}
@@ -18,12 +18,14 @@ import org.polarsys.eplmp.core.product.*;
 import javax.enterprise.context.RequestScoped;
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
-import java.util.List;
+import java.util.*;
 
 
 @RequestScoped
 public class PartIterationDAO {
 
+    private static final int IN_CLAUSE_CHUNK_SIZE = 500;
+
     @Inject
     private EntityManager em;
 
@@ -42,6 +44,42 @@ public class PartIterationDAO {
         }
     }
 
+    /**
+     * Load the given iterations of a workspace with as few queries as possible.
+     * Iterations which no longer exist are missing from the result.
+     *
+     * @return the loaded iterations indexed by key
+     */
+    public Map<PartIterationKey, PartIteration> loadPartIterations(String pWorkspaceId, Collection<PartIterationKey> pKeys) {
+        Map<PartIterationKey, PartIteration> partIterations = new HashMap<>();
+        List<PartIterationKey> keys = new ArrayList<>(new HashSet<>(pKeys));
+        for (int i = 0; i < keys.size(); i += IN_CLAUSE_CHUNK_SIZE) {
+            List<PartIterationKey> chunk = keys.subList(i, Math.min(i + IN_CLAUSE_CHUNK_SIZE, keys.size()));
+            Set<String> numbers = new HashSet<>();
+            Set<String> versions = new HashSet<>();
+            Set<Integer> iterations = new HashSet<>();
+            for (PartIterationKey key : chunk) {
+                numbers.add(key.getPartMasterNumber());
+                versions.add(key.getPartRevisionVersion());
+                iterations.add(key.getIteration());
+            }
+            // The query matches each criterion separately, only the requested keys are kept
+            Set<PartIterationKey> requested = new HashSet<>(chunk);
+            List<PartIteration> results = em.createNamedQuery("PartIteration.findByRevisions", PartIteration.class)
+                    .setParameter("workspaceId", pWorkspaceId)
+                    .setParameter("numbers", numbers)
+                    .setParameter("versions", versions)
+                    .setParameter("iterations", iterations)
+                    .getResultList();
+            for (PartIteration partIteration : results) {
+                if (requested.contains(partIteration.getKey())) {
+                    partIterations.put(partIteration.getKey(), partIteration);
+                }
+            }
+        }
+        return partIterations;
+    }
+
     public void removeIteration(PartIteration pPartI) {
         conversionDAO.removePartIterationConversion(pPartI);
         for (PartUsageLink partUsageLink : pPartI.getComponents()) {
@@ -24,7 +24,7 @@ import javax.persistence.*;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
-import java.util.List;
+import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -32,6 +32,7 @@ import java.util.logging.Logger;
 public class PartMasterDAO {
 
     public static final String WORKSPACE_ID = "workspaceId";
+    private static final int IN_CLAUSE_CHUNK_SIZE = 500;
 
     @Inject
     private EntityManager em;
@@ -56,6 +57,28 @@ public class PartMasterDAO {
         }
     }
 
+    /**
+     * Load the given part masters with as few queries as possible.
+     * Numbers are sent by chunks to stay under database parameter limits.
+     *
+     * @return the loaded part masters indexed by number
+     */
+    public Map<String, PartMaster> loadPartMasters(String pWorkspaceId, Collection<String> pNumbers) {
+        Map<String, PartMaster> partMasters = new HashMap<>();
+        List<String> numbers = new ArrayList<>(new HashSet<>(pNumbers));
+        for (int i = 0; i < numbers.size(); i += IN_CLAUSE_CHUNK_SIZE) {
+            List<String> chunk = numbers.subList(i, Math.min(i + IN_CLAUSE_CHUNK_SIZE, numbers.size()));
+            List<PartMaster> results = em.createNamedQuery("PartMaster.findByNumbers", PartMaster.class)
+                    .setParameter(WORKSPACE_ID, pWorkspaceId)
+                    .setParameter("numbers", chunk)
+                    .getResultList();
+            for (PartMaster partMaster : results) {
+                partMasters.put(partMaster.getNumber(), partMaster);
+            }
+        }
+        return partMasters;
+    }
+
     public PartMaster getPartMRef(PartMasterKey pKey) throws PartMasterNotFoundException {
         try {
             return em.getReference(PartMaster.class, pKey);
@@ -142,10 +165,15 @@ public class PartMasterDAO {
         return result != null ? result.longValue() : 0L;
     }
 
-    public List<PartMaster> getPaginatedByWorkspace(String workspaceId, int limit, int offset) {
-        return em.createNamedQuery("PartMaster.findByWorkspace",PartMaster.class)
-                .setParameter(WORKSPACE_ID,workspaceId)
-                .setFirstResult(offset)
+    /**
+     * Keyset pagination over the masters of a workspace, ordered by their key.
+     *
+     * @param after key of the last master of the previous page, null for the first page
+     */
+    public List<PartMaster> getNextPageByWorkspace(String workspaceId, String after, int limit) {
+        return em.createNamedQuery("PartMaster.findByWorkspaceAfter", PartMaster.class)
+                .setParameter(WORKSPACE_ID, workspaceId)
+                .setParameter("after", after == null ? "" : after)
                 .setMaxResults(limit)
                 .getResultList();
     }
@@ -12,22 +12,17 @@
 package org.polarsys.eplmp.server.dao;
 
 import org.polarsys.eplmp.core.common.Workspace;
-import org.polarsys.eplmp.core.meta.*;
-import org.polarsys.eplmp.core.product.InstancePartNumberAttribute;
+import org.polarsys.eplmp.core.meta.Tag;
 import org.polarsys.eplmp.core.product.PartIteration;
 import org.polarsys.eplmp.core.product.PartRevision;
+import org.polarsys.eplmp.core.product.PartRevisionKey;
 import org.polarsys.eplmp.core.query.Query;
 import org.polarsys.eplmp.core.query.QueryRule;
 
-import javax.annotation.PostConstruct;
 import javax.enterprise.context.RequestScoped;
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
-import javax.persistence.TypedQuery;
-import javax.persistence.criteria.CriteriaBuilder;
-import javax.persistence.criteria.CriteriaQuery;
-import javax.persistence.criteria.Predicate;
-import javax.persistence.criteria.Root;
+import javax.persistence.criteria.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
@@ -40,111 +35,81 @@ import java.util.stream.Collectors;
 @RequestScoped
 public class PartRevisionQueryDAO {
 
-    public static final String STRING = "string";
-    public static final String INSTANCE_ATTRIBUTES = "instanceAttributes";
+    private static final String ATTRIBUTE_PREFIX = "attr-";
 
     @Inject
     private EntityManager em;
 
     private CriteriaBuilder cb;
-    private CriteriaQuery<PartRevision> cq;
+    private Subquery<Integer> iterations;
 
     private Root<PartRevision> pr;
     private Root<PartIteration> pi;
-    private Root<Tag> tag;
-    private Root<InstanceURLAttribute> iua;
-    private Root<InstanceBooleanAttribute> iba;
-    private Root<InstanceNumberAttribute> ina;
-    private Root<InstanceListOfValuesAttribute> ila;
-    private Root<InstanceDateAttribute> ida;
-    private Root<InstanceTextAttribute> ita;
-    private Root<InstanceLongTextAttribute> ilta;
-    private Root<InstancePartNumberAttribute> ipna;
-
-    @PostConstruct
-    private void setup() {
-        cb = em.getCriteriaBuilder();
-
-        cq = cb.createQuery(PartRevision.class);
-        pr = cq.from(PartRevision.class);
-        pi = cq.from(PartIteration.class);
-        tag = cq.from(Tag.class);
-
-        iua = cq.from(InstanceURLAttribute.class);
-        iba = cq.from(InstanceBooleanAttribute.class);
-        ina = cq.from(InstanceNumberAttribute.class);
-        ila = cq.from(InstanceListOfValuesAttribute.class);
-        ida = cq.from(InstanceDateAttribute.class);
-        ilta = cq.from(InstanceLongTextAttribute.class);
-        ipna = cq.from(InstancePartNumberAttribute.class);
-        ita = cq.from(InstanceTextAttribute.class);
-    }
 
     public List<PartRevision> runQuery(String pTimeZone, Workspace workspace, Query query) {
 
-        cq.select(pr);
-
-        Predicate prJoinPredicate = cb.and(
-                cb.equal(pi.get("partRevision"), pr),
-                cb.equal(pr.get("partMaster").get("workspace"), workspace)
-        );
-
-        Predicate rulesPredicate = getPredicate(pTimeZone, query.getQueryRule());
-
-        cq.where(cb.and(
-                prJoinPredicate,
-                rulesPredicate
-        ));
+        CriteriaQuery<PartRevision> cq = createQuery(pTimeZone, workspace, query);
 
-        TypedQuery<PartRevision> tp = em.createQuery(cq);
-
-        Set<PartRevision> revisions = tp.getResultList().stream()
+        Set<PartRevision> revisions = em.createQuery(cq).getResultList().stream()
                 .filter(part -> part.getLastCheckedInIteration() != null)
                 .collect(Collectors.toSet());
 
         return new ArrayList<>(revisions);
     }
 
-    private Predicate getPredicate(String pTimeZone, QueryRule queryRule) {
+    /**
+     * Keyset pagination: returns at most maxResults revisions matching the query, ordered by part number then
+     * version, starting right after the given revision (or from the first one if null).
+     *
+     * The revisions are returned as they are found in the database, the caller has to skip the revisions which
+     * were never checked in.
+     */
+    public List<PartRevision> runQuery(String pTimeZone, Workspace workspace, Query query, PartRevisionKey after, int maxResults) {
 
-        if (queryRule == null) {
-            return cb.and();
+        CriteriaQuery<PartRevision> cq = createQuery(pTimeZone, workspace, query);
+
+        if (after != null) {
+            Path<String> number = pr.get("partMasterNumber");
+            Path<String> version = pr.get("version");
+            cq.where(cq.getRestriction(), cb.or(
+                    cb.greaterThan(number, after.getPartMasterNumber()),
+                    cb.and(cb.equal(number, after.getPartMasterNumber()), cb.greaterThan(version, after.getVersion()))
+            ));
         }
 
-        String condition = queryRule.getCondition();
+        cq.orderBy(cb.asc(pr.get("partMasterNumber")), cb.asc(pr.get("version")));
 
-        List<QueryRule> subQueryRules = queryRule.getSubQueryRules();
+        return em.createQuery(cq)
+                .setMaxResults(maxResults)
+                .getResultList();
+    }
 
-        if (subQueryRules != null && !subQueryRules.isEmpty()) {
+    private CriteriaQuery<PartRevision> createQuery(String pTimeZone, Workspace workspace, Query query) {
 
-            Predicate[] predicates = new Predicate[subQueryRules.size()];
+        cb = em.getCriteriaBuilder();
+        CriteriaQuery<PartRevision> cq = cb.createQuery(PartRevision.class);
+        pr = cq.from(PartRevision.class);
 
-            for (int i = 0; i < predicates.length; i++) {
-                Predicate predicate = getPredicate(pTimeZone, subQueryRules.get(i));
-                predicates[i] = predicate;
-            }
+        // At least one iteration of the revision must match all the rules
+        iterations = cq.subquery(Integer.class);
+        pi = iterations.from(PartIteration.class);
+        QueryRuleCompiler compiler = new QueryRuleCompiler(cb, iterations, pi, ATTRIBUTE_PREFIX, pTimeZone,
+                rule -> getRulePredicate(pTimeZone, rule));
+        iterations.select(pi.get("iteration"));
+        iterations.where(cb.equal(pi.get("partRevision"), pr), compiler.compile(query.getQueryRule()));
 
-            if ("OR".equals(condition)) {
-                return cb.or(predicates);
-            } else if ("AND".equals(condition)) {
-                return cb.and(predicates);
-            }
-
-            throw new IllegalArgumentException("Cannot parse rule or sub rule condition: " + condition + " ");
+        cq.select(pr);
+        cq.where(
+                cb.equal(pr.get("partMaster").get("workspace"), workspace),
+                cb.exists(iterations)
+        );
 
-        } else {
-            return getRulePredicate(pTimeZone, queryRule);
-        }
+        return cq;
     }
 
     private Predicate getRulePredicate(String pTimeZone, QueryRule queryRule) {
 
         String field = queryRule.getField();
-
-        if (field == null) {
-            return cb.and();
-        }
-
         String operator = queryRule.getOperator();
         List<String> values = queryRule.getValues();
         String type = queryRule.getType();
@@ -161,38 +126,6 @@ public class PartRevisionQueryDAO {
             return getAuthorPredicate(pTimeZone, field.substring(7), operator, values, type);
         }
 
-        if (field.startsWith("attr-TEXT.")) {
-            return getInstanceTextAttributePredicate(pTimeZone, field.substring(10), operator, values);
-        }
-
-        if (field.startsWith("attr-LONG_TEXT.")) {
-            return getInstanceLongTextAttributePredicate(pTimeZone, field.substring(15), operator, values);
-        }
-
-        if (field.startsWith("attr-DATE.")) {
-            return getInstanceDateAttributePredicate(pTimeZone, field.substring(10), operator, values);
-        }
-
-        if (field.startsWith("attr-BOOLEAN.")) {
-            return getInstanceBooleanAttributePredicate(field.substring(13), operator, values);
-        }
-
-        if (field.startsWith("attr-URL.")) {
-            return getInstanceURLAttributePredicate(pTimeZone, field.substring(9), operator, values);
-        }
-
-        if (field.startsWith("attr-NUMBER.")) {
-            return getInstanceNumberAttributePredicate(pTimeZone, field.substring(12), operator, values);
-        }
-
-        if (field.startsWith("attr-LOV.")) {
-            return getInstanceLovAttributePredicate(field.substring(9), operator, values);
-        }
-
-        if (field.startsWith("attr-PART_NUMBER.")) {
-            return getInstancePartNumberAttributePredicate(pTimeZone, field.substring(17), operator, values);
-        }
-
         throw new IllegalArgumentException("Unhandled attribute: [" + field + ", " + operator + ", " + values + "]");
     }
 
@@ -222,86 +155,15 @@ public class PartRevisionQueryDAO {
     }
 
     private Predicate getTagsPredicate(List<String> values) {
-        Predicate prPredicate = tag.in(pr.get("tags"));
-        Predicate valuesPredicate = cb.equal(tag.get("label"), values);
-        return cb.and(prPredicate, valuesPredicate);
+        Subquery<String> tags = iterations.subquery(String.class);
+        Root<PartRevision> correlatedRevision = tags.correlate(pr);
+        Join<PartRevision, Tag> tag = correlatedRevision.join("tags");
+        tags.select(tag.get("label"));
+        tags.where(tag.get("label").in(values));
+        return cb.exists(tags);
     }
 
     private Predicate getPartMasterPredicate(String pTimeZone, String field, String operator, List<String> values, String type) {
         return QueryPredicateBuilder.getExpressionPredicate(cb, pr.get("partMaster").get(field), operator, values, type, pTimeZone);
     }
-
-    // Instances Attributes
-    private Predicate getInstanceURLAttributePredicate(String pTimeZone, String field, String operator, List<String> values) {
-
-        Predicate valuesPredicate = QueryPredicateBuilder.getExpressionPredicate(cb, iua.get("urlValue"), operator, values, STRING, pTimeZone);
-        Predicate memberPredicate = iua.in(pi.get(INSTANCE_ATTRIBUTES));
-        return cb.and(cb.equal(iua.get("name"), field), valuesPredicate, memberPredicate);
-    }
-
-    private Predicate getInstanceBooleanAttributePredicate(String field, String operator, List<String> values) {
-        if (values.size() == 1) {
-            Predicate valuesPredicate = cb.equal(iba.get("booleanValue"), Boolean.parseBoolean(values.get(0)));
-            Predicate memberPredicate = iba.in(pi.get(INSTANCE_ATTRIBUTES));
-            switch (operator) {
-                case "equal":
-                    return cb.and(cb.equal(iba.get("name"), field), valuesPredicate, memberPredicate);
-                case "not_equal":
-                    return cb.and(cb.equal(iba.get("name"), field), valuesPredicate.not(), memberPredicate);
-                default:
-                    break;
-            }
-        }
-
-        throw new IllegalArgumentException("Cannot handle such operator [" + operator + "] on field " + field + "]");
-    }
-
-    private Predicate getInstanceNumberAttributePredicate(String pTimeZone, String field, String operator, List<String> values) {
-        Predicate valuesPredicate = QueryPredicateBuilder.getExpressionPredicate(cb, ina.get("numberValue"), operator, values, "double", pTimeZone);
-        Predicate memberPredicate = ina.in(pi.get(INSTANCE_ATTRIBUTES));
-        return cb.and(cb.equal(ina.get("name"), field), valuesPredicate, memberPredicate);
-    }
-
-    private Predicate getInstanceLovAttributePredicate(String field, String operator, List<String> values) {
-        if (values.size() == 1) {
-            Predicate valuesPredicate = cb.equal(ila.get("indexValue"), Integer.parseInt(values.get(0)));
-            Predicate memberPredicate = ila.in(pi.get(INSTANCE_ATTRIBUTES));
-            switch (operator) {
-                case "equal":
-                    return cb.and(cb.equal(ila.get("name"), field), valuesPredicate, memberPredicate);
-                case "not_equal":
-                    return cb.and(cb.equal(ila.get("name"), field), valuesPredicate.not(), memberPredicate);
-                default:
-                    break;
-            }
-        }
-
-        throw new IllegalArgumentException("Cannot handle such operator [" + operator + "] on field " + field + "]");
-    }
-
-    private Predicate getInstanceDateAttributePredicate(String pTimeZone, String field, String operator, List<String> values) {
-        Predicate valuesPredicate = QueryPredicateBuilder.getExpressionPredicate(cb, ida.get("dateValue"), operator, values, "date", pTimeZone);
-        Predicate memberPredicate = ida.in(pi.get(INSTANCE_ATTRIBUTES));
-        return cb.and(cb.equal(ida.get("name"), field), valuesPredicate, memberPredicate);
-    }
-
-    private Predicate getInstanceLongTextAttributePredicate(String pTimeZone, String field, String operator, List<String> values) {
-        Predicate valuesPredicate = QueryPredicateBuilder.getExpressionPredicate(cb, ilta.get("longTextValue"), operator, values, STRING, pTimeZone);
-        Predicate memberPredicate = ilta.in(pi.get(INSTANCE_ATTRIBUTES));
-        return cb.and(cb.equal(ita.get("name"), field), valuesPredicate, memberPredicate);
-    }
-
-    private Predicate getInstancePartNumberAttributePredicate(String pTimeZone, String field, String operator, List<String> values) {
-        Predicate valuesPredicate = QueryPredicateBuilder.getExpressionPredicate(cb, ipna.get("partMasterValue").get("number"), operator, values, STRING, pTimeZone);
-        Predicate memberPredicate = ipna.in(pi.get(INSTANCE_ATTRIBUTES));
-        return cb.and(cb.equal(ita.get("name"), field), valuesPredicate, memberPredicate);
-    }
-
-    private Predicate getInstanceTextAttributePredicate(String pTimeZone, String field, String operator, List<String> values) {
-        Predicate valuesPredicate = QueryPredicateBuilder.getExpressionPredicate(cb, ita.get("textValue"), operator, values, STRING, pTimeZone);
-        Predicate memberPredicate = ita.in(pi.get(INSTANCE_ATTRIBUTES));
-        return cb.and(cb.equal(ita.get("name"), field), valuesPredicate, memberPredicate);
-    }
 }
-
-
@@ -19,13 +19,14 @@ import org.polarsys.eplmp.core.product.PartUsageLink;
 import javax.enterprise.context.RequestScoped;
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 
 @RequestScoped
 public class PartUsageLinkDAO {
 
+    private static final int IN_CLAUSE_CHUNK_SIZE = 500;
+
     @Inject
     private EntityManager em;
 
@@ -106,6 +107,39 @@ public class PartUsageLinkDAO {
         }
     }
 
+    /**
+     * @return the existing usage links among the given ones, indexed by id
+     */
+    public Map<Integer, PartUsageLink> loadPartUsageLinks(Collection<Integer> pIds) {
+        Map<Integer, PartUsageLink> links = new HashMap<>();
+        for (PartUsageLink link : findByIds("PartUsageLink.findByIds", PartUsageLink.class, pIds)) {
+            links.put(link.getId(), link);
+        }
+        return links;
+    }
+
+    /**
+     * @return the existing substitute links among the given ones, indexed by id
+     */
+    public Map<Integer, PartSubstituteLink> loadPartSubstituteLinks(Collection<Integer> pIds) {
+        Map<Integer, PartSubstituteLink> links = new HashMap<>();
+        for (PartSubstituteLink link : findByIds("PartSubstituteLink.findByIds", PartSubstituteLink.class, pIds)) {
+            links.put(link.getId(), link);
+        }
+        return links;
+    }
+
+    private <T> List<T> findByIds(String queryName, Class<T> linkClass, Collection<Integer> pIds) {
+        List<T> results = new ArrayList<>();
+        List<Integer> ids = new ArrayList<>(new HashSet<>(pIds));
+        for (int i = 0; i < ids.size(); i += IN_CLAUSE_CHUNK_SIZE) {
+            results.addAll(em.createNamedQuery(queryName, linkClass)
+                    .setParameter("ids", ids.subList(i, Math.min(i + IN_CLAUSE_CHUNK_SIZE, ids.size())))
+                    .getResultList());
+        }
+        return results;
+    }
+
     public void removeOrphanPartLinks() {
         List<PartUsageLink> partUsageLinks = em.createNamedQuery("PartUsageLink.findOrphans", PartUsageLink.class).getResultList();
 
@@ -20,6 +20,7 @@ import org.polarsys.eplmp.core.product.ConfigurationItem;
 import org.polarsys.eplmp.core.product.PartLink;
 import org.polarsys.eplmp.core.product.PartUsageLink;
 import org.polarsys.eplmp.core.product.PathToPathLink;
+import org.polarsys.eplmp.server.PathPartLinkIndexer;
 
 import javax.enterprise.context.RequestScoped;
 import javax.inject.Inject;
@@ -30,8 +31,10 @@ import javax.persistence.PersistenceException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 /**
  * @author morgan on 29/04/15.
@@ -50,6 +53,9 @@ public class PathToPathLinkDAO {
     @Inject
     private EntityManager em;
 
+    @Inject
+    private PathPartLinkIndexer pathPartLinkIndexer;
+
     public PathToPathLinkDAO() {
     }
 
@@ -173,11 +179,19 @@ public class PathToPathLinkDAO {
                 .getResultList();
     }
 
-    public List<PathToPathLink> getPathToPathLinkFromPathList(ConfigurationItem configurationItem, List<String> paths) {
-        return em.createNamedQuery("PathToPathLink.findPathToPathLinkByPathListInProduct", PathToPathLink.class)
+    /**
+     * Get the links of the configuration item whose source and target paths are both in the given set.
+     *
+     * The links are loaded once and joined against the set in memory: binding the paths
+     * to an IN clause does not scale with the size of the product structure.
+     */
+    public List<PathToPathLink> getPathToPathLinkFromPathList(ConfigurationItem configurationItem, Set<String> paths) {
+        return em.createNamedQuery("PathToPathLink.findPathToPathLinkByProduct", PathToPathLink.class)
                 .setParameter(CONFIGURATION_ITEM, configurationItem)
-                .setParameter("paths",paths)
-                .getResultList();
+                .getResultList()
+                .stream()
+                .filter(link -> paths.contains(link.getSourcePath()) && paths.contains(link.getTargetPath()))
+                .collect(Collectors.toList());
     }
 
     public List<PathToPathLink> getSourcesPathToPathLinksInProduct(ConfigurationItem configurationItem, String type, String source) {
@@ -197,12 +211,28 @@ public class PathToPathLinkDAO {
     }
 
     public List<PathToPathLink> getPathToPathLinksFromPartialPath(String usageLinkId){
+        if (pathPartLinkIndexer.isIndexed()) {
+            return em.createNamedQuery("PathToPathLink.findLinksByPartLink", PathToPathLink.class)
+                    .setParameter("partLinkFullId", usageLinkId)
+                    .getResultList();
+        }
+        // Links created before the part links were indexed may not be indexed yet
         return em.createNamedQuery("PathToPathLink.findLinksWherePartialPathIsPresent", PathToPathLink.class)
                 .setParameter("inChain", "%" + usageLinkId + "-%")
                 .setParameter("endOfChain", "%" + usageLinkId)
                 .getResultList();
     }
 
+    /**
+     * @return The next links, ordered by id, whose part links have not been indexed yet.
+     */
+    public List<PathToPathLink> findUnindexedPathToPathLinks(int afterId, int maxResults) {
+        return em.createNamedQuery("PathToPathLink.findUnindexed", PathToPathLink.class)
+                .setParameter("after", afterId)
+                .setMaxResults(maxResults)
+                .getResultList();
+    }
+
     public void removePathToPathLinks(String usageLinkId) {
 
         List<PathToPathLink> pathToPathLinks = getPathToPathLinksFromPartialPath(usageLinkId);
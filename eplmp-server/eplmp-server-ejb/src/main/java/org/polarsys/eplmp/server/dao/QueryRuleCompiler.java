@@ -0,0 +1,184 @@
+/*******************************************************************************
+  * Copyright (c) 2017-2019 DocDoku.
+  * All rights reserved. This program and the accompanying materials
+  * are made available under the terms of the Eclipse Public License v1.0
+  * which accompanies this distribution, and is available at
+  * http://www.eclipse.org/legal/epl-v10.html
+  *
+  * Contributors:
+  *    DocDoku - initial API and implementation
+  *******************************************************************************/
+package org.polarsys.eplmp.server.dao;
+
+import org.polarsys.eplmp.core.meta.*;
+import org.polarsys.eplmp.core.product.InstancePartNumberAttribute;
+import org.polarsys.eplmp.core.query.QueryRule;
+
+import javax.persistence.criteria.*;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Compiles a {@link QueryRule} tree into a criteria {@link Predicate}.
+ *
+ * Each instance attribute rule becomes its own correlated EXISTS subquery on the attributes of
+ * the owner root (a part iteration or a path data iteration), restricted to the attribute type
+ * of the rule. Only the attribute types actually referenced by the rules are queried, instead
+ * of cross joining every attribute type in the main query.
+ *
+ * Rules on other fields are delegated to the given field compiler.
+ */
+public class QueryRuleCompiler {
+
+    public static final String INSTANCE_ATTRIBUTES = "instanceAttributes";
+
+    private static final String STRING = "string";
+
+    private final CriteriaBuilder cb;
+    private final AbstractQuery<?> query;
+    private final Root<?> owner;
+    private final String attributePrefix;
+    private final String timeZone;
+    private final Function<QueryRule, Predicate> fieldCompiler;
+
+    /**
+     * @param cb              the criteria builder
+     * @param query           the query (or subquery) the owner root belongs to
+     * @param owner           the root holding the instance attributes
+     * @param attributePrefix the prefix of the attribute fields, e.g. "attr-"
+     * @param timeZone        the time zone used to parse the dates
+     * @param fieldCompiler   compiles the rules on other fields, may be null if there are none
+     */
+    public QueryRuleCompiler(CriteriaBuilder cb, AbstractQuery<?> query, Root<?> owner, String attributePrefix,
+                             String timeZone, Function<QueryRule, Predicate> fieldCompiler) {
+        this.cb = cb;
+        this.query = query;
+        this.owner = owner;
+        this.attributePrefix = attributePrefix;
+        this.timeZone = timeZone;
+        this.fieldCompiler = fieldCompiler;
+    }
+
+    public Predicate compile(QueryRule queryRule) {
+
+        if (queryRule == null) {
+            return cb.and();
+        }
+
+        String condition = queryRule.getCondition();
+
+        List<QueryRule> subQueryRules = queryRule.getSubQueryRules();
+
+        if (subQueryRules != null && !subQueryRules.isEmpty()) {
+
+            Predicate[] predicates = new Predicate[subQueryRules.size()];
+
+            for (int i = 0; i < predicates.length; i++) {
+                predicates[i] = compile(subQueryRules.get(i));
+            }
+
+            if ("OR".equals(condition)) {
+                return cb.or(predicates);
+            } else if ("AND".equals(condition)) {
+                return cb.and(predicates);
+            }
+
+            throw new IllegalArgumentException("Cannot parse rule or sub rule condition: " + condition + " ");
+
+        } else {
+            return compileRule(queryRule);
+        }
+    }
+
+    private Predicate compileRule(QueryRule queryRule) {
+
+        String field = queryRule.getField();
+
+        if (field == null) {
+            return cb.and();
+        }
+
+        if (field.startsWith(attributePrefix)) {
+            return getInstanceAttributePredicate(field.substring(attributePrefix.length()), queryRule.getOperator(), queryRule.getValues());
+        }
+
+        if (fieldCompiler != null) {
+            return fieldCompiler.apply(queryRule);
+        }
+
+        throw new IllegalArgumentException("Unhandled attribute: [" + field + ", " + queryRule.getOperator() + ", " + queryRule.getValues() + "]");
+    }
+
+    private Predicate getInstanceAttributePredicate(String typeAndName, String operator, List<String> values) {
+
+        int separator = typeAndName.indexOf('.');
+        String type = separator == -1 ? typeAndName : typeAndName.substring(0, separator);
+        String name = typeAndName.substring(separator + 1);
+
+        switch (type) {
+            case "TEXT":
+                return exists(InstanceTextAttribute.class, name,
+                        a -> QueryPredicateBuilder.getExpressionPredicate(cb, a.get("textValue"), operator, values, STRING, timeZone));
+            case "LONG_TEXT":
+                return exists(InstanceLongTextAttribute.class, name,
+                        a -> QueryPredicateBuilder.getExpressionPredicate(cb, a.get("longTextValue"), operator, values, STRING, timeZone));
+            case "DATE":
+                return exists(InstanceDateAttribute.class, name,
+                        a -> QueryPredicateBuilder.getExpressionPredicate(cb, a.get("dateValue"), operator, values, "date", timeZone));
+            case "URL":
+                return exists(InstanceURLAttribute.class, name,
+                        a -> QueryPredicateBuilder.getExpressionPredicate(cb, a.get("urlValue"), operator, values, STRING, timeZone));
+            case "NUMBER":
+                return exists(InstanceNumberAttribute.class, name,
+                        a -> QueryPredicateBuilder.getExpressionPredicate(cb, a.get("numberValue"), operator, values, QueryPredicateBuilder.DOUBLE, timeZone));
+            case "PART_NUMBER":
+                return exists(InstancePartNumberAttribute.class, name,
+                        a -> QueryPredicateBuilder.getExpressionPredicate(cb, a.get("partMasterValue").get("number"), operator, values, STRING, timeZone));
+            case "BOOLEAN":
+                if (values.size() == 1) {
+                    Boolean value = Boolean.parseBoolean(values.get(0));
+                    return exists(InstanceBooleanAttribute.class, name, a -> getEqualityPredicate(a.get("booleanValue"), value, operator, name));
+                }
+                break;
+            case "LOV":
+                if (values.size() == 1) {
+                    Integer value = Integer.parseInt(values.get(0));
+                    return exists(InstanceListOfValuesAttribute.class, name, a -> getEqualityPredicate(a.get("indexValue"), value, operator, name));
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unhandled attribute: [" + attributePrefix + typeAndName + ", " + operator + ", " + values + "]");
+        }
+
+        throw new IllegalArgumentException("Cannot handle such operator [" + operator + "] on field " + name + "]");
+    }
+
+    private Predicate getEqualityPredicate(Expression<?> expression, Object value, String operator, String name) {
+        switch (operator) {
+            case "equal":
+                return cb.equal(expression, value);
+            case "not_equal":
+                return cb.equal(expression, value).not();
+            default:
+                throw new IllegalArgumentException("Cannot handle such operator [" + operator + "] on field " + name + "]");
+        }
+    }
+
+    /**
+     * EXISTS (SELECT a.id FROM owner o JOIN TREAT(o.instanceAttributes AS type) a WHERE o = owner AND a.name = name AND valuePredicate)
+     */
+    private <A extends InstanceAttribute> Predicate exists(Class<A> type, String name, Function<Join<?, A>, Predicate> valuePredicate) {
+        Subquery<Integer> subquery = query.subquery(Integer.class);
+        Root<?> correlatedOwner = correlate(subquery, owner);
+        Join<Object, InstanceAttribute> attributes = correlatedOwner.join(INSTANCE_ATTRIBUTES);
+        Join<Object, A> attribute = cb.treat(attributes, type);
+
+        subquery.select(attribute.get("id"));
+        subquery.where(cb.equal(attribute.get("name"), name), valuePredicate.apply(attribute));
+        return cb.exists(subquery);
+    }
+
+    private static <T> Root<T> correlate(Subquery<?> subquery, Root<T> root) {
+        return subquery.correlate(root);
+    }
+}
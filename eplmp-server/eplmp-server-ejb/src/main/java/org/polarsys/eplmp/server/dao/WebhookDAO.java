@@ -38,6 +38,9 @@ public class WebhookDAO {
     }
 
     public void removeWebhook(Webhook w) {
+        em.createNamedQuery("WebhookDelivery.removeByWebhook")
+                .setParameter("webhookId", w.getId())
+                .executeUpdate();
         em.remove(w);
         em.flush();
     }
@@ -0,0 +1,67 @@
+/*******************************************************************************
+  * Copyright (c) 2017-2019 DocDoku.
+  * All rights reserved. This program and the accompanying materials
+  * are made available under the terms of the Eclipse Public License v1.0
+  * which accompanies this distribution, and is available at
+  * http://www.eclipse.org/legal/epl-v10.html
+  *
+  * Contributors:
+  *    DocDoku - initial API and implementation
+  *******************************************************************************/
+
+package org.polarsys.eplmp.server.dao;
+
+import org.polarsys.eplmp.core.hooks.WebhookDelivery;
+
+import javax.enterprise.context.RequestScoped;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+@RequestScoped
+public class WebhookDeliveryDAO {
+
+    @Inject
+    private EntityManager em;
+
+    public WebhookDeliveryDAO() {
+    }
+
+    public void createDelivery(WebhookDelivery pDelivery) {
+        em.persist(pDelivery);
+    }
+
+    public WebhookDelivery findDelivery(long pId) {
+        return em.find(WebhookDelivery.class, pId);
+    }
+
+    /**
+     * @return The oldest deliveries which are not postponed at the given date.
+     */
+    public List<WebhookDelivery> findPendingDeliveries(Date pNow, int pMaxResults) {
+        return em.createNamedQuery("WebhookDelivery.findPending", WebhookDelivery.class)
+                .setParameter("now", pNow)
+                .setMaxResults(pMaxResults)
+                .getResultList();
+    }
+
+    /**
+     * @return the oldest pending deliveries, except those of the given webhooks
+     */
+    public List<WebhookDelivery> findPendingDeliveries(Date pNow, Collection<Integer> pExcludedWebhookIds, int pMaxResults) {
+        if (pExcludedWebhookIds.isEmpty()) {
+            return findPendingDeliveries(pNow, pMaxResults);
+        }
+        return em.createNamedQuery("WebhookDelivery.findPendingExcludingWebhooks", WebhookDelivery.class)
+                .setParameter("now", pNow)
+                .setParameter("webhookIds", pExcludedWebhookIds)
+                .setMaxResults(pMaxResults)
+                .getResultList();
+    }
+
+    public void removeDelivery(WebhookDelivery pDelivery) {
+        em.remove(pDelivery);
+    }
+}
@@ -0,0 +1,46 @@
+/*******************************************************************************
+  * Copyright (c) 2017-2019 DocDoku.
+  * All rights reserved. This program and the accompanying materials
+  * are made available under the terms of the Eclipse Public License v1.0
+  * which accompanies this distribution, and is available at
+  * http://www.eclipse.org/legal/epl-v10.html
+  *
+  * Contributors:
+  *    DocDoku - initial API and implementation
+  *******************************************************************************/
+
+package org.polarsys.eplmp.server.dao;
+
+import org.polarsys.eplmp.core.indexer.WorkspaceIndexation;
+
+import javax.enterprise.context.RequestScoped;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+
+@RequestScoped
+public class WorkspaceIndexationDAO {
+
+    @Inject
+    private EntityManager em;
+
+    public WorkspaceIndexationDAO() {
+    }
+
+    /**
+     * @return The checkpoint of the interrupted reindexation of the workspace, null if there is none.
+     */
+    public WorkspaceIndexation findIndexation(String pWorkspaceId) {
+        return em.find(WorkspaceIndexation.class, pWorkspaceId);
+    }
+
+    public void createIndexation(WorkspaceIndexation pIndexation) {
+        em.persist(pIndexation);
+    }
+
+    public void removeIndexation(String pWorkspaceId) {
+        WorkspaceIndexation indexation = findIndexation(pWorkspaceId);
+        if (indexation != null) {
+            em.remove(indexation);
+        }
+    }
+}
@@ -21,6 +21,7 @@ import org.polarsys.eplmp.core.security.UserGroupMapping;
 import org.polarsys.eplmp.core.services.IDocumentBaselineManagerLocal;
 import org.polarsys.eplmp.core.services.IDocumentManagerLocal;
 import org.polarsys.eplmp.core.services.IUserManagerLocal;
+import org.polarsys.eplmp.server.ACLPermissionIndex;
 import org.polarsys.eplmp.server.dao.DocumentBaselineDAO;
 import org.polarsys.eplmp.server.dao.DocumentRevisionDAO;
 
@@ -37,6 +38,9 @@ import java.util.*;
 @Stateless(name = "DocumentBaselineManagerBean")
 public class DocumentBaselineManagerBean implements IDocumentBaselineManagerLocal {
 
+    @Inject
+    private ACLPermissionIndex aclPermissionIndex;
+
     @Inject
     private EntityManager em;
 
@@ -139,7 +143,7 @@ public class DocumentBaselineManagerBean implements IDocumentBaselineManagerLoca
     private DocumentRevision filterDocumentRevisionAccessRight(User user, DocumentRevision documentRevision){
         if(!user.isAdministrator()
                 && (documentRevision.getACL()!=null)
-                && !(documentRevision.getACL().hasReadAccess(user))) {
+                && !(aclPermissionIndex.hasReadAccess(user, documentRevision.getACL()))) {
             return null;
         }
         return documentRevision;
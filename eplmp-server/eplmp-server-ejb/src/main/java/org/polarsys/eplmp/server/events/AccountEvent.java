@@ -0,0 +1,32 @@
+/*******************************************************************************
+  * Copyright (c) 2017-2019 DocDoku.
+  * All rights reserved. This program and the accompanying materials
+  * are made available under the terms of the Eclipse Public License v1.0
+  * which accompanies this distribution, and is available at
+  * http://www.eclipse.org/legal/epl-v10.html
+  *
+  * Contributors:
+  *    DocDoku - initial API and implementation
+  *******************************************************************************/
+
+package org.polarsys.eplmp.server.events;
+
+/**
+ * Change on an account: its credentials, its state or its personal data
+ */
+public class AccountEvent {
+
+    private String observedLogin;
+
+    public AccountEvent(String observedLogin) {
+        this.observedLogin = observedLogin;
+    }
+
+    public String getObservedLogin() {
+        return observedLogin;
+    }
+
+    public void setObservedLogin(String observedLogin) {
+        this.observedLogin = observedLogin;
+    }
+}
@@ -74,6 +74,7 @@ public class ACLFactory {
             for (Map.Entry<String, String> entry : pGroupEntries.entrySet()) {
                 acl.addEntry(em.getReference(UserGroup.class, new UserGroupKey(workspaceId, entry.getKey())), ACLPermission.valueOf(entry.getValue()));
             }
+            aclDAO.invalidatePermissions(acl);
         }
         return acl;
     }
@@ -11,56 +11,58 @@
 package org.polarsys.eplmp.server.hooks;
 
 
-import com.amazonaws.auth.AWSStaticCredentialsProvider;
-import com.amazonaws.auth.BasicAWSCredentials;
-import com.amazonaws.regions.Regions;
-import com.amazonaws.services.sns.AmazonSNS;
-import com.amazonaws.services.sns.AmazonSNSClient;
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.sns.AmazonSNSAsync;
 import com.amazonaws.services.sns.model.PublishRequest;
+import com.amazonaws.services.sns.model.PublishResult;
 import org.polarsys.eplmp.core.hooks.SNSWebhookApp;
 import org.polarsys.eplmp.core.hooks.Webhook;
 
 import javax.json.Json;
 import javax.json.JsonObjectBuilder;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.concurrent.CompletableFuture;
 
 public class SNSWebhookRunner implements WebhookRunner {
 
-    private static final Logger LOGGER = Logger.getLogger(SNSWebhookRunner.class.getName());
+    private final WebhookClients webhookClients;
 
-    public SNSWebhookRunner() {
+    public SNSWebhookRunner(WebhookClients webhookClients) {
+        this.webhookClients = webhookClients;
     }
 
     @Override
-    public void run(Webhook webhook, String login, String email, String name, String subject, String content) {
+    public CompletableFuture<Void> run(Webhook webhook, String login, String email, String name, String subject, String content) {
 
         SNSWebhookApp webhookApp = (SNSWebhookApp) webhook.getWebhookApp();
         String topicArn = webhookApp.getTopicArn();
         String awsAccount = webhookApp.getAwsAccount();
         String awsSecret = webhookApp.getAwsSecret();
         String region = webhookApp.getRegion();
-        //AmazonSNSClient snsClient = new AmazonSNSClient(new BasicAWSCredentials(awsAccount, awsSecret));
-        //snsClient.setRegion(Region.getRegion(Regions.fromName(region)));
-
-
-        AmazonSNS snsClient = AmazonSNSClient.builder()
-                .withRegion(Regions.fromName(region))
-                .withCredentials(new AWSStaticCredentialsProvider(new BasicAWSCredentials(awsAccount, awsSecret)))
-                .build();
 
+        CompletableFuture<Void> delivery = new CompletableFuture<>();
 
         try {
+            AmazonSNSAsync snsClient = webhookClients.getSNSClient(region, awsAccount, awsSecret);
             PublishRequest publishReq = new PublishRequest()
                     .withTopicArn(topicArn)
                     .withMessage(getMessage(login, email, name, subject, content));
-            snsClient.publish(publishReq);
+            snsClient.publishAsync(publishReq, new AsyncHandler<PublishRequest, PublishResult>() {
+                @Override
+                public void onError(Exception e) {
+                    delivery.completeExceptionally(e);
+                }
+
+                @Override
+                public void onSuccess(PublishRequest request, PublishResult result) {
+                    delivery.complete(null);
+                }
+            });
 
         } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Cannot send notification to SNS service", e);
-        } finally {
-            LOGGER.log(Level.INFO, "Webhook runner terminated");
+            delivery.completeExceptionally(e);
         }
+
+        return delivery;
     }
 
     private String getMessage(String login, String email, String name, String subject, String content) {
@@ -12,22 +12,22 @@ package org.polarsys.eplmp.server.hooks;
 
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
-import org.apache.http.client.HttpClient;
+import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.methods.RequestBuilder;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.nio.client.HttpAsyncClient;
 import org.polarsys.eplmp.core.hooks.SimpleWebhookApp;
 import org.polarsys.eplmp.core.hooks.Webhook;
-import org.polarsys.eplmp.server.converters.ConverterUtils;
 
 import javax.json.Json;
 import javax.json.JsonObjectBuilder;
-import java.io.InputStream;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -35,18 +35,21 @@ public class SimpleWebhookRunner implements WebhookRunner {
 
     private static final Logger LOGGER = Logger.getLogger(SimpleWebhookRunner.class.getName());
 
-    public SimpleWebhookRunner() {
+    private final HttpAsyncClient httpClient;
+
+    public SimpleWebhookRunner(HttpAsyncClient httpClient) {
+        this.httpClient = httpClient;
     }
 
     @Override
-    public void run(Webhook webhook, String login, String email, String name, String subject, String content) {
+    public CompletableFuture<Void> run(Webhook webhook, String login, String email, String name, String subject, String content) {
 
         SimpleWebhookApp webhookApp = (SimpleWebhookApp) webhook.getWebhookApp();
         String method = webhookApp.getMethod();
         String uri = webhookApp.getUri();
         String authorization = webhookApp.getAuthorization();
 
-        HttpClient httpClient = HttpClientBuilder.create().build();
+        CompletableFuture<Void> delivery = new CompletableFuture<>();
         HttpUriRequest request;
 
         try {
@@ -65,23 +68,40 @@ public class SimpleWebhookRunner implements WebhookRunner {
                     request = addGetParams(requestBuilder, login, email, name, subject, content);
                     break;
                 default:
-                    LOGGER.log(Level.SEVERE, "Unsupported method " + method);
-                    return;
+                    throw new IllegalArgumentException("Unsupported method " + method);
             }
 
             request.addHeader("authorization", authorization);
-            HttpResponse response = httpClient.execute(request);
-            try (InputStream is = response.getEntity().getContent()) {
-                String s = ConverterUtils.inputStreamToString(is);
-                LOGGER.log(Level.INFO, "Webhook response status " + response.getStatusLine() + " \n\t " + s);
-            }
 
         } catch (Exception ex) {
-            LOGGER.log(Level.SEVERE, null, ex);
-        } finally {
-            LOGGER.log(Level.SEVERE, "Webhook runner terminated");
+            delivery.completeExceptionally(ex);
+            return delivery;
         }
 
+        httpClient.execute(request, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                int status = response.getStatusLine().getStatusCode();
+                LOGGER.log(Level.FINE, "Webhook " + webhook.getName() + " response status " + response.getStatusLine());
+                if (status >= 200 && status < 300) {
+                    delivery.complete(null);
+                } else {
+                    delivery.completeExceptionally(new IOException("Webhook response status " + response.getStatusLine()));
+                }
+            }
+
+            @Override
+            public void failed(Exception ex) {
+                delivery.completeExceptionally(ex);
+            }
+
+            @Override
+            public void cancelled() {
+                delivery.cancel(false);
+            }
+        });
+
+        return delivery;
     }
 
     private HttpUriRequest addGetParams(RequestBuilder requestBuilder, String login, String email, String name, String subject, String content) {
@@ -0,0 +1,89 @@
+/*******************************************************************************
+  * Copyright (c) 2017-2019 DocDoku.
+  * All rights reserved. This program and the accompanying materials
+  * are made available under the terms of the Eclipse Public License v1.0
+  * which accompanies this distribution, and is available at
+  * http://www.eclipse.org/legal/epl-v10.html
+  *
+  * Contributors:
+  *    DocDoku - initial API and implementation
+  *******************************************************************************/
+
+package org.polarsys.eplmp.server.hooks;
+
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.sns.AmazonSNSAsync;
+import com.amazonaws.services.sns.AmazonSNSAsyncClientBuilder;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.polarsys.eplmp.server.ConfigManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Holds the clients shared by all {@link WebhookRunner}s: a pooled asynchronous HTTP client,
+ * and an asynchronous SNS client per region and AWS account.
+ */
+@ApplicationScoped
+public class WebhookClients {
+
+    private static final Logger LOGGER = Logger.getLogger(WebhookClients.class.getName());
+    private static final int MAX_CONNECTIONS = 200;
+
+    @Inject
+    private ConfigManager configManager;
+
+    private CloseableHttpAsyncClient httpClient;
+
+    private final Map<String, AmazonSNSAsync> snsClients = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    private void init() {
+        int timeout = (int) TimeUnit.SECONDS.toMillis(configManager.getWebhookTimeout());
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(timeout)
+                .setConnectionRequestTimeout(timeout)
+                .setSocketTimeout(timeout)
+                .build();
+        httpClient = HttpAsyncClients.custom()
+                .setDefaultRequestConfig(requestConfig)
+                .setMaxConnTotal(MAX_CONNECTIONS)
+                .setMaxConnPerRoute(configManager.getWebhookConcurrency())
+                .build();
+        httpClient.start();
+    }
+
+    @PreDestroy
+    private void close() {
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, null, e);
+        }
+        snsClients.values().forEach(AmazonSNSAsync::shutdown);
+    }
+
+    public CloseableHttpAsyncClient getHttpClient() {
+        return httpClient;
+    }
+
+    public AmazonSNSAsync getSNSClient(String region, String awsAccount, String awsSecret) {
+        return snsClients.computeIfAbsent(region + "/" + awsAccount + "/" + awsSecret, key ->
+                AmazonSNSAsyncClientBuilder.standard()
+                        .withRegion(Regions.fromName(region))
+                        .withCredentials(new AWSStaticCredentialsProvider(new BasicAWSCredentials(awsAccount, awsSecret)))
+                        .build());
+    }
+}
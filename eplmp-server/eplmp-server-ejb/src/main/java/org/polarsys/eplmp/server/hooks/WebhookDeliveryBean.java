@@ -0,0 +1,197 @@
+/*******************************************************************************
+  * Copyright (c) 2017-2019 DocDoku.
+  * All rights reserved. This program and the accompanying materials
+  * are made available under the terms of the Eclipse Public License v1.0
+  * which accompanies this distribution, and is available at
+  * http://www.eclipse.org/legal/epl-v10.html
+  *
+  * Contributors:
+  *    DocDoku - initial API and implementation
+  *******************************************************************************/
+
+package org.polarsys.eplmp.server.hooks;
+
+import org.polarsys.eplmp.core.exceptions.WebhookNotFoundException;
+import org.polarsys.eplmp.core.hooks.Webhook;
+import org.polarsys.eplmp.core.hooks.WebhookDelivery;
+import org.polarsys.eplmp.server.dao.WebhookDAO;
+import org.polarsys.eplmp.server.dao.WebhookDeliveryDAO;
+
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reads the pending webhook deliveries and records their outcome
+ *
+ * A failed delivery is retried with an increasing delay, and abandoned after {@value #MAX_ATTEMPTS} attempts.
+ *
+ * @see WebhookDispatcher
+ */
+@Stateless(name = "WebhookDeliveryBean")
+public class WebhookDeliveryBean {
+
+    static final int MAX_ATTEMPTS = 8;
+
+    // Delay before the first retry of a failed delivery, doubled on each attempt
+    private static final long RETRY_DELAY = TimeUnit.SECONDS.toMillis(10);
+    private static final long MAX_RETRY_DELAY = TimeUnit.HOURS.toMillis(1);
+    // Delay before a deferred delivery is leased again, lets the next leases page past it
+    private static final long DEFER_DELAY = TimeUnit.SECONDS.toMillis(2);
+
+    private static final int MAX_ERROR_LENGTH = 255;
+
+    @Inject
+    private WebhookDeliveryDAO webhookDeliveryDAO;
+
+    @Inject
+    private WebhookDAO webhookDAO;
+
+    private static final Logger LOGGER = Logger.getLogger(WebhookDeliveryBean.class.getName());
+
+    /**
+     * Outcome of a delivery attempt
+     */
+    public static class Outcome {
+
+        public enum Status {
+            DELIVERED, FAILED, DEFERRED
+        }
+
+        private final long deliveryId;
+        private final Status status;
+        private final String error;
+
+        private Outcome(long deliveryId, Status status, String error) {
+            this.deliveryId = deliveryId;
+            this.status = status;
+            this.error = error;
+        }
+
+        public static Outcome delivered(WebhookDelivery delivery) {
+            return new Outcome(delivery.getId(), Status.DELIVERED, null);
+        }
+
+        public static Outcome failed(WebhookDelivery delivery, String error) {
+            return new Outcome(delivery.getId(), Status.FAILED, error);
+        }
+
+        /**
+         * The delivery has not been attempted, it is sent again on a later run
+         */
+        public static Outcome deferred(WebhookDelivery delivery) {
+            return new Outcome(delivery.getId(), Status.DEFERRED, null);
+        }
+
+        public long getDeliveryId() {
+            return deliveryId;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+
+    /**
+     * Reserve the oldest pending deliveries: they are not returned again until the lease expires,
+     * which makes the deliveries interrupted by a restart be sent again.
+     * The deliveries of removed or inactive webhooks are dropped.
+     *
+     * @param maxDeliveries maximum number of deliveries to read
+     * @param leaseDuration duration in milliseconds of the reservation
+     * @param excludedWebhookIds webhooks whose deliveries are left pending, like those which can't take more calls
+     * @return the reserved deliveries with their webhook, oldest first
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public Map<WebhookDelivery, Webhook> lease(int maxDeliveries, long leaseDuration, Set<Integer> excludedWebhookIds) {
+        Date now = new Date();
+        Date leaseEnd = new Date(now.getTime() + leaseDuration);
+        Map<Integer, Webhook> webhooks = new HashMap<>();
+        Map<WebhookDelivery, Webhook> deliveries = new LinkedHashMap<>();
+
+        for (WebhookDelivery delivery : webhookDeliveryDAO.findPendingDeliveries(now, excludedWebhookIds, maxDeliveries)) {
+            Webhook webhook = webhooks.computeIfAbsent(delivery.getWebhookId(), this::findWebhook);
+            if (webhook == null || !webhook.isActive()) {
+                webhookDeliveryDAO.removeDelivery(delivery);
+            } else {
+                delivery.setNextAttemptDate(leaseEnd);
+                deliveries.put(delivery, webhook);
+            }
+        }
+
+        return deliveries;
+    }
+
+    /**
+     * Remove the delivered deliveries and postpone the failed ones, updating the metrics of their webhook
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void complete(List<Outcome> outcomes) {
+        Date now = new Date();
+
+        for (Outcome outcome : outcomes) {
+            WebhookDelivery delivery = webhookDeliveryDAO.findDelivery(outcome.getDeliveryId());
+            if (delivery == null) {
+                // Removed with its webhook
+                continue;
+            }
+            Webhook webhook = findWebhook(delivery.getWebhookId());
+
+            switch (outcome.getStatus()) {
+                case DELIVERED:
+                    webhookDeliveryDAO.removeDelivery(delivery);
+                    if (webhook != null) {
+                        webhook.setDeliveredCount(webhook.getDeliveredCount() + 1);
+                        webhook.setLastDeliveryDate(now);
+                    }
+                    break;
+                case FAILED:
+                    fail(delivery, webhook, outcome.getError(), now);
+                    break;
+                case DEFERRED:
+                    // Not now, else it would be leased again before the deliveries queued after it
+                    delivery.setNextAttemptDate(new Date(now.getTime() + DEFER_DELAY));
+                    break;
+            }
+        }
+    }
+
+    private void fail(WebhookDelivery delivery, Webhook webhook, String error, Date now) {
+        int attempts = delivery.getAttempts() + 1;
+
+        if (webhook != null) {
+            webhook.setLastFailureDate(now);
+            webhook.setLastError(error != null && error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error);
+        }
+
+        if (attempts >= MAX_ATTEMPTS) {
+            LOGGER.log(Level.WARNING, "Webhook delivery " + delivery.getId() + " abandoned after " + attempts + " attempts: " + error);
+            webhookDeliveryDAO.removeDelivery(delivery);
+            if (webhook != null) {
+                webhook.setFailedCount(webhook.getFailedCount() + 1);
+            }
+        } else {
+            long delay = RETRY_DELAY << (attempts - 1);
+            delivery.setAttempts(attempts);
+            delivery.setNextAttemptDate(new Date(now.getTime() + Math.min(delay, MAX_RETRY_DELAY)));
+        }
+    }
+
+    private Webhook findWebhook(int webhookId) {
+        try {
+            return webhookDAO.loadWebhook(webhookId);
+        } catch (WebhookNotFoundException e) {
+            LOGGER.log(Level.FINE, null, e);
+            return null;
+        }
+    }
+}
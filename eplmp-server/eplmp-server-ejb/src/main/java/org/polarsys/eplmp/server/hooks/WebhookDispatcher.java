@@ -0,0 +1,201 @@
+/*******************************************************************************
+  * Copyright (c) 2017-2019 DocDoku.
+  * All rights reserved. This program and the accompanying materials
+  * are made available under the terms of the Eclipse Public License v1.0
+  * which accompanies this distribution, and is available at
+  * http://www.eclipse.org/legal/epl-v10.html
+  *
+  * Contributors:
+  *    DocDoku - initial API and implementation
+  *******************************************************************************/
+
+package org.polarsys.eplmp.server.hooks;
+
+import org.polarsys.eplmp.core.hooks.SNSWebhookApp;
+import org.polarsys.eplmp.core.hooks.SimpleWebhookApp;
+import org.polarsys.eplmp.core.hooks.Webhook;
+import org.polarsys.eplmp.core.hooks.WebhookDelivery;
+import org.polarsys.eplmp.server.ConfigManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.ejb.*;
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Periodically sends the pending webhook deliveries, without waiting for the responses
+ *
+ * The number of calls in flight to a same webhook is bounded: the deliveries of a webhook which
+ * can't take more calls are not leased, and those exceeding the bound within a batch are deferred.
+ * Outcomes are reported by the HTTP and SNS client threads, and recorded by the next run.
+ *
+ * @see WebhookDeliveryBean
+ */
+@Singleton(name = "WebhookDispatcher")
+@Startup
+public class WebhookDispatcher {
+
+    private static final int BATCH_SIZE = 100;
+    // Leaves room for the next run if the queue cannot be drained at once
+    private static final long MAX_DISPATCH_DURATION = TimeUnit.SECONDS.toMillis(30);
+    private static final long MIN_LEASE_DURATION = TimeUnit.MINUTES.toMillis(1);
+
+    @Inject
+    private WebhookDeliveryBean webhookDelivery;
+
+    @Inject
+    private WebhookClients webhookClients;
+
+    @Inject
+    private ConfigManager configManager;
+
+    private final AtomicBoolean dispatching = new AtomicBoolean(false);
+
+    private final Queue<WebhookDeliveryBean.Outcome> outcomes = new ConcurrentLinkedQueue<>();
+
+    private final Map<Integer, Semaphore> callsInFlight = new ConcurrentHashMap<>();
+
+    private WebhookRunner simpleWebhookRunner;
+    private WebhookRunner snsWebhookRunner;
+
+    private static final Logger LOGGER = Logger.getLogger(WebhookDispatcher.class.getName());
+
+    @PostConstruct
+    private void init() {
+        simpleWebhookRunner = new SimpleWebhookRunner(webhookClients.getHttpClient());
+        snsWebhookRunner = new SNSWebhookRunner(webhookClients);
+    }
+
+    @Schedule(hour = "*", minute = "*", second = "*/2", persistent = false)
+    @Lock(LockType.READ)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void dispatch() {
+        // Runs are skipped rather than queued while the previous one is still dispatching
+        if (!dispatching.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            // A delivery still in flight when its lease expires would be sent twice
+            long leaseDuration = Math.max(MIN_LEASE_DURATION, 3 * TimeUnit.SECONDS.toMillis(configManager.getWebhookTimeout()));
+            long deadline = System.currentTimeMillis() + MAX_DISPATCH_DURATION;
+            int leased;
+            do {
+                recordOutcomes();
+                Map<WebhookDelivery, Webhook> deliveries = webhookDelivery.lease(BATCH_SIZE, leaseDuration, getSaturatedWebhookIds());
+                leased = deliveries.size();
+                send(deliveries);
+            } while (leased == BATCH_SIZE && System.currentTimeMillis() < deadline);
+            recordOutcomes();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Error while dispatching webhook deliveries", e);
+        } finally {
+            dispatching.set(false);
+        }
+    }
+
+    @PreDestroy
+    private void close() {
+        try {
+            recordOutcomes();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Error while recording webhook deliveries", e);
+        }
+    }
+
+    /**
+     * @return the number of deliveries sent
+     */
+    int send(Map<WebhookDelivery, Webhook> deliveries) {
+        int sent = 0;
+        int concurrency = Math.max(1, configManager.getWebhookConcurrency());
+
+        for (Map.Entry<WebhookDelivery, Webhook> entry : deliveries.entrySet()) {
+            WebhookDelivery delivery = entry.getKey();
+            Webhook webhook = entry.getValue();
+
+            WebhookRunner runner = getRunner(webhook);
+            if (runner == null) {
+                outcomes.add(WebhookDeliveryBean.Outcome.failed(delivery, "Unsupported webhook " + webhook.getAppName()));
+                continue;
+            }
+
+            Semaphore permits = callsInFlight.computeIfAbsent(webhook.getId(), id -> new Semaphore(concurrency));
+            if (!permits.tryAcquire()) {
+                outcomes.add(WebhookDeliveryBean.Outcome.deferred(delivery));
+                continue;
+            }
+
+            CompletableFuture<Void> call;
+            try {
+                call = runner.run(webhook, delivery.getLogin(), delivery.getEmail(), delivery.getName(),
+                        delivery.getSubject(), delivery.getContent());
+            } catch (RuntimeException e) {
+                call = new CompletableFuture<>();
+                call.completeExceptionally(e);
+            }
+
+            call.whenComplete((result, error) -> {
+                permits.release();
+                if (error == null) {
+                    outcomes.add(WebhookDeliveryBean.Outcome.delivered(delivery));
+                } else {
+                    LOGGER.log(Level.FINE, "Webhook " + webhook.getName() + " delivery failed", error);
+                    outcomes.add(WebhookDeliveryBean.Outcome.failed(delivery, getMessage(error)));
+                }
+            });
+            sent++;
+        }
+
+        return sent;
+    }
+
+    /**
+     * @return the webhooks which can't take more calls until some of theirs complete
+     */
+    Set<Integer> getSaturatedWebhookIds() {
+        Set<Integer> webhookIds = new HashSet<>();
+        callsInFlight.forEach((webhookId, permits) -> {
+            if (permits.availablePermits() == 0) {
+                webhookIds.add(webhookId);
+            }
+        });
+        return webhookIds;
+    }
+
+    void recordOutcomes() {
+        List<WebhookDeliveryBean.Outcome> completed = new ArrayList<>();
+        WebhookDeliveryBean.Outcome outcome;
+        while ((outcome = outcomes.poll()) != null) {
+            completed.add(outcome);
+        }
+        if (!completed.isEmpty()) {
+            webhookDelivery.complete(completed);
+        }
+    }
+
+    private WebhookRunner getRunner(Webhook webhook) {
+        switch (webhook.getAppName()) {
+            case SNSWebhookApp.APP_NAME:
+                return snsWebhookRunner;
+            case SimpleWebhookApp.APP_NAME:
+                return simpleWebhookRunner;
+            default:
+                return null;
+        }
+    }
+
+    private static String getMessage(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getName();
+    }
+}
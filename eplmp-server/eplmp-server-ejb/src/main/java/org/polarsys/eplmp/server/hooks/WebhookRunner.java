@@ -12,6 +12,14 @@ package org.polarsys.eplmp.server.hooks;
 
 import org.polarsys.eplmp.core.hooks.Webhook;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface WebhookRunner {
-    void run(Webhook webhook, String login, String email, String name, String subject, String content);
+
+    /**
+     * Send a notification to the webhook, without waiting for its response
+     *
+     * @return a future completed when the notification has been delivered, or exceptionally if it failed
+     */
+    CompletableFuture<Void> run(Webhook webhook, String login, String email, String name, String subject, String content);
 }
@@ -0,0 +1,61 @@
+/*******************************************************************************
+  * Copyright (c) 2017-2019 DocDoku.
+  * All rights reserved. This program and the accompanying materials
+  * are made available under the terms of the Eclipse Public License v1.0
+  * which accompanies this distribution, and is available at
+  * http://www.eclipse.org/legal/epl-v10.html
+  *
+  * Contributors:
+  *    DocDoku - initial API and implementation
+  *******************************************************************************/
+
+package org.polarsys.eplmp.server.indexer;
+
+import javax.ejb.*;
+import javax.inject.Inject;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Periodically sends the pending indexation requests to the indexer, in bounded batches
+ *
+ * @see IndexationQueueBean
+ */
+@Singleton(name = "IndexationDispatcher")
+@Startup
+public class IndexationDispatcher {
+
+    private static final int BATCH_SIZE = 100;
+    // Leaves room for the next run if the queue cannot be drained at once
+    private static final long MAX_DISPATCH_DURATION = TimeUnit.SECONDS.toMillis(30);
+
+    @Inject
+    private IndexationQueueBean indexationQueue;
+
+    private final AtomicBoolean dispatching = new AtomicBoolean(false);
+
+    private static final Logger LOGGER = Logger.getLogger(IndexationDispatcher.class.getName());
+
+    @Schedule(hour = "*", minute = "*", second = "*/5", persistent = false)
+    @Lock(LockType.READ)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void dispatch() {
+        // Runs are skipped rather than queued while the previous one is still dispatching
+        if (!dispatching.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long deadline = System.currentTimeMillis() + MAX_DISPATCH_DURATION;
+            int dispatched;
+            do {
+                dispatched = indexationQueue.dispatch(BATCH_SIZE);
+            } while (dispatched == BATCH_SIZE && System.currentTimeMillis() < deadline);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Error while dispatching indexation requests", e);
+        } finally {
+            dispatching.set(false);
+        }
+    }
+}
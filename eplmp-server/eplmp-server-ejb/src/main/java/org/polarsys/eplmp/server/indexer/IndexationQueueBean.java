@@ -0,0 +1,196 @@
+/*******************************************************************************
+  * Copyright (c) 2017-2019 DocDoku.
+  * All rights reserved. This program and the accompanying materials
+  * are made available under the terms of the Eclipse Public License v1.0
+  * which accompanies this distribution, and is available at
+  * http://www.eclipse.org/legal/epl-v10.html
+  *
+  * Contributors:
+  *    DocDoku - initial API and implementation
+  *******************************************************************************/
+
+package org.polarsys.eplmp.server.indexer;
+
+import io.searchbox.action.BulkableAction;
+import io.searchbox.core.Bulk;
+import io.searchbox.core.BulkResult;
+import io.searchbox.core.Delete;
+import org.polarsys.eplmp.core.exceptions.DocumentIterationNotFoundException;
+import org.polarsys.eplmp.core.exceptions.IndexerNotAvailableException;
+import org.polarsys.eplmp.core.exceptions.IndexerRequestException;
+import org.polarsys.eplmp.core.exceptions.PartIterationNotFoundException;
+import org.polarsys.eplmp.core.indexer.IndexationRequest;
+import org.polarsys.eplmp.server.dao.DocumentRevisionDAO;
+import org.polarsys.eplmp.server.dao.IndexationRequestDAO;
+import org.polarsys.eplmp.server.dao.PartIterationDAO;
+import org.polarsys.eplmp.server.indexer.util.IndexerMapping;
+import org.polarsys.eplmp.server.indexer.util.IndicesUtils;
+
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sends the pending indexation requests to the indexer
+ *
+ * @see IndexationDispatcher
+ */
+@Stateless(name = "IndexationQueueBean")
+public class IndexationQueueBean {
+
+    // Delay before the first retry of a failed request, doubled on each attempt
+    private static final long RETRY_DELAY = 5_000;
+    private static final long MAX_RETRY_DELAY = 10 * 60_000;
+
+    @Inject
+    private IndexationRequestDAO indexationRequestDAO;
+
+    @Inject
+    private DocumentRevisionDAO documentRevisionDAO;
+
+    @Inject
+    private PartIterationDAO partIterationDAO;
+
+    @Inject
+    private IndexerQueryBuilder indexerQueryBuilder;
+
+    @Inject
+    private IndexManagerBean indexManager;
+
+    @Inject
+    private IndicesUtils indicesUtils;
+
+    private static final Logger LOGGER = Logger.getLogger(IndexationQueueBean.class.getName());
+
+    /**
+     * Send the oldest pending requests in a single bulk, the requests of the same iteration being
+     * coalesced into the last one. Failed requests are postponed.
+     *
+     * @param maxRequests maximum number of requests to read
+     * @return the number of requests read, when the bulk has been sent
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public int dispatch(int maxRequests) {
+        Date now = new Date();
+        List<IndexationRequest> requests = indexationRequestDAO.findPendingRequests(now, maxRequests);
+
+        // Requests are ordered by id, the last request of an iteration supersedes the previous ones
+        Map<String, List<IndexationRequest>> requestsByTarget = new LinkedHashMap<>();
+        for (IndexationRequest request : requests) {
+            requestsByTarget.computeIfAbsent(request.getTargetKey(), key -> new ArrayList<>()).add(request);
+        }
+
+        Bulk.Builder bulk = new Bulk.Builder();
+        Map<String, IndexationRequest> requestsByDocument = new HashMap<>();
+        List<IndexationRequest> sentRequests = new ArrayList<>();
+        for (List<IndexationRequest> targetRequests : requestsByTarget.values()) {
+            IndexationRequest request = targetRequests.get(targetRequests.size() - 1);
+            BulkableAction<?> action;
+            try {
+                action = toAction(request);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to construct update query for " + request.getTargetKey() + " \n " + e.getMessage());
+                LOGGER.log(Level.FINE, null, e);
+                targetRequests.forEach(targetRequest -> postpone(targetRequest, now));
+                continue;
+            }
+            if (action != null) {
+                bulk.addAction(action);
+                requestsByDocument.put(action.getIndex() + "/" + action.getId(), request);
+                sentRequests.add(request);
+            } else {
+                // Nothing left to index
+                indexationRequestDAO.removeRequests(request);
+            }
+        }
+
+        if (sentRequests.isEmpty()) {
+            return requests.size();
+        }
+
+        Set<IndexationRequest> failedRequests = new HashSet<>();
+        try {
+            BulkResult result = indexManager.sendBulk(bulk);
+            List<BulkResult.BulkResultItem> failedItems = result.getFailedItems();
+            if (!result.isSucceeded() && failedItems.isEmpty()) {
+                LOGGER.log(Level.WARNING, "Indexation bulk failed: " + result.getErrorMessage());
+                failedRequests.addAll(sentRequests);
+            }
+            for (BulkResult.BulkResultItem item : failedItems) {
+                IndexationRequest request = requestsByDocument.get(item.index + "/" + item.id);
+                // Removing a document which is not indexed is not a failure
+                if (request != null && !(request.getAction() == IndexationRequest.Action.REMOVE && item.status == 404)) {
+                    LOGGER.log(Level.WARNING, "Indexation of " + request.getTargetKey() + " failed: " + item.error);
+                    failedRequests.add(request);
+                }
+            }
+        } catch (IndexerNotAvailableException | IndexerRequestException e) {
+            LOGGER.log(Level.FINE, null, e);
+            failedRequests.addAll(sentRequests);
+        }
+
+        for (IndexationRequest request : sentRequests) {
+            if (failedRequests.contains(request)) {
+                requestsByTarget.get(request.getTargetKey()).forEach(targetRequest -> postpone(targetRequest, now));
+            } else {
+                indexationRequestDAO.removeRequests(request);
+            }
+        }
+
+        return failedRequests.size() == sentRequests.size() ? 0 : requests.size();
+    }
+
+    /**
+     * @return the number of pending requests
+     */
+    public long getQueueDepth() {
+        return indexationRequestDAO.countRequests();
+    }
+
+    /**
+     * @return the age in milliseconds of the oldest pending request, 0 if there is none
+     */
+    public long getLag() {
+        Date oldestRequestDate = indexationRequestDAO.getOldestRequestDate();
+        return oldestRequestDate == null ? 0 : Math.max(0, System.currentTimeMillis() - oldestRequestDate.getTime());
+    }
+
+    /**
+     * @return the action to send, or null if the target no longer exists
+     * @throws IOException if the update query can't be built, the request is to be retried
+     */
+    private BulkableAction<?> toAction(IndexationRequest request) throws IOException {
+        boolean document = request.getTargetType() == IndexationRequest.TargetType.DOCUMENT;
+        try {
+            if (request.getAction() == IndexationRequest.Action.REMOVE) {
+                String indexName = indicesUtils.getIndexName(request.getWorkspaceId(),
+                        document ? IndexerMapping.INDEX_DOCUMENTS : IndexerMapping.INDEX_PARTS);
+                String id = document ? request.getDocumentIterationKey().toString() : request.getPartIterationKey().toString();
+                return new Delete.Builder(indicesUtils.formatDocId(id))
+                        .index(indexName)
+                        .type(IndexerMapping.TYPE)
+                        .build();
+            } else if (document) {
+                return indexerQueryBuilder.updateRequest(documentRevisionDAO.loadDocI(request.getDocumentIterationKey())).build();
+            } else {
+                return indexerQueryBuilder.updateRequest(partIterationDAO.loadPartI(request.getPartIterationKey())).build();
+            }
+        } catch (DocumentIterationNotFoundException | PartIterationNotFoundException e) {
+            // Deleted since, its removal has been requested
+            LOGGER.log(Level.FINE, null, e);
+            return null;
+        }
+    }
+
+    private void postpone(IndexationRequest request, Date now) {
+        int attempts = request.getAttempts() + 1;
+        long delay = RETRY_DELAY << Math.min(attempts - 1, 20);
+        request.setAttempts(attempts);
+        request.setNextAttemptDate(new Date(now.getTime() + Math.min(delay, MAX_RETRY_DELAY)));
+    }
+}
@@ -19,19 +19,17 @@ import org.elasticsearch.index.query.QueryBuilder;
 import org.polarsys.eplmp.core.common.Account;
 import org.polarsys.eplmp.core.common.Workspace;
 import org.polarsys.eplmp.core.document.DocumentIteration;
-import org.polarsys.eplmp.core.document.DocumentMaster;
 import org.polarsys.eplmp.core.document.DocumentRevision;
 import org.polarsys.eplmp.core.exceptions.*;
+import org.polarsys.eplmp.core.indexer.IndexationRequest;
 import org.polarsys.eplmp.core.product.PartIteration;
-import org.polarsys.eplmp.core.product.PartMaster;
 import org.polarsys.eplmp.core.product.PartRevision;
 import org.polarsys.eplmp.core.query.DocumentSearchQuery;
 import org.polarsys.eplmp.core.query.PartSearchQuery;
 import org.polarsys.eplmp.core.security.UserGroupMapping;
 import org.polarsys.eplmp.core.services.*;
 import org.polarsys.eplmp.i18n.PropertiesLoader;
-import org.polarsys.eplmp.server.dao.DocumentMasterDAO;
-import org.polarsys.eplmp.server.dao.PartMasterDAO;
+import org.polarsys.eplmp.server.dao.IndexationRequestDAO;
 import org.polarsys.eplmp.server.dao.WorkspaceDAO;
 import org.polarsys.eplmp.server.indexer.util.IndexerMapping;
 import org.polarsys.eplmp.server.indexer.util.IndicesUtils;
@@ -45,7 +43,6 @@ import java.io.IOException;
 import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 /**
  * @author Morgan Guimard
@@ -58,12 +55,6 @@ public class IndexerManagerBean implements IIndexerManagerLocal {
     @Inject
     private JestClient esClient;
 
-    @Inject
-    private DocumentMasterDAO documentMasterDAO;
-
-    @Inject
-    private PartMasterDAO partMasterDAO;
-
     @Inject
     private WorkspaceDAO workspaceDAO;
 
@@ -91,6 +82,15 @@ public class IndexerManagerBean implements IIndexerManagerLocal {
     @Inject
     private IndicesUtils indicesUtils;
 
+    @Inject
+    private IndexationRequestDAO indexationRequestDAO;
+
+    @Inject
+    private IndexationQueueBean indexationQueue;
+
+    @Inject
+    private WorkspaceIndexerBean workspaceIndexer;
+
     private static final String I18N_CONF = "/org/polarsys/eplmp/core/i18n/LocalStrings";
     private static final Logger LOGGER = Logger.getLogger(IndexerManagerBean.class.getName());
 
@@ -148,131 +148,91 @@ public class IndexerManagerBean implements IIndexerManagerLocal {
     }
 
     /**
-     * Index the given document iteration
+     * Request the indexation of the given document iteration, within the current transaction
      *
      * @param documentIteration document to index
      */
     @Override
-    @Asynchronous
     @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID})
     public void indexDocumentIteration(DocumentIteration documentIteration) {
-        try {
-            Update.Builder update = indexerQueryBuilder.updateRequest(documentIteration);
-            DocumentResult execute = indexManager.executeUpdate(update);
-
-            if (execute.isSucceeded()) {
-                LOGGER.log(Level.INFO, "Document iteration [" + documentIteration.getKey() + "] indexed");
-            } else {
-                LOGGER.log(Level.WARNING, "The document " + documentIteration.getKey() + " cannot be indexed : \n" + execute.getErrorMessage());
-            }
-
-        } catch (IOException e) {
-            LOGGER.log(Level.SEVERE, "Cannot build request for document: " + documentIteration.getKey(), e);
-        } catch (IndexerNotAvailableException | IndexerRequestException e) {
-            LOGGER.log(Level.WARNING, "The document " + documentIteration.getKey() + " cannot be indexed.", e);
-        }
+        indexationRequestDAO.createRequest(new IndexationRequest(documentIteration.getKey(), IndexationRequest.Action.INDEX));
     }
 
     /**
-     * Index the given document iterations
+     * Request the indexation of the given checked in document iterations, within the current transaction
      *
      * @param documentIterations documents to index
      */
     @Override
-    @Asynchronous
     @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID})
     public void indexDocumentIterations(List<DocumentIteration> documentIterations) {
-        Bulk.Builder bulk = new Bulk.Builder();
-
         documentIterations.stream()
                 .filter(documentIteration -> documentIteration.getCheckInDate() != null)
-                .forEach(documentIteration -> addToBulk(documentIteration, bulk));
-        try {
-            indexManager.sendBulk(bulk);
-        }  catch (IndexerNotAvailableException | IndexerRequestException e) {
-            LOGGER.log(Level.FINE, null, e);
-        }
+                .forEach(this::indexDocumentIteration);
     }
 
     /**
-     * Index the given part iteration
+     * Request the indexation of the given part iteration, within the current transaction
      *
      * @param partIteration part to index
      */
     @Override
-    @Asynchronous
     @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID})
     public void indexPartIteration(PartIteration partIteration) {
-        try {
-            Update.Builder update = indexerQueryBuilder.updateRequest(partIteration);
-            DocumentResult execute = indexManager.executeUpdate(update);
-
-            if (execute.isSucceeded()) {
-                LOGGER.log(Level.INFO, "Part iteration [" + partIteration.getKey() + "] indexed");
-            } else {
-                LOGGER.log(Level.WARNING, "The part " + partIteration.getKey() + " cannot be indexed : \n" + execute.getErrorMessage());
-            }
-        } catch (IOException e) {
-            LOGGER.log(Level.SEVERE, "Cannot build request for part: " + partIteration.getKey(), e);
-        } catch (IndexerNotAvailableException | IndexerRequestException e) {
-            LOGGER.log(Level.WARNING, "The part " + partIteration.getKey() + " cannot be indexed.", e);
-        }
+        indexationRequestDAO.createRequest(new IndexationRequest(partIteration.getKey(), IndexationRequest.Action.INDEX));
     }
 
     /**
-     * Index the given part iterations
+     * Request the indexation of the given checked in part iterations, within the current transaction
      *
      * @param partIterations parts to index
      */
     @Override
-    @Asynchronous
     @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID})
     public void indexPartIterations(List<PartIteration> partIterations) {
-        Bulk.Builder bulk = new Bulk.Builder();
-
         partIterations.stream()
                 .filter(partIteration -> partIteration.getCheckInDate() != null)
-                .forEach(partIteration -> addToBulk(partIteration, bulk));
-
-        try {
-            indexManager.sendBulk(bulk);
-        } catch (IndexerNotAvailableException | IndexerRequestException e) {
-            LOGGER.log(Level.FINE, null, e);
-        }
+                .forEach(this::indexPartIteration);
     }
 
     /**
-     * Delete a document from index
+     * Request the removal of a document from index, within the current transaction
      *
      * @param documentIteration document to remove
      */
     @Override
     @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID})
-    @TransactionAttribute(value = TransactionAttributeType.REQUIRES_NEW)
     public void removeDocumentIterationFromIndex(DocumentIteration documentIteration) {
-        try {
-            String indexName = indicesUtils.getIndexName(documentIteration.getWorkspaceId(), IndexerMapping.INDEX_DOCUMENTS);
-            indexManager.executeRemove(indexName, indicesUtils.formatDocId(documentIteration.getKey().toString()));
-        } catch (IndexerNotAvailableException | IndexerRequestException e) {
-            LOGGER.log(Level.WARNING, "Cannot delete document " + documentIteration + ": The Elasticsearch cluster does not seem to respond");
-        }
+        indexationRequestDAO.createRequest(new IndexationRequest(documentIteration.getKey(), IndexationRequest.Action.REMOVE));
     }
 
     /**
-     * Delete a part from index
+     * Request the removal of a part from index, within the current transaction
      *
      * @param partIteration part to remove
      */
     @Override
     @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID})
-    @TransactionAttribute(value = TransactionAttributeType.REQUIRES_NEW)
     public void removePartIterationFromIndex(PartIteration partIteration) {
-        try {
-            String indexName = indicesUtils.getIndexName(partIteration.getWorkspaceId(), IndexerMapping.INDEX_PARTS);
-            indexManager.executeRemove(indexName, indicesUtils.formatDocId(partIteration.getKey().toString()));
-        } catch (IndexerNotAvailableException | IndexerRequestException e) {
-            LOGGER.log(Level.WARNING, "Cannot delete part iteration " + partIteration + ": The Elasticsearch cluster does not seem to respond");
-        }
+        indexationRequestDAO.createRequest(new IndexationRequest(partIteration.getKey(), IndexationRequest.Action.REMOVE));
+    }
+
+    /**
+     * @return the number of pending indexation requests
+     */
+    @Override
+    @RolesAllowed({UserGroupMapping.ADMIN_ROLE_ID})
+    public long getIndexationQueueDepth() {
+        return indexationQueue.getQueueDepth();
+    }
+
+    /**
+     * @return the age in milliseconds of the oldest pending indexation request
+     */
+    @Override
+    @RolesAllowed({UserGroupMapping.ADMIN_ROLE_ID})
+    public long getIndexationLag() {
+        return indexationQueue.getLag();
     }
 
     /**
@@ -337,7 +297,8 @@ public class IndexerManagerBean implements IIndexerManagerLocal {
     }
 
     /**
-     * Index data from a given workspace
+     * Index data from a given workspace, in background. An interrupted indexation
+     * of the workspace is resumed from its last checkpoint.
      *
      * @param workspaceId workspace to index
      * @throws WorkspaceNotFoundException
@@ -354,111 +315,7 @@ public class IndexerManagerBean implements IIndexerManagerLocal {
             userManager.checkAdmin(workspaceId);
         }
 
-        indexWorkspace(account, workspaceId);
-    }
-
-
-    @Asynchronous
-    private void indexWorkspace(Account account, String workspaceId) {
-        try {
-            // force recreate
-            if(indexManager.indicesExist(workspaceId)) {
-                indexManager.deleteIndices(workspaceId);
-            }
-
-            indexManager.createIndices(workspaceId);
-
-            List<BulkResult> bulkResults = new ArrayList<>();
-
-            bulkResults.addAll(indexWorkspaceDocuments(workspaceId));
-            bulkResults.addAll(indexWorkspaceParts(workspaceId));
-
-            List<BulkResult.BulkResultItem> failedItems = bulkResults.stream().flatMap(bulkResult -> bulkResult.getFailedItems().stream())
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toList());
-
-            List<String> errors = bulkResults.stream().map(JestResult::getErrorMessage)
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toList());
-
-            if(failedItems.isEmpty() && errors.isEmpty()){
-                mailer.sendBulkIndexationSuccess(account);
-            }else{
-                String failureMessage = String.join(", ", errors);
-                LOGGER.log(Level.WARNING, "Failures while bulk indexing workspace [" + workspaceId + "]: \n" + failureMessage);
-                mailer.sendBulkIndexationFailure(account, failureMessage);
-            }
-
-        } catch (IndexerRequestException | IndexerNotAvailableException e) {
-            LOGGER.log(Level.WARNING, "The workspace " + workspaceId + " cannot be indexed.", e);
-        }
-    }
-
-
-    private List<BulkResult> indexWorkspaceParts(String workspaceId) throws IndexerRequestException, IndexerNotAvailableException {
-
-        Long countByWorkspace = partMasterDAO.getCountByWorkspace(workspaceId);
-        Integer limit = 1000;
-        int numberOfPage = (int) Math.ceil(countByWorkspace.doubleValue() / limit.doubleValue());
-
-        List<BulkResult> results = new ArrayList<>();
-        for (int pageIndex = 0; pageIndex < numberOfPage; pageIndex++) {
-            int offset = pageIndex * limit;
-
-            Bulk.Builder bulk = new Bulk.Builder();
-            List<PartMaster> paginatedByWorkspace = partMasterDAO.getPaginatedByWorkspace(workspaceId, limit, offset);
-
-            paginatedByWorkspace.stream()
-                    .flatMap(partM -> partM.getPartRevisions().stream().map(PartRevision::getPartIterations))
-                    .flatMap(Collection::stream).forEach(partIteration -> addToBulk(partIteration, bulk));
-
-            BulkResult bulkResult = indexManager.sendBulk(bulk);
-            results.add(bulkResult);
-        }
-
-        return results;
-    }
-
-    private List<BulkResult> indexWorkspaceDocuments(String workspaceId) throws IndexerRequestException, IndexerNotAvailableException {
-
-        Long countByWorkspace = documentMasterDAO.getCountByWorkspace(workspaceId);
-        Integer limit = 1000;
-        int numberOfPage = (int) Math.ceil(countByWorkspace.doubleValue() / limit.doubleValue());
-
-        List<BulkResult> results = new ArrayList<>();
-        for (int pageIndex = 0; pageIndex < numberOfPage; pageIndex++) {
-            int offset = pageIndex * limit;
-
-            Bulk.Builder bulk = new Bulk.Builder();
-            List<DocumentMaster> paginatedByWorkspace = documentMasterDAO.getPaginatedByWorkspace(workspaceId, limit, offset);
-
-            paginatedByWorkspace.stream()
-                    .flatMap(docM -> docM.getDocumentRevisions().stream().map(DocumentRevision::getDocumentIterations))
-                    .flatMap(Collection::stream).forEach(documentIteration -> addToBulk(documentIteration, bulk));
-
-            BulkResult bulkResult = indexManager.sendBulk(bulk);
-            results.add(bulkResult);
-        }
-
-        return results;
-    }
-
-    private void addToBulk(DocumentIteration documentIteration, Bulk.Builder bulk) {
-        try {
-            bulk.addAction(indexerQueryBuilder.updateRequest(documentIteration).build());
-        } catch (IOException e) {
-            LOGGER.log(Level.WARNING, "Failed to construct update query for document: " + documentIteration.getKey() + " \n " + e.getMessage());
-            LOGGER.log(Level.FINE, null, e);
-        }
-    }
-
-    private void addToBulk(PartIteration partIteration, Bulk.Builder bulk) {
-        try {
-            bulk.addAction(indexerQueryBuilder.updateRequest(partIteration).build());
-        } catch (IOException e) {
-            LOGGER.log(Level.WARNING, "Failed to construct update query for part: " + partIteration.getKey() + " \n " + e.getMessage());
-            LOGGER.log(Level.FINE, null, e);
-        }
+        workspaceIndexer.indexWorkspace(account, workspaceId);
     }
 
     // todo remove localization and account manager usage from this class
@@ -63,7 +63,18 @@ public class IndexerQueryBuilder {
      * @throws IOException
      */
     public Update.Builder updateRequest(DocumentIteration documentIteration) throws IOException {
-        Map<String, String> contentInputs = textExtractor.getContentInputs(documentIteration.getAttachedFiles());
+        return updateRequest(documentIteration, textExtractor.getContentInputs(documentIteration.getAttachedFiles()));
+    }
+
+    /**
+     * Creates an index request for given document, its files content being already extracted
+     *
+     * @param documentIteration
+     * @param contentInputs file name and content of the attached files
+     * @return
+     * @throws IOException
+     */
+    public Update.Builder updateRequest(DocumentIteration documentIteration, Map<String, String> contentInputs) throws IOException {
         try (XContentBuilder xcb = XContentFactory.jsonBuilder()) {
             xcb.startObject()
                     .field("doc_as_upsert", true)
@@ -84,7 +95,18 @@ public class IndexerQueryBuilder {
      * @throws IOException
      */
     public Update.Builder updateRequest(PartIteration partIteration) throws IOException {
-        Map<String, String> contentInputs = textExtractor.getContentInputs(partIteration.getAttachedFiles());
+        return updateRequest(partIteration, textExtractor.getContentInputs(partIteration.getAttachedFiles()));
+    }
+
+    /**
+     * Creates an index request for given part, its files content being already extracted
+     *
+     * @param partIteration
+     * @param contentInputs file name and content of the attached files
+     * @return
+     * @throws IOException
+     */
+    public Update.Builder updateRequest(PartIteration partIteration, Map<String, String> contentInputs) throws IOException {
         try (XContentBuilder xcb = XContentFactory.jsonBuilder()) {
             xcb.startObject()
                     .field("doc_as_upsert", true)
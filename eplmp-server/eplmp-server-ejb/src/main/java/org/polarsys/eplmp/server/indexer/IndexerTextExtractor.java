@@ -17,32 +17,34 @@ import org.apache.poi.hslf.extractor.PowerPointExtractor;
 import org.apache.poi.hssf.extractor.ExcelExtractor;
 import org.apache.poi.hwpf.extractor.WordExtractor;
 import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
 import org.apache.poi.poifs.filesystem.POIFSFileSystem;
-import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.xslf.extractor.XSLFPowerPointExtractor;
 import org.apache.poi.xslf.usermodel.XMLSlideShow;
-import org.apache.poi.xssf.usermodel.XSSFCell;
-import org.apache.poi.xssf.usermodel.XSSFRow;
-import org.apache.poi.xssf.usermodel.XSSFSheet;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
 import org.apache.poi.xwpf.extractor.XWPFWordExtractor;
 import org.apache.poi.xwpf.usermodel.XWPFDocument;
-import org.apache.xmlbeans.XmlException;
 import org.polarsys.eplmp.core.common.BinaryResource;
 import org.polarsys.eplmp.core.exceptions.StorageException;
 import org.polarsys.eplmp.core.services.IBinaryStorageManagerLocal;
+import org.polarsys.eplmp.server.ConfigManager;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
 import org.xml.sax.helpers.DefaultHandler;
 
+import javax.ejb.Lock;
+import javax.ejb.LockType;
 import javax.ejb.Singleton;
 import javax.inject.Inject;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
-import java.io.BufferedInputStream;
-import java.io.IOException;
-import java.io.InputStream;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -52,44 +54,125 @@ import java.util.zip.ZipInputStream;
 /** *
  * Class responsible for document to string conversion
  *
+ * The extractor holds no state, files can be extracted concurrently
+ *
  * @author Morgan Guimard
  */
 @Singleton(name = "IndexerTextExtractor")
+@Lock(LockType.READ)
 public class IndexerTextExtractor {
 
     @Inject
     private IBinaryStorageManagerLocal storageManager;
 
+    @Inject
+    private ConfigManager configManager;
+
+    private static final String TEXT_FILE_PREFIX = "text-";
+    private static final String TEXT_FILE_SUFFIX = ".txt";
+
+    private enum Extraction {
+        COMPLETE, TRUNCATED, FAILED
+    }
+
+    private static final Set<String> EXTRACTED_EXTENSIONS = new HashSet<>(Arrays.asList(
+            ".odt", ".ods", ".odp", ".odg", ".odc", ".odf", ".odb", ".odi", ".odm",
+            ".doc", ".docx", ".ppt", ".pps", ".pptx", ".txt", ".csv", ".xls", ".xlsx", ".pdf"));
+
     private static final Logger LOGGER = Logger.getLogger(IndexerTextExtractor.class.getName());
 
     /**
      * Parse attached files and create a map filename => content
      *
+     * The text of a file is extracted once, and kept as a generated file of its binary
+     * resource named after its content hash. Files sharing the same data, like the
+     * files of a checked out iteration, share the same extracted text. Texts truncated
+     * at the text limit are kept under a name including that limit, so that they are
+     * extracted again only when the limit changes. Texts which could not be extracted
+     * because of an error are not kept. Only the latest text of a file is kept.
+     *
      * @param attachedFiles files to parse
      * @return a map describing file name and content
      */
     public Map<String, String> getContentInputs(Set<BinaryResource> attachedFiles) {
         Map<String, String> contentInputs = new HashMap<>();
         for (BinaryResource bin : attachedFiles) {
-            try (InputStream in = storageManager.getBinaryResourceInputStream(bin)) {
-                contentInputs.put(bin.getName(), streamToString(bin.getFullName(), in));
-            } catch (StorageException | IOException e) {
-                LOGGER.log(Level.WARNING, "Cannot read file " + bin.getFullName(), e);
-            }
+            contentInputs.put(bin.getName(), getText(bin));
         }
         return contentInputs;
     }
 
-    private String streamToString(String fullName, InputStream inputStream) {
-        String strRet = "";
-        String extension = "";
+    private String getText(BinaryResource bin) {
+        String extension = getExtension(bin.getFullName());
+        if (!EXTRACTED_EXTENSIONS.contains(extension)) {
+            return "";
+        }
+        if (bin.getContentLength() > configManager.getIndexedFileMaxSize()) {
+            LOGGER.log(Level.FINE, "The file " + bin.getFullName() + " is too large to be indexed");
+            return "";
+        }
 
-        int lastDotIndex = fullName.lastIndexOf('.');
+        int maxLength = configManager.getIndexedTextMaxLength();
+        String textFileName = getTextFileName(bin, null);
+        String truncatedTextFileName = getTextFileName(bin, maxLength);
+        for (String storedTextFileName : Arrays.asList(textFileName, truncatedTextFileName)) {
+            try {
+                if (storageManager.exists(bin, storedTextFileName)) {
+                    try (InputStream in = storageManager.getGeneratedFileInputStream(bin, storedTextFileName)) {
+                        return readText(in);
+                    }
+                }
+            } catch (StorageException | IOException e) {
+                LOGGER.log(Level.FINE, "Cannot read extracted text of " + bin.getFullName(), e);
+            }
+        }
 
-        if (lastDotIndex != -1) {
-            extension = fullName.substring(lastDotIndex);
+        TextLimitWriter text = new TextLimitWriter(maxLength);
+        Extraction extraction;
+        try (InputStream in = storageManager.getBinaryResourceInputStream(bin)) {
+            extraction = streamToString(bin.getFullName(), extension, in, text);
+        } catch (StorageException | IOException e) {
+            LOGGER.log(Level.WARNING, "Cannot read file " + bin.getFullName(), e);
+            return "";
         }
 
+        if (extraction != Extraction.FAILED) {
+            String storedTextFileName = extraction == Extraction.COMPLETE ? textFileName : truncatedTextFileName;
+            try (OutputStream out = storageManager.getGeneratedFileOutputStream(bin, storedTextFileName)) {
+                out.write(text.toString().getBytes(StandardCharsets.UTF_8));
+            } catch (StorageException | IOException e) {
+                LOGGER.log(Level.FINE, "Cannot store extracted text of " + bin.getFullName(), e);
+                return text.toString();
+            }
+            // Texts of the previous contents, or extracted with another limit
+            storageManager.deleteGeneratedFiles(bin, TEXT_FILE_PREFIX, TEXT_FILE_SUFFIX, storedTextFileName);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Name of the generated file holding the extracted text, which changes with the file content
+     *
+     * @param maxLength limit at which the text has been truncated, null if it is complete
+     */
+    private String getTextFileName(BinaryResource bin, Integer maxLength) {
+        String contentKey = bin.getContentHash() != null ? bin.getContentHash()
+                : bin.getContentLength() + "-" + (bin.getLastModified() != null ? bin.getLastModified().getTime() : 0);
+        return TEXT_FILE_PREFIX + contentKey + (maxLength != null ? "-" + maxLength : "") + TEXT_FILE_SUFFIX;
+    }
+
+    private String readText(InputStream in) throws IOException {
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            TextLimitWriter text = new TextLimitWriter(configManager.getIndexedTextMaxLength());
+            copy(reader, text);
+            return text.toString();
+        } catch (TextLimitWriter.LimitReachedException e) {
+            // Extracted with a greater limit
+            throw new IOException(e);
+        }
+    }
+
+    private Extraction streamToString(String fullName, String extension, InputStream inputStream, Writer text) {
         try {
             switch (extension) {
                 case ".odt":
@@ -101,51 +184,52 @@ public class IndexerTextExtractor {
                 case ".odb":
                 case ".odi":
                 case ".odm":
-                    strRet = openOfficeDocumentToString(inputStream);
+                    openOfficeDocumentToString(inputStream, text);
                     break;
                 case ".doc":
                 case ".docx":
-                    strRet = microsoftWordDocumentToString(inputStream);
+                    microsoftWordDocumentToString(inputStream, text);
                     break;
                 case ".ppt":
                 case ".pps":
                 case ".pptx":
-                    strRet = microsoftPowerPointDocumentToString(inputStream);
+                    microsoftPowerPointDocumentToString(inputStream, text);
                     break;
                 case ".txt":
                 case ".csv":
-                    strRet = rawTextDocumentToString(inputStream);
+                    rawTextDocumentToString(inputStream, text);
                     break;
                 case ".xls":
                 case ".xlsx":
-                    strRet = microsoftExcelDocumentToString(inputStream);
+                    microsoftExcelDocumentToString(inputStream, text);
                     break;
                 case ".pdf":
-                    strRet = pdfDocumentToString(inputStream);
-                    break;
-                case ".html":
-                case ".htm":
-                case ".xml":
-                case ".rtf":
-                case ".msg":
+                    pdfDocumentToString(inputStream, text);
                     break;
                 default:
                     break;
             }
+            return Extraction.COMPLETE;
         } catch (Exception ex) {
+            if (TextLimitWriter.isLimitReached(ex)) {
+                LOGGER.log(Level.FINE, "The text of " + fullName + " has been truncated");
+                return Extraction.TRUNCATED;
+            }
             LOGGER.log(Level.WARNING, "The file " + fullName + " can't be indexed.", ex);
+            return Extraction.FAILED;
         }
-
-        return strRet;
     }
 
-    private String rawTextDocumentToString(InputStream inputStream) {
-        return new Scanner(inputStream, "UTF-8").useDelimiter("\\A").next();
+    private static String getExtension(String fullName) {
+        int lastDotIndex = fullName.lastIndexOf('.');
+        return lastDotIndex != -1 ? fullName.substring(lastDotIndex) : "";
     }
 
-    private String openOfficeDocumentToString(InputStream inputStream) throws IOException, SAXException, ParserConfigurationException {
-        final StringBuilder text = new StringBuilder();
+    private void rawTextDocumentToString(InputStream inputStream, Writer text) throws IOException {
+        copy(new InputStreamReader(inputStream, StandardCharsets.UTF_8), text);
+    }
 
+    private void openOfficeDocumentToString(InputStream inputStream, Writer text) throws IOException, SAXException, ParserConfigurationException {
         try (ZipInputStream zipOpenDoc = new ZipInputStream(new BufferedInputStream(inputStream))) {
             ZipEntry zipEntry;
 
@@ -156,10 +240,13 @@ public class IndexerTextExtractor {
                     parser.parse(zipOpenDoc, new DefaultHandler() {
                         @Override
                         public void characters(char[] ch, int start, int length) throws SAXException {
-                            for (int i = start; i < start + length; i++) {
-                                text.append(ch[i]);
+                            try {
+                                text.write(ch, start, length);
+                                text.write("\r\n");
+                            } catch (IOException e) {
+                                // Stops the parsing
+                                throw new SAXException(e);
                             }
-                            text.append("\r\n");
                         }
                     });
                     break;
@@ -167,83 +254,116 @@ public class IndexerTextExtractor {
             }
 
         }
-
-        return text.toString();
     }
 
-    private String microsoftWordDocumentToString(InputStream inputStream) throws IOException {
-        String strRet;
-
+    private void microsoftWordDocumentToString(InputStream inputStream, Writer text) throws IOException {
         try (InputStream wordStream = new BufferedInputStream(inputStream)) {
             if (POIFSFileSystem.hasPOIFSHeader(wordStream)) {
-                WordExtractor wordExtractor = new WordExtractor(wordStream);
-                strRet = wordExtractor.getText();
-                wordExtractor.close();
+                try (WordExtractor wordExtractor = new WordExtractor(wordStream)) {
+                    text.write(wordExtractor.getText());
+                }
             } else {
-                XWPFWordExtractor wordXExtractor = new XWPFWordExtractor(new XWPFDocument(wordStream));
-                strRet = wordXExtractor.getText();
-                wordXExtractor.close();
+                try (XWPFWordExtractor wordXExtractor = new XWPFWordExtractor(new XWPFDocument(wordStream))) {
+                    text.write(wordXExtractor.getText());
+                }
             }
         }
-
-        return strRet;
     }
 
-    private String microsoftPowerPointDocumentToString(InputStream inputStream) throws IOException {
-        String strRet;
-
+    private void microsoftPowerPointDocumentToString(InputStream inputStream, Writer text) throws IOException {
         try (InputStream pptStream = new BufferedInputStream(inputStream)) {
             if (POIFSFileSystem.hasPOIFSHeader(pptStream)) {
-                PowerPointExtractor pptExtractor = new PowerPointExtractor(pptStream);
-                strRet = pptExtractor.getText(true, true);
-                pptExtractor.close();
+                try (PowerPointExtractor pptExtractor = new PowerPointExtractor(pptStream)) {
+                    text.write(pptExtractor.getText(true, true));
+                }
             } else {
-                XSLFPowerPointExtractor pptExtractor = new XSLFPowerPointExtractor(new XMLSlideShow(pptStream));
-                strRet = pptExtractor.getText(true, true, true);
-                pptExtractor.close();
+                try (XSLFPowerPointExtractor pptExtractor = new XSLFPowerPointExtractor(new XMLSlideShow(pptStream))) {
+                    text.write(pptExtractor.getText(true, true, true));
+                }
             }
         }
-
-        return strRet;
     }
 
-    private String microsoftExcelDocumentToString(InputStream inputStream) throws IOException, OpenXML4JException, XmlException {
-        StringBuilder sb = new StringBuilder();
-
+    private void microsoftExcelDocumentToString(InputStream inputStream, Writer text) throws IOException, OpenXML4JException, SAXException, ParserConfigurationException {
         try (InputStream excelStream = new BufferedInputStream(inputStream)) {
             if (POIFSFileSystem.hasPOIFSHeader(excelStream)) { // Before 2007 format files
                 POIFSFileSystem excelFS = new POIFSFileSystem(excelStream);
-                ExcelExtractor excelExtractor = new ExcelExtractor(excelFS);
-                sb.append(excelExtractor.getText());
-                excelExtractor.close();
-            } else { // New format
-                XSSFWorkbook workBook = new XSSFWorkbook(excelStream);
-                int numberOfSheets = workBook.getNumberOfSheets();
-                for (int i = 0; i < numberOfSheets; i++) {
-                    XSSFSheet sheet = workBook.getSheetAt(0);
-                    Iterator<Row> rowIterator = sheet.rowIterator();
-                    while (rowIterator.hasNext()) {
-                        XSSFRow row = (XSSFRow) rowIterator.next();
-                        Iterator<Cell> cellIterator = row.cellIterator();
-                        while (cellIterator.hasNext()) {
-                            XSSFCell cell = (XSSFCell) cellIterator.next();
-                            sb.append(cell.toString());
-                            sb.append(" ");
+                try (ExcelExtractor excelExtractor = new ExcelExtractor(excelFS)) {
+                    text.write(excelExtractor.getText());
+                }
+            } else { // New format, sheets are parsed as SAX streams instead of being loaded as a workbook
+                try (OPCPackage excelPackage = OPCPackage.open(excelStream)) {
+                    XSSFReader reader = new XSSFReader(excelPackage);
+                    ReadOnlySharedStringsTable sharedStrings = new ReadOnlySharedStringsTable(excelPackage);
+                    XMLReader sheetParser = SAXParserFactory.newInstance().newSAXParser().getXMLReader();
+                    sheetParser.setContentHandler(new XSSFSheetXMLHandler(reader.getStylesTable(), sharedStrings, new SheetTextHandler(text), false));
+                    Iterator<InputStream> sheets = reader.getSheetsData();
+                    while (sheets.hasNext()) {
+                        try (InputStream sheet = sheets.next()) {
+                            sheetParser.parse(new InputSource(sheet));
                         }
-                        sb.append("\n");
+                        text.write("\n");
                     }
-                    sb.append("\n");
                 }
             }
         }
+    }
+
+    /**
+     * Writes the cells of a sheet, separated by spaces, one row per line
+     */
+    private static class SheetTextHandler implements XSSFSheetXMLHandler.SheetContentsHandler {
+
+        private final Writer text;
 
-        return sb.toString();
+        private SheetTextHandler(Writer text) {
+            this.text = text;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            // Rows are separated on their end
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            write("\n");
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            if (formattedValue != null) {
+                write(formattedValue);
+            }
+            write(" ");
+        }
+
+        @Override
+        public void headerFooter(String text, boolean isHeader, String tagName) {
+            // Not indexed
+        }
+
+        private void write(String value) {
+            try {
+                text.write(value);
+            } catch (IOException e) {
+                // Stops the parsing
+                throw new UncheckedIOException(e);
+            }
+        }
     }
 
-    private String pdfDocumentToString(InputStream inputStream) throws IOException {
-        PDDocument pdf = PDDocument.load(inputStream);
-        String documentAsString = new PDFTextStripper().getText(pdf);
-        pdf.close();
-        return documentAsString;
+    private void pdfDocumentToString(InputStream inputStream, Writer text) throws IOException {
+        try (PDDocument pdf = PDDocument.load(inputStream)) {
+            new PDFTextStripper().writeText(pdf, text);
+        }
+    }
+
+    private static void copy(Reader reader, Writer writer) throws IOException {
+        char[] buffer = new char[8192];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            writer.write(buffer, 0, read);
+        }
     }
 }
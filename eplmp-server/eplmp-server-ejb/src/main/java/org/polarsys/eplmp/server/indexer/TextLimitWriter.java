@@ -0,0 +1,73 @@
+/*******************************************************************************
+  * Copyright (c) 2017-2019 DocDoku.
+  * All rights reserved. This program and the accompanying materials
+  * are made available under the terms of the Eclipse Public License v1.0
+  * which accompanies this distribution, and is available at
+  * http://www.eclipse.org/legal/epl-v10.html
+  *
+  * Contributors:
+  *    DocDoku - initial API and implementation
+  *******************************************************************************/
+
+package org.polarsys.eplmp.server.indexer;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Collects extracted text up to a maximum number of characters.
+ *
+ * Writing past the limit keeps the characters which fit and throws a {@link LimitReachedException},
+ * which lets the extraction stop instead of parsing the rest of the file.
+ */
+public class TextLimitWriter extends Writer {
+
+    public static class LimitReachedException extends IOException {
+        public LimitReachedException() {
+            super("Text limit reached");
+        }
+    }
+
+    private final StringBuilder text = new StringBuilder();
+    private final int maxLength;
+
+    public TextLimitWriter(int maxLength) {
+        this.maxLength = maxLength;
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int length) throws IOException {
+        int remaining = maxLength - text.length();
+        text.append(chars, offset, Math.min(length, remaining));
+        if (length > remaining) {
+            throw new LimitReachedException();
+        }
+    }
+
+    @Override
+    public void flush() {
+        // Nothing to flush
+    }
+
+    @Override
+    public void close() {
+        // Nothing to close
+    }
+
+    /**
+     * @return whether the exception, or one of its causes, has been thrown because the limit was reached
+     */
+    public static boolean isLimitReached(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof LimitReachedException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return text.toString();
+    }
+}
@@ -0,0 +1,396 @@
+/*******************************************************************************
+  * Copyright (c) 2017-2019 DocDoku.
+  * All rights reserved. This program and the accompanying materials
+  * are made available under the terms of the Eclipse Public License v1.0
+  * which accompanies this distribution, and is available at
+  * http://www.eclipse.org/legal/epl-v10.html
+  *
+  * Contributors:
+  *    DocDoku - initial API and implementation
+  *******************************************************************************/
+
+package org.polarsys.eplmp.server.indexer;
+
+import io.searchbox.core.Bulk;
+import io.searchbox.core.BulkResult;
+import org.polarsys.eplmp.core.common.Account;
+import org.polarsys.eplmp.core.common.BinaryResource;
+import org.polarsys.eplmp.core.document.DocumentIteration;
+import org.polarsys.eplmp.core.document.DocumentMaster;
+import org.polarsys.eplmp.core.document.DocumentRevision;
+import org.polarsys.eplmp.core.exceptions.IndexerNotAvailableException;
+import org.polarsys.eplmp.core.exceptions.IndexerRequestException;
+import org.polarsys.eplmp.core.indexer.WorkspaceIndexation;
+import org.polarsys.eplmp.core.product.PartIteration;
+import org.polarsys.eplmp.core.product.PartMaster;
+import org.polarsys.eplmp.core.product.PartRevision;
+import org.polarsys.eplmp.core.services.INotifierLocal;
+import org.polarsys.eplmp.server.ConfigManager;
+import org.polarsys.eplmp.server.dao.DocumentMasterDAO;
+import org.polarsys.eplmp.server.dao.PartMasterDAO;
+import org.polarsys.eplmp.server.dao.WorkspaceIndexationDAO;
+
+import javax.annotation.Resource;
+import javax.ejb.*;
+import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Reindexes all the iterations of a workspace.
+ *
+ * Masters are read by pages, ordered by their key, each page in its own transaction so that the
+ * persistence context does not grow with the workspace. The files of a page are extracted by a
+ * bounded number of concurrent tasks, and the bulk request of a page is sent while the next page
+ * is read. Once a bulk has been sent, the key of its last master is saved as a checkpoint: an
+ * interrupted reindexation resumes from there the next time it is requested.
+ *
+ * @see WorkspaceIndexation
+ */
+@Stateless(name = "WorkspaceIndexerBean")
+public class WorkspaceIndexerBean {
+
+    // Bulk failure messages kept for the notification
+    private static final int MAX_REPORTED_ERRORS = 10;
+
+    // Workspaces being reindexed on this server
+    private static final Set<String> RUNNING_INDEXATIONS = ConcurrentHashMap.newKeySet();
+
+    @Inject
+    private DocumentMasterDAO documentMasterDAO;
+
+    @Inject
+    private PartMasterDAO partMasterDAO;
+
+    @Inject
+    private WorkspaceIndexationDAO workspaceIndexationDAO;
+
+    @Inject
+    private IndexerQueryBuilder indexerQueryBuilder;
+
+    @Inject
+    private IndexerTextExtractor textExtractor;
+
+    @Inject
+    private IndexManagerBean indexManager;
+
+    @Inject
+    private INotifierLocal mailer;
+
+    @Inject
+    private ConfigManager configManager;
+
+    @Resource
+    private ManagedExecutorService executor;
+
+    @Resource
+    private SessionContext ctx;
+
+    private static final Logger LOGGER = Logger.getLogger(WorkspaceIndexerBean.class.getName());
+
+    /**
+     * A page of masters, converted to a bulk request
+     */
+    public static class Page {
+
+        private final Bulk.Builder bulk = new Bulk.Builder();
+        private String lastKey;
+        private int masters;
+        private int iterations;
+
+        public Bulk.Builder getBulk() {
+            return bulk;
+        }
+
+        public String getLastKey() {
+            return lastKey;
+        }
+
+        public int getMasters() {
+            return masters;
+        }
+
+        public int getIterations() {
+            return iterations;
+        }
+    }
+
+    /**
+     * Reindex the workspace, resuming the previous reindexation if it has been interrupted.
+     * The given account is notified at the end.
+     *
+     * @param account account to notify
+     * @param workspaceId workspace to index
+     */
+    @Asynchronous
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void indexWorkspace(Account account, String workspaceId) {
+        if (!RUNNING_INDEXATIONS.add(workspaceId)) {
+            LOGGER.log(Level.INFO, "The workspace " + workspaceId + " is already being indexed");
+            return;
+        }
+        try {
+            WorkspaceIndexerBean self = ctx.getBusinessObject(WorkspaceIndexerBean.class);
+            WorkspaceIndexation indexation = self.startIndexation(workspaceId);
+            long startTime = System.currentTimeMillis();
+            long alreadyIndexed = indexation.getIndexedIterations();
+            List<String> errors = new ArrayList<>();
+
+            for (WorkspaceIndexation.Phase phase : WorkspaceIndexation.Phase.values()) {
+                if (phase.compareTo(indexation.getPhase()) >= 0) {
+                    indexPhase(self, indexation, phase, errors);
+                }
+            }
+            self.endIndexation(workspaceId);
+
+            long indexed = indexation.getIndexedIterations() - alreadyIndexed;
+            LOGGER.log(Level.INFO, "Workspace " + workspaceId + " indexed: " + indexation.getIndexedIterations()
+                    + " iterations, " + indexation.getFailedIterations() + " failures, "
+                    + getThroughput(indexed, startTime) + " iterations/s");
+
+            if (indexation.getFailedIterations() == 0) {
+                mailer.sendBulkIndexationSuccess(account);
+            } else {
+                String failureMessage = String.join(", ", errors);
+                LOGGER.log(Level.WARNING, "Failures while bulk indexing workspace [" + workspaceId + "]: \n" + failureMessage);
+                mailer.sendBulkIndexationFailure(account, failureMessage);
+            }
+
+        } catch (IndexerNotAvailableException | IndexerRequestException e) {
+            LOGGER.log(Level.WARNING, "The workspace " + workspaceId + " indexation has been interrupted, it will resume from its last checkpoint.", e);
+            mailer.sendBulkIndexationFailure(account, e.getMessage(account.getLocale()));
+        } catch (EJBException e) {
+            LOGGER.log(Level.WARNING, "The workspace " + workspaceId + " indexation has been interrupted, it will resume from its last checkpoint.", e);
+            mailer.sendBulkIndexationFailure(account, e.toString());
+        } finally {
+            RUNNING_INDEXATIONS.remove(workspaceId);
+        }
+    }
+
+    /**
+     * Get the checkpoint of the workspace reindexation, the indices are recreated
+     * if there is no reindexation to resume.
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public WorkspaceIndexation startIndexation(String workspaceId) throws IndexerNotAvailableException, IndexerRequestException {
+        WorkspaceIndexation indexation = workspaceIndexationDAO.findIndexation(workspaceId);
+        boolean indicesExist = indexManager.indicesExist(workspaceId);
+
+        if (indexation != null && indicesExist) {
+            LOGGER.log(Level.INFO, "Resuming the indexation of workspace " + workspaceId + " after " + indexation);
+            return indexation;
+        }
+
+        // force recreate
+        if (indicesExist) {
+            indexManager.deleteIndices(workspaceId);
+        }
+        indexManager.createIndices(workspaceId);
+
+        if (indexation != null) {
+            workspaceIndexationDAO.removeIndexation(workspaceId);
+        }
+        indexation = new WorkspaceIndexation(workspaceId);
+        workspaceIndexationDAO.createIndexation(indexation);
+        return indexation;
+    }
+
+    /**
+     * Read the masters following the given key, and build the bulk request indexing their iterations
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public Page loadPage(String workspaceId, WorkspaceIndexation.Phase phase, String after, int pageSize) {
+        Page page = new Page();
+        if (phase == WorkspaceIndexation.Phase.DOCUMENTS) {
+            List<DocumentMaster> documentMasters = documentMasterDAO.getNextPageByWorkspace(workspaceId, after, pageSize);
+            if (!documentMasters.isEmpty()) {
+                page.masters = documentMasters.size();
+                page.lastKey = documentMasters.get(documentMasters.size() - 1).getId();
+                List<DocumentIteration> documentIterations = documentMasters.stream()
+                        .flatMap(docM -> docM.getDocumentRevisions().stream().map(DocumentRevision::getDocumentIterations))
+                        .flatMap(Collection::stream)
+                        .collect(Collectors.toList());
+                List<Map<String, String>> contentInputs = extractContents(documentIterations.stream()
+                        .map(DocumentIteration::getAttachedFiles).collect(Collectors.toList()));
+                for (int i = 0; i < documentIterations.size(); i++) {
+                    addToBulk(documentIterations.get(i), contentInputs.get(i), page);
+                }
+            }
+        } else {
+            List<PartMaster> partMasters = partMasterDAO.getNextPageByWorkspace(workspaceId, after, pageSize);
+            if (!partMasters.isEmpty()) {
+                page.masters = partMasters.size();
+                page.lastKey = partMasters.get(partMasters.size() - 1).getNumber();
+                List<PartIteration> partIterations = partMasters.stream()
+                        .flatMap(partM -> partM.getPartRevisions().stream().map(PartRevision::getPartIterations))
+                        .flatMap(Collection::stream)
+                        .collect(Collectors.toList());
+                List<Map<String, String>> contentInputs = extractContents(partIterations.stream()
+                        .map(PartIteration::getAttachedFiles).collect(Collectors.toList()));
+                for (int i = 0; i < partIterations.size(); i++) {
+                    addToBulk(partIterations.get(i), contentInputs.get(i), page);
+                }
+            }
+        }
+        return page;
+    }
+
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void saveCheckpoint(WorkspaceIndexation checkpoint) {
+        WorkspaceIndexation indexation = workspaceIndexationDAO.findIndexation(checkpoint.getWorkspaceId());
+        if (indexation != null) {
+            indexation.setPhase(checkpoint.getPhase());
+            indexation.setLastKey(checkpoint.getLastKey());
+            indexation.setIndexedIterations(checkpoint.getIndexedIterations());
+            indexation.setFailedIterations(checkpoint.getFailedIterations());
+            indexation.setCheckpointDate(new Date());
+        }
+    }
+
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void endIndexation(String workspaceId) {
+        workspaceIndexationDAO.removeIndexation(workspaceId);
+    }
+
+    private void indexPhase(WorkspaceIndexerBean self, WorkspaceIndexation indexation, WorkspaceIndexation.Phase phase, List<String> errors)
+            throws IndexerNotAvailableException, IndexerRequestException {
+        String workspaceId = indexation.getWorkspaceId();
+        int pageSize = configManager.getReindexPageSize();
+        String after = phase == indexation.getPhase() ? indexation.getLastKey() : null;
+        long startTime = System.currentTimeMillis();
+        long indexed = 0;
+
+        Page pendingPage = null;
+        Future<BulkResult> pendingBulk = null;
+        Page page;
+        do {
+            // Read while the previous bulk is being sent
+            page = self.loadPage(workspaceId, phase, after, pageSize);
+            if (pendingBulk != null) {
+                checkBulkResult(indexation, pendingPage, waitFor(pendingBulk), errors);
+                indexation.setPhase(phase);
+                indexation.setLastKey(pendingPage.getLastKey());
+                self.saveCheckpoint(indexation);
+                indexed += pendingPage.getIterations();
+                LOGGER.log(Level.FINE, "Workspace " + workspaceId + " " + phase + " indexed up to " + pendingPage.getLastKey()
+                        + ", " + getThroughput(indexed, startTime) + " iterations/s");
+                pendingBulk = null;
+            }
+            if (page.getMasters() > 0) {
+                Page sentPage = page;
+                pendingPage = page;
+                pendingBulk = page.getIterations() > 0
+                        ? executor.submit(() -> indexManager.sendBulk(sentPage.getBulk()))
+                        : CompletableFuture.completedFuture(null);
+                after = page.getLastKey();
+            }
+        } while (pendingBulk != null);
+
+        LOGGER.log(Level.INFO, "Workspace " + workspaceId + " " + phase + " indexed: " + indexed + " iterations, "
+                + getThroughput(indexed, startTime) + " iterations/s");
+    }
+
+    /**
+     * Count the iterations of the page, a bulk which failed as a whole interrupts the reindexation
+     */
+    private void checkBulkResult(WorkspaceIndexation indexation, Page page, BulkResult result, List<String> errors)
+            throws IndexerRequestException {
+        int failures = 0;
+        if (result != null) {
+            List<BulkResult.BulkResultItem> failedItems = result.getFailedItems();
+            if (!result.isSucceeded() && failedItems.isEmpty()) {
+                throw new IndexerRequestException(result.getErrorMessage());
+            }
+            failures = failedItems.size();
+            if (failures > 0 && errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(result.getErrorMessage() != null ? result.getErrorMessage() : failedItems.get(0).error);
+            }
+        }
+        indexation.setIndexedIterations(indexation.getIndexedIterations() + page.getIterations() - failures);
+        indexation.setFailedIterations(indexation.getFailedIterations() + failures);
+    }
+
+    /**
+     * Extract the content of each set of files, on at most "reindexParallelism" concurrent tasks
+     *
+     * @return the extracted contents, in the order of the given sets
+     */
+    private List<Map<String, String>> extractContents(List<Set<BinaryResource>> files) {
+        int parallelism = Math.min(configManager.getReindexParallelism(), files.size());
+        if (parallelism <= 1) {
+            return files.stream().map(textExtractor::getContentInputs).collect(Collectors.toList());
+        }
+
+        List<Future<List<Map<String, String>>>> tasks = new ArrayList<>();
+        int chunkSize = (files.size() + parallelism - 1) / parallelism;
+        for (int start = 0; start < files.size(); start += chunkSize) {
+            // Copy the lazy collections, which cannot be loaded by the tasks
+            List<Set<BinaryResource>> chunk = files.subList(start, Math.min(start + chunkSize, files.size())).stream()
+                    .map(HashSet::new)
+                    .collect(Collectors.toList());
+            tasks.add(executor.submit(() -> chunk.stream().map(textExtractor::getContentInputs).collect(Collectors.toList())));
+        }
+
+        List<Map<String, String>> contentInputs = new ArrayList<>(files.size());
+        for (Future<List<Map<String, String>>> task : tasks) {
+            try {
+                contentInputs.addAll(task.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new EJBException(e);
+            } catch (ExecutionException e) {
+                throw new EJBException(e);
+            }
+        }
+        return contentInputs;
+    }
+
+    private BulkResult waitFor(Future<BulkResult> bulk) throws IndexerNotAvailableException, IndexerRequestException {
+        try {
+            return bulk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IndexerNotAvailableException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IndexerNotAvailableException) {
+                throw (IndexerNotAvailableException) e.getCause();
+            }
+            if (e.getCause() instanceof IndexerRequestException) {
+                throw (IndexerRequestException) e.getCause();
+            }
+            throw new EJBException(e);
+        }
+    }
+
+    private void addToBulk(DocumentIteration documentIteration, Map<String, String> contentInputs, Page page) {
+        try {
+            page.bulk.addAction(indexerQueryBuilder.updateRequest(documentIteration, contentInputs).build());
+            page.iterations++;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to construct update query for document: " + documentIteration.getKey() + " \n " + e.getMessage());
+            LOGGER.log(Level.FINE, null, e);
+        }
+    }
+
+    private void addToBulk(PartIteration partIteration, Map<String, String> contentInputs, Page page) {
+        try {
+            page.bulk.addAction(indexerQueryBuilder.updateRequest(partIteration, contentInputs).build());
+            page.iterations++;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to construct update query for part: " + partIteration.getKey() + " \n " + e.getMessage());
+            LOGGER.log(Level.FINE, null, e);
+        }
+    }
+
+    private static long getThroughput(long iterations, long startTime) {
+        return iterations * 1000 / Math.max(1, System.currentTimeMillis() - startTime);
+    }
+}
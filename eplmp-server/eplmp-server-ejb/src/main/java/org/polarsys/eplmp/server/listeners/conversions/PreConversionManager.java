@@ -0,0 +1,88 @@
+/*******************************************************************************
+  * Copyright (c) 2017-2019 DocDoku.
+  * All rights reserved. This program and the accompanying materials
+  * are made available under the terms of the Eclipse Public License v1.0
+  * which accompanies this distribution, and is available at
+  * http://www.eclipse.org/legal/epl-v10.html
+  *
+  * Contributors:
+  *    DocDoku - initial API and implementation
+  *******************************************************************************/
+
+package org.polarsys.eplmp.server.listeners.conversions;
+
+import org.polarsys.eplmp.core.admin.WorkspaceBackOptions;
+import org.polarsys.eplmp.core.common.BinaryResource;
+import org.polarsys.eplmp.core.document.DocumentIteration;
+import org.polarsys.eplmp.core.document.DocumentRevision;
+import org.polarsys.eplmp.core.product.PartIteration;
+import org.polarsys.eplmp.core.util.FileIO;
+import org.polarsys.eplmp.server.PreConversionQueue;
+import org.polarsys.eplmp.server.dao.WorkspaceDAO;
+import org.polarsys.eplmp.server.events.CheckedIn;
+import org.polarsys.eplmp.server.events.DocumentRevisionEvent;
+import org.polarsys.eplmp.server.events.PartIterationEvent;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.Collection;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Queues the office files of checked in iterations for their conversion ahead of the first viewing,
+ * in the workspaces where it is enabled. Files are queued once the check in is committed, so that a
+ * rolled back check in converts nothing.
+ */
+@Named
+@ApplicationScoped
+public class PreConversionManager {
+
+    private static final Logger LOGGER = Logger.getLogger(PreConversionManager.class.getName());
+
+    @Inject
+    private WorkspaceDAO workspaceDAO;
+
+    @Inject
+    private PreConversionQueue preConversionQueue;
+
+    private void onCheckInDocument(@Observes(during = TransactionPhase.AFTER_SUCCESS) @CheckedIn DocumentRevisionEvent event) {
+        DocumentRevision documentRevision = event.getObservedDocument();
+        DocumentIteration documentIteration = documentRevision.getLastIteration();
+        if (documentIteration != null) {
+            preConvert(documentRevision.getWorkspaceId(), documentIteration.getAttachedFiles());
+        }
+    }
+
+    private void onCheckInPartIteration(@Observes(during = TransactionPhase.AFTER_SUCCESS) @CheckedIn PartIterationEvent event) {
+        PartIteration partIteration = event.getObservedPart();
+        preConvert(partIteration.getWorkspaceId(), partIteration.getAttachedFiles());
+    }
+
+    private void preConvert(String workspaceId, Collection<BinaryResource> files) {
+        List<String> fullNames = files.stream()
+                .filter(file -> FileIO.isDocFile(file.getName()) && !"pdf".equals(FileIO.getExtension(file.getName())))
+                .map(BinaryResource::getFullName)
+                .collect(Collectors.toList());
+
+        if (fullNames.isEmpty() || !isEnabled(workspaceId)) {
+            return;
+        }
+
+        for (String fullName : fullNames) {
+            if (!preConversionQueue.offer(fullName)) {
+                LOGGER.log(Level.FINE, "Pre-conversion queue is full, {0} will be converted on demand", fullName);
+            }
+        }
+    }
+
+    private boolean isEnabled(String workspaceId) {
+        WorkspaceBackOptions workspaceBackOptions = workspaceDAO.loadWorkspaceBackOptions(workspaceId);
+        return workspaceBackOptions != null && workspaceBackOptions.isPreConvertFiles();
+    }
+}
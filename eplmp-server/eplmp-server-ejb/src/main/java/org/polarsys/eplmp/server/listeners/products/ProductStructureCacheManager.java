@@ -0,0 +1,62 @@
+/*******************************************************************************
+  * Copyright (c) 2017-2019 DocDoku.
+  * All rights reserved. This program and the accompanying materials
+  * are made available under the terms of the Eclipse Public License v1.0
+  * which accompanies this distribution, and is available at
+  * http://www.eclipse.org/legal/epl-v10.html
+  *
+  * Contributors:
+  *    DocDoku - initial API and implementation
+  *******************************************************************************/
+
+package org.polarsys.eplmp.server.listeners.products;
+
+import org.polarsys.eplmp.core.product.PartIteration;
+import org.polarsys.eplmp.core.product.PartRevision;
+import org.polarsys.eplmp.server.configuration.ProductStructureCache;
+import org.polarsys.eplmp.server.events.*;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+/**
+ * Evicts the cached product structures built from a part once a change on it is committed.
+ */
+@Named
+@ApplicationScoped
+public class ProductStructureCacheManager {
+
+    @Inject
+    private ProductStructureCache productStructureCache;
+
+    private void onCheckInPartIteration(@Observes(during = TransactionPhase.AFTER_SUCCESS) @CheckedIn PartIterationEvent event) {
+        invalidate(event.getObservedPart());
+    }
+
+    private void onRemovePartIteration(@Observes(during = TransactionPhase.AFTER_SUCCESS) @Removed PartIterationEvent event) {
+        invalidate(event.getObservedPart());
+    }
+
+    private void onCreatePartRevision(@Observes(during = TransactionPhase.AFTER_SUCCESS) @Created PartRevisionEvent event) {
+        invalidate(event.getObservedPart());
+    }
+
+    private void onReleasePartRevision(@Observes(during = TransactionPhase.AFTER_SUCCESS) @Released PartRevisionEvent event) {
+        invalidate(event.getObservedPart());
+    }
+
+    private void onRemovePartRevision(@Observes(during = TransactionPhase.AFTER_SUCCESS) @Removed PartRevisionEvent event) {
+        invalidate(event.getObservedPart());
+    }
+
+    private void invalidate(PartIteration partIteration) {
+        invalidate(partIteration.getPartRevision());
+    }
+
+    private void invalidate(PartRevision partRevision) {
+        productStructureCache.invalidate(partRevision.getPartMasterWorkspaceId(), partRevision.getPartNumber());
+    }
+}
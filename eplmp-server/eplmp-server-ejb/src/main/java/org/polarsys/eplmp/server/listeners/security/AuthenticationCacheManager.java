@@ -0,0 +1,37 @@
+/*******************************************************************************
+  * Copyright (c) 2017-2019 DocDoku.
+  * All rights reserved. This program and the accompanying materials
+  * are made available under the terms of the Eclipse Public License v1.0
+  * which accompanies this distribution, and is available at
+  * http://www.eclipse.org/legal/epl-v10.html
+  *
+  * Contributors:
+  *    DocDoku - initial API and implementation
+  *******************************************************************************/
+
+package org.polarsys.eplmp.server.listeners.security;
+
+import org.polarsys.eplmp.server.AuthenticationCache;
+import org.polarsys.eplmp.server.events.AccountEvent;
+import org.polarsys.eplmp.server.events.Updated;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+/**
+ * Evicts the cached credentials of an account once a change on it is committed.
+ */
+@Named
+@ApplicationScoped
+public class AuthenticationCacheManager {
+
+    @Inject
+    private AuthenticationCache authenticationCache;
+
+    private void onUpdateAccount(@Observes(during = TransactionPhase.AFTER_SUCCESS) @Updated AccountEvent event) {
+        authenticationCache.invalidate(event.getObservedLogin());
+    }
+}
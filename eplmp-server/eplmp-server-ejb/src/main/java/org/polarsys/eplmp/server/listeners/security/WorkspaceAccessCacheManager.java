@@ -0,0 +1,37 @@
+/*******************************************************************************
+  * Copyright (c) 2017-2019 DocDoku.
+  * All rights reserved. This program and the accompanying materials
+  * are made available under the terms of the Eclipse Public License v1.0
+  * which accompanies this distribution, and is available at
+  * http://www.eclipse.org/legal/epl-v10.html
+  *
+  * Contributors:
+  *    DocDoku - initial API and implementation
+  *******************************************************************************/
+
+package org.polarsys.eplmp.server.listeners.security;
+
+import org.polarsys.eplmp.server.WorkspaceAccessCache;
+import org.polarsys.eplmp.server.events.Updated;
+import org.polarsys.eplmp.server.events.WorkspaceEvent;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+/**
+ * Evicts the cached accesses to a workspace once a change on its memberships is committed.
+ */
+@Named
+@ApplicationScoped
+public class WorkspaceAccessCacheManager {
+
+    @Inject
+    private WorkspaceAccessCache workspaceAccessCache;
+
+    private void onUpdateWorkspace(@Observes(during = TransactionPhase.AFTER_SUCCESS) @Updated WorkspaceEvent event) {
+        workspaceAccessCache.invalidate(event.getObservedWorkspace().getId());
+    }
+}
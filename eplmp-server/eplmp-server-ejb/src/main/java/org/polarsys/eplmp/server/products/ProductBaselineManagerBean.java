@@ -24,6 +24,7 @@ import org.polarsys.eplmp.core.services.IProductBaselineManagerLocal;
 import org.polarsys.eplmp.core.services.IProductManagerLocal;
 import org.polarsys.eplmp.core.services.IUserManagerLocal;
 import org.polarsys.eplmp.core.util.Tools;
+import org.polarsys.eplmp.server.ACLPermissionIndex;
 import org.polarsys.eplmp.server.configuration.PSFilterVisitor;
 import org.polarsys.eplmp.server.configuration.PSFilterVisitorCallbacks;
 import org.polarsys.eplmp.server.configuration.filter.LatestCheckedInPSFilter;
@@ -49,6 +50,9 @@ import java.util.stream.Collectors;
 @Stateless(name = "ProductBaselineManagerBean")
 public class ProductBaselineManagerBean implements IProductBaselineManagerLocal {
 
+    @Inject
+    private ACLPermissionIndex aclPermissionIndex;
+
     @Inject
     private EntityManager em;
 
@@ -108,7 +112,7 @@ public class ProductBaselineManagerBean implements IProductBaselineManagerLocal
 
         ConfigurationItem configurationItem = configurationItemDAO.loadConfigurationItem(ciKey);
 
-        List<String> visitedPaths = new ArrayList<>();
+        Set<String> visitedPaths = new HashSet<>();
 
         ProductConfigSpec filter;
 
@@ -537,7 +541,7 @@ public class ProductBaselineManagerBean implements IProductBaselineManagerLocal
         if (productConfiguration.getAcl() == null) {
             // Check if the item haven't ACL
             return userManager.checkWorkspaceWriteAccess(workspaceId);
-        } else if (productConfiguration.getAcl().hasWriteAccess(user)) {
+        } else if (aclPermissionIndex.hasWriteAccess(user, productConfiguration.getAcl())) {
             // Check if there is a write access
             return user;
         } else {
@@ -555,7 +559,7 @@ public class ProductBaselineManagerBean implements IProductBaselineManagerLocal
         if (productConfiguration.getAcl() == null) {
             // Check if the item haven't ACL
             return userManager.checkWorkspaceReadAccess(workspaceId);
-        } else if (productConfiguration.getAcl().hasReadAccess(user)) {
+        } else if (aclPermissionIndex.hasReadAccess(user, productConfiguration.getAcl())) {
             // Check if there is a write access
             return user;
         } else {
@@ -27,6 +27,7 @@ import org.polarsys.eplmp.core.services.IProductInstanceManagerLocal;
 import org.polarsys.eplmp.core.services.IUserManagerLocal;
 import org.polarsys.eplmp.core.util.NamingConvention;
 import org.polarsys.eplmp.core.util.Tools;
+import org.polarsys.eplmp.server.ACLPermissionIndex;
 import org.polarsys.eplmp.server.LogDocument;
 import org.polarsys.eplmp.server.configuration.PSFilterVisitor;
 import org.polarsys.eplmp.server.configuration.PSFilterVisitorCallbacks;
@@ -51,6 +52,9 @@ import java.util.stream.Collectors;
 @Stateless(name = "ProductInstanceManagerBean")
 public class ProductInstanceManagerBean implements IProductInstanceManagerLocal {
 
+    @Inject
+    private ACLPermissionIndex aclPermissionIndex;
+
     @Inject
     private EntityManager em;
 
@@ -208,7 +212,7 @@ public class ProductInstanceManagerBean implements IProductInstanceManagerLocal
         //Product Instance creation from effectivity filter
         if (pType != null && baselineId == null) {
 
-            List<String> visitedPaths = new ArrayList<>();
+            Set<String> visitedPaths = new HashSet<>();
             ProductConfigSpec filter;
             switch(pType){
                 case EFFECTIVE_DATE:
@@ -612,6 +616,7 @@ public class ProductInstanceManagerBean implements IProductInstanceManagerLocal
             binaryResourceDAO.removeBinaryResource(file);
 
             BinaryResource newFile = new BinaryResource(file.getNewFullName(pNewName), file.getContentLength(), file.getLastModified());
+            newFile.setContentHash(file.getContentHash());
             binaryResourceDAO.createBinaryResource(newFile);
             productInstanceIteration.addFile(newFile);
             return newFile;
@@ -1016,6 +1021,7 @@ public class ProductInstanceManagerBean implements IProductInstanceManagerLocal
                 binaryResourceDAO.removeBinaryResource(file);
 
                 BinaryResource newFile = new BinaryResource(file.getNewFullName(pNewName), file.getContentLength(), file.getLastModified());
+                newFile.setContentHash(file.getContentHash());
                 binaryResourceDAO.createBinaryResource(newFile);
                 pathDataIteration.addFile(newFile);
                 return newFile;
@@ -1209,7 +1215,7 @@ public class ProductInstanceManagerBean implements IProductInstanceManagerLocal
         if (prodInstM.getAcl() == null) {
             // Check if the item has no ACL
             return userManager.checkWorkspaceReadAccess(workspaceId);
-        } else if (prodInstM.getAcl().hasReadAccess(user)) {
+        } else if (aclPermissionIndex.hasReadAccess(user, prodInstM.getAcl())) {
             // Check if there is a write access
             return user;
         } else {
@@ -1226,7 +1232,7 @@ public class ProductInstanceManagerBean implements IProductInstanceManagerLocal
         if (prodInstM.getAcl() == null) {
             // Check if the item haven't ACL
             return userManager.checkWorkspaceWriteAccess(workspaceId);
-        } else if (prodInstM.getAcl().hasWriteAccess(user)) {
+        } else if (aclPermissionIndex.hasWriteAccess(user, prodInstM.getAcl())) {
             // Check if there is a write access
             return user;
         } else {
@@ -1236,7 +1242,7 @@ public class ProductInstanceManagerBean implements IProductInstanceManagerLocal
     }
 
     private boolean isACLGrantReadAccess(User user, ProductInstanceMaster productInstanceMaster) {
-        return user.isAdministrator() || productInstanceMaster.getAcl().hasReadAccess(user);
+        return user.isAdministrator() || aclPermissionIndex.hasReadAccess(user, productInstanceMaster.getAcl());
     }
 
     private void checkNameValidity(String name) throws NotAllowedException {
@@ -0,0 +1,77 @@
+/*******************************************************************************
+  * Copyright (c) 2017-2019 DocDoku.
+  * All rights reserved. This program and the accompanying materials
+  * are made available under the terms of the Eclipse Public License v1.0
+  * which accompanies this distribution, and is available at
+  * http://www.eclipse.org/legal/epl-v10.html
+  *
+  * Contributors:
+  *    DocDoku - initial API and implementation
+  *******************************************************************************/
+
+package org.polarsys.eplmp.server.storage;
+
+import org.polarsys.eplmp.core.util.HashUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Computes the SHA-256 of the content written to a stream, and hands it
+ * (hex encoded) to the listeners once the stream has been successfully closed.
+ * Listeners are called in the order they were added.
+ *
+ * @see org.polarsys.eplmp.core.common.BinaryResource#getContentHash()
+ */
+public class ContentHashOutputStream extends DigestOutputStream {
+
+    public static final String ALGORITHM = "SHA-256";
+
+    @FunctionalInterface
+    public interface Listener {
+        void contentHashed(String contentHash) throws IOException;
+    }
+
+    private final List<Listener> listeners = new ArrayList<>();
+    private boolean closed = false;
+
+    public ContentHashOutputStream(OutputStream out) {
+        super(out, newDigest());
+    }
+
+    public ContentHashOutputStream(OutputStream out, Listener listener) {
+        this(out);
+        addListener(listener);
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        super.close();
+        String contentHash = HashUtils.toHex(getMessageDigest().digest());
+        for (Listener listener : listeners) {
+            listener.contentHashed(contentHash);
+        }
+    }
+
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform implements SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -35,4 +35,5 @@ public interface StorageProvider {
     Date getLastModified(BinaryResource binaryResource, String generatedFileName) throws FileNotFoundException;
     InputStream getGeneratedFileInputStream(BinaryResource pBinaryResource, String generatedFileName) throws StorageException, FileNotFoundException;
     OutputStream getGeneratedFileOutputStream(BinaryResource binaryResource, String generatedFileName) throws StorageException;
+    void deleteGeneratedFiles(BinaryResource binaryResource, String generatedFileNamePrefix, String generatedFileNameSuffix, String keptFileName);
 }
@@ -0,0 +1,343 @@
+/*******************************************************************************
+  * Copyright (c) 2017-2019 DocDoku.
+  * All rights reserved. This program and the accompanying materials
+  * are made available under the terms of the Eclipse Public License v1.0
+  * which accompanies this distribution, and is available at
+  * http://www.eclipse.org/legal/epl-v10.html
+  *
+  * Contributors:
+  *    DocDoku - initial API and implementation
+  *******************************************************************************/
+
+package org.polarsys.eplmp.server.storage.filesystem;
+
+import org.polarsys.eplmp.core.common.BinaryResource;
+import org.polarsys.eplmp.core.exceptions.FileNotFoundException;
+import org.polarsys.eplmp.core.exceptions.StorageException;
+import org.polarsys.eplmp.core.util.HashUtils;
+import org.polarsys.eplmp.core.util.Tools;
+import org.polarsys.eplmp.server.storage.ContentHashOutputStream;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * File system storage which stores each distinct content once.
+ *
+ * Contents are stored as read only blobs named after their SHA-256, in the {@value #BLOBS_FOLDER}
+ * folder of the vault. The file of a binary resource, at its usual place in the vault, is a hard
+ * link to its blob: reading a binary resource is still a single open, and copying a binary resource
+ * only creates a link. The number of references to a blob is the link count of its file, minus one
+ * for the blob itself.
+ *
+ * Since files may be shared, they are never written in place: a new content is written to a
+ * temporary file, moved to its blob, then linked at its place with an atomic move.
+ *
+ * A blob is deleted with the last binary resource referencing it when the content hash of that
+ * resource is known, or when the last file linked to it is replaced, otherwise by {@link #collectGarbage()}.
+ *
+ * Requires a file system supporting hard links and the "unix" attribute view, see {@link #isSupported(String)}.
+ * Existing vaults are converted with {@link ContentAddressedVaultMigration}.
+ */
+public class ContentAddressedStorageProvider extends FileStorageProvider {
+
+    public static final String BLOBS_FOLDER = ".blobs";
+    public static final String TEMP_FOLDER = ".tmp";
+    /**
+     * Content hash of each file of the vault, written by {@link ContentAddressedVaultMigration}:
+     * one "hash fullName" line per file.
+     */
+    public static final String CONTENT_HASHES_FILE = ".content-hashes";
+
+    private static final Logger LOGGER = Logger.getLogger(ContentAddressedStorageProvider.class.getName());
+    private static final String LINK_COUNT_ATTRIBUTE = "unix:nlink";
+    private static final long TEMP_FILES_MAX_AGE = TimeUnit.DAYS.toMillis(1);
+
+    // Prevents the garbage collection from deleting a blob which is being linked
+    private static final Object BLOBS_LOCK = new Object();
+
+    private final Path blobsFolder;
+    private final Path tempFolder;
+    private final Path contentHashesFile;
+
+    public ContentAddressedStorageProvider(String vaultPath) {
+        super(vaultPath);
+        this.blobsFolder = Paths.get(vaultPath, BLOBS_FOLDER);
+        this.tempFolder = Paths.get(vaultPath, TEMP_FOLDER);
+        this.contentHashesFile = Paths.get(vaultPath, CONTENT_HASHES_FILE);
+    }
+
+    /**
+     * @return Whether the file system of the vault supports hard links and link counts.
+     */
+    public static boolean isSupported(String vaultPath) {
+        Path tempFolder = Paths.get(vaultPath, TEMP_FOLDER);
+        if (!tempFolder.getFileSystem().supportedFileAttributeViews().contains("unix")) {
+            return false;
+        }
+        Path probe = null;
+        Path link = null;
+        try {
+            Files.createDirectories(tempFolder);
+            probe = Files.createTempFile(tempFolder, "probe", null);
+            link = tempFolder.resolve(UUID.randomUUID().toString());
+            Files.createLink(link, probe);
+            return getLinkCount(probe) == 2;
+        } catch (IOException | UnsupportedOperationException e) {
+            LOGGER.log(Level.FINE, null, e);
+            return false;
+        } finally {
+            deleteQuietly(link);
+            deleteQuietly(probe);
+        }
+    }
+
+    @Override
+    public OutputStream getBinaryResourceOutputStream(BinaryResource pBinaryResource) throws StorageException {
+        return getContentOutputStream(Paths.get(getVirtualPath(pBinaryResource)), pBinaryResource.getContentHash());
+    }
+
+    @Override
+    public OutputStream getGeneratedFileOutputStream(BinaryResource binaryResource, String generatedFileName) throws StorageException {
+        File generatedFile = new File(getGeneratedFilesFolder(binaryResource), Tools.unAccent(generatedFileName));
+        return getContentOutputStream(generatedFile.toPath(), null);
+    }
+
+    @Override
+    public void copyData(BinaryResource pSourceBinaryResource, BinaryResource pTargetBinaryResource) throws StorageException, FileNotFoundException {
+        Path source = Paths.get(getVirtualPath(pSourceBinaryResource));
+        if (!Files.exists(source)) {
+            throw new FileNotFoundException("Can't find source file to copy " + pSourceBinaryResource.getFullName());
+        }
+        try {
+            link(source, Paths.get(getVirtualPath(pTargetBinaryResource)), pTargetBinaryResource.getContentHash());
+        } catch (IOException e) {
+            throw new StorageException("Error copying " + pSourceBinaryResource.getFullName() + " to " + pTargetBinaryResource.getFullName(), e);
+        }
+    }
+
+    @Override
+    public File copyFile(File source, BinaryResource pTargetBinaryResource) throws StorageException, FileNotFoundException {
+        if (!source.exists()) {
+            throw new FileNotFoundException("Can't find source file to copy " + source.getAbsolutePath());
+        }
+        File target = new File(getVirtualPath(pTargetBinaryResource));
+        try (InputStream in = new FileInputStream(source);
+             OutputStream out = getContentOutputStream(target.toPath(), pTargetBinaryResource.getContentHash())) {
+            copy(in, out);
+        } catch (IOException e) {
+            throw new StorageException("Error copying " + source.getAbsolutePath() + " to " + pTargetBinaryResource.getFullName(), e);
+        }
+        return target;
+    }
+
+    @Override
+    public void delData(BinaryResource pBinaryResource) {
+        super.delData(pBinaryResource);
+        String contentHash = pBinaryResource.getContentHash();
+        if (contentHash != null) {
+            releaseBlob(getBlob(contentHash));
+        }
+    }
+
+    @Override
+    public void deleteWorkspaceFolder(String workspaceId) throws StorageException {
+        super.deleteWorkspaceFolder(workspaceId);
+        collectGarbage();
+    }
+
+    /**
+     * Store a file of the vault as a blob, the file is replaced by a link to the blob.
+     * Importing a file which is already a link to its blob does nothing.
+     *
+     * @param file A file of the vault, outside of the blobs and temporary folders.
+     * @return True if the content was already stored.
+     */
+    public boolean importFile(Path file) throws IOException {
+        return importFile(file, hash(file));
+    }
+
+    /**
+     * @param contentHash The content hash of the file, see {@link #hash(Path)}.
+     * @see #importFile(Path)
+     */
+    public boolean importFile(Path file, String contentHash) throws IOException {
+        synchronized (BLOBS_LOCK) {
+            Path blob = getBlob(contentHash);
+            if (Files.exists(blob)) {
+                link(blob, file, contentHash);
+                return true;
+            }
+            Files.createDirectories(blob.getParent());
+            Files.createLink(blob, file);
+            blob.toFile().setReadOnly();
+            return false;
+        }
+    }
+
+    /**
+     * Delete the blobs no longer referenced, and the temporary files left by interrupted uploads.
+     *
+     * @return The number of deleted blobs.
+     */
+    public int collectGarbage() {
+        int[] deletedBlobs = {0};
+        long maxTempFileTime = System.currentTimeMillis() - TEMP_FILES_MAX_AGE;
+        try {
+            if (Files.exists(blobsFolder)) {
+                Files.walkFileTree(blobsFolder, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path blob, BasicFileAttributes attrs) {
+                        if (releaseBlob(blob)) {
+                            deletedBlobs[0]++;
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            }
+            if (Files.exists(tempFolder)) {
+                try (DirectoryStream<Path> tempFiles = Files.newDirectoryStream(tempFolder)) {
+                    for (Path tempFile : tempFiles) {
+                        FileTime lastModified = Files.getLastModifiedTime(tempFile);
+                        if (lastModified.toMillis() < maxTempFileTime) {
+                            deleteQuietly(tempFile);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Error while collecting the unused blobs", e);
+        }
+        LOGGER.log(Level.FINE, deletedBlobs[0] + " unused blobs deleted");
+        return deletedBlobs[0];
+    }
+
+    /**
+     * @return The file listing the content hashes of the vault, see {@link #CONTENT_HASHES_FILE}.
+     */
+    public Path getContentHashesFile() {
+        return contentHashesFile;
+    }
+
+    Path getBlob(String contentHash) {
+        return blobsFolder.resolve(contentHash.substring(0, 2)).resolve(contentHash.substring(2, 4)).resolve(contentHash);
+    }
+
+    static int getLinkCount(Path path) throws IOException {
+        return (Integer) Files.getAttribute(path, LINK_COUNT_ATTRIBUTE);
+    }
+
+    /**
+     * @param replacedHash The content hash of the target if known, its blob is released once replaced.
+     */
+    private OutputStream getContentOutputStream(Path target, String replacedHash) throws StorageException {
+        try {
+            Files.createDirectories(tempFolder);
+            Path content = Files.createTempFile(tempFolder, "content", null);
+            return new ContentHashOutputStream(new BufferedOutputStream(Files.newOutputStream(content)),
+                    contentHash -> commit(content, contentHash, target, replacedHash));
+        } catch (IOException e) {
+            throw new StorageException(e.getMessage(), e);
+        }
+    }
+
+    private void commit(Path content, String contentHash, Path target, String replacedHash) throws IOException {
+        synchronized (BLOBS_LOCK) {
+            Path blob = getBlob(contentHash);
+            if (Files.exists(blob)) {
+                Files.delete(content);
+            } else {
+                Files.createDirectories(blob.getParent());
+                Files.move(content, blob, StandardCopyOption.ATOMIC_MOVE);
+                blob.toFile().setReadOnly();
+            }
+            link(blob, target, replacedHash);
+        }
+    }
+
+    /**
+     * Replace the target by a link to the file of the source, and release the blob of the replaced content.
+     *
+     * @param replacedHash The content hash of the target if known, otherwise it is computed from the
+     *                     target when the target is linked to a blob.
+     */
+    private void link(Path source, Path target, String replacedHash) throws IOException {
+        String replacedContentHash = null;
+        if (Files.exists(target)) {
+            if (Files.isSameFile(source, target)) {
+                return;
+            }
+            // A file with a single link has never been stored as a blob
+            replacedContentHash = replacedHash != null || getLinkCount(target) == 1 ? replacedHash : hash(target);
+        }
+        Files.createDirectories(target.getParent());
+        Path link = tempFolder.resolve(UUID.randomUUID().toString());
+        Files.createDirectories(tempFolder);
+        Files.createLink(link, source);
+        try {
+            Files.move(link, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            deleteQuietly(link);
+        }
+        if (replacedContentHash != null) {
+            releaseBlob(getBlob(replacedContentHash));
+        }
+    }
+
+    /**
+     * @return True if the blob was no longer referenced, and has been deleted.
+     */
+    private boolean releaseBlob(Path blob) {
+        synchronized (BLOBS_LOCK) {
+            try {
+                if (Files.exists(blob) && getLinkCount(blob) == 1) {
+                    Files.delete(blob);
+                    return true;
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Cannot release blob " + blob, e);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * @return The hex encoded SHA-256 of the content of the file.
+     */
+    static String hash(Path file) throws IOException {
+        MessageDigest digest = ContentHashOutputStream.newDigest();
+        try (InputStream in = new DigestInputStream(new BufferedInputStream(Files.newInputStream(file)), digest)) {
+            byte[] buffer = new byte[8192];
+            while (in.read(buffer) != -1) {
+                // Read to update the digest
+            }
+        }
+        return HashUtils.toHex(digest.digest());
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path != null) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, null, e);
+            }
+        }
+    }
+}
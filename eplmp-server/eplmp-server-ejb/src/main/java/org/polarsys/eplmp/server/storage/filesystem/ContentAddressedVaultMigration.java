@@ -0,0 +1,143 @@
+/*******************************************************************************
+  * Copyright (c) 2017-2019 DocDoku.
+  * All rights reserved. This program and the accompanying materials
+  * are made available under the terms of the Eclipse Public License v1.0
+  * which accompanies this distribution, and is available at
+  * http://www.eclipse.org/legal/epl-v10.html
+  *
+  * Contributors:
+  *    DocDoku - initial API and implementation
+  *******************************************************************************/
+
+package org.polarsys.eplmp.server.storage.filesystem;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Offline conversion of an existing vault to the layout of {@link ContentAddressedStorageProvider}:
+ * every file is stored as a blob and replaced by a link to it, files with the same content end up
+ * sharing the same blob. The migration can be interrupted and run again.
+ *
+ * The content hash and vault path of every file are written to {@link ContentAddressedStorageProvider#CONTENT_HASHES_FILE},
+ * the application saves the hashes on the binary resources stored there at next start so that deleting a binary resource
+ * releases its blob.
+ *
+ * Usage: java ContentAddressedVaultMigration &lt;vaultPath&gt;
+ */
+public class ContentAddressedVaultMigration {
+
+    private static final Logger LOGGER = Logger.getLogger(ContentAddressedVaultMigration.class.getName());
+
+    private final Path vault;
+    private final ContentAddressedStorageProvider storageProvider;
+
+    private long importedFiles;
+    private long deduplicatedFiles;
+    private long savedBytes;
+
+    private Writer contentHashes;
+
+    public ContentAddressedVaultMigration(String vaultPath) {
+        this.vault = Paths.get(vaultPath);
+        this.storageProvider = new ContentAddressedStorageProvider(vaultPath);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: ContentAddressedVaultMigration <vaultPath>");
+            System.exit(1);
+        }
+        if (!ContentAddressedStorageProvider.isSupported(args[0])) {
+            System.err.println("The file system of " + args[0] + " does not support hard links");
+            System.exit(1);
+        }
+        new ContentAddressedVaultMigration(args[0]).migrate();
+    }
+
+    public void migrate() throws IOException {
+        try (Writer writer = Files.newBufferedWriter(storageProvider.getContentHashesFile(), StandardCharsets.UTF_8)) {
+            contentHashes = writer;
+            importFiles();
+        } finally {
+            contentHashes = null;
+        }
+        storageProvider.collectGarbage();
+        LOGGER.log(Level.INFO, "Vault migrated: " + importedFiles + " files, " + deduplicatedFiles
+                + " duplicates, " + savedBytes + " bytes saved");
+    }
+
+    public long getImportedFiles() {
+        return importedFiles;
+    }
+
+    public long getDeduplicatedFiles() {
+        return deduplicatedFiles;
+    }
+
+    public long getSavedBytes() {
+        return savedBytes;
+    }
+
+    private void importFiles() throws IOException {
+        Path contentHashesFile = storageProvider.getContentHashesFile();
+        Files.walkFileTree(vault, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (vault.equals(dir.getParent())) {
+                    String name = dir.getFileName().toString();
+                    if (ContentAddressedStorageProvider.BLOBS_FOLDER.equals(name)
+                            || ContentAddressedStorageProvider.TEMP_FOLDER.equals(name)) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (attrs.isRegularFile() && !file.equals(contentHashesFile)) {
+                    importFile(file, attrs.size());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                LOGGER.log(Level.WARNING, "Cannot read " + file, e);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void importFile(Path file, long size) throws IOException {
+        // A file with other links is already shared, replacing it does not free its space
+        boolean lastLink = ContentAddressedStorageProvider.getLinkCount(file) == 1;
+        String contentHash = ContentAddressedStorageProvider.hash(file);
+        if (storageProvider.importFile(file, contentHash)) {
+            deduplicatedFiles++;
+            if (lastLink) {
+                savedBytes += size;
+            }
+        }
+        contentHashes.write(contentHash + " " + toVaultPath(file) + "\n");
+        importedFiles++;
+    }
+
+    private String toVaultPath(Path file) {
+        Path relativePath = vault.relativize(file);
+        StringBuilder vaultPath = new StringBuilder();
+        for (Path name : relativePath) {
+            if (vaultPath.length() > 0) {
+                vaultPath.append('/');
+            }
+            vaultPath.append(name);
+        }
+        return vaultPath.toString();
+    }
+}
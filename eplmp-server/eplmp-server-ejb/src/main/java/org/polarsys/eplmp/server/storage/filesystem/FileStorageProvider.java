@@ -15,12 +15,14 @@ import org.apache.commons.io.FileUtils;
 import org.polarsys.eplmp.core.common.BinaryResource;
 import org.polarsys.eplmp.core.exceptions.FileNotFoundException;
 import org.polarsys.eplmp.core.exceptions.StorageException;
+import org.polarsys.eplmp.core.util.FileBackedInputStream;
 import org.polarsys.eplmp.core.util.FileIO;
 import org.polarsys.eplmp.core.util.Tools;
 import org.polarsys.eplmp.server.storage.StorageProvider;
 
 import java.io.*;
 import java.util.Date;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 
@@ -117,6 +119,21 @@ public class FileStorageProvider implements StorageProvider {
         }
     }
 
+    @Override
+    public void deleteGeneratedFiles(BinaryResource binaryResource, String generatedFileNamePrefix, String generatedFileNameSuffix, String keptFileName) {
+        String prefix = Tools.unAccent(generatedFileNamePrefix);
+        String suffix = Tools.unAccent(generatedFileNameSuffix);
+        String kept = Tools.unAccent(keptFileName);
+        File[] generatedFiles = getGeneratedFilesFolder(binaryResource).listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(suffix) && !name.equals(kept));
+        if (generatedFiles != null) {
+            for (File generatedFile : generatedFiles) {
+                if (!generatedFile.delete()) {
+                    LOGGER.log(Level.WARNING, "Cannot delete generated file " + generatedFile.getAbsolutePath());
+                }
+            }
+        }
+    }
+
     @Override
     public File copyFile(File source, BinaryResource pTargetBinaryResource) throws StorageException, FileNotFoundException {
         if (source.exists()) {
@@ -173,12 +190,12 @@ public class FileStorageProvider implements StorageProvider {
         }
     }
 
-    private String getVirtualPath(BinaryResource pBinaryResource) {
+    protected String getVirtualPath(BinaryResource pBinaryResource) {
         String normalizedName = Tools.unAccent(pBinaryResource.getFullName());
         return this.vaultPath + "/" + normalizedName;
     }
 
-    private File getGeneratedFilesFolder(BinaryResource pBinaryResource) {
+    protected File getGeneratedFilesFolder(BinaryResource pBinaryResource) {
         File binaryResourceFile = new File(getVirtualPath(pBinaryResource));
         return new File(binaryResourceFile.getParentFile(), "_" + binaryResourceFile.getName());
     }
@@ -188,10 +205,10 @@ public class FileStorageProvider implements StorageProvider {
             cleanRemove(pFile.getParentFile());
     }
 
-    private InputStream getInputStream(File file) throws StorageException, FileNotFoundException {
+    protected InputStream getInputStream(File file) throws StorageException, FileNotFoundException {
         if (file.exists()) {
             try {
-                return new BufferedInputStream(new FileInputStream(file));
+                return new FileBackedInputStream(new FileInputStream(file));
             } catch (java.io.FileNotFoundException e) {
                 throw new StorageException(e.getMessage(), e);
             }
@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright (c) 2017-2019 DocDoku.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    DocDoku - initial API and implementation
+ *******************************************************************************/
+
+package org.polarsys.eplmp.server;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Matchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.polarsys.eplmp.core.common.Account;
+import org.polarsys.eplmp.core.common.User;
+import org.polarsys.eplmp.core.common.Workspace;
+import org.polarsys.eplmp.core.security.ACL;
+import org.polarsys.eplmp.core.security.ACLPermission;
+import org.polarsys.eplmp.server.dao.ACLDAO;
+
+import javax.transaction.Status;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class ACLPermissionIndexTest {
+
+    @InjectMocks
+    private ACLPermissionIndex aclPermissionIndex;
+
+    @Mock
+    private ConfigManager configManager;
+
+    @Mock
+    private ACLDAO aclDAO;
+
+    @Mock
+    private TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+    private Map<Object, Object> transactionResources = new HashMap<>();
+    private User user;
+
+    @Before
+    public void setup() {
+        initMocks(this);
+        Mockito.when(configManager.getACLPermissionIndexSize()).thenReturn(100);
+        Mockito.when(transactionSynchronizationRegistry.getTransactionKey()).thenReturn("tx");
+        Mockito.when(transactionSynchronizationRegistry.getTransactionStatus()).thenReturn(Status.STATUS_ACTIVE);
+        Mockito.when(transactionSynchronizationRegistry.getResource(Matchers.any()))
+                .thenAnswer(invocation -> transactionResources.get(invocation.getArguments()[0]));
+        Mockito.doAnswer(invocation -> transactionResources.put(invocation.getArguments()[0], invocation.getArguments()[1]))
+                .when(transactionSynchronizationRegistry).putResource(Matchers.any(), Matchers.any());
+        aclPermissionIndex.init();
+
+        user = new User(new Workspace("wks"), new Account("login", "user", "test@docdoku.com", "en", new Date(), null));
+        Map<Integer, ACLPermission> permissions = new HashMap<>();
+        permissions.put(0, ACLPermission.READ_ONLY);
+        permissions.put(1, ACLPermission.FULL_ACCESS);
+        permissions.put(2, ACLPermission.FORBIDDEN);
+        Mockito.when(aclDAO.getPermissions(user)).thenReturn(permissions);
+    }
+
+    @Test
+    public void accessTest() {
+        //Given
+        ACL acl = new ACL();
+
+        //Then
+        Assert.assertTrue(aclPermissionIndex.hasReadAccess(user, acl));
+        Assert.assertFalse(aclPermissionIndex.hasWriteAccess(user, acl));
+        Assert.assertEquals(ACLPermission.FULL_ACCESS, aclPermissionIndex.getPermission(user, 1));
+        Assert.assertEquals(ACLPermission.FORBIDDEN, aclPermissionIndex.getPermission(user, 2));
+        Assert.assertNull(aclPermissionIndex.getPermission(user, 3));
+
+        // Permissions are resolved once
+        Mockito.verify(aclDAO, Mockito.times(1)).getPermissions(user);
+        Assert.assertEquals(4, aclPermissionIndex.getHitCount());
+        Assert.assertEquals(1, aclPermissionIndex.getMissCount());
+    }
+
+    @Test
+    public void invalidateTest() {
+        //Given
+        aclPermissionIndex.getPermissions(user);
+
+        //When
+        aclPermissionIndex.invalidate("other");
+
+        //Then
+        Assert.assertEquals(1, aclPermissionIndex.size());
+
+        //When
+        aclPermissionIndex.invalidate("wks");
+
+        //Then
+        Assert.assertEquals(0, aclPermissionIndex.size());
+        aclPermissionIndex.getPermissions(user);
+        Mockito.verify(aclDAO, Mockito.times(2)).getPermissions(user);
+    }
+
+    @Test
+    public void pendingChangesTest() {
+        //When
+        aclPermissionIndex.invalidateAfterTransaction("wks");
+        aclPermissionIndex.getPermissions(user);
+
+        //Then
+        // Permissions read while a change is not committed are not shared
+        Assert.assertEquals(0, aclPermissionIndex.size());
+        Mockito.verify(transactionSynchronizationRegistry).registerInterposedSynchronization(Matchers.any());
+
+        //When
+        transactionResources.clear();
+        aclPermissionIndex.getPermissions(user);
+
+        //Then
+        Assert.assertEquals(1, aclPermissionIndex.size());
+    }
+}
@@ -12,6 +12,7 @@ package org.polarsys.eplmp.server;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.InjectMocks;
+import org.mockito.Matchers;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
@@ -21,6 +22,8 @@ import org.polarsys.eplmp.core.exceptions.AccountNotFoundException;
 import org.polarsys.eplmp.core.exceptions.NotAllowedException;
 import org.polarsys.eplmp.core.services.IContextManagerLocal;
 import org.polarsys.eplmp.server.dao.AccountDAO;
+import org.polarsys.eplmp.server.events.AccountEvent;
+import javax.enterprise.event.Event;
 import java.util.Date;
 import org.junit.Assert;
 public class AccountManagerBeanTest {
@@ -32,11 +35,16 @@ public class AccountManagerBeanTest {
     private AccountDAO accountDAO;
     @Mock
     private ConfigManager configManager;
+    @Mock
+    private AuthenticationCache authenticationCache;
+    @Mock
+    private Event<AccountEvent> accountEvent;
     @Spy
     private Account account = new Account("login", "user", "test@docdoku.com", "en", new Date(), null);
     @Before
     public void setup() {
         MockitoAnnotations.initMocks(this);
+        Mockito.when(accountEvent.select(Matchers.any())).thenReturn(accountEvent);
     }
     @Test
     public void updateAccountTest()throws AccountNotFoundException,NotAllowedException{
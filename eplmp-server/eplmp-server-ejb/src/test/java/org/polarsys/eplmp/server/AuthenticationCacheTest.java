@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (c) 2017-2019 DocDoku.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    DocDoku - initial API and implementation
+ *******************************************************************************/
+
+package org.polarsys.eplmp.server;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.polarsys.eplmp.core.common.Account;
+import org.polarsys.eplmp.core.security.UserGroupMapping;
+
+import java.util.Date;
+
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class AuthenticationCacheTest {
+
+    @InjectMocks
+    private AuthenticationCache authenticationCache;
+
+    @Mock
+    private ConfigManager configManager;
+
+    private Account account = new Account("login", "user", "test@docdoku.com", "en", new Date(), null);
+    private UserGroupMapping userGroupMapping = new UserGroupMapping("login");
+
+    @Before
+    public void setup() {
+        initMocks(this);
+        Mockito.when(configManager.getAuthenticationCacheSize()).thenReturn(2);
+        Mockito.when(configManager.getAuthenticationCacheTTL()).thenReturn(60);
+        authenticationCache.init();
+    }
+
+    @Test
+    public void getAccountTest() {
+        //Given
+        authenticationCache.put(authenticationCache.getChangeCounter(), "login", "password", account, userGroupMapping);
+
+        //Then
+        Assert.assertEquals(account, authenticationCache.getAccount("login", "password"));
+        Assert.assertEquals(userGroupMapping.getGroupName(), authenticationCache.getUserGroupMapping("login").getGroupName());
+        Assert.assertNull(authenticationCache.getAccount("login", "wrong"));
+        Assert.assertNull(authenticationCache.getAccount("other", "password"));
+    }
+
+    @Test
+    public void cachedAccountIsNotSharedTest() {
+        //Given
+        authenticationCache.put(authenticationCache.getChangeCounter(), "login", "password", account, userGroupMapping);
+
+        //When
+        account.setName("changed");
+        authenticationCache.getAccount("login", "password").setEmail("changed@docdoku.com");
+
+        //Then
+        Account cachedAccount = authenticationCache.getAccount("login", "password");
+        Assert.assertNotSame(account, cachedAccount);
+        Assert.assertEquals("user", cachedAccount.getName());
+        Assert.assertEquals("test@docdoku.com", cachedAccount.getEmail());
+    }
+
+    @Test
+    public void invalidateTest() {
+        //Given
+        long changeCounter = authenticationCache.getChangeCounter();
+        authenticationCache.put(changeCounter, "login", "password", account, userGroupMapping);
+
+        //When
+        authenticationCache.invalidate("login");
+
+        //Then
+        Assert.assertNull(authenticationCache.getAccount("login", "password"));
+        Assert.assertNull(authenticationCache.getUserGroupMapping("login"));
+
+        // Credentials verified before the change are not stored
+        authenticationCache.put(changeCounter, "login", "password", account, userGroupMapping);
+        Assert.assertNull(authenticationCache.getAccount("login", "password"));
+    }
+
+    @Test
+    public void sizeBoundTest() {
+        //When
+        long changeCounter = authenticationCache.getChangeCounter();
+        authenticationCache.put(changeCounter, "login1", "password", account, userGroupMapping);
+        authenticationCache.put(changeCounter, "login2", "password", account, userGroupMapping);
+        authenticationCache.getAccount("login1", "password");
+        authenticationCache.put(changeCounter, "login3", "password", account, userGroupMapping);
+
+        //Then
+        Assert.assertEquals(2, authenticationCache.size());
+        Assert.assertNotNull(authenticationCache.getAccount("login1", "password"));
+        Assert.assertNull(authenticationCache.getAccount("login2", "password"));
+    }
+}
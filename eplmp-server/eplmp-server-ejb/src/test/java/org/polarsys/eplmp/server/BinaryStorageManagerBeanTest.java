@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * Copyright (c) 2017-2019 DocDoku.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    DocDoku - initial API and implementation
+ *******************************************************************************/
+
+package org.polarsys.eplmp.server;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.internal.util.reflection.Whitebox;
+import org.polarsys.eplmp.core.common.BinaryResource;
+import org.polarsys.eplmp.core.exceptions.StorageException;
+import org.polarsys.eplmp.core.services.IBinaryStorageManagerLocal;
+import org.polarsys.eplmp.server.dao.BinaryResourceDAO;
+import org.polarsys.eplmp.server.storage.filesystem.FileStorageProvider;
+
+import javax.ejb.SessionContext;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class BinaryStorageManagerBeanTest {
+
+    private static final byte[] CONTENT = "content".getBytes(StandardCharsets.UTF_8);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @InjectMocks
+    private BinaryStorageManagerBean storageManager = new BinaryStorageManagerBean();
+    @Mock
+    private BinaryResourceDAO binaryResourceDAO;
+    @Mock
+    private SessionContext ctx;
+    @Mock
+    private IBinaryStorageManagerLocal businessObject;
+
+    @Before
+    public void setup() throws Exception {
+        initMocks(this);
+        Whitebox.setInternalState(storageManager, "defaultStorageProvider", new FileStorageProvider(folder.getRoot().getAbsolutePath()));
+        Mockito.when(ctx.getBusinessObject(IBinaryStorageManagerLocal.class)).thenReturn(businessObject);
+    }
+
+    @Test
+    public void readShouldOpenTheIndexedLocation() throws Exception {
+        //Given
+        BinaryResource stored = newBinaryResource("ws/parts/PART/A/1/attachedfiles/file.txt");
+        write(stored);
+        BinaryResource checkedOut = newBinaryResource("ws/parts/PART/A/3/attachedfiles/file.txt");
+        checkedOut.setLocation(stored.getFullName());
+
+        //When
+        byte[] content = read(checkedOut);
+
+        //Then
+        assertArrayEquals(CONTENT, content);
+        Mockito.verify(businessObject, Mockito.never()).saveContentLocation(Mockito.anyString(), Mockito.anyString());
+    }
+
+    @Test
+    public void readShouldResolveAndSaveUnindexedLocation() throws Exception {
+        //Given
+        BinaryResource stored = newBinaryResource("ws/parts/PART/A/1/attachedfiles/file.txt");
+        write(stored);
+        BinaryResource checkedOut = newBinaryResource("ws/parts/PART/A/3/attachedfiles/file.txt");
+
+        //When
+        byte[] content = read(checkedOut);
+
+        //Then
+        assertArrayEquals(CONTENT, content);
+        assertEquals(stored.getFullName(), checkedOut.getLocation());
+        Mockito.verify(businessObject).saveContentLocation(checkedOut.getFullName(), stored.getFullName());
+    }
+
+    @Test(expected = StorageException.class)
+    public void readShouldFailWhenTheContentIsMissing() throws Exception {
+        BinaryResource binaryResource = newBinaryResource("ws/parts/PART/A/2/attachedfiles/file.txt");
+        binaryResource.setLocation(binaryResource.getFullName());
+        storageManager.getBinaryResourceInputStream(binaryResource);
+    }
+
+    @Test
+    public void copyDataShouldLocateTheCopy() throws Exception {
+        //Given
+        BinaryResource stored = newBinaryResource("ws/parts/PART/A/1/attachedfiles/file.txt");
+        write(stored);
+        BinaryResource source = newBinaryResource("ws/parts/PART/A/2/attachedfiles/file.txt");
+        source.setLocation(stored.getFullName());
+        BinaryResource target = newBinaryResource("ws/parts/PART/B/1/attachedfiles/file.txt");
+
+        //When
+        storageManager.copyData(source, target);
+
+        //Then
+        assertEquals(target.getFullName(), target.getLocation());
+        assertArrayEquals(CONTENT, Files.readAllBytes(getPath(target)));
+    }
+
+    @Test
+    public void indexContentLocationBatchShouldResolveLocations() throws Exception {
+        //Given
+        BinaryResource stored = newBinaryResource("ws/parts/PART/A/1/attachedfiles/file.txt");
+        write(stored);
+        BinaryResource checkedOut = newBinaryResource("ws/parts/PART/A/2/attachedfiles/file.txt");
+        BinaryResource missing = newBinaryResource("ws/parts/PART/A/2/attachedfiles/missing.txt");
+        Mockito.when(binaryResourceDAO.findUnlocatedBinaryResources("", 2)).thenReturn(Arrays.asList(stored, checkedOut));
+        Mockito.when(binaryResourceDAO.findUnlocatedBinaryResources(checkedOut.getFullName(), 2)).thenReturn(Arrays.asList(missing));
+
+        //When
+        String next = storageManager.indexContentLocationBatch("", 2);
+        String last = storageManager.indexContentLocationBatch(next, 2);
+
+        //Then
+        assertEquals(checkedOut.getFullName(), next);
+        assertNull(last);
+        assertEquals(stored.getFullName(), stored.getLocation());
+        assertEquals(stored.getFullName(), checkedOut.getLocation());
+        assertNull(missing.getLocation());
+    }
+
+    @Test
+    public void saveContentHashBatchShouldMatchUnaccentedNames() throws Exception {
+        //Given
+        BinaryResource accented = newBinaryResource("ws/documents/DOC/A/1/résumé final.txt");
+        BinaryResource copy = newBinaryResource("ws/documents/DOC/A/2/résumé final.txt");
+        copy.setLocation(accented.getFullName());
+        BinaryResource unknown = newBinaryResource("ws/documents/DOC/B/1/other.txt");
+        Mockito.when(binaryResourceDAO.findBinaryResourcesWithoutContentHash("", 3)).thenReturn(Arrays.asList(accented, copy, unknown));
+        Map<String, String> contentHashes = new HashMap<>();
+        contentHashes.put("ws/documents/DOC/A/1/resume_final.txt", "hash1");
+
+        //When
+        String next = storageManager.saveContentHashBatch(contentHashes, "", 3);
+
+        //Then
+        assertEquals(unknown.getFullName(), next);
+        assertEquals("hash1", accented.getContentHash());
+        assertEquals("hash1", copy.getContentHash());
+        assertNull(unknown.getContentHash());
+    }
+
+    //############################## HELPER METHODS ##############################
+
+    private BinaryResource newBinaryResource(String fullName) {
+        return new BinaryResource(fullName, CONTENT.length, new Date());
+    }
+
+    private Path getPath(BinaryResource binaryResource) {
+        return folder.getRoot().toPath().resolve(binaryResource.getFullName());
+    }
+
+    private void write(BinaryResource binaryResource) throws Exception {
+        Files.createDirectories(getPath(binaryResource).getParent());
+        Files.write(getPath(binaryResource), CONTENT);
+    }
+
+    private byte[] read(BinaryResource binaryResource) throws Exception {
+        try (InputStream in = storageManager.getBinaryResourceInputStream(binaryResource)) {
+            return IOUtils.toByteArray(in);
+        }
+    }
+}
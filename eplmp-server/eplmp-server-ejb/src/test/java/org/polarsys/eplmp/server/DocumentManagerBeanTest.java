@@ -18,6 +18,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Matchers;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.polarsys.eplmp.core.common.Account;
 import org.polarsys.eplmp.core.common.BinaryResource;
 import org.polarsys.eplmp.core.common.User;
@@ -51,6 +52,9 @@ public class DocumentManagerBeanTest {
     private
     DocumentManagerBean documentManagerBean = new DocumentManagerBean();
 
+    @Spy
+    private ACLPermissionIndex aclPermissionIndex = new ACLPermissionIndex();
+
     @Mock
     private IUserManagerLocal userManager;
     @Mock
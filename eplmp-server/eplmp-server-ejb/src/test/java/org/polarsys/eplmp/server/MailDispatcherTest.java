@@ -0,0 +1,225 @@
+/*******************************************************************************
+  * Copyright (c) 2017-2019 DocDoku.
+  * All rights reserved. This program and the accompanying materials
+  * are made available under the terms of the Eclipse Public License v1.0
+  * which accompanies this distribution, and is available at
+  * http://www.eclipse.org/legal/epl-v10.html
+  *
+  * Contributors:
+  *    DocDoku - initial API and implementation
+  *******************************************************************************/
+
+package org.polarsys.eplmp.server;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+
+import javax.mail.*;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class MailDispatcherTest {
+
+    @InjectMocks
+    private MailDispatcher mailDispatcher = new MailDispatcher();
+
+    @Mock
+    private ConfigManager configManager;
+
+    private Session session;
+
+    private Instant now = Instant.parse("2019-01-01T12:00:00Z");
+
+    @Before
+    public void setup() throws Exception {
+        initMocks(this);
+        RecordingTransport.reset();
+        mailDispatcher.clock = Clock.fixed(now, ZoneOffset.UTC);
+        Properties properties = new Properties();
+        properties.put("mail.transport.protocol", "smtp");
+        properties.put("mail.from", "plm@docdoku.com");
+        session = Session.getInstance(properties);
+        session.setProvider(new Provider(Provider.Type.TRANSPORT, "smtp", RecordingTransport.class.getName(), "DocDoku", "1.0"));
+    }
+
+    @Test
+    public void queuedMailsShouldBeSentThroughOneConnection() throws Exception {
+        //Given
+        mailDispatcher.enqueue(session, mail("user1@docdoku.com", true));
+        mailDispatcher.enqueue(session, mail("user2@docdoku.com", true));
+        mailDispatcher.enqueue(session, mail("user3@docdoku.com", false));
+
+        //When
+        mailDispatcher.dispatch(false);
+
+        //Then
+        Assert.assertEquals(3, RecordingTransport.sentMessages.size());
+        Assert.assertEquals(1, RecordingTransport.connections);
+        Assert.assertEquals(0, mailDispatcher.getQueueSize());
+    }
+
+    @Test
+    public void notificationsToTheSameAddressShouldBeGroupedWithinTheDigestWindow() throws Exception {
+        //Given
+        Mockito.when(configManager.getMailDigestWindow()).thenReturn(60);
+        mailDispatcher.enqueue(session, mail("user1@docdoku.com", true));
+        mailDispatcher.enqueue(session, mail("user1@docdoku.com", true));
+
+        //When
+        mailDispatcher.dispatch(false);
+
+        //Then
+        Assert.assertTrue(RecordingTransport.sentMessages.isEmpty());
+
+        //When
+        mailDispatcher.dispatch(true);
+
+        //Then
+        Assert.assertEquals(1, RecordingTransport.sentMessages.size());
+        Assert.assertTrue(RecordingTransport.sentMessages.get(0).getSubject().endsWith("2 notifications"));
+    }
+
+    @Test
+    public void notificationsQueuedDuringTheDigestWindowShouldBeSentWithTheFirstOne() throws Exception {
+        //Given
+        Mockito.when(configManager.getMailDigestWindow()).thenReturn(60);
+        mailDispatcher.enqueue(session, mail("user1@docdoku.com", true));
+        advanceClock(30);
+        mailDispatcher.enqueue(session, mail("user1@docdoku.com", true));
+        mailDispatcher.enqueue(session, mail("user2@docdoku.com", true));
+
+        //When
+        advanceClock(30);
+        mailDispatcher.dispatch(false);
+
+        //Then
+        Assert.assertEquals(1, RecordingTransport.sentMessages.size());
+        Assert.assertTrue(RecordingTransport.sentMessages.get(0).getSubject().endsWith("2 notifications"));
+        Assert.assertEquals(1, mailDispatcher.getQueueSize());
+
+        //When
+        advanceClock(30);
+        mailDispatcher.dispatch(false);
+
+        //Then
+        Assert.assertEquals(2, RecordingTransport.sentMessages.size());
+        Assert.assertEquals(0, mailDispatcher.getQueueSize());
+    }
+
+    @Test
+    public void mailsShouldBeRetriedWhenTheServerFails() throws Exception {
+        //Given
+        RecordingTransport.failing = true;
+        MailDispatcher.Mail mail = mail("user1@docdoku.com", false);
+        mailDispatcher.enqueue(session, mail);
+
+        //When
+        mailDispatcher.dispatch(false);
+
+        //Then
+        Assert.assertTrue(RecordingTransport.sentMessages.isEmpty());
+        Assert.assertEquals(1, mailDispatcher.getQueueSize());
+        Assert.assertEquals(1, mail.getAttempts());
+
+        //When
+        RecordingTransport.failing = false;
+        mailDispatcher.dispatch(true);
+
+        //Then
+        Assert.assertEquals(1, RecordingTransport.sentMessages.size());
+        Assert.assertEquals(0, mailDispatcher.getQueueSize());
+    }
+
+    @Test
+    public void mailsOverTheRateLimitShouldBeDeferredToTheNextRun() throws Exception {
+        //Given
+        Mockito.when(configManager.getMailRateLimit()).thenReturn(1);
+        for (int i = 0; i < 3; i++) {
+            mailDispatcher.enqueue(session, mail("user" + i + "@docdoku.com", false));
+        }
+
+        //When
+        mailDispatcher.dispatch(false);
+
+        //Then
+        Assert.assertEquals(2, RecordingTransport.sentMessages.size());
+        Assert.assertEquals(1, mailDispatcher.getQueueSize());
+
+        //When
+        mailDispatcher.dispatch(false);
+
+        //Then
+        Assert.assertEquals(3, RecordingTransport.sentMessages.size());
+        Assert.assertEquals(0, mailDispatcher.getQueueSize());
+    }
+
+    @Test
+    public void mailsWhichCannotBeBuiltShouldNotBeRetried() throws Exception {
+        //Given
+        session.getProperties().put("mail.from", "not@an@address");
+        MailDispatcher.Mail mail = mail("user1@docdoku.com", false);
+        mailDispatcher.enqueue(session, mail);
+
+        //When
+        mailDispatcher.dispatch(false);
+
+        //Then
+        Assert.assertTrue(RecordingTransport.sentMessages.isEmpty());
+        Assert.assertEquals(0, mailDispatcher.getQueueSize());
+        Assert.assertEquals(0, mail.getAttempts());
+    }
+
+    //############################## HELPER METHODS ##############################
+
+    private void advanceClock(long seconds) {
+        now = now.plus(Duration.ofSeconds(seconds));
+        mailDispatcher.clock = Clock.fixed(now, ZoneOffset.UTC);
+    }
+
+    private MailDispatcher.Mail mail(String email, boolean digestible) {
+        return new MailDispatcher.Mail(email, "User", Locale.ENGLISH, "state notification", "<p>content</p>", digestible);
+    }
+
+    public static class RecordingTransport extends Transport {
+
+        static List<Message> sentMessages = new ArrayList<>();
+        static int connections;
+        static boolean failing;
+
+        public RecordingTransport(Session session, URLName urlName) {
+            super(session, urlName);
+        }
+
+        static void reset() {
+            sentMessages.clear();
+            connections = 0;
+            failing = false;
+        }
+
+        @Override
+        protected boolean protocolConnect(String host, int port, String user, String password) {
+            connections++;
+            return true;
+        }
+
+        @Override
+        public void sendMessage(Message message, Address[] addresses) throws MessagingException {
+            if (failing) {
+                throw new MessagingException("Connection lost");
+            }
+            sentMessages.add(message);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright (c) 2017-2019 DocDoku.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    DocDoku - initial API and implementation
+ *******************************************************************************/
+
+package org.polarsys.eplmp.server;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class PreConversionQueueTest {
+
+    @InjectMocks
+    private PreConversionQueue preConversionQueue;
+
+    @Mock
+    private ConfigManager configManager;
+
+    @Before
+    public void setup() {
+        initMocks(this);
+        Mockito.when(configManager.getPreConversionQueueSize()).thenReturn(2);
+        preConversionQueue.init();
+    }
+
+    @Test
+    public void offerTest() {
+        //When
+        Assert.assertTrue(preConversionQueue.offer("wks/documents/DOC-001/A/1/a.docx"));
+        Assert.assertTrue(preConversionQueue.offer("wks/documents/DOC-001/A/1/a.docx"));
+        Assert.assertTrue(preConversionQueue.offer("wks/documents/DOC-001/A/1/b.docx"));
+        Assert.assertFalse(preConversionQueue.offer("wks/documents/DOC-001/A/1/c.docx"));
+
+        //Then
+        Assert.assertEquals(2, preConversionQueue.size());
+        Assert.assertEquals(1, preConversionQueue.getDroppedCount());
+    }
+
+    @Test
+    public void peekAndRemoveTest() {
+        //Given
+        preConversionQueue.offer("wks/documents/DOC-001/A/1/a.docx");
+        preConversionQueue.offer("wks/documents/DOC-001/A/1/b.docx");
+
+        //Then
+        Assert.assertEquals("wks/documents/DOC-001/A/1/a.docx", preConversionQueue.peek());
+        Assert.assertEquals("wks/documents/DOC-001/A/1/a.docx", preConversionQueue.peek());
+
+        //When
+        preConversionQueue.remove("wks/documents/DOC-001/A/1/a.docx");
+
+        //Then
+        Assert.assertEquals("wks/documents/DOC-001/A/1/b.docx", preConversionQueue.peek());
+        preConversionQueue.remove("wks/documents/DOC-001/A/1/b.docx");
+        Assert.assertNull(preConversionQueue.peek());
+    }
+}
@@ -21,6 +21,7 @@ import org.mockito.Matchers;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.polarsys.eplmp.core.common.Account;
+import org.polarsys.eplmp.core.common.BinaryResource;
 import org.polarsys.eplmp.core.common.User;
 import org.polarsys.eplmp.core.common.Workspace;
 import org.polarsys.eplmp.core.configuration.ProductStructureFilter;
@@ -28,6 +29,8 @@ import org.polarsys.eplmp.core.document.DocumentRevisionKey;
 import org.polarsys.eplmp.core.exceptions.*;
 import org.polarsys.eplmp.core.meta.*;
 import org.polarsys.eplmp.core.product.*;
+import org.polarsys.eplmp.core.query.Query;
+import org.polarsys.eplmp.core.services.IBinaryStorageManagerLocal;
 import org.polarsys.eplmp.core.services.IIndexerManagerLocal;
 import org.polarsys.eplmp.core.services.IUserManagerLocal;
 import org.polarsys.eplmp.server.configuration.PSFilterVisitor;
@@ -39,6 +42,7 @@ import org.polarsys.eplmp.server.util.CyclicAssemblyRule;
 import org.polarsys.eplmp.server.util.ProductUtil;
 
 import javax.enterprise.event.Event;
+import javax.persistence.EntityManager;
 import java.util.*;
 
 import static org.mockito.Matchers.any;
@@ -61,6 +65,16 @@ public class ProductManagerBeanTest {
     private PartUsageLinkDAO partUsageLinkDAO;
     @Mock
     private TagDAO tagDAO;
+    @Mock
+    private PartRevisionQueryDAO partRevisionQueryDAO;
+    @Mock
+    private WorkspaceDAO workspaceDAO;
+    @Mock
+    private BinaryResourceDAO binaryResourceDAO;
+    @Mock
+    private EntityManager em;
+    @Mock
+    private IBinaryStorageManagerLocal storageManager;
 
     @Mock
     private IUserManagerLocal userManager;
@@ -294,4 +308,98 @@ public class ProductManagerBeanTest {
         productManagerBean.updatePartIteration(partIteration.getKey(), null, null, null, null, null, null, null, null);
     }
 
+    @Test
+    public void searchPartRevisionsShouldFillPagesWithVisibleRevisions() throws Exception {
+        Query query = new Query();
+        PartRevision released1 = createCheckedInRevision("PART-001");
+        PartRevision released2 = createCheckedInRevision("PART-002");
+        PartRevision released3 = createCheckedInRevision("PART-003");
+
+        Mockito.when(userManager.checkWorkspaceReadAccess(ProductUtil.WORKSPACE_ID)).thenReturn(user);
+        Mockito.when(workspaceDAO.loadWorkspace(ProductUtil.WORKSPACE_ID)).thenReturn(workspace);
+        // partRevision has never been checked in, it is skipped and the next batch is read
+        Mockito.when(partRevisionQueryDAO.runQuery(user.getTimeZone(), workspace, query, null, 2)).thenReturn(Arrays.asList(released1, partRevision));
+        Mockito.when(partRevisionQueryDAO.runQuery(user.getTimeZone(), workspace, query, partRevision.getKey(), 2)).thenReturn(Arrays.asList(released2, released3));
+
+        List<PartRevision> page = productManagerBean.searchPartRevisions(ProductUtil.WORKSPACE_ID, query, null, 2);
+
+        // The page ends on released2, released3 is read again by the next page
+        Assert.assertEquals(Arrays.asList(released1, released2), page);
+        Mockito.verify(partRevisionQueryDAO, Mockito.times(2)).runQuery(Mockito.eq(user.getTimeZone()), Mockito.eq(workspace), Mockito.eq(query), Mockito.any(), Mockito.eq(2));
+        Mockito.verify(em).detach(partRevision);
+        Mockito.verify(em).detach(released3);
+        Mockito.verify(em, Mockito.never()).detach(released1);
+        Mockito.verify(em, Mockito.never()).clear();
+    }
+
+    @Test
+    public void searchPartRevisionsShouldStopOnFullPage() throws Exception {
+        Query query = new Query();
+        PartRevision released1 = createCheckedInRevision("PART-001");
+        PartRevisionKey after = new PartRevisionKey(ProductUtil.WORKSPACE_ID, "PART-000", "A");
+
+        Mockito.when(userManager.checkWorkspaceReadAccess(ProductUtil.WORKSPACE_ID)).thenReturn(user);
+        Mockito.when(workspaceDAO.loadWorkspace(ProductUtil.WORKSPACE_ID)).thenReturn(workspace);
+        Mockito.when(partRevisionQueryDAO.runQuery(user.getTimeZone(), workspace, query, after, 1)).thenReturn(Collections.singletonList(released1));
+
+        Assert.assertEquals(Collections.singletonList(released1), productManagerBean.searchPartRevisions(ProductUtil.WORKSPACE_ID, query, after, 1));
+        Mockito.verify(partRevisionQueryDAO, Mockito.never()).runQuery(user.getTimeZone(), workspace, query, released1.getKey(), 1);
+    }
+
+    @Test
+    public void renameFileInPartIterationShouldKeepContentHash() throws Exception {
+        //Given
+        BinaryResource file = new BinaryResource(ProductUtil.WORKSPACE_ID + "/parts/" + ProductUtil.PART_ID + "/" + ProductUtil.VERSION + "/" + ProductUtil.ITERATION + "/model.obj", 12, new Date());
+        file.setContentHash("0123456789abcdef");
+        partIteration.addAttachedFile(file);
+
+        Mockito.when(userManager.checkWorkspaceReadAccess(ProductUtil.WORKSPACE_ID)).thenReturn(user);
+        Mockito.when(binaryResourceDAO.loadBinaryResource(file.getFullName())).thenReturn(file);
+        Mockito.when(binaryResourceDAO.getPartHolder(file)).thenReturn(partIteration);
+
+        //When
+        BinaryResource renamed = productManagerBean.renameFileInPartIteration(null, file.getFullName(), "renamed.obj");
+
+        //Then
+        Assert.assertEquals(file.getNewFullName("renamed.obj"), renamed.getFullName());
+        Assert.assertEquals("0123456789abcdef", renamed.getContentHash());
+        Mockito.verify(binaryResourceDAO).createBinaryResource(renamed);
+    }
+
+    @Test
+    public void getBinaryResourceContentHashesShouldOnlyReturnReadableFiles() throws Exception {
+        String iterationFolder = ProductUtil.WORKSPACE_ID + "/parts/" + ProductUtil.PART_ID + "/" + ProductUtil.VERSION + "/" + ProductUtil.ITERATION + "/";
+        String geometry = iterationFolder + "part.obj";
+        String attachedFile = iterationFolder + "attachedfiles/notice.pdf";
+        String otherWorkspaceFile = "OtherWorkspace/parts/" + ProductUtil.PART_ID + "/" + ProductUtil.VERSION + "/1/part.obj";
+        List<String> partFiles = Arrays.asList(geometry, attachedFile);
+
+        Map<String, String> contentHashes = new HashMap<>();
+        contentHashes.put(geometry, "hash1");
+        contentHashes.put(attachedFile, "hash2");
+
+        Mockito.when(userManager.checkWorkspaceReadAccess(ProductUtil.WORKSPACE_ID)).thenReturn(user2);
+        Mockito.when(binaryResourceDAO.findContentHashes(partFiles)).thenReturn(new HashMap<>(contentHashes));
+        Mockito.when(partRevisionDAO.loadPartR(partRevision.getKey())).thenReturn(partRevision);
+        Mockito.when(partRevisionDAO.isCheckedOutIteration(partIteration.getKey())).thenReturn(true);
+
+        // The iteration is checked out by another user
+        Assert.assertTrue(productManagerBean.getBinaryResourceContentHashes(ProductUtil.WORKSPACE_ID, Arrays.asList(geometry, attachedFile, otherWorkspaceFile)).isEmpty());
+
+        Mockito.when(userManager.checkWorkspaceReadAccess(ProductUtil.WORKSPACE_ID)).thenReturn(user);
+        Mockito.when(binaryResourceDAO.findContentHashes(partFiles)).thenReturn(new HashMap<>(contentHashes));
+
+        Assert.assertEquals(contentHashes, productManagerBean.getBinaryResourceContentHashes(ProductUtil.WORKSPACE_ID, Arrays.asList(geometry, attachedFile, otherWorkspaceFile)));
+        // Access rights are checked once per iteration
+        Mockito.verify(partRevisionDAO, Mockito.times(2)).loadPartR(partRevision.getKey());
+    }
+
+    //############################## HELPER METHODS ##############################
+
+    private PartRevision createCheckedInRevision(String number) {
+        PartRevision revision = new PartMaster(workspace, number, user).createNextRevision(user);
+        revision.createNextIteration(user);
+        return revision;
+    }
+
 }
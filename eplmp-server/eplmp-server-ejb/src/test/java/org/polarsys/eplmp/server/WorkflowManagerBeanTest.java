@@ -18,6 +18,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Matchers;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.polarsys.eplmp.core.common.Account;
 import org.polarsys.eplmp.core.common.User;
 import org.polarsys.eplmp.core.common.UserGroup;
@@ -55,6 +56,9 @@ public class WorkflowManagerBeanTest {
     @Mock
     private ACLFactory aclFactory;
 
+    @Spy
+    private ACLPermissionIndex aclPermissionIndex = new ACLPermissionIndex();
+
     private User user;
     private Workspace workspace;
     private WorkflowModelKey workflowModelKey;
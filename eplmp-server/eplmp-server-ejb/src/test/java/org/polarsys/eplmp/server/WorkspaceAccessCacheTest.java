@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) 2017-2019 DocDoku.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    DocDoku - initial API and implementation
+ *******************************************************************************/
+
+package org.polarsys.eplmp.server;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Matchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.polarsys.eplmp.core.common.User;
+
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class WorkspaceAccessCacheTest {
+
+    @InjectMocks
+    private WorkspaceAccessCache workspaceAccessCache;
+
+    @Mock
+    private ConfigManager configManager;
+
+    @Mock
+    private TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+    private Map<Object, Object> transactionResources = new HashMap<>();
+
+    @Before
+    public void setup() {
+        initMocks(this);
+        Mockito.when(configManager.getWorkspaceAccessCacheSize()).thenReturn(100);
+        Mockito.when(configManager.getWorkspaceAccessCacheTTL()).thenReturn(30);
+        Mockito.when(transactionSynchronizationRegistry.getTransactionKey()).thenReturn("tx");
+        Mockito.when(transactionSynchronizationRegistry.getResource(Matchers.any()))
+                .thenAnswer(invocation -> transactionResources.get(invocation.getArguments()[0]));
+        Mockito.doAnswer(invocation -> transactionResources.put(invocation.getArguments()[0], invocation.getArguments()[1]))
+                .when(transactionSynchronizationRegistry).putResource(Matchers.any(), Matchers.any());
+        workspaceAccessCache.init();
+    }
+
+    @Test
+    public void transactionUsersTest() {
+        //Given
+        User user = new User();
+        workspaceAccessCache.putUser("login", "wks", WorkspaceAccessCache.Mode.READ, user);
+
+        //Then
+        Assert.assertSame(user, workspaceAccessCache.getUser("login", "wks", WorkspaceAccessCache.Mode.READ));
+        Assert.assertNull(workspaceAccessCache.getUser("login", "wks", WorkspaceAccessCache.Mode.WRITE));
+        Assert.assertNull(workspaceAccessCache.getUser("login", "other", WorkspaceAccessCache.Mode.READ));
+        Assert.assertEquals(1, workspaceAccessCache.getTransactionHitCount());
+
+        //When
+        transactionResources.clear();
+
+        //Then
+        Assert.assertNull(workspaceAccessCache.getUser("login", "wks", WorkspaceAccessCache.Mode.READ));
+    }
+
+    @Test
+    public void grantedAccessTest() {
+        //Given
+        workspaceAccessCache.putGranted(workspaceAccessCache.getChangeCounter(), "login", "wks", WorkspaceAccessCache.Mode.READ);
+
+        //Then
+        Assert.assertTrue(workspaceAccessCache.isGranted("login", "wks", WorkspaceAccessCache.Mode.READ));
+        Assert.assertFalse(workspaceAccessCache.isGranted("login", "wks", WorkspaceAccessCache.Mode.WRITE));
+        Assert.assertEquals(1, workspaceAccessCache.getSharedHitCount());
+        Assert.assertEquals(1, workspaceAccessCache.getMissCount());
+    }
+
+    @Test
+    public void invalidateTest() {
+        //Given
+        long changeCounter = workspaceAccessCache.getChangeCounter();
+        workspaceAccessCache.putGranted(changeCounter, "login", "wks", WorkspaceAccessCache.Mode.READ);
+        workspaceAccessCache.putGranted(changeCounter, "login", "other", WorkspaceAccessCache.Mode.READ);
+
+        //When
+        workspaceAccessCache.invalidate("wks");
+
+        //Then
+        Assert.assertFalse(workspaceAccessCache.isGranted("login", "wks", WorkspaceAccessCache.Mode.READ));
+        Assert.assertTrue(workspaceAccessCache.isGranted("login", "other", WorkspaceAccessCache.Mode.READ));
+
+        // Accesses checked before the change are not stored
+        workspaceAccessCache.putGranted(changeCounter, "login", "wks", WorkspaceAccessCache.Mode.READ);
+        Assert.assertFalse(workspaceAccessCache.isGranted("login", "wks", WorkspaceAccessCache.Mode.READ));
+    }
+}
@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Copyright (c) 2017-2019 DocDoku.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * DocDoku - initial API and implementation
+ *******************************************************************************/
+
+package org.polarsys.eplmp.server.configuration;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.polarsys.eplmp.core.common.Account;
+import org.polarsys.eplmp.core.common.User;
+import org.polarsys.eplmp.core.common.Workspace;
+import org.polarsys.eplmp.core.configuration.ProductStructureFilter;
+import org.polarsys.eplmp.core.exceptions.EntityConstraintException;
+import org.polarsys.eplmp.core.product.*;
+import org.polarsys.eplmp.server.dao.PartMasterDAO;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class BatchPSFilterVisitorTest {
+
+    private static final String WORKSPACE_ID = "workspace01";
+
+    @InjectMocks
+    private BatchPSFilterVisitor batchPSFilterVisitor = new BatchPSFilterVisitor();
+
+    @Mock
+    private PartMasterDAO partMasterDAO;
+
+    private User user;
+    private Map<String, PartMaster> partMasters = new HashMap<>();
+    private Map<String, Integer> filterCalls = new HashMap<>();
+
+    /**
+     * Structure used in tests :
+     *
+     *      ROOT
+     *       |--> SUB (x2, shared)
+     *       |      |--> LEAF
+     *       |--> LEAF
+     */
+    @Before
+    public void setUp() {
+        initMocks(this);
+        Workspace workspace = new Workspace(WORKSPACE_ID);
+        user = new User(workspace, new Account("user1", "user1", "user1@docdoku.com", "en", new Date(), null));
+
+        PartMaster leaf = createPartMaster(workspace, "LEAF");
+        PartMaster sub = createPartMaster(workspace, "SUB", leaf);
+        createPartMaster(workspace, "ROOT", sub, sub, leaf);
+
+        Mockito.when(partMasterDAO.loadPartMasters(eq(WORKSPACE_ID), anyCollectionOf(String.class))).thenAnswer(invocation -> {
+            Map<String, PartMaster> result = new HashMap<>();
+            for (Object number : (Collection<?>) invocation.getArguments()[1]) {
+                result.put((String) number, partMasters.get(number));
+            }
+            return result;
+        });
+    }
+
+    @Test
+    public void visitShouldBuildTheSameStructureThanPSFilterVisitor() throws Exception {
+        Component root = batchPSFilterVisitor.visit(WORKSPACE_ID, createCountingFilter(), partMasters.get("ROOT"), -1, new PSFilterVisitorCallbacks() {});
+
+        assertEquals("ROOT", root.getPartMaster().getNumber());
+        assertEquals(3, root.getComponents().size());
+        assertEquals("SUB", root.getComponents().get(0).getPartMaster().getNumber());
+        assertEquals("SUB", root.getComponents().get(1).getPartMaster().getNumber());
+        assertEquals("LEAF", root.getComponents().get(2).getPartMaster().getNumber());
+        assertEquals(1, root.getComponents().get(0).getComponents().size());
+        assertEquals(3, root.getComponents().get(0).getComponents().get(0).getPath().size());
+        assertNotNull(root.getComponents().get(0).getComponents().get(0).getRetainedIteration());
+    }
+
+    @Test
+    public void visitShouldFilterEachPartMasterOnlyOnce() throws Exception {
+        List<String> walkedPaths = new ArrayList<>();
+        batchPSFilterVisitor.visit(WORKSPACE_ID, createCountingFilter(), partMasters.get("ROOT"), -1, new PSFilterVisitorCallbacks() {
+            @Override
+            public boolean onPathWalk(List<PartLink> path, List<PartMaster> parts) {
+                walkedPaths.add(org.polarsys.eplmp.core.util.Tools.getPathAsString(path));
+                return true;
+            }
+        });
+
+        // Every occurrence is still reported to the callbacks
+        assertEquals(6, walkedPaths.size());
+        assertEquals(1, (int) filterCalls.get("ROOT"));
+        assertEquals(1, (int) filterCalls.get("SUB"));
+        assertEquals(1, (int) filterCalls.get("LEAF"));
+    }
+
+    @Test
+    public void visitShouldLoadChildrenInBatches() throws Exception {
+        batchPSFilterVisitor.visit(WORKSPACE_ID, createCountingFilter(), partMasters.get("ROOT"), -1, new PSFilterVisitorCallbacks() {});
+
+        // One batch for ROOT children, LEAF already known when SUB is expanded
+        Mockito.verify(partMasterDAO, Mockito.times(1)).loadPartMasters(eq(WORKSPACE_ID), anyCollectionOf(String.class));
+        Mockito.verify(partMasterDAO, Mockito.never()).loadPartM(Mockito.any(PartMasterKey.class));
+    }
+
+    @Test(expected = EntityConstraintException.class)
+    public void visitShouldDetectCycles() throws Exception {
+        PartMaster root = partMasters.get("ROOT");
+        PartMaster leaf = partMasters.get("LEAF");
+        leaf.getLastRevision().getLastIteration().getComponents().add(createUsageLink(root, 99));
+        batchPSFilterVisitor.visit(WORKSPACE_ID, createCountingFilter(), root, -1, new PSFilterVisitorCallbacks() {});
+    }
+
+    @Test
+    public void visitShouldStopAtGivenDepth() throws Exception {
+        Component root = batchPSFilterVisitor.visit(WORKSPACE_ID, createCountingFilter(), partMasters.get("ROOT"), 1, new PSFilterVisitorCallbacks() {});
+
+        assertEquals(3, root.getComponents().size());
+        for (Component component : root.getComponents()) {
+            assertTrue(component.getComponents().isEmpty());
+        }
+    }
+
+    //############################## HELPER METHODS ##############################
+
+    private ProductStructureFilter createCountingFilter() {
+        return new ProductStructureFilter() {
+            @Override
+            public List<PartIteration> filter(PartMaster partMaster) {
+                filterCalls.merge(partMaster.getNumber(), 1, Integer::sum);
+                return Collections.singletonList(partMaster.getLastRevision().getLastIteration());
+            }
+
+            @Override
+            public List<PartLink> filter(List<PartLink> path) {
+                return Collections.singletonList(path.get(path.size() - 1));
+            }
+        };
+    }
+
+    private PartMaster createPartMaster(Workspace workspace, String number, PartMaster... children) {
+        PartMaster partMaster = new PartMaster(workspace, number, user);
+        PartRevision partRevision = partMaster.createNextRevision(user);
+        PartIteration partIteration = partRevision.createNextIteration(user);
+        int id = partMasters.size() * 10;
+        for (PartMaster child : children) {
+            partIteration.getComponents().add(createUsageLink(child, ++id));
+        }
+        partMasters.put(number, partMaster);
+        return partMaster;
+    }
+
+    private PartUsageLink createUsageLink(PartMaster component, int id) {
+        PartUsageLink usageLink = new PartUsageLink(component, 1, null, false);
+        usageLink.setId(id);
+        return usageLink;
+    }
+}
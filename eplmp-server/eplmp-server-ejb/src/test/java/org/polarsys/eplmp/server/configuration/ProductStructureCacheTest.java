@@ -0,0 +1,224 @@
+/*******************************************************************************
+ * Copyright (c) 2017-2019 DocDoku.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * DocDoku - initial API and implementation
+ *******************************************************************************/
+
+package org.polarsys.eplmp.server.configuration;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.polarsys.eplmp.core.common.Account;
+import org.polarsys.eplmp.core.common.User;
+import org.polarsys.eplmp.core.common.Workspace;
+import org.polarsys.eplmp.core.product.*;
+import org.polarsys.eplmp.server.ConfigManager;
+import org.polarsys.eplmp.server.dao.PartIterationDAO;
+import org.polarsys.eplmp.server.dao.PartMasterDAO;
+import org.polarsys.eplmp.server.dao.PartUsageLinkDAO;
+import org.polarsys.eplmp.server.configuration.filter.LatestCheckedInPSFilter;
+import org.polarsys.eplmp.server.configuration.filter.ReleasedPSFilter;
+import org.polarsys.eplmp.server.configuration.filter.WIPPSFilter;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class ProductStructureCacheTest {
+
+    private static final String WORKSPACE_ID = "workspace01";
+
+    @InjectMocks
+    private ProductStructureCache productStructureCache = new ProductStructureCache();
+
+    @Mock
+    private ConfigManager configManager;
+
+    @Mock
+    private PartMasterDAO partMasterDAO;
+
+    @Mock
+    private PartIterationDAO partIterationDAO;
+
+    @Mock
+    private PartUsageLinkDAO partUsageLinkDAO;
+
+    private Map<String, PartMaster> partMasters = new HashMap<>();
+    private Map<PartIterationKey, PartIteration> partIterations = new HashMap<>();
+    private Map<Integer, PartUsageLink> usageLinks = new HashMap<>();
+
+    private ConfigurationItemKey ciKey = new ConfigurationItemKey(WORKSPACE_ID, "CI");
+    private Workspace workspace = new Workspace(WORKSPACE_ID);
+    private User user = new User(workspace, new Account("user1", "user1", "user1@docdoku.com", "en", new Date(), null));
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+        Mockito.when(configManager.getProductStructureCacheSize()).thenReturn(2);
+        productStructureCache.init();
+        Mockito.when(partMasterDAO.loadPartMasters(eq(WORKSPACE_ID), anyCollectionOf(String.class))).thenReturn(partMasters);
+        Mockito.when(partIterationDAO.loadPartIterations(eq(WORKSPACE_ID), anyCollectionOf(PartIterationKey.class))).thenReturn(partIterations);
+        Mockito.when(partUsageLinkDAO.loadPartUsageLinks(anyCollectionOf(Integer.class))).thenReturn(usageLinks);
+    }
+
+    @Test
+    public void onlyCacheableFiltersShouldHaveKeys() {
+        assertNotNull(productStructureCache.createKey(ciKey, new ReleasedPSFilter(false), null, -1));
+        assertNull(productStructureCache.createKey(ciKey, new WIPPSFilter(user), null, -1));
+        assertEquals(productStructureCache.createKey(ciKey, new ReleasedPSFilter(true), null, null),
+                productStructureCache.createKey(ciKey, new ReleasedPSFilter(true), null, -1));
+        assertNotEquals(productStructureCache.createKey(ciKey, new ReleasedPSFilter(true), null, -1),
+                productStructureCache.createKey(ciKey, new ReleasedPSFilter(false), null, -1));
+    }
+
+    @Test
+    public void getShouldReturnStoredStructureAndCountHits() {
+        ProductStructureCache.Key key = productStructureCache.createKey(ciKey, new ReleasedPSFilter(false), null, -1);
+        assertNull(productStructureCache.get(key));
+
+        Component root = createStructure("ROOT", "LEAF");
+        productStructureCache.put(key, productStructureCache.getChangeCounter(WORKSPACE_ID), root);
+
+        assertNotNull(productStructureCache.get(key));
+        assertEquals(1, productStructureCache.getHitCount());
+        assertEquals(1, productStructureCache.getMissCount());
+    }
+
+    @Test
+    public void snapshotShouldRebuildStructureFromTheCallerEntities() {
+        ProductStructureCache.Key key = productStructureCache.createKey(ciKey, new ReleasedPSFilter(false), null, -1);
+        Component root = createStructure("ROOT", "LEAF1", "LEAF2");
+        productStructureCache.put(key, 0, root);
+
+        // Entities of another persistence context
+        partMasters.clear();
+        partIterations.clear();
+        usageLinks.clear();
+        Component expected = createStructure("ROOT", "LEAF1", "LEAF2");
+
+        Component rebuilt = productStructureCache.get(key).toComponent(null, partMasterDAO, partIterationDAO, partUsageLinkDAO);
+
+        assertNotSame(root, rebuilt);
+        assertSame(expected.getPartMaster(), rebuilt.getPartMaster());
+        assertSame(expected.getRetainedIteration(), rebuilt.getRetainedIteration());
+        assertEquals(2, rebuilt.getComponents().size());
+        for (int i = 0; i < 2; i++) {
+            Component child = rebuilt.getComponents().get(i);
+            assertSame(expected.getComponents().get(i).getPartMaster(), child.getPartMaster());
+            assertSame(expected.getComponents().get(i).getPartLink(), child.getPartLink());
+            assertEquals(2, child.getPath().size());
+        }
+
+        // A link which no longer exists makes the snapshot unusable
+        usageLinks.remove(2);
+        assertNull(productStructureCache.get(key).toComponent(null, partMasterDAO, partIterationDAO, partUsageLinkDAO));
+    }
+
+    @Test
+    public void snapshotShouldLoadItsLinksAndIterationsInOneBatchOnAHit() {
+        ProductStructureCache.Key key = productStructureCache.createKey(ciKey, new ReleasedPSFilter(false), null, -1);
+        productStructureCache.put(key, 0, createStructure("ROOT", "LEAF1", "LEAF2", "LEAF3"));
+
+        Component rebuilt = productStructureCache.get(key).toComponent(null, partMasterDAO, partIterationDAO, partUsageLinkDAO);
+
+        assertEquals(3, rebuilt.getComponents().size());
+        Mockito.verify(partIterationDAO, times(1)).loadPartIterations(eq(WORKSPACE_ID), anyCollectionOf(PartIterationKey.class));
+        Mockito.verify(partUsageLinkDAO, times(1)).loadPartUsageLinks(anyCollectionOf(Integer.class));
+        Mockito.verify(partUsageLinkDAO, never()).loadPartSubstituteLinks(anyCollectionOf(Integer.class));
+        Mockito.verify(partMasterDAO, never()).loadPartMasters(eq(WORKSPACE_ID), anyCollectionOf(String.class));
+        Mockito.verifyNoMoreInteractions(partIterationDAO, partUsageLinkDAO, partMasterDAO);
+    }
+
+    @Test
+    public void invalidateShouldOnlyEvictStructuresUsingThePart() {
+        ProductStructureCache.Key released = productStructureCache.createKey(ciKey, new ReleasedPSFilter(false), null, -1);
+        ProductStructureCache.Key latest = productStructureCache.createKey(ciKey, new LatestCheckedInPSFilter(false), null, -1);
+        productStructureCache.put(released, 0, createStructure("ROOT", "LEAF"));
+        productStructureCache.put(latest, 0, createStructure("ROOT", "OTHER"));
+
+        productStructureCache.invalidate(WORKSPACE_ID, "LEAF");
+
+        assertNull(productStructureCache.get(released));
+        assertNotNull(productStructureCache.get(latest));
+        assertEquals(1, productStructureCache.getInvalidationCount());
+    }
+
+    @Test
+    public void putShouldIgnoreStructuresResolvedBeforeAChange() {
+        ProductStructureCache.Key key = productStructureCache.createKey(ciKey, new ReleasedPSFilter(false), null, -1);
+        long changeCounter = productStructureCache.getChangeCounter(WORKSPACE_ID);
+
+        productStructureCache.invalidate(WORKSPACE_ID, "ANY");
+        productStructureCache.put(key, changeCounter, createStructure("ROOT", "LEAF"));
+
+        assertNull(productStructureCache.get(key));
+    }
+
+    @Test
+    public void putShouldEvictLeastRecentlyUsedStructures() {
+        ProductStructureCache.Key first = productStructureCache.createKey(ciKey, new ReleasedPSFilter(false), null, -1);
+        ProductStructureCache.Key second = productStructureCache.createKey(ciKey, new ReleasedPSFilter(false), null, 1);
+        ProductStructureCache.Key third = productStructureCache.createKey(ciKey, new ReleasedPSFilter(false), null, 2);
+
+        productStructureCache.put(first, 0, createStructure("ROOT"));
+        productStructureCache.put(second, 0, createStructure("ROOT"));
+        productStructureCache.get(first);
+        productStructureCache.put(third, 0, createStructure("ROOT"));
+
+        assertEquals(2, productStructureCache.size());
+        assertEquals(1, productStructureCache.getEvictionCount());
+        assertNotNull(productStructureCache.get(first));
+        assertNull(productStructureCache.get(second));
+    }
+
+    @Test
+    public void disabledCacheShouldNotCreateKeys() {
+        Mockito.when(configManager.getProductStructureCacheSize()).thenReturn(0);
+        productStructureCache.init();
+        assertFalse(productStructureCache.isEnabled());
+        assertNull(productStructureCache.createKey(ciKey, new ReleasedPSFilter(false), null, -1));
+    }
+
+    //############################## HELPER METHODS ##############################
+
+    private Component createStructure(String rootNumber, String... childrenNumbers) {
+        PartMaster rootPart = createPartMaster(rootNumber);
+        PartIteration rootIteration = rootPart.getLastRevision().getLastIteration();
+        PartLink rootLink = PSFilterVisitor.createVirtualRootLink(rootPart);
+        Component root = new Component(user, rootPart, Collections.singletonList(rootLink), new ArrayList<>());
+        root.setRetainedIteration(rootIteration);
+        int id = 0;
+        for (String number : childrenNumbers) {
+            PartMaster childPart = createPartMaster(number);
+            PartUsageLink usageLink = new PartUsageLink(childPart, 1, null, false);
+            usageLink.setId(++id);
+            rootIteration.getComponents().add(usageLink);
+            usageLinks.put(usageLink.getId(), usageLink);
+            Component child = new Component(user, childPart, Arrays.asList(rootLink, usageLink), new ArrayList<>());
+            child.setRetainedIteration(childPart.getLastRevision().getLastIteration());
+            root.addComponent(child);
+        }
+        return root;
+    }
+
+    private PartMaster createPartMaster(String number) {
+        PartMaster partMaster = new PartMaster(workspace, number, user);
+        PartIteration partIteration = partMaster.createNextRevision(user).createNextIteration(user);
+        partMasters.put(number, partMaster);
+        partIterations.put(partIteration.getKey(), partIteration);
+        return partMaster;
+    }
+}
@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (c) 2017-2019 DocDoku.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    DocDoku - initial API and implementation
+ *******************************************************************************/
+
+package org.polarsys.eplmp.server.dao;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Matchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.polarsys.eplmp.core.product.ConfigurationItem;
+import org.polarsys.eplmp.core.product.PathToPathLink;
+import org.polarsys.eplmp.server.PathPartLinkIndexer;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class PathToPathLinkDAOTest {
+
+    @InjectMocks
+    private PathToPathLinkDAO pathToPathLinkDAO;
+
+    @Mock
+    private EntityManager em;
+
+    @Mock
+    private PathPartLinkIndexer pathPartLinkIndexer;
+
+    @Mock
+    private TypedQuery<PathToPathLink> query;
+
+    @Before
+    public void setup() {
+        initMocks(this);
+        Mockito.when(em.createNamedQuery("PathToPathLink.findPathToPathLinkByProduct", PathToPathLink.class)).thenReturn(query);
+        Mockito.when(em.createNamedQuery("PathToPathLink.findLinksByPartLink", PathToPathLink.class)).thenReturn(query);
+        Mockito.when(em.createNamedQuery("PathToPathLink.findLinksWherePartialPathIsPresent", PathToPathLink.class)).thenReturn(query);
+        Mockito.when(query.setParameter(Matchers.anyString(), Matchers.any())).thenReturn(query);
+    }
+
+    @Test
+    public void getPathToPathLinkFromPathListTest() {
+        //Given
+        PathToPathLink inside = new PathToPathLink("wire", "u1-u2", "u1-u3", null);
+        PathToPathLink sourceOutside = new PathToPathLink("wire", "u4", "u1-u3", null);
+        PathToPathLink targetOutside = new PathToPathLink("wire", "u1-u2", "u5", null);
+        Mockito.when(query.getResultList()).thenReturn(Arrays.asList(inside, sourceOutside, targetOutside));
+
+        //When
+        List<PathToPathLink> links = pathToPathLinkDAO.getPathToPathLinkFromPathList(new ConfigurationItem(),
+                new HashSet<>(Arrays.asList("u1", "u1-u2", "u1-u3")));
+
+        //Then
+        Assert.assertEquals(1, links.size());
+        Assert.assertSame(inside, links.get(0));
+    }
+
+    @Test
+    public void getPathToPathLinksFromPartialPathTest() {
+        //Given
+        Mockito.when(query.getResultList()).thenReturn(Collections.emptyList());
+        Mockito.when(pathPartLinkIndexer.isIndexed()).thenReturn(true);
+
+        //When
+        pathToPathLinkDAO.getPathToPathLinksFromPartialPath("u12");
+
+        //Then
+        Mockito.verify(query).setParameter("partLinkFullId", "u12");
+        Mockito.verify(em, Mockito.never()).createNamedQuery("PathToPathLink.findLinksWherePartialPathIsPresent", PathToPathLink.class);
+
+        //When
+        Mockito.when(pathPartLinkIndexer.isIndexed()).thenReturn(false);
+        pathToPathLinkDAO.getPathToPathLinksFromPartialPath("u12");
+
+        //Then
+        Mockito.verify(query).setParameter("inChain", "%u12-%");
+        Mockito.verify(query).setParameter("endOfChain", "%u12");
+    }
+
+    @Test
+    public void partLinkFullIdsTest() {
+        //When
+        PathToPathLink link = new PathToPathLink("wire", "-1-u12-s3", "-1-u14", null);
+
+        //Then
+        Assert.assertEquals(new HashSet<>(Arrays.asList("u12", "s3", "u14")), link.getPartLinkFullIds());
+
+        //When
+        link.setTargetPath("-1-u12-u15");
+        PathToPathLink clone = link.clone();
+        clone.setSourcePath("-1-u16");
+
+        //Then
+        Assert.assertEquals(new HashSet<>(Arrays.asList("u12", "s3", "u15")), link.getPartLinkFullIds());
+        Assert.assertEquals(new HashSet<>(Arrays.asList("u16", "u12", "u15")), clone.getPartLinkFullIds());
+    }
+}
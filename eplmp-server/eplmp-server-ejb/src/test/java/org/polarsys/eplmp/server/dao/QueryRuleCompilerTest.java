@@ -0,0 +1,146 @@
+/*******************************************************************************
+  * Copyright (c) 2017-2019 DocDoku.
+  * All rights reserved. This program and the accompanying materials
+  * are made available under the terms of the Eclipse Public License v1.0
+  * which accompanies this distribution, and is available at
+  * http://www.eclipse.org/legal/epl-v10.html
+  *
+  * Contributors:
+  *    DocDoku - initial API and implementation
+  *******************************************************************************/
+
+package org.polarsys.eplmp.server.dao;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.polarsys.eplmp.core.meta.InstanceAttribute;
+import org.polarsys.eplmp.core.meta.InstanceBooleanAttribute;
+import org.polarsys.eplmp.core.meta.InstanceNumberAttribute;
+import org.polarsys.eplmp.core.meta.InstanceTextAttribute;
+import org.polarsys.eplmp.core.query.QueryRule;
+
+import javax.persistence.criteria.*;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.function.Function;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class QueryRuleCompilerTest {
+
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private CriteriaBuilder cb;
+
+    @Mock
+    private AbstractQuery<?> query;
+
+    @Mock
+    private Subquery<Integer> subquery;
+
+    @Mock
+    private Root<Object> owner;
+
+    @Mock
+    private Root<Object> correlatedOwner;
+
+    @Mock
+    private Join<Object, InstanceAttribute> attributes;
+
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private Join<Object, InstanceAttribute> attribute;
+
+    @Mock
+    private Predicate exists;
+
+    @Mock
+    private Function<QueryRule, Predicate> fieldCompiler;
+
+    private QueryRuleCompiler compiler;
+
+    @Before
+    public void setup() throws Exception {
+        initMocks(this);
+        Mockito.when(query.subquery(Integer.class)).thenReturn(subquery);
+        Mockito.when(subquery.correlate(owner)).thenReturn(correlatedOwner);
+        Mockito.when(correlatedOwner.<Object, InstanceAttribute>join(QueryRuleCompiler.INSTANCE_ATTRIBUTES)).thenReturn(attributes);
+        Mockito.when(cb.treat(Mockito.eq(attributes), Mockito.<Class<InstanceAttribute>>any())).thenReturn(attribute);
+        Mockito.when(cb.exists(subquery)).thenReturn(exists);
+        compiler = new QueryRuleCompiler(cb, query, owner, "attr-", "CET", fieldCompiler);
+    }
+
+    @Test
+    public void compileShouldOnlyQueryReferencedAttributeTypes() {
+        QueryRule rule = createGroup("AND",
+                createRule("attr-TEXT.color", "equal", "red"),
+                createRule("attr-NUMBER.weight", "greater", "12"));
+
+        compiler.compile(rule);
+
+        Mockito.verify(query, Mockito.times(2)).subquery(Integer.class);
+        Mockito.verify(cb, Mockito.times(2)).exists(subquery);
+        Mockito.verify(cb).treat(Mockito.<Join<Object, InstanceAttribute>>any(), eq(InstanceTextAttribute.class));
+        Mockito.verify(cb).treat(Mockito.<Join<Object, InstanceAttribute>>any(), eq(InstanceNumberAttribute.class));
+        Mockito.verify(cb, Mockito.times(2)).treat(Mockito.<Join<Object, InstanceAttribute>>any(), Mockito.<Class<InstanceAttribute>>any());
+        Mockito.verify(cb).and(new Predicate[]{exists, exists});
+        Mockito.verifyZeroInteractions(fieldCompiler);
+    }
+
+    @Test
+    public void compileShouldDelegateOtherFields() {
+        QueryRule partNumber = createRule("pm.number", "equal", "PART-001");
+        compiler.compile(createGroup("OR", partNumber, createRule("attr-BOOLEAN.checked", "equal", "true")));
+
+        Mockito.verify(fieldCompiler).apply(partNumber);
+        Mockito.verify(query).subquery(Integer.class);
+        Mockito.verify(cb).treat(Mockito.<Join<Object, InstanceAttribute>>any(), eq(InstanceBooleanAttribute.class));
+    }
+
+    @Test
+    public void compileShouldNotQueryAnythingWithoutRules() {
+        compiler.compile(null);
+        compiler.compile(new QueryRule());
+
+        Mockito.verify(query, Mockito.never()).subquery(any(Class.class));
+        Mockito.verify(cb, Mockito.times(2)).and();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void compileShouldRejectUnknownFields() {
+        new QueryRuleCompiler(cb, query, owner, "pd-attr-", "CET", null).compile(createRule("pm.number", "equal", "PART-001"));
+    }
+
+    @Test
+    public void compileShouldRejectUnsupportedOperators() {
+        for (String field : Arrays.asList("attr-BOOLEAN.checked", "attr-LOV.size", "attr-UNKNOWN.name")) {
+            try {
+                compiler.compile(createRule(field, "contains", "1"));
+                Assert.fail(field);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    //############################## HELPER METHODS ##############################
+
+    private QueryRule createRule(String field, String operator, String value) {
+        QueryRule rule = new QueryRule();
+        rule.setField(field);
+        rule.setOperator(operator);
+        rule.setValues(Collections.singletonList(value));
+        return rule;
+    }
+
+    private QueryRule createGroup(String condition, QueryRule... rules) {
+        QueryRule rule = new QueryRule();
+        rule.setCondition(condition);
+        rule.setSubQueryRules(Arrays.asList(rules));
+        return rule;
+    }
+}
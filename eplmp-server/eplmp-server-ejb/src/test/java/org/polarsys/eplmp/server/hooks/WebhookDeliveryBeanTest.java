@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Copyright (c) 2017-2019 DocDoku.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    DocDoku - initial API and implementation
+ *******************************************************************************/
+
+package org.polarsys.eplmp.server.hooks;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Matchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.polarsys.eplmp.core.exceptions.WebhookNotFoundException;
+import org.polarsys.eplmp.core.hooks.SimpleWebhookApp;
+import org.polarsys.eplmp.core.hooks.Webhook;
+import org.polarsys.eplmp.core.hooks.WebhookDelivery;
+import org.polarsys.eplmp.server.dao.WebhookDAO;
+import org.polarsys.eplmp.server.dao.WebhookDeliveryDAO;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class WebhookDeliveryBeanTest {
+
+    @InjectMocks
+    private WebhookDeliveryBean webhookDeliveryBean;
+
+    @Mock
+    private WebhookDeliveryDAO webhookDeliveryDAO;
+
+    @Mock
+    private WebhookDAO webhookDAO;
+
+    private Webhook webhook;
+
+    @Before
+    public void setup() throws Exception {
+        initMocks(this);
+        webhook = new Webhook(new SimpleWebhookApp("POST", "", "http://localhost/hook"), "hook", true, null);
+        webhook.setId(1);
+        Mockito.when(webhookDAO.loadWebhook(1)).thenReturn(webhook);
+        Mockito.when(webhookDAO.loadWebhook(2)).thenThrow(new WebhookNotFoundException(2));
+    }
+
+    @Test
+    public void leaseDropsDeliveriesOfRemovedWebhooksTest() {
+        //Given
+        WebhookDelivery delivery = new WebhookDelivery(webhook, "user", "user@docdoku.com", "User", "subject", "content");
+        Webhook removedWebhook = new Webhook();
+        removedWebhook.setId(2);
+        WebhookDelivery orphanDelivery = new WebhookDelivery(removedWebhook, "user", "user@docdoku.com", "User", "subject", "content");
+        Mockito.when(webhookDeliveryDAO.findPendingDeliveries(Matchers.any(Date.class), Matchers.eq(Collections.singleton(3)), Matchers.eq(10)))
+                .thenReturn(Arrays.asList(delivery, orphanDelivery));
+
+        //When
+        long before = System.currentTimeMillis();
+        Map<WebhookDelivery, Webhook> deliveries = webhookDeliveryBean.lease(10, 60_000, Collections.singleton(3));
+
+        //Then
+        Assert.assertEquals(1, deliveries.size());
+        Assert.assertSame(webhook, deliveries.get(delivery));
+        Assert.assertTrue(delivery.getNextAttemptDate().getTime() >= before + 60_000);
+        Mockito.verify(webhookDeliveryDAO).removeDelivery(orphanDelivery);
+        Mockito.verify(webhookDeliveryDAO, Mockito.never()).removeDelivery(delivery);
+    }
+
+    @Test
+    public void completeDeliveredTest() {
+        //Given
+        WebhookDelivery delivery = pendingDelivery();
+
+        //When
+        webhookDeliveryBean.complete(Collections.singletonList(WebhookDeliveryBean.Outcome.delivered(delivery)));
+
+        //Then
+        Mockito.verify(webhookDeliveryDAO).removeDelivery(delivery);
+        Assert.assertEquals(1, webhook.getDeliveredCount());
+        Assert.assertNotNull(webhook.getLastDeliveryDate());
+    }
+
+    @Test
+    public void completeFailedTest() {
+        //Given
+        WebhookDelivery delivery = pendingDelivery();
+
+        //When
+        long before = System.currentTimeMillis();
+        webhookDeliveryBean.complete(Collections.singletonList(WebhookDeliveryBean.Outcome.failed(delivery, "timeout")));
+
+        //Then
+        Mockito.verify(webhookDeliveryDAO, Mockito.never()).removeDelivery(delivery);
+        Assert.assertEquals(1, delivery.getAttempts());
+        Assert.assertTrue(delivery.getNextAttemptDate().getTime() > before);
+        Assert.assertEquals("timeout", webhook.getLastError());
+        Assert.assertEquals(0, webhook.getFailedCount());
+
+        //When
+        delivery.setAttempts(WebhookDeliveryBean.MAX_ATTEMPTS - 1);
+        webhookDeliveryBean.complete(Collections.singletonList(WebhookDeliveryBean.Outcome.failed(delivery, "timeout")));
+
+        //Then
+        Mockito.verify(webhookDeliveryDAO).removeDelivery(delivery);
+        Assert.assertEquals(1, webhook.getFailedCount());
+    }
+
+    @Test
+    public void completeDeferredTest() {
+        //Given
+        WebhookDelivery delivery = pendingDelivery();
+
+        //When
+        long before = System.currentTimeMillis();
+        webhookDeliveryBean.complete(Collections.singletonList(WebhookDeliveryBean.Outcome.deferred(delivery)));
+
+        //Then
+        Mockito.verify(webhookDeliveryDAO, Mockito.never()).removeDelivery(delivery);
+        Assert.assertEquals(0, delivery.getAttempts());
+        Assert.assertTrue(delivery.getNextAttemptDate().getTime() > before);
+    }
+
+    //############################## HELPER METHODS ##############################
+
+    private WebhookDelivery pendingDelivery() {
+        WebhookDelivery delivery = new WebhookDelivery(webhook, "user", "user@docdoku.com", "User", "subject", "content");
+        Mockito.when(webhookDeliveryDAO.findDelivery(delivery.getId())).thenReturn(delivery);
+        return delivery;
+    }
+}
@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * Copyright (c) 2017-2019 DocDoku.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    DocDoku - initial API and implementation
+ *******************************************************************************/
+
+package org.polarsys.eplmp.server.indexer;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParser;
+import io.searchbox.core.Bulk;
+import io.searchbox.core.BulkResult;
+import io.searchbox.core.Update;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.*;
+import org.polarsys.eplmp.core.exceptions.IndexerNotAvailableException;
+import org.polarsys.eplmp.core.exceptions.PartIterationNotFoundException;
+import org.polarsys.eplmp.core.indexer.IndexationRequest;
+import org.polarsys.eplmp.core.product.PartIteration;
+import org.polarsys.eplmp.core.product.PartIterationKey;
+import org.polarsys.eplmp.server.dao.DocumentRevisionDAO;
+import org.polarsys.eplmp.server.dao.IndexationRequestDAO;
+import org.polarsys.eplmp.server.dao.PartIterationDAO;
+import org.polarsys.eplmp.server.indexer.util.IndicesUtils;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.mockito.Mockito.times;
+
+public class IndexationQueueBeanTest {
+
+    @InjectMocks
+    private IndexationQueueBean indexationQueue;
+
+    @Mock
+    private IndexationRequestDAO indexationRequestDAO;
+
+    @Mock
+    private DocumentRevisionDAO documentRevisionDAO;
+
+    @Mock
+    private PartIterationDAO partIterationDAO;
+
+    @Mock
+    private IndexerQueryBuilder indexerQueryBuilder;
+
+    @Mock
+    private IndexManagerBean indexManager;
+
+    @Mock
+    private IndicesUtils indicesUtils;
+
+    private PartIterationKey partKey = new PartIterationKey("wks", "PART-001", "A", 1);
+    private PartIterationKey otherPartKey = new PartIterationKey("wks", "PART-002", "A", 1);
+
+    @Before
+    public void setup() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        Mockito.when(indicesUtils.getIndexName(Matchers.anyString(), Matchers.anyString())).thenReturn("wks-parts");
+        Mockito.when(indicesUtils.formatDocId(Matchers.anyString())).thenAnswer(invocation -> invocation.getArguments()[0]);
+        mockPartIteration(partKey);
+        mockPartIteration(otherPartKey);
+    }
+
+    @Test
+    public void dispatchShouldCoalesceRequestsOfAnIteration() throws Exception {
+        IndexationRequest first = new IndexationRequest(partKey, IndexationRequest.Action.INDEX);
+        IndexationRequest second = new IndexationRequest(partKey, IndexationRequest.Action.INDEX);
+        IndexationRequest other = new IndexationRequest(otherPartKey, IndexationRequest.Action.INDEX);
+        Mockito.when(indexationRequestDAO.findPendingRequests(Matchers.any(Date.class), Matchers.eq(10)))
+                .thenReturn(Arrays.asList(first, other, second));
+        Mockito.when(indexManager.sendBulk(Matchers.any(Bulk.Builder.class))).thenReturn(bulkResult("[]", true));
+
+        int dispatched = indexationQueue.dispatch(10);
+
+        Assert.assertEquals(3, dispatched);
+        Mockito.verify(indexerQueryBuilder, times(2)).updateRequest(Matchers.any(PartIteration.class));
+        Mockito.verify(indexationRequestDAO).removeRequests(second);
+        Mockito.verify(indexationRequestDAO).removeRequests(other);
+        Mockito.verify(indexationRequestDAO, Mockito.never()).removeRequests(first);
+    }
+
+    @Test
+    public void dispatchShouldPostponeRequestsWhenTheIndexerIsNotAvailable() throws Exception {
+        IndexationRequest first = new IndexationRequest(partKey, IndexationRequest.Action.INDEX);
+        IndexationRequest second = new IndexationRequest(partKey, IndexationRequest.Action.INDEX);
+        Mockito.when(indexationRequestDAO.findPendingRequests(Matchers.any(Date.class), Matchers.eq(10)))
+                .thenReturn(Arrays.asList(first, second));
+        Mockito.when(indexManager.sendBulk(Matchers.any(Bulk.Builder.class))).thenThrow(new IndexerNotAvailableException());
+
+        Date before = new Date();
+        int dispatched = indexationQueue.dispatch(10);
+
+        Assert.assertEquals(0, dispatched);
+        Mockito.verify(indexationRequestDAO, Mockito.never()).removeRequests(Matchers.any(IndexationRequest.class));
+        for (IndexationRequest request : Arrays.asList(first, second)) {
+            Assert.assertEquals(1, request.getAttempts());
+            Assert.assertTrue(request.getNextAttemptDate().after(before));
+        }
+
+        Date firstRetry = second.getNextAttemptDate();
+        indexationQueue.dispatch(10);
+        Assert.assertEquals(2, second.getAttempts());
+        Assert.assertTrue(second.getNextAttemptDate().getTime() - firstRetry.getTime() > 0);
+    }
+
+    @Test
+    public void dispatchShouldOnlyPostponeFailedItems() throws Exception {
+        IndexationRequest failed = new IndexationRequest(partKey, IndexationRequest.Action.INDEX);
+        IndexationRequest removed = new IndexationRequest(otherPartKey, IndexationRequest.Action.REMOVE);
+        Mockito.when(indexationRequestDAO.findPendingRequests(Matchers.any(Date.class), Matchers.eq(10)))
+                .thenReturn(Arrays.asList(failed, removed));
+        Mockito.when(indexManager.sendBulk(Matchers.any(Bulk.Builder.class))).thenReturn(bulkResult("["
+                + "{\"update\":{\"_index\":\"wks-parts\",\"_type\":\"_doc\",\"_id\":\"" + partKey + "\",\"status\":500,\"error\":{\"type\":\"failure\",\"reason\":\"failure\"}}},"
+                + "{\"delete\":{\"_index\":\"wks-parts\",\"_type\":\"_doc\",\"_id\":\"" + otherPartKey + "\",\"status\":404,\"error\":{\"type\":\"not_found\",\"reason\":\"not found\"}}}"
+                + "]", false));
+
+        indexationQueue.dispatch(10);
+
+        Assert.assertEquals(1, failed.getAttempts());
+        Mockito.verify(indexationRequestDAO, Mockito.never()).removeRequests(failed);
+        Mockito.verify(indexationRequestDAO).removeRequests(removed);
+    }
+
+    @Test
+    public void dispatchShouldDropRequestsOfDeletedIterations() throws Exception {
+        PartIterationKey deletedKey = new PartIterationKey("wks", "PART-003", "A", 1);
+        Mockito.when(partIterationDAO.loadPartI(deletedKey))
+                .thenThrow(new PartIterationNotFoundException(deletedKey));
+        IndexationRequest request = new IndexationRequest(deletedKey, IndexationRequest.Action.INDEX);
+        Mockito.when(indexationRequestDAO.findPendingRequests(Matchers.any(Date.class), Matchers.eq(10)))
+                .thenReturn(Arrays.asList(request));
+
+        indexationQueue.dispatch(10);
+
+        Mockito.verify(indexationRequestDAO).removeRequests(request);
+        Mockito.verify(indexManager, Mockito.never()).sendBulk(Matchers.any(Bulk.Builder.class));
+    }
+
+    @Test
+    public void dispatchShouldPostponeRequestsWhoseQueryCannotBeBuilt() throws Exception {
+        PartIterationKey brokenKey = new PartIterationKey("wks", "PART-003", "A", 1);
+        PartIteration partIteration = Mockito.mock(PartIteration.class);
+        Mockito.when(partIterationDAO.loadPartI(brokenKey)).thenReturn(partIteration);
+        Mockito.when(indexerQueryBuilder.updateRequest(partIteration)).thenThrow(new IOException("Cannot read attached file"));
+        IndexationRequest request = new IndexationRequest(brokenKey, IndexationRequest.Action.INDEX);
+        Mockito.when(indexationRequestDAO.findPendingRequests(Matchers.any(Date.class), Matchers.eq(10)))
+                .thenReturn(Arrays.asList(request));
+
+        indexationQueue.dispatch(10);
+
+        Assert.assertEquals(1, request.getAttempts());
+        Mockito.verify(indexationRequestDAO, Mockito.never()).removeRequests(request);
+        Mockito.verify(indexManager, Mockito.never()).sendBulk(Matchers.any(Bulk.Builder.class));
+    }
+
+    //############################## HELPER METHODS ##############################
+
+    private void mockPartIteration(PartIterationKey key) throws Exception {
+        PartIteration partIteration = Mockito.mock(PartIteration.class);
+        Mockito.when(partIterationDAO.loadPartI(key)).thenReturn(partIteration);
+        Mockito.when(indexerQueryBuilder.updateRequest(partIteration))
+                .thenReturn(new Update.Builder("{}").index("wks-parts").type("_doc").id(key.toString()));
+    }
+
+    private BulkResult bulkResult(String items, boolean succeeded) {
+        BulkResult result = new BulkResult(new Gson());
+        result.setJsonObject(new JsonParser().parse("{\"errors\":" + !succeeded + ",\"items\":" + items + "}").getAsJsonObject());
+        result.setSucceeded(succeeded);
+        return result;
+    }
+}
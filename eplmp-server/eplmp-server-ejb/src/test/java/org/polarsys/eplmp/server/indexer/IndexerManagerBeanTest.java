@@ -24,13 +24,17 @@ import org.mockito.*;
 import org.mockito.Mock;
 import org.polarsys.eplmp.core.common.Account;
 import org.polarsys.eplmp.core.document.DocumentIteration;
+import org.polarsys.eplmp.core.document.DocumentIterationKey;
 import org.polarsys.eplmp.core.exceptions.AccountNotFoundException;
 import org.polarsys.eplmp.core.exceptions.IndexerNotAvailableException;
 import org.polarsys.eplmp.core.exceptions.IndexerRequestException;
 import org.polarsys.eplmp.core.exceptions.WorkspaceAlreadyExistsException;
+import org.polarsys.eplmp.core.indexer.IndexationRequest;
 import org.polarsys.eplmp.core.product.PartIteration;
+import org.polarsys.eplmp.core.product.PartIterationKey;
 import org.polarsys.eplmp.core.services.IAccountManagerLocal;
 import org.polarsys.eplmp.core.services.INotifierLocal;
+import org.polarsys.eplmp.server.dao.IndexationRequestDAO;
 import org.powermock.core.classloader.annotations.*;
 
 import javax.inject.Inject;
@@ -63,6 +67,9 @@ public class IndexerManagerBeanTest {
     @Mock
     private IndexerQueryBuilder indexerQueryBuilder;
 
+    @Mock
+    private IndexationRequestDAO indexationRequestDAO;
+
     private String workspaceId = "wks";
 
     @Before
@@ -128,50 +135,72 @@ public class IndexerManagerBeanTest {
     }
 
     @Test
-    public void indexDocumentIterationTest() throws IndexerNotAvailableException, AccountNotFoundException, IndexerRequestException {
-        DocumentResult documentResult = new DocumentResult(new Gson());
-        DocumentIteration documentIteration = new DocumentIteration();
-        Mockito.when(indexManager.executeUpdate(Matchers.any(Update.Builder.class)))
-            .thenReturn(documentResult);
+    public void indexDocumentIterationTest() {
+        DocumentIteration documentIteration = Mockito.mock(DocumentIteration.class);
+        Mockito.when(documentIteration.getKey()).thenReturn(new DocumentIterationKey(workspaceId, "DOC-001", "A", 1));
+
         indexerManagerBean.indexDocumentIteration(documentIteration);
-        Mockito.verify(indexManager,times(1)).executeUpdate(Matchers.any(Update.Builder.class));
 
+        ArgumentCaptor<IndexationRequest> request = ArgumentCaptor.forClass(IndexationRequest.class);
+        Mockito.verify(indexationRequestDAO, times(1)).createRequest(request.capture());
+        Assert.assertEquals(IndexationRequest.TargetType.DOCUMENT, request.getValue().getTargetType());
+        Assert.assertEquals(IndexationRequest.Action.INDEX, request.getValue().getAction());
+        Assert.assertEquals(new DocumentIterationKey(workspaceId, "DOC-001", "A", 1), request.getValue().getDocumentIterationKey());
+        Mockito.verifyZeroInteractions(indexManager);
     }
 
     @Test
-    public void indexPartIterationTest() throws IndexerNotAvailableException, AccountNotFoundException, IndexerRequestException {
-        DocumentResult documentResult = new DocumentResult(new Gson());
-        PartIteration partIteration = new PartIteration();
-        Mockito.when(indexManager.executeUpdate(Matchers.any(Update.Builder.class)))
-                .thenReturn(documentResult);
+    public void indexPartIterationTest() {
+        PartIteration partIteration = Mockito.mock(PartIteration.class);
+        Mockito.when(partIteration.getKey()).thenReturn(new PartIterationKey(workspaceId, "PART-001", "A", 2));
+
         indexerManagerBean.indexPartIteration(partIteration);
-        Mockito.verify(indexManager,times(1)).executeUpdate(Matchers.any(Update.Builder.class));
 
+        ArgumentCaptor<IndexationRequest> request = ArgumentCaptor.forClass(IndexationRequest.class);
+        Mockito.verify(indexationRequestDAO, times(1)).createRequest(request.capture());
+        Assert.assertEquals(IndexationRequest.TargetType.PART, request.getValue().getTargetType());
+        Assert.assertEquals(new PartIterationKey(workspaceId, "PART-001", "A", 2), request.getValue().getPartIterationKey());
+        Mockito.verifyZeroInteractions(indexManager);
     }
 
     @Test
-    public void indexDocumentIterationsTest() throws IndexerRequestException, IndexerNotAvailableException {
+    public void indexDocumentIterationsTest() {
+        DocumentIteration checkedIn = Mockito.mock(DocumentIteration.class);
+        Mockito.when(checkedIn.getKey()).thenReturn(new DocumentIterationKey(workspaceId, "DOC-001", "A", 1));
+        Mockito.when(checkedIn.getCheckInDate()).thenReturn(new Date());
         List<DocumentIteration> documentIterations = new ArrayList<>();
-        documentIterations.add(new DocumentIteration());
+        documentIterations.add(checkedIn);
         documentIterations.add(new DocumentIteration());
 
         indexerManagerBean.indexDocumentIterations(documentIterations);
 
-        Mockito.verify(indexManager,times(1))
-                .sendBulk(Matchers.any(Bulk.Builder.class));
-
+        Mockito.verify(indexationRequestDAO, times(1)).createRequest(Matchers.any(IndexationRequest.class));
     }
 
     @Test
-    public void indexPartIterationsTest() throws IndexerRequestException, IndexerNotAvailableException {
+    public void indexPartIterationsTest() {
+        PartIteration checkedIn = Mockito.mock(PartIteration.class);
+        Mockito.when(checkedIn.getKey()).thenReturn(new PartIterationKey(workspaceId, "PART-001", "A", 1));
+        Mockito.when(checkedIn.getCheckInDate()).thenReturn(new Date());
         List<PartIteration> partIterations = new ArrayList<>();
-        partIterations.add(new PartIteration());
+        partIterations.add(checkedIn);
         partIterations.add(new PartIteration());
 
         indexerManagerBean.indexPartIterations(partIterations);
 
-        Mockito.verify(indexManager,times(1))
-                .sendBulk(Matchers.any(Bulk.Builder.class));
+        Mockito.verify(indexationRequestDAO, times(1)).createRequest(Matchers.any(IndexationRequest.class));
+    }
+
+    @Test
+    public void removePartIterationFromIndexTest() {
+        PartIteration partIteration = Mockito.mock(PartIteration.class);
+        Mockito.when(partIteration.getKey()).thenReturn(new PartIterationKey(workspaceId, "PART-001", "A", 1));
+
+        indexerManagerBean.removePartIterationFromIndex(partIteration);
 
+        ArgumentCaptor<IndexationRequest> request = ArgumentCaptor.forClass(IndexationRequest.class);
+        Mockito.verify(indexationRequestDAO, times(1)).createRequest(request.capture());
+        Assert.assertEquals(IndexationRequest.Action.REMOVE, request.getValue().getAction());
+        Mockito.verifyZeroInteractions(indexManager);
     }
 }
@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Copyright (c) 2017-2019 DocDoku.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    DocDoku - initial API and implementation
+ *******************************************************************************/
+
+package org.polarsys.eplmp.server.indexer;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.*;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.polarsys.eplmp.core.common.BinaryResource;
+import org.polarsys.eplmp.core.services.IBinaryStorageManagerLocal;
+import org.polarsys.eplmp.server.ConfigManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+
+public class IndexerTextExtractorTest {
+
+    @InjectMocks
+    private IndexerTextExtractor textExtractor;
+
+    @Mock
+    private IBinaryStorageManagerLocal storageManager;
+
+    @Mock
+    private ConfigManager configManager;
+
+    private BinaryResource file = new BinaryResource("wks/documents/DOC-001/A/1/notes.txt", 11, new Date());
+
+    @Before
+    public void setup() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        Mockito.when(configManager.getIndexedFileMaxSize()).thenReturn(100_000L);
+        Mockito.when(configManager.getIndexedTextMaxLength()).thenReturn(1000);
+        file.setContentHash("abcdef");
+    }
+
+    @Test
+    public void extractedTextShouldBeStoredAsGeneratedFile() throws Exception {
+        //Given
+        Mockito.when(storageManager.getBinaryResourceInputStream(file))
+                .thenReturn(new ByteArrayInputStream("hello world".getBytes(StandardCharsets.UTF_8)));
+        ByteArrayOutputStream textFile = new ByteArrayOutputStream();
+        Mockito.when(storageManager.getGeneratedFileOutputStream(file, "text-abcdef.txt")).thenReturn(textFile);
+
+        //When
+        Map<String, String> contentInputs = textExtractor.getContentInputs(Collections.singleton(file));
+
+        //Then
+        Assert.assertEquals("hello world", contentInputs.get("notes.txt"));
+        Assert.assertEquals("hello world", new String(textFile.toByteArray(), StandardCharsets.UTF_8));
+        // Texts of the previous contents are deleted
+        Mockito.verify(storageManager).deleteGeneratedFiles(file, "text-", ".txt", "text-abcdef.txt");
+    }
+
+    @Test
+    public void storedTextShouldBeReusedWithoutParsing() throws Exception {
+        //Given
+        Mockito.when(storageManager.exists(file, "text-abcdef.txt")).thenReturn(true);
+        Mockito.when(storageManager.getGeneratedFileInputStream(file, "text-abcdef.txt"))
+                .thenReturn(new ByteArrayInputStream("stored text".getBytes(StandardCharsets.UTF_8)));
+
+        //When
+        Map<String, String> contentInputs = textExtractor.getContentInputs(Collections.singleton(file));
+
+        //Then
+        Assert.assertEquals("stored text", contentInputs.get("notes.txt"));
+        Mockito.verify(storageManager, Mockito.never()).getBinaryResourceInputStream(file);
+    }
+
+    @Test
+    public void extractionShouldStopAtTextLimit() throws Exception {
+        //Given
+        Mockito.when(configManager.getIndexedTextMaxLength()).thenReturn(5);
+        Mockito.when(storageManager.getBinaryResourceInputStream(file))
+                .thenReturn(new ByteArrayInputStream("hello world".getBytes(StandardCharsets.UTF_8)));
+        ByteArrayOutputStream textFile = new ByteArrayOutputStream();
+        Mockito.when(storageManager.getGeneratedFileOutputStream(file, "text-abcdef-5.txt")).thenReturn(textFile);
+
+        //When
+        Map<String, String> contentInputs = textExtractor.getContentInputs(Collections.singleton(file));
+
+        //Then
+        Assert.assertEquals("hello", contentInputs.get("notes.txt"));
+        // Kept for this limit only, extracted again with the whole text if the limit is raised
+        Assert.assertEquals("hello", new String(textFile.toByteArray(), StandardCharsets.UTF_8));
+        Mockito.verify(storageManager, Mockito.never()).getGeneratedFileOutputStream(file, "text-abcdef.txt");
+    }
+
+    @Test
+    public void storedTruncatedTextShouldBeReusedWithTheSameLimit() throws Exception {
+        //Given
+        Mockito.when(configManager.getIndexedTextMaxLength()).thenReturn(5);
+        Mockito.when(storageManager.exists(file, "text-abcdef-5.txt")).thenReturn(true);
+        Mockito.when(storageManager.getGeneratedFileInputStream(file, "text-abcdef-5.txt"))
+                .thenReturn(new ByteArrayInputStream("hello".getBytes(StandardCharsets.UTF_8)));
+
+        //When
+        Map<String, String> contentInputs = textExtractor.getContentInputs(Collections.singleton(file));
+
+        //Then
+        Assert.assertEquals("hello", contentInputs.get("notes.txt"));
+        Mockito.verify(storageManager, Mockito.never()).getBinaryResourceInputStream(file);
+    }
+
+    @Test
+    public void failedExtractionShouldNotBeStored() throws Exception {
+        //Given
+        BinaryResource pdf = new BinaryResource("wks/documents/DOC-001/A/1/broken.pdf", 11, new Date());
+        pdf.setContentHash("abcdef");
+        Mockito.when(storageManager.getBinaryResourceInputStream(pdf))
+                .thenReturn(new ByteArrayInputStream("not a pdf".getBytes(StandardCharsets.UTF_8)));
+
+        //When
+        Map<String, String> contentInputs = textExtractor.getContentInputs(Collections.singleton(pdf));
+
+        //Then
+        Assert.assertEquals("", contentInputs.get("broken.pdf"));
+        Mockito.verify(storageManager, Mockito.never()).getGeneratedFileOutputStream(pdf, "text-abcdef.txt");
+    }
+
+    @Test
+    public void xlsxCellsShouldBeExtracted() throws Exception {
+        //Given
+        ByteArrayOutputStream xlsx = new ByteArrayOutputStream();
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            Row row = workbook.createSheet("Parts").createRow(0);
+            row.createCell(0).setCellValue("PART-001");
+            row.createCell(1).setCellValue(42);
+            workbook.write(xlsx);
+        }
+        BinaryResource sheet = new BinaryResource("wks/documents/DOC-001/A/1/parts.xlsx", xlsx.size(), new Date());
+        sheet.setContentHash("abcdef");
+        Mockito.when(storageManager.getBinaryResourceInputStream(sheet)).thenReturn(new ByteArrayInputStream(xlsx.toByteArray()));
+        ByteArrayOutputStream textFile = new ByteArrayOutputStream();
+        Mockito.when(storageManager.getGeneratedFileOutputStream(sheet, "text-abcdef.txt")).thenReturn(textFile);
+
+        //When
+        Map<String, String> contentInputs = textExtractor.getContentInputs(Collections.singleton(sheet));
+
+        //Then
+        Assert.assertEquals("PART-001 42 \n\n", contentInputs.get("parts.xlsx"));
+        Assert.assertEquals("PART-001 42 \n\n", new String(textFile.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void largeFilesShouldNotBeRead() throws Exception {
+        //Given
+        Mockito.when(configManager.getIndexedFileMaxSize()).thenReturn(10L);
+
+        //When
+        Map<String, String> contentInputs = textExtractor.getContentInputs(Collections.singleton(file));
+
+        //Then
+        Assert.assertEquals("", contentInputs.get("notes.txt"));
+        Mockito.verify(storageManager, Mockito.never()).getBinaryResourceInputStream(file);
+    }
+}
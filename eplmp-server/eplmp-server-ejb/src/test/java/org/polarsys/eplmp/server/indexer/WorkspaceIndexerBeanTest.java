@@ -0,0 +1,233 @@
+/*******************************************************************************
+ * Copyright (c) 2017-2019 DocDoku.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    DocDoku - initial API and implementation
+ *******************************************************************************/
+
+package org.polarsys.eplmp.server.indexer;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParser;
+import io.searchbox.core.Bulk;
+import io.searchbox.core.BulkResult;
+import io.searchbox.core.Update;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.*;
+import org.polarsys.eplmp.core.common.Account;
+import org.polarsys.eplmp.core.common.BinaryResource;
+import org.polarsys.eplmp.core.exceptions.IndexerNotAvailableException;
+import org.polarsys.eplmp.core.indexer.WorkspaceIndexation;
+import org.polarsys.eplmp.core.product.PartIteration;
+import org.polarsys.eplmp.core.product.PartMaster;
+import org.polarsys.eplmp.core.product.PartRevision;
+import org.polarsys.eplmp.core.services.INotifierLocal;
+import org.polarsys.eplmp.server.ConfigManager;
+import org.polarsys.eplmp.server.dao.DocumentMasterDAO;
+import org.polarsys.eplmp.server.dao.PartMasterDAO;
+import org.polarsys.eplmp.server.dao.WorkspaceIndexationDAO;
+
+import javax.ejb.SessionContext;
+import javax.enterprise.concurrent.ManagedExecutorService;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
+public class WorkspaceIndexerBeanTest {
+
+    private static final String WORKSPACE_ID = "wks";
+
+    @InjectMocks
+    private WorkspaceIndexerBean workspaceIndexer;
+
+    @Mock
+    private DocumentMasterDAO documentMasterDAO;
+
+    @Mock
+    private PartMasterDAO partMasterDAO;
+
+    @Mock
+    private WorkspaceIndexationDAO workspaceIndexationDAO;
+
+    @Mock
+    private IndexerQueryBuilder indexerQueryBuilder;
+
+    @Mock
+    private IndexerTextExtractor textExtractor;
+
+    @Mock
+    private IndexManagerBean indexManager;
+
+    @Mock
+    private INotifierLocal mailer;
+
+    @Mock
+    private ConfigManager configManager;
+
+    @Mock
+    private ManagedExecutorService executor;
+
+    @Mock
+    private SessionContext ctx;
+
+    private Account account = new Account();
+
+    @Before
+    public void setup() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        account.setLanguage("en");
+        Mockito.when(ctx.getBusinessObject(WorkspaceIndexerBean.class)).thenReturn(workspaceIndexer);
+        Mockito.when(configManager.getReindexPageSize()).thenReturn(2);
+        Mockito.when(configManager.getReindexParallelism()).thenReturn(2);
+        // Run the tasks in the calling thread
+        Mockito.when(executor.submit(Matchers.any(Callable.class))).thenAnswer(invocation ->
+                CompletableFuture.completedFuture(((Callable<?>) invocation.getArguments()[0]).call()));
+        Mockito.when(textExtractor.getContentInputs(Matchers.anySetOf(BinaryResource.class))).thenAnswer(invocation -> {
+            Map<String, String> contentInputs = new HashMap<>();
+            for (Object file : (Set<?>) invocation.getArguments()[0]) {
+                contentInputs.put(((BinaryResource) file).getName(), "content of " + ((BinaryResource) file).getName());
+            }
+            return contentInputs;
+        });
+        Mockito.when(indexerQueryBuilder.updateRequest(Matchers.any(PartIteration.class), Matchers.anyMapOf(String.class, String.class)))
+                .thenAnswer(invocation -> new Update.Builder("{}").index("wks-parts").type("_doc")
+                        .id(((PartIteration) invocation.getArguments()[0]).getPartRevision().getPartNumber()));
+        Mockito.when(documentMasterDAO.getNextPageByWorkspace(Matchers.eq(WORKSPACE_ID), Matchers.anyString(), Matchers.anyInt()))
+                .thenReturn(new ArrayList<>());
+        Mockito.when(documentMasterDAO.getNextPageByWorkspace(Matchers.eq(WORKSPACE_ID), Matchers.isNull(String.class), Matchers.anyInt()))
+                .thenReturn(new ArrayList<>());
+    }
+
+    @Test
+    public void indexWorkspaceShouldRecreateIndicesAndPageThroughMasters() throws Exception {
+        //Given
+        Mockito.when(indexManager.indicesExist(WORKSPACE_ID)).thenReturn(true);
+        mockPartMasters(null, "PART-001", "PART-002");
+        mockPartMasters("PART-002", "PART-003");
+        mockPartMasters("PART-003");
+        Mockito.when(indexManager.sendBulk(Matchers.any(Bulk.Builder.class))).thenReturn(bulkResult());
+
+        //When
+        workspaceIndexer.indexWorkspace(account, WORKSPACE_ID);
+
+        //Then
+        Mockito.verify(indexManager).deleteIndices(WORKSPACE_ID);
+        Mockito.verify(indexManager).createIndices(WORKSPACE_ID);
+        Mockito.verify(workspaceIndexationDAO).createIndexation(Matchers.any(WorkspaceIndexation.class));
+        Mockito.verify(indexManager, Mockito.times(2)).sendBulk(Matchers.any(Bulk.Builder.class));
+        Mockito.verify(workspaceIndexationDAO).removeIndexation(WORKSPACE_ID);
+        Mockito.verify(mailer).sendBulkIndexationSuccess(account);
+    }
+
+    @Test
+    public void indexWorkspaceShouldResumeFromCheckpoint() throws Exception {
+        //Given
+        WorkspaceIndexation checkpoint = new WorkspaceIndexation(WORKSPACE_ID);
+        checkpoint.setPhase(WorkspaceIndexation.Phase.PARTS);
+        checkpoint.setLastKey("PART-002");
+        checkpoint.setIndexedIterations(2);
+        Mockito.when(workspaceIndexationDAO.findIndexation(WORKSPACE_ID)).thenReturn(checkpoint);
+        Mockito.when(indexManager.indicesExist(WORKSPACE_ID)).thenReturn(true);
+        mockPartMasters("PART-002", "PART-003");
+        mockPartMasters("PART-003");
+        Mockito.when(indexManager.sendBulk(Matchers.any(Bulk.Builder.class))).thenReturn(bulkResult());
+
+        //When
+        workspaceIndexer.indexWorkspace(account, WORKSPACE_ID);
+
+        //Then
+        Mockito.verify(indexManager, Mockito.never()).createIndices(WORKSPACE_ID);
+        Mockito.verify(documentMasterDAO, Mockito.never()).getNextPageByWorkspace(Matchers.anyString(), Matchers.anyString(), Matchers.anyInt());
+        Mockito.verify(partMasterDAO, Mockito.never()).getNextPageByWorkspace(Matchers.eq(WORKSPACE_ID), Matchers.isNull(String.class), Matchers.anyInt());
+        Mockito.verify(indexManager).sendBulk(Matchers.any(Bulk.Builder.class));
+        Assert.assertEquals(3, checkpoint.getIndexedIterations());
+        Mockito.verify(mailer).sendBulkIndexationSuccess(account);
+    }
+
+    @Test
+    public void interruptedIndexationShouldKeepItsCheckpoint() throws Exception {
+        //Given
+        Mockito.when(indexManager.indicesExist(WORKSPACE_ID)).thenReturn(false);
+        mockPartMasters(null, "PART-001", "PART-002");
+        mockPartMasters("PART-002", "PART-003");
+        Mockito.when(indexManager.sendBulk(Matchers.any(Bulk.Builder.class)))
+                .thenReturn(bulkResult())
+                .thenThrow(new IndexerNotAvailableException());
+        WorkspaceIndexation checkpoint = new WorkspaceIndexation(WORKSPACE_ID);
+        Mockito.doAnswer(invocation -> Mockito.when(workspaceIndexationDAO.findIndexation(WORKSPACE_ID)).thenReturn(checkpoint))
+                .when(workspaceIndexationDAO).createIndexation(Matchers.any(WorkspaceIndexation.class));
+
+        //When
+        workspaceIndexer.indexWorkspace(account, WORKSPACE_ID);
+
+        //Then
+        Assert.assertEquals(WorkspaceIndexation.Phase.PARTS, checkpoint.getPhase());
+        Assert.assertEquals("PART-002", checkpoint.getLastKey());
+        Assert.assertEquals(2, checkpoint.getIndexedIterations());
+        Mockito.verify(workspaceIndexationDAO, Mockito.never()).removeIndexation(WORKSPACE_ID);
+        Mockito.verify(mailer).sendBulkIndexationFailure(Matchers.eq(account), Matchers.anyString());
+    }
+
+    @Test
+    public void loadPageShouldExtractFilesInParallelKeepingTheirOrder() throws Exception {
+        //Given
+        Mockito.when(configManager.getReindexPageSize()).thenReturn(3);
+        mockPartMasters(null, "PART-001", "PART-002", "PART-003");
+
+        //When
+        WorkspaceIndexerBean.Page page = workspaceIndexer.loadPage(WORKSPACE_ID, WorkspaceIndexation.Phase.PARTS, null, 3);
+
+        //Then
+        Assert.assertEquals(3, page.getMasters());
+        Assert.assertEquals(3, page.getIterations());
+        Assert.assertEquals("PART-003", page.getLastKey());
+        Mockito.verify(executor, Mockito.times(2)).submit(Matchers.any(Callable.class));
+        ArgumentCaptor<PartIteration> iterations = ArgumentCaptor.forClass(PartIteration.class);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, String>> contentInputs = ArgumentCaptor.forClass((Class) Map.class);
+        Mockito.verify(indexerQueryBuilder, Mockito.times(3)).updateRequest(iterations.capture(), contentInputs.capture());
+        for (int i = 0; i < 3; i++) {
+            String number = iterations.getAllValues().get(i).getPartRevision().getPartNumber();
+            Assert.assertEquals("content of " + number + ".txt", contentInputs.getAllValues().get(i).get(number + ".txt"));
+        }
+    }
+
+    //############################## HELPER METHODS ##############################
+
+    private void mockPartMasters(String after, String... numbers) {
+        List<PartMaster> partMasters = new ArrayList<>();
+        for (String number : numbers) {
+            PartMaster partMaster = Mockito.mock(PartMaster.class);
+            PartRevision partRevision = Mockito.mock(PartRevision.class);
+            PartIteration partIteration = Mockito.mock(PartIteration.class);
+            BinaryResource file = new BinaryResource(WORKSPACE_ID + "/parts/" + number + "/A/1/" + number + ".txt", 10, new Date());
+            Mockito.when(partMaster.getNumber()).thenReturn(number);
+            Mockito.when(partMaster.getPartRevisions()).thenReturn(Collections.singletonList(partRevision));
+            Mockito.when(partRevision.getPartIterations()).thenReturn(Collections.singletonList(partIteration));
+            Mockito.when(partRevision.getPartNumber()).thenReturn(number);
+            Mockito.when(partIteration.getPartRevision()).thenReturn(partRevision);
+            Mockito.when(partIteration.getAttachedFiles()).thenReturn(new HashSet<>(Collections.singletonList(file)));
+            partMasters.add(partMaster);
+        }
+        if (after == null) {
+            Mockito.when(partMasterDAO.getNextPageByWorkspace(Matchers.eq(WORKSPACE_ID), Matchers.isNull(String.class), Matchers.anyInt()))
+                    .thenReturn(partMasters);
+        } else {
+            Mockito.when(partMasterDAO.getNextPageByWorkspace(Matchers.eq(WORKSPACE_ID), Matchers.eq(after), Matchers.anyInt()))
+                    .thenReturn(partMasters);
+        }
+    }
+
+    private BulkResult bulkResult() {
+        BulkResult result = new BulkResult(new Gson());
+        result.setJsonObject(new JsonParser().parse("{\"errors\":false,\"items\":[]}").getAsJsonObject());
+        result.setSucceeded(true);
+        return result;
+    }
+}
@@ -0,0 +1,235 @@
+/*******************************************************************************
+ * Copyright (c) 2017-2019 DocDoku.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    DocDoku - initial API and implementation
+ *******************************************************************************/
+
+package org.polarsys.eplmp.server.storage.filesystem;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.polarsys.eplmp.core.common.BinaryResource;
+import org.polarsys.eplmp.core.util.HashUtils;
+import org.polarsys.eplmp.server.storage.ContentHashOutputStream;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ContentAddressedStorageProviderTest {
+
+    private static final byte[] CONTENT = "identical content".getBytes(StandardCharsets.UTF_8);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String vaultPath;
+    private ContentAddressedStorageProvider storageProvider;
+
+    @Before
+    public void setup() throws Exception {
+        vaultPath = folder.getRoot().getAbsolutePath();
+        Assume.assumeTrue(ContentAddressedStorageProvider.isSupported(vaultPath));
+        storageProvider = new ContentAddressedStorageProvider(vaultPath);
+    }
+
+    @Test
+    public void identicalUploadsShouldShareTheSameBlob() throws Exception {
+        //Given
+        BinaryResource first = newBinaryResource("ws/parts/A/A/1/first.obj");
+        BinaryResource second = newBinaryResource("ws/parts/B/A/1/second.obj");
+
+        //When
+        write(first, CONTENT);
+        write(second, CONTENT);
+
+        //Then
+        assertTrue(Files.isSameFile(getPath(first), getPath(second)));
+        assertEquals(3, ContentAddressedStorageProvider.getLinkCount(getPath(first)));
+        assertArrayEquals(CONTENT, read(second));
+    }
+
+    @Test
+    public void overwritingShouldNotChangeSharedFiles() throws Exception {
+        //Given
+        BinaryResource first = newBinaryResource("ws/parts/A/A/1/first.obj");
+        BinaryResource second = newBinaryResource("ws/parts/B/A/1/second.obj");
+        write(first, CONTENT);
+        write(second, CONTENT);
+
+        //When
+        byte[] newContent = "new content".getBytes(StandardCharsets.UTF_8);
+        write(second, newContent);
+
+        //Then
+        assertArrayEquals(CONTENT, read(first));
+        assertArrayEquals(newContent, read(second));
+        assertEquals(2, ContentAddressedStorageProvider.getLinkCount(getPath(first)));
+    }
+
+    @Test
+    public void overwritingShouldReleaseTheReplacedBlob() throws Exception {
+        //Given
+        BinaryResource binaryResource = newBinaryResource("ws/parts/A/A/1/first.obj");
+        write(binaryResource, CONTENT);
+        Path blob = storageProvider.getBlob(hash(binaryResource));
+
+        //When
+        write(binaryResource, "new content".getBytes(StandardCharsets.UTF_8));
+
+        //Then
+        assertFalse(Files.exists(blob));
+    }
+
+    @Test
+    public void overwritingShouldKeepBlobsStillReferenced() throws Exception {
+        //Given
+        BinaryResource first = newBinaryResource("ws/parts/A/A/1/first.obj");
+        BinaryResource second = newBinaryResource("ws/parts/B/A/1/second.obj");
+        write(first, CONTENT);
+        storageProvider.copyData(first, second);
+        second.setContentHash(hash(second));
+        Path blob = storageProvider.getBlob(second.getContentHash());
+
+        //When
+        write(second, "new content".getBytes(StandardCharsets.UTF_8));
+
+        //Then
+        assertTrue(Files.exists(blob));
+        assertArrayEquals(CONTENT, read(first));
+    }
+
+    @Test
+    public void copyDataShouldLinkTheSourceFile() throws Exception {
+        //Given
+        BinaryResource source = newBinaryResource("ws/documents/DOC/A/1/file.txt");
+        BinaryResource target = newBinaryResource("ws/documents/DOC/A/2/file.txt");
+        write(source, CONTENT);
+
+        //When
+        storageProvider.copyData(source, target);
+
+        //Then
+        assertTrue(Files.isSameFile(getPath(source), getPath(target)));
+    }
+
+    @Test
+    public void delDataShouldReleaseTheBlob() throws Exception {
+        //Given
+        BinaryResource first = newBinaryResource("ws/parts/A/A/1/first.obj");
+        BinaryResource second = newBinaryResource("ws/parts/B/A/1/second.obj");
+        write(first, CONTENT);
+        write(second, CONTENT);
+        first.setContentHash(hash(first));
+        second.setContentHash(hash(second));
+        Path blob = storageProvider.getBlob(first.getContentHash());
+
+        //When
+        storageProvider.delData(first);
+
+        //Then
+        assertTrue(Files.exists(blob));
+        assertFalse(Files.exists(getPath(first)));
+
+        //When
+        storageProvider.delData(second);
+
+        //Then
+        assertFalse(Files.exists(blob));
+    }
+
+    @Test
+    public void collectGarbageShouldDeleteUnusedBlobs() throws Exception {
+        //Given
+        BinaryResource binaryResource = newBinaryResource("ws/parts/A/A/1/first.obj");
+        write(binaryResource, CONTENT);
+        storageProvider.delData(binaryResource);
+
+        //When
+        int deletedBlobs = storageProvider.collectGarbage();
+
+        //Then
+        assertEquals(1, deletedBlobs);
+    }
+
+    @Test
+    public void migrationShouldDeduplicateExistingFiles() throws Exception {
+        //Given
+        Path first = folder.getRoot().toPath().resolve("ws/parts/A/A/1/first.obj");
+        Path second = folder.getRoot().toPath().resolve("ws/parts/B/A/1/second.obj");
+        Path other = folder.getRoot().toPath().resolve("ws/parts/C/A/1/other.obj");
+        for (Path file : new Path[]{first, second, other}) {
+            Files.createDirectories(file.getParent());
+        }
+        Files.write(first, CONTENT);
+        Files.write(second, CONTENT);
+        Files.write(other, "other content".getBytes(StandardCharsets.UTF_8));
+
+        //When
+        ContentAddressedVaultMigration migration = new ContentAddressedVaultMigration(vaultPath);
+        migration.migrate();
+
+        //Then
+        assertEquals(3, migration.getImportedFiles());
+        assertEquals(1, migration.getDeduplicatedFiles());
+        assertEquals(CONTENT.length, migration.getSavedBytes());
+        assertTrue(Files.isSameFile(first, second));
+        assertEquals(2, ContentAddressedStorageProvider.getLinkCount(other));
+        assertArrayEquals(CONTENT, Files.readAllBytes(second));
+        List<String> contentHashes = Files.readAllLines(storageProvider.getContentHashesFile(), StandardCharsets.UTF_8);
+        assertEquals(3, contentHashes.size());
+        assertTrue(contentHashes.contains(HashUtils.toHex(ContentHashOutputStream.newDigest().digest(CONTENT)) + " ws/parts/A/A/1/first.obj"));
+
+        //When
+        ContentAddressedVaultMigration secondRun = new ContentAddressedVaultMigration(vaultPath);
+        secondRun.migrate();
+
+        //Then
+        assertEquals(3, secondRun.getImportedFiles());
+        assertEquals(0, secondRun.getSavedBytes());
+        assertEquals(3, ContentAddressedStorageProvider.getLinkCount(first));
+    }
+
+    //############################## HELPER METHODS ##############################
+
+    private BinaryResource newBinaryResource(String fullName) {
+        return new BinaryResource(fullName, CONTENT.length, new Date());
+    }
+
+    private Path getPath(BinaryResource binaryResource) {
+        return folder.getRoot().toPath().resolve(binaryResource.getFullName());
+    }
+
+    private void write(BinaryResource binaryResource, byte[] content) throws Exception {
+        try (OutputStream out = storageProvider.getBinaryResourceOutputStream(binaryResource)) {
+            out.write(content);
+        }
+    }
+
+    private byte[] read(BinaryResource binaryResource) throws Exception {
+        try (InputStream in = storageProvider.getBinaryResourceInputStream(binaryResource)) {
+            return IOUtils.toByteArray(in);
+        }
+    }
+
+    private String hash(BinaryResource binaryResource) throws Exception {
+        MessageDigest digest = ContentHashOutputStream.newDigest();
+        return HashUtils.toHex(digest.digest(read(binaryResource)));
+    }
+}
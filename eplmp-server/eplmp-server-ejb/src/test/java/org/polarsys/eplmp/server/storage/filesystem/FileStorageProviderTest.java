@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * Copyright (c) 2017-2019 DocDoku.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    DocDoku - initial API and implementation
+ *******************************************************************************/
+
+package org.polarsys.eplmp.server.storage.filesystem;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.polarsys.eplmp.core.common.BinaryResource;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+public class FileStorageProviderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FileStorageProvider storageProvider;
+
+    @Before
+    public void setup() {
+        storageProvider = new FileStorageProvider(folder.getRoot().getAbsolutePath());
+    }
+
+    @Test
+    public void deleteGeneratedFilesShouldKeepTheGivenFileTest() throws Exception {
+        //Given
+        BinaryResource binaryResource = new BinaryResource("ws/documents/D/A/1/doc.odt", 0, new Date());
+        writeGeneratedFile(binaryResource, "title-block-en-old.pdf");
+        writeGeneratedFile(binaryResource, "title-block-en-new.pdf");
+        writeGeneratedFile(binaryResource, "title-block-fr-current.pdf");
+        writeGeneratedFile(binaryResource, "title-block-en-notes.txt");
+        writeGeneratedFile(binaryResource, "doc.pdf");
+
+        //When
+        storageProvider.deleteGeneratedFiles(binaryResource, "title-block-en-", ".pdf", "title-block-en-new.pdf");
+
+        //Then
+        assertFalse(storageProvider.exists(binaryResource, "title-block-en-old.pdf"));
+        assertTrue(storageProvider.exists(binaryResource, "title-block-en-new.pdf"));
+        assertTrue(storageProvider.exists(binaryResource, "title-block-fr-current.pdf"));
+        assertTrue(storageProvider.exists(binaryResource, "title-block-en-notes.txt"));
+        assertTrue(storageProvider.exists(binaryResource, "doc.pdf"));
+    }
+
+    @Test
+    public void deleteGeneratedFilesWithoutGeneratedFilesTest() {
+        //Given
+        BinaryResource binaryResource = new BinaryResource("ws/documents/D/A/1/doc.odt", 0, new Date());
+
+        //When
+        storageProvider.deleteGeneratedFiles(binaryResource, "title-block-en-", ".pdf", "title-block-en-new.pdf");
+
+        //Then
+        assertFalse(storageProvider.exists(binaryResource, "title-block-en-new.pdf"));
+    }
+
+    //############################## HELPER METHODS ##############################
+
+    private void writeGeneratedFile(BinaryResource binaryResource, String generatedFileName) throws Exception {
+        try (OutputStream out = storageProvider.getGeneratedFileOutputStream(binaryResource, generatedFileName)) {
+            out.write(generatedFileName.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
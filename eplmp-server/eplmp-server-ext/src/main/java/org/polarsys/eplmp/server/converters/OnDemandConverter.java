@@ -17,7 +17,9 @@ import org.polarsys.eplmp.core.exceptions.ConvertedResourceException;
 import org.polarsys.eplmp.core.product.PartIteration;
 
 import java.io.InputStream;
+import java.util.Collections;
 import java.util.Locale;
+import java.util.Map;
 
 /**
  * OnDemandConverter plugin interface
@@ -55,4 +57,25 @@ public interface OnDemandConverter {
      * @return the converted resource input stream
      */
     InputStream getConvertedResource(String outputFormat, BinaryResource binaryResource, PartIteration partIteration, Locale locale) throws ConvertedResourceException;
+
+    /**
+     * Convert the resource in given output format ahead of its first request, for plugins keeping their conversions.
+     * Plugins should only do so with resources of their own, interactive conversions never waiting behind them.
+     *
+     * @param outputFormat   the output format
+     * @param binaryResource the resource to convert
+     * @return false if the plugin is busy and the conversion has to be retried later, true otherwise
+     */
+    default boolean preConvert(String outputFormat, BinaryResource binaryResource) throws ConvertedResourceException {
+        return true;
+    }
+
+    /**
+     * Get the statistics of the plugin, for monitoring purposes
+     *
+     * @return the statistics values by name, empty if the plugin has none
+     */
+    default Map<String, Long> getStats() {
+        return Collections.emptyMap();
+    }
 }
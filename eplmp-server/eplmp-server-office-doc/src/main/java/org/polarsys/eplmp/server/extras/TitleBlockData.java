@@ -12,13 +12,16 @@
 package org.polarsys.eplmp.server.extras;
 
 import org.polarsys.eplmp.core.meta.InstanceAttribute;
+import org.polarsys.eplmp.core.util.HashUtils;
+import org.polarsys.eplmp.core.workflow.Activity;
+import org.polarsys.eplmp.core.workflow.Task;
 import org.polarsys.eplmp.core.workflow.Workflow;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.List;
-import java.util.Locale;
-import java.util.Properties;
+import java.util.*;
 
 
 /**
@@ -113,4 +116,41 @@ public abstract class TitleBlockData {
     public String getRevisionNote() {
         return revisionNote;
     }
+
+    /**
+     * @return a digest of everything written in the title block, which changes whenever the title block does
+     */
+    public String getFingerprint() {
+        List<Object> values = new ArrayList<>(Arrays.asList(locale, title, subject, authorName, version, creationDate,
+                iterationDate, keywords, description, currentIteration, revisionNote, lifeCycleState));
+        if (instanceAttributes != null) {
+            for (InstanceAttribute attribute : instanceAttributes) {
+                values.add(attribute.getName());
+                values.add(attribute.getValue());
+            }
+        }
+        if (workflow != null) {
+            for (Activity activity : workflow.getActivities()) {
+                values.add(activity.getLifeCycleState());
+                for (Task task : activity.getTasks()) {
+                    values.add(task.getTitle());
+                    values.add(task.getStatus());
+                    values.add(task.getClosureDate() != null ? task.getClosureDate().getTime() : null);
+                    values.add(task.getClosureComment());
+                    values.add(task.getWorker() != null ? task.getWorker().getName() : null);
+                }
+            }
+        }
+
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            for (Object value : values) {
+                md.update(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+                md.update((byte) 0);
+            }
+            return HashUtils.toHex(md.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 }
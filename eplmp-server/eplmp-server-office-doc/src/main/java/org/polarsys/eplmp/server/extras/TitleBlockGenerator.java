@@ -16,11 +16,10 @@ import org.apache.pdfbox.multipdf.PDFMergerUtility;
 import org.polarsys.eplmp.core.document.DocumentIteration;
 import org.polarsys.eplmp.core.product.PartIteration;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
+import java.io.*;
+import java.nio.file.Files;
 import java.util.Locale;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -54,21 +53,67 @@ public abstract class TitleBlockGenerator {
         return merge(pdfDocument, new TitleBlockWriter(data).createTitleBlock());
     }
 
+    public static TitleBlockData getTitleBlockData(DocumentIteration docI, Locale pLocale) {
+        return new DocumentTitleBlockData(docI, pLocale);
+    }
+
+    public static TitleBlockData getTitleBlockData(PartIteration partIteration, Locale pLocale) {
+        return new PartTitleBlockData(partIteration, pLocale);
+    }
+
+    /**
+     * Generate a block title pdf page from the given data and write it, followed by the pdf given in the input stream,
+     * to the output stream
+     */
+    public static void addBlockTitleToPDF(InputStream pdfDocument, TitleBlockData data, OutputStream outputStream) throws IOException {
+        merge(pdfDocument, new TitleBlockWriter(data).createTitleBlock(), outputStream);
+    }
+
+    /**
+     * Merge the title block and the original pdf into a temporary file, deleted once the returned stream is closed
+     */
     public static InputStream merge(InputStream originalPDF, byte[] titleBlock) throws IOException {
 
-        ByteArrayOutputStream tempOutStream = new ByteArrayOutputStream();
-        PDFMergerUtility mergedDoc = new PDFMergerUtility();
+        File mergedFile = Files.createTempFile("docdoku-", ".pdf").toFile();
+        try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(mergedFile))) {
+            merge(originalPDF, titleBlock, outputStream);
+        } catch (IOException e) {
+            deleteTempFile(mergedFile);
+            throw e;
+        }
 
-        InputStream titleBlockStream = new ByteArrayInputStream(titleBlock);
+        return new FilterInputStream(new BufferedInputStream(new FileInputStream(mergedFile))) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    deleteTempFile(mergedFile);
+                }
+            }
+        };
+    }
 
-        mergedDoc.addSource(titleBlockStream);
-        mergedDoc.addSource(originalPDF);
+    /**
+     * Merge the title block and the original pdf into the output stream.
+     * Pages are buffered in temporary files rather than in memory, whatever the size of the pdf.
+     */
+    public static void merge(InputStream originalPDF, byte[] titleBlock, OutputStream outputStream) throws IOException {
 
-        mergedDoc.setDestinationStream(tempOutStream);
-        mergedDoc.mergeDocuments(MemoryUsageSetting.setupMainMemoryOnly());
+        PDFMergerUtility mergedDoc = new PDFMergerUtility();
 
-        return new ByteArrayInputStream(tempOutStream.toByteArray());
+        mergedDoc.addSource(new ByteArrayInputStream(titleBlock));
+        mergedDoc.addSource(originalPDF);
 
+        mergedDoc.setDestinationStream(outputStream);
+        mergedDoc.mergeDocuments(MemoryUsageSetting.setupTempFileOnly());
+    }
 
+    private static void deleteTempFile(File file) {
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Cannot delete temporary file " + file, e);
+        }
     }
 }
@@ -25,9 +25,23 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Converts office documents to PDF with a pool of office processes.
+ *
+ * Conversions run concurrently, one per process. Up to a configured number of further conversions wait for
+ * a process, for a limited time; beyond that they are rejected so that requests do not pile up behind
+ * a busy pool.
+ *
+ * Conversions done in background hold a dedicated permit, so that at most one process is used for
+ * them. They are only allowed with several processes, interactive conversions never waiting behind them.
+ */
 @Singleton
 public class FileConverter {
 
@@ -36,19 +50,53 @@ public class FileConverter {
 
     @Inject
     public FileConverter(OfficeConfig officeConfig) {
+        this(officeConfig, null);
+    }
+
+    FileConverter(OfficeConfig officeConfig, OfficeManager officeManager) {
         this.officeConfig = officeConfig;
+        this.officeManager = officeManager;
     }
 
     private OfficeManager officeManager;
 
+    private Semaphore conversionSlots;
+    private final Semaphore backgroundSlot = new Semaphore(1);
+    private int poolSize;
+    private long queueTimeout;
+
+    private final AtomicInteger queuedCount = new AtomicInteger();
+    private final AtomicInteger runningCount = new AtomicInteger();
+    private final AtomicLong convertedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong totalWaitTime = new AtomicLong();
+    private final AtomicLong totalConversionTime = new AtomicLong();
+
     @PostConstruct
-    private void init() {
+    void init() {
+        poolSize = Math.max(1, officeConfig.getOfficePoolSize());
+        queueTimeout = TimeUnit.SECONDS.toMillis(officeConfig.getOfficeQueueTimeout());
+        conversionSlots = new Semaphore(poolSize + Math.max(0, officeConfig.getOfficeQueueSize()), true);
+
+        if (officeManager != null) {
+            return;
+        }
+
+        int[] portNumbers = new int[poolSize];
+        for (int i = 0; i < poolSize; i++) {
+            portNumbers[i] = officeConfig.getOfficePort() + i;
+        }
+
         officeManager = LocalOfficeManager.builder()
                 .officeHome(new File(officeConfig.getOfficeHome()))
-                .portNumbers(officeConfig.getOfficePort())
+                .portNumbers(portNumbers)
+                .taskQueueTimeout(queueTimeout)
+                .taskExecutionTimeout(TimeUnit.SECONDS.toMillis(officeConfig.getOfficeTaskTimeout()))
                 .build();
         try {
             officeManager.start();
+            LOGGER.log(Level.INFO, "Office manager started with {0} processes", poolSize);
         } catch (OfficeException e) {
 
             LOGGER.log(Level.SEVERE, "Office manager not started : "+e);
@@ -66,7 +114,7 @@ public class FileConverter {
         }
     }
 
-    public synchronized InputStream convertToPDF(String sourceName, final InputStream streamToConvert) throws IOException, OfficeException {
+    public InputStream convertToPDF(String sourceName, final InputStream streamToConvert) throws IOException, OfficeException {
         File tmpDir = Files.createTempDirectory("docdoku-").toFile();
         File fileToConvert = new File(tmpDir, sourceName);
 
@@ -81,9 +129,104 @@ public class FileConverter {
     }
 
     private File convertToPDF(File fileToConvert) throws OfficeException {
-        File pdfFile = new File(fileToConvert.getParentFile(), "converted.pdf");
-        OfficeDocumentConverter converter = new OfficeDocumentConverter(officeManager);
-        converter.convert(fileToConvert, pdfFile);
-        return pdfFile;
+        long queuedTime = System.currentTimeMillis();
+        queuedCount.incrementAndGet();
+        try {
+            if (!conversionSlots.tryAcquire(queueTimeout, TimeUnit.MILLISECONDS)) {
+                rejectedCount.incrementAndGet();
+                throw new OfficeException("Conversion queue is full, " + fileToConvert.getName() + " not converted");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OfficeException("Interrupted while waiting to convert " + fileToConvert.getName(), e);
+        } finally {
+            queuedCount.decrementAndGet();
+        }
+
+        long startTime = System.currentTimeMillis();
+        totalWaitTime.addAndGet(startTime - queuedTime);
+        runningCount.incrementAndGet();
+        boolean converted = false;
+        try {
+            File pdfFile = new File(fileToConvert.getParentFile(), "converted.pdf");
+            OfficeDocumentConverter converter = new OfficeDocumentConverter(officeManager);
+            converter.convert(fileToConvert, pdfFile);
+            converted = true;
+            return pdfFile;
+        } finally {
+            long conversionTime = System.currentTimeMillis() - startTime;
+            runningCount.decrementAndGet();
+            conversionSlots.release();
+            totalConversionTime.addAndGet(conversionTime);
+            (converted ? convertedCount : failedCount).incrementAndGet();
+            LOGGER.log(Level.FINE, "Conversion of {0} {1} in {2} ms, after waiting {3} ms",
+                    new Object[]{fileToConvert.getName(), converted ? "done" : "failed", conversionTime, startTime - queuedTime});
+        }
+    }
+
+    /**
+     * @return true if the pool has enough processes to convert in background
+     */
+    public boolean isBackgroundConversionEnabled() {
+        return poolSize > 1;
+    }
+
+    /**
+     * Take the permit of background conversions, without waiting for it.
+     * It must be given back with {@link #releaseBackgroundSlot()}.
+     *
+     * @return false if a background conversion is running, or if background conversions are not enabled
+     */
+    public boolean tryAcquireBackgroundSlot() {
+        return isBackgroundConversionEnabled() && backgroundSlot.tryAcquire();
+    }
+
+    public void releaseBackgroundSlot() {
+        backgroundSlot.release();
+    }
+
+    /**
+     * @return the number of conversions waiting for a slot in the queue
+     */
+    public int getQueuedCount() {
+        return queuedCount.get();
+    }
+
+    /**
+     * @return the number of conversions submitted to the office processes, waiting for one or running
+     */
+    public int getRunningCount() {
+        return runningCount.get();
+    }
+
+    public long getConvertedCount() {
+        return convertedCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * @return the number of conversions given up because the queue stayed full
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * @return the mean time in milliseconds spent waiting for a slot in the queue
+     */
+    public long getAverageWaitTime() {
+        long conversions = convertedCount.get() + failedCount.get();
+        return conversions == 0 ? 0 : totalWaitTime.get() / conversions;
+    }
+
+    /**
+     * @return the mean time in milliseconds spent by the office processes, including their own queue
+     */
+    public long getAverageConversionTime() {
+        long conversions = convertedCount.get() + failedCount.get();
+        return conversions == 0 ? 0 : totalConversionTime.get() / conversions;
     }
 }
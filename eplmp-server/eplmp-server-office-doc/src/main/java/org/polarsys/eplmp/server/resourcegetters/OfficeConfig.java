@@ -15,6 +15,7 @@ import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
+import java.util.Optional;
 import java.util.Properties;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -43,4 +44,32 @@ public class OfficeConfig {
     public Integer getOfficePort() {
         return Integer.parseInt(properties.getProperty("office_port"));
     }
+
+    /**
+     * Number of office processes, listening on consecutive ports from the office port
+     */
+    public int getOfficePoolSize() {
+        return Integer.parseInt(Optional.ofNullable(properties.getProperty("office_pool_size")).orElse("1"));
+    }
+
+    /**
+     * Maximum number of conversions waiting for an office process, further ones are rejected
+     */
+    public int getOfficeQueueSize() {
+        return Integer.parseInt(Optional.ofNullable(properties.getProperty("office_queue_size")).orElse("20"));
+    }
+
+    /**
+     * Delay in seconds after which a conversion still waiting for an office process is given up
+     */
+    public int getOfficeQueueTimeout() {
+        return Integer.parseInt(Optional.ofNullable(properties.getProperty("office_queue_timeout")).orElse("30"));
+    }
+
+    /**
+     * Delay in seconds after which a running conversion is aborted
+     */
+    public int getOfficeTaskTimeout() {
+        return Integer.parseInt(Optional.ofNullable(properties.getProperty("office_task_timeout")).orElse("120"));
+    }
 }
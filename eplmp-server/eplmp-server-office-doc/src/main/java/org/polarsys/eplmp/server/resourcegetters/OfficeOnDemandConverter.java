@@ -19,16 +19,26 @@ import org.polarsys.eplmp.core.exceptions.StorageException;
 import org.polarsys.eplmp.core.product.PartIteration;
 import org.polarsys.eplmp.core.services.IBinaryStorageManagerLocal;
 import org.polarsys.eplmp.core.util.FileIO;
+import org.polarsys.eplmp.core.util.HashUtils;
 import org.polarsys.eplmp.core.util.Tools;
 import org.polarsys.eplmp.server.InternalService;
 import org.polarsys.eplmp.server.converters.OnDemandConverter;
+import org.polarsys.eplmp.server.extras.TitleBlockData;
 import org.polarsys.eplmp.server.extras.TitleBlockGenerator;
 
 import javax.inject.Inject;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -39,6 +49,9 @@ public class OfficeOnDemandConverter implements OnDemandConverter {
 
     private static final Logger LOGGER = Logger.getLogger(OnDemandConverter.class.getName());
 
+    private static final String TITLE_BLOCK_FILE_PREFIX = "title-block-";
+    private static final ConcurrentMap<String, CompletableFuture<Void>> PENDING_CONVERSIONS = new ConcurrentHashMap<>();
+
     @Inject
     private FileConverter fileConverter;
 
@@ -59,18 +72,17 @@ public class OfficeOnDemandConverter implements OnDemandConverter {
     @Override
     public InputStream getConvertedResource(String outputFormat, BinaryResource binaryResource, DocumentIteration docI, Locale locale) throws ConvertedResourceException {
         try {
-            // TODO check for resources to be closed
+            if ("documents".equals(binaryResource.getHolderType()) && docI != null) {
+                LOGGER.log(Level.INFO, "Adding document information to first pages");
+                return getTitleBlockResource(binaryResource, TitleBlockGenerator.getTitleBlockData(docI, locale));
+            }
+
             InputStream inputStream = null;
 
             if ("pdf".equals(outputFormat)) {
                 inputStream = getPdfConvertedResource(binaryResource);
             }
 
-            if ("documents".equals(binaryResource.getHolderType()) && docI != null) {
-                LOGGER.log(Level.INFO, "Adding document information to first pages");
-                return TitleBlockGenerator.addBlockTitleToPDF(inputStream, docI, locale);
-            }
-
             return inputStream;
         } catch (StorageException | IOException | OfficeException e) {
             throw new ConvertedResourceException(e);
@@ -80,25 +92,59 @@ public class OfficeOnDemandConverter implements OnDemandConverter {
     @Override
     public InputStream getConvertedResource(String outputFormat, BinaryResource binaryResource, PartIteration partIteration, Locale locale) throws ConvertedResourceException {
         try {
+            if ("parts".equals(binaryResource.getHolderType()) && partIteration != null) {
+                return getTitleBlockResource(binaryResource, TitleBlockGenerator.getTitleBlockData(partIteration, locale));
+            }
+
             InputStream inputStream = null;
 
             if ("pdf".equals(outputFormat)) {
                 inputStream = getPdfConvertedResource(binaryResource);
             }
 
-            if ("parts".equals(binaryResource.getHolderType()) && partIteration != null) {
-                return TitleBlockGenerator.addBlockTitleToPDF(inputStream, partIteration, locale);
-            }
-
             return inputStream;
         } catch (StorageException | IOException | OfficeException e) {
             throw new ConvertedResourceException(e);
         }
     }
 
-    private InputStream getPdfConvertedResource(BinaryResource binaryResource) throws StorageException, IOException, OfficeException {
+    @Override
+    public boolean preConvert(String outputFormat, BinaryResource binaryResource) throws ConvertedResourceException {
+        if (!"pdf".equals(outputFormat) || "pdf".equals(FileIO.getExtension(binaryResource.getName()))) {
+            return true;
+        }
+        if (!fileConverter.isBackgroundConversionEnabled()) {
+            // Converted on first request
+            return true;
+        }
+        if (!fileConverter.tryAcquireBackgroundSlot()) {
+            return false;
+        }
+        try {
+            String pdfFileName = FileIO.getFileNameWithoutExtension(binaryResource.getName()) + ".pdf";
+            generateOnce(binaryResource, pdfFileName, () -> convertIfNeeded(binaryResource, pdfFileName));
+            return true;
+        } catch (StorageException | IOException | OfficeException e) {
+            throw new ConvertedResourceException(e);
+        } finally {
+            fileConverter.releaseBackgroundSlot();
+        }
+    }
 
-        InputStream inputStream;
+    @Override
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new HashMap<>();
+        stats.put("queued", (long) fileConverter.getQueuedCount());
+        stats.put("running", (long) fileConverter.getRunningCount());
+        stats.put("converted", fileConverter.getConvertedCount());
+        stats.put("failed", fileConverter.getFailedCount());
+        stats.put("rejected", fileConverter.getRejectedCount());
+        stats.put("averageWaitTime", fileConverter.getAverageWaitTime());
+        stats.put("averageConversionTime", fileConverter.getAverageConversionTime());
+        return stats;
+    }
+
+    private InputStream getPdfConvertedResource(BinaryResource binaryResource) throws StorageException, IOException, OfficeException {
 
         String extension = FileIO.getExtension(binaryResource.getName());
 
@@ -108,27 +154,133 @@ public class OfficeOnDemandConverter implements OnDemandConverter {
         }
 
         String pdfFileName = FileIO.getFileNameWithoutExtension(binaryResource.getName()) + ".pdf";
+        generateOnce(binaryResource, pdfFileName, () -> convertIfNeeded(binaryResource, pdfFileName));
+        return storageManager.getGeneratedFileInputStream(binaryResource, pdfFileName);
+    }
+
+    /**
+     * The pdf preceded by its title block is kept as a generated file, named after the holder
+     * iteration, the file content and the title block data so that it is generated again only when
+     * one of them changes. Iterations sharing the same file have their own title block files, only
+     * the latest one being kept for each iteration and locale.
+     */
+    private InputStream getTitleBlockResource(BinaryResource binaryResource, TitleBlockData data) throws StorageException, IOException, OfficeException {
 
+        String titleBlockFilePrefix = getTitleBlockFilePrefix(binaryResource, data);
+        String titleBlockFileName = getTitleBlockFileName(binaryResource, data);
+
+        // Generations of the same iteration and locale are serialized, as each one deletes the previous file
+        for (int attempt = 1; ; attempt++) {
+            generateOnce(binaryResource, titleBlockFilePrefix, () -> {
+                if (storageManager.exists(binaryResource, titleBlockFileName)) {
+                    LOGGER.log(Level.FINE, "Title block already added to " + binaryResource.getName());
+                    return;
+                }
+                try (InputStream pdfInputStream = getPdfConvertedResource(binaryResource);
+                     OutputStream outputStream = storageManager.getGeneratedFileOutputStream(binaryResource, titleBlockFileName)) {
+                    TitleBlockGenerator.addBlockTitleToPDF(pdfInputStream, data, outputStream);
+                }
+                storageManager.deleteGeneratedFiles(binaryResource, titleBlockFilePrefix, ".pdf", titleBlockFileName);
+            });
+
+            try {
+                return storageManager.getGeneratedFileInputStream(binaryResource, titleBlockFileName);
+            } catch (StorageException e) {
+                // Deleted, or not generated yet, by a concurrent request with other title block data
+                if (attempt > 1 || storageManager.exists(binaryResource, titleBlockFileName)) {
+                    throw e;
+                }
+                LOGGER.log(Level.FINE, "Title block of " + binaryResource.getName() + " deleted before being read", e);
+            }
+        }
+    }
+
+    private String getTitleBlockFileName(BinaryResource binaryResource, TitleBlockData data) {
+        String contentKey = binaryResource.getContentHash() != null ? binaryResource.getContentHash()
+                : binaryResource.getContentLength() + "-" + (binaryResource.getLastModified() != null ? binaryResource.getLastModified().getTime() : 0);
+        return getTitleBlockFilePrefix(binaryResource, data) + sha256Sum(contentKey + "-" + data.getFingerprint()) + ".pdf";
+    }
+
+    private String getTitleBlockFilePrefix(BinaryResource binaryResource, TitleBlockData data) {
+        return TITLE_BLOCK_FILE_PREFIX + data.getLocale() + "-" + sha256Sum(binaryResource.getFullName()) + "-";
+    }
+
+    private static String sha256Sum(String value) {
+        try {
+            return HashUtils.sha256Sum(value);
+        } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Concurrent requests for the same generated file share a single generation. Generated files
+     * are stored next to the file holding the content, which may be shared by several binary resources.
+     *
+     * @param generatedFileName name, or name prefix, of the generated files
+     */
+    private void generateOnce(BinaryResource binaryResource, String generatedFileName, Generation generation) throws StorageException, IOException, OfficeException {
+        String key = storageManager.getContentLocation(binaryResource) + "#" + generatedFileName;
+        CompletableFuture<Void> conversion = new CompletableFuture<>();
+        CompletableFuture<Void> pendingConversion = PENDING_CONVERSIONS.putIfAbsent(key, conversion);
+
+        if (pendingConversion != null) {
+            LOGGER.log(Level.INFO, "Waiting for the generation of " + generatedFileName + " from " + binaryResource.getName());
+            waitFor(pendingConversion);
+            return;
+        }
+
+        try {
+            generation.run();
+            conversion.complete(null);
+        } catch (StorageException | IOException | OfficeException | RuntimeException e) {
+            conversion.completeExceptionally(e);
+            throw e;
+        } finally {
+            PENDING_CONVERSIONS.remove(key, conversion);
+        }
+    }
+
+    private void convertIfNeeded(BinaryResource binaryResource, String pdfFileName) throws StorageException, IOException, OfficeException {
         if (storageManager.exists(binaryResource, pdfFileName) &&
                 storageManager.getLastModified(binaryResource, pdfFileName).after(binaryResource.getLastModified())) {
             LOGGER.log(Level.INFO, "File is already converted to pdf");
-            inputStream = storageManager.getGeneratedFileInputStream(binaryResource, pdfFileName);
-        } else {
-            LOGGER.log(Level.INFO, "Converting " + binaryResource.getName() + " to pdf");
-            String normalizedName = Tools.unAccent(binaryResource.getName());
-
-            //copy the converted file for further reuse
-            // TODO check for resources to be closed
-            try (OutputStream outputStream = storageManager.getGeneratedFileOutputStream(binaryResource, pdfFileName);
-                 InputStream binaryResourceInputStream = storageManager.getBinaryResourceInputStream(binaryResource);
-                 InputStream inputStreamConverted = fileConverter.convertToPDF(normalizedName, binaryResourceInputStream)) {
-                FileIO.copy(inputStreamConverted, outputStream);
-            }
-            inputStream = storageManager.getGeneratedFileInputStream(binaryResource, pdfFileName);
+            return;
         }
 
+        LOGGER.log(Level.INFO, "Converting " + binaryResource.getName() + " to pdf");
+        String normalizedName = Tools.unAccent(binaryResource.getName());
 
-        return inputStream;
+        //copy the converted file for further reuse
+        try (OutputStream outputStream = storageManager.getGeneratedFileOutputStream(binaryResource, pdfFileName);
+             InputStream binaryResourceInputStream = storageManager.getBinaryResourceInputStream(binaryResource);
+             InputStream inputStreamConverted = fileConverter.convertToPDF(normalizedName, binaryResourceInputStream)) {
+            FileIO.copy(inputStreamConverted, outputStream);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Generation {
+        void run() throws StorageException, IOException, OfficeException;
+    }
+
+    private void waitFor(CompletableFuture<Void> conversion) throws StorageException, IOException, OfficeException {
+        try {
+            conversion.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof StorageException) {
+                throw (StorageException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof OfficeException) {
+                throw (OfficeException) cause;
+            }
+            throw new IOException(cause);
+        }
     }
 
 }
@@ -156,4 +156,16 @@ public class TitleBlockWriterTest {
 
     }
 
+    @Test
+    public void titleBlockFingerprintTest() {
+
+        String fingerprint = new PartTitleBlockData(partIteration, new Locale("en")).getFingerprint();
+
+        Assert.assertEquals(fingerprint, new PartTitleBlockData(partIteration, new Locale("en")).getFingerprint());
+        Assert.assertNotEquals(fingerprint, new PartTitleBlockData(partIteration, new Locale("fr")).getFingerprint());
+
+        partIteration.setIterationNote("OtherRevisionNote");
+        Assert.assertNotEquals(fingerprint, new PartTitleBlockData(partIteration, new Locale("en")).getFingerprint());
+    }
+
 }
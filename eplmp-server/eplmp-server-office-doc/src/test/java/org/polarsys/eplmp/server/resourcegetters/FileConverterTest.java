@@ -23,9 +23,12 @@ import org.mockito.runners.MockitoJUnitRunner;
 import org.polarsys.eplmp.core.exceptions.FileNotFoundException;
 import org.polarsys.eplmp.core.exceptions.StorageException;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URISyntaxException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 @RunWith(MockitoJUnitRunner.class)
 public class FileConverterTest {
@@ -43,6 +46,10 @@ public class FileConverterTest {
     public void setup() throws OfficeException {
 
         MockitoAnnotations.initMocks(this);
+        Mockito.when(officeConfig.getOfficePoolSize()).thenReturn(1);
+        Mockito.when(officeConfig.getOfficeQueueSize()).thenReturn(0);
+        Mockito.when(officeConfig.getOfficeQueueTimeout()).thenReturn(0);
+        fileConverter.init();
     }
 
     @Test
@@ -66,4 +73,57 @@ public class FileConverterTest {
             Assert.fail("Resource not found: " + e.getMessage());
         }
     }
+
+    @Test
+    public void convertToPDFWhenQueueIsFullTest() throws Exception {
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.doAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return null;
+        }).when(officeManager).execute(Matchers.any());
+
+        Thread runningConversion = new Thread(() -> {
+            try {
+                fileConverter.convertToPDF("running.txt", new ByteArrayInputStream(new byte[0]));
+            } catch (IOException | OfficeException e) {
+                // The mocked conversion produces no file
+            }
+        });
+        runningConversion.start();
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(1, fileConverter.getRunningCount());
+
+        try {
+            fileConverter.convertToPDF("rejected.txt", new ByteArrayInputStream(new byte[0]));
+            Assert.fail("Should have thrown an OfficeException");
+        } catch (OfficeException e) {
+            Assert.assertEquals(1, fileConverter.getRejectedCount());
+        } finally {
+            release.countDown();
+            runningConversion.join();
+        }
+
+        Mockito.verify(officeManager, Mockito.times(1)).execute(Matchers.any());
+        Assert.assertEquals(0, fileConverter.getRunningCount());
+    }
+
+    @Test
+    public void backgroundConversionsShouldNeedSeveralProcessesTest() {
+
+        Assert.assertFalse(fileConverter.isBackgroundConversionEnabled());
+        Assert.assertFalse(fileConverter.tryAcquireBackgroundSlot());
+
+        Mockito.when(officeConfig.getOfficePoolSize()).thenReturn(2);
+        FileConverter pooledFileConverter = new FileConverter(officeConfig, officeManager);
+        pooledFileConverter.init();
+
+        Assert.assertTrue(pooledFileConverter.isBackgroundConversionEnabled());
+        Assert.assertTrue(pooledFileConverter.tryAcquireBackgroundSlot());
+        Assert.assertFalse(pooledFileConverter.tryAcquireBackgroundSlot());
+        pooledFileConverter.releaseBackgroundSlot();
+        Assert.assertTrue(pooledFileConverter.tryAcquireBackgroundSlot());
+    }
 }
\ No newline at end of file
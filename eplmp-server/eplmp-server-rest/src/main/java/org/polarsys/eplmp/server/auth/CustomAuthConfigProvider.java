@@ -11,6 +11,8 @@
 
 package org.polarsys.eplmp.server.auth;
 
+import org.polarsys.eplmp.server.auth.jwt.JWTokenFactory;
+
 import javax.security.auth.callback.CallbackHandler;
 import javax.security.auth.message.AuthException;
 import javax.security.auth.message.config.AuthConfigProvider;
@@ -25,14 +27,16 @@ import javax.security.auth.message.config.ServerAuthConfig;
 public class CustomAuthConfigProvider implements AuthConfigProvider {
 
     private final AuthConfig authConfig;
+    private final JWTokenFactory jwTokenFactory;
 
-    public CustomAuthConfigProvider(AuthConfig authConfig) {
+    public CustomAuthConfigProvider(AuthConfig authConfig, JWTokenFactory jwTokenFactory) {
        this.authConfig = authConfig;
+       this.jwTokenFactory = jwTokenFactory;
     }
 
     @Override
     public ServerAuthConfig getServerAuthConfig(String layer, String appContext, CallbackHandler callbackHandler) throws AuthException {
-        return new CustomServerAuthConfig(authConfig, layer, appContext, callbackHandler);
+        return new CustomServerAuthConfig(authConfig, jwTokenFactory, layer, appContext, callbackHandler);
     }
 
     @Override
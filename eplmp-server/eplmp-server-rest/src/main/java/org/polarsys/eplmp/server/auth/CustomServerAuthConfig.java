@@ -10,6 +10,7 @@
   *******************************************************************************/
 package org.polarsys.eplmp.server.auth;
 
+import org.polarsys.eplmp.server.auth.jwt.JWTokenFactory;
 import org.polarsys.eplmp.server.auth.modules.*;
 
 import javax.security.auth.Subject;
@@ -42,12 +43,12 @@ public class CustomServerAuthConfig implements ServerAuthConfig {
      */
     private final List<CustomSAM> serverAuthModules;
 
-    public CustomServerAuthConfig(AuthConfig authConfig, String layer, String appContext, CallbackHandler handler) {
+    public CustomServerAuthConfig(AuthConfig authConfig, JWTokenFactory jwTokenFactory, String layer, String appContext, CallbackHandler handler) {
 
         List<CustomSAM> customSAMs = new ArrayList<>();
 
         if (authConfig.isJwtEnabled()) {
-            customSAMs.add(new JWTSAM(authConfig.getJWTKey()));
+            customSAMs.add(new JWTSAM(jwTokenFactory, authConfig.getJWTKey()));
         }
 
         if (authConfig.isBasicHeaderEnabled()) {
@@ -11,6 +11,8 @@
 
 package org.polarsys.eplmp.server.auth;
 
+import org.polarsys.eplmp.server.auth.jwt.JWTokenFactory;
+
 import javax.inject.Inject;
 import javax.security.auth.message.config.AuthConfigFactory;
 import javax.servlet.ServletContext;
@@ -33,6 +35,9 @@ public class CustomServletContextListener implements ServletContextListener {
     @Inject
     private AuthConfig authConfig;
 
+    @Inject
+    private JWTokenFactory jwTokenFactory;
+
     public CustomServletContextListener() {
     }
 
@@ -42,7 +47,7 @@ public class CustomServletContextListener implements ServletContextListener {
         LOGGER.log(Level.INFO, "Registering authentication provider");
 
         AuthConfigFactory.getFactory()
-                .registerConfigProvider(new CustomAuthConfigProvider(authConfig), "HttpServlet",
+                .registerConfigProvider(new CustomAuthConfigProvider(authConfig, jwTokenFactory), "HttpServlet",
                         getAppContextID(sce.getServletContext()), "Custom authentication modules registration on HttpServlet layer");
 
     }
@@ -23,6 +23,7 @@ import org.jose4j.lang.JoseException;
 import org.polarsys.eplmp.core.security.UserGroupMapping;
 import org.polarsys.eplmp.core.sharing.SharedEntity;
 
+import javax.enterprise.context.ApplicationScoped;
 import javax.json.Json;
 import javax.json.JsonObject;
 import javax.json.JsonObjectBuilder;
@@ -31,14 +32,20 @@ import javax.json.stream.JsonParsingException;
 import javax.servlet.http.HttpServletResponse;
 import java.io.StringReader;
 import java.security.Key;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * This JWTokenFactory class is responsible for JWT tokens creation
  *
+ * Tokens are verified with a consumer built for the current key. Validated auth tokens are
+ * cached for a short while, and forgotten when the key changes.
+ *
  * @author Morgan Guimard
  */
+@ApplicationScoped
 public class JWTokenFactory {
 
     private static final Logger LOGGER = Logger.getLogger(JWTokenFactory.class.getName());
@@ -51,10 +58,24 @@ public class JWTokenFactory {
     private static final String SHARED_ENTITY_UUID = "uuid";
     private static final String ENTITY_KEY = "key";
 
-    private JWTokenFactory() {
+    // Validated auth tokens are trusted without being verified again for a short while
+    private static final int VALIDATED_TOKENS_MAX_SIZE = 1000;
+    private static final long VALIDATED_TOKENS_TTL = 60 * 1000L;
+
+    // Guarded by this
+    private Key currentKey;
+    private JwtConsumer consumer;
+    private final Map<String, ValidatedToken> validatedTokens = new LinkedHashMap<String, ValidatedToken>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ValidatedToken> eldest) {
+            return size() > VALIDATED_TOKENS_MAX_SIZE;
+        }
+    };
+
+    public JWTokenFactory() {
     }
 
-    public static String createAuthToken(Key key, UserGroupMapping userGroupMapping) {
+    public String createAuthToken(Key key, UserGroupMapping userGroupMapping) {
         JsonObjectBuilder subjectBuilder = Json.createObjectBuilder();
         subjectBuilder.add(SUBJECT_LOGIN, userGroupMapping.getLogin());
         subjectBuilder.add(SUBJECT_GROUP_NAME, userGroupMapping.getGroupName());
@@ -62,14 +83,14 @@ public class JWTokenFactory {
         return createToken(key, build);
     }
 
-    public static String createSharedEntityToken(Key key, SharedEntity sharedEntity) {
+    public String createSharedEntityToken(Key key, SharedEntity sharedEntity) {
         JsonObjectBuilder subjectBuilder = Json.createObjectBuilder();
         subjectBuilder.add(SHARED_ENTITY_UUID, sharedEntity.getUuid());
         JsonObject build = subjectBuilder.build();
         return createToken(key, build);
     }
 
-    private static String createToken(Key key, JsonObject jsonClaims) {
+    private String createToken(Key key, JsonObject jsonClaims) {
 
         JwtClaims claims = new JwtClaims();
         claims.setSubject(jsonClaims.toString());
@@ -91,15 +112,15 @@ public class JWTokenFactory {
         return null;
     }
 
-    public static JWTokenUserGroupMapping validateAuthToken(Key key, String jwt) {
+    public JWTokenUserGroupMapping validateAuthToken(Key key, String jwt) {
 
-        JwtConsumer jwtConsumer = new JwtConsumerBuilder()
-                .setVerificationKey(key)
-                .setRelaxVerificationKeyValidation()
-                .build();
+        JWTokenUserGroupMapping validatedToken = getValidatedToken(key, jwt);
+        if (validatedToken != null) {
+            return validatedToken;
+        }
 
         try {
-            JwtClaims jwtClaims = jwtConsumer.processToClaims(jwt);
+            JwtClaims jwtClaims = getConsumer(key).processToClaims(jwt);
             String subject = jwtClaims.getSubject();
 
             try (JsonReader reader = Json.createReader(new StringReader(subject))) {
@@ -108,7 +129,9 @@ public class JWTokenFactory {
                 String groupName = subjectObject.getString(SUBJECT_GROUP_NAME); // Npe
 
                 if (login != null && !login.isEmpty() && groupName != null && !groupName.isEmpty()) {
-                    return new JWTokenUserGroupMapping(jwtClaims, new UserGroupMapping(login, groupName));
+                    JWTokenUserGroupMapping jwTokenUserGroupMapping = new JWTokenUserGroupMapping(jwtClaims, new UserGroupMapping(login, groupName));
+                    putValidatedToken(key, jwt, jwTokenUserGroupMapping);
+                    return jwTokenUserGroupMapping;
                 }
             }
 
@@ -121,15 +144,10 @@ public class JWTokenFactory {
 
     }
 
-    public static String validateSharedResourceToken(Key key, String jwt) {
-
-        JwtConsumer jwtConsumer = new JwtConsumerBuilder()
-                .setVerificationKey(key)
-                .setRelaxVerificationKeyValidation()
-                .build();
+    public String validateSharedResourceToken(Key key, String jwt) {
 
         try {
-            JwtClaims jwtClaims = jwtConsumer.processToClaims(jwt);
+            JwtClaims jwtClaims = getConsumer(key).processToClaims(jwt);
             String subject = jwtClaims.getSubject();
             try (JsonReader reader = Json.createReader(new StringReader(subject))) {
                 JsonObject subjectObject = reader.readObject(); // JsonParsingException
@@ -143,7 +161,7 @@ public class JWTokenFactory {
 
     }
 
-    public static boolean isJWTValidBefore(Key key, int seconds, String authorizationString) {
+    public boolean isJWTValidBefore(Key key, int seconds, String authorizationString) {
         JWTokenUserGroupMapping jwTokenUserGroupMapping = validateAuthToken(key, authorizationString);
         if (jwTokenUserGroupMapping != null) {
             try {
@@ -157,7 +175,7 @@ public class JWTokenFactory {
         return false;
     }
 
-    public static void refreshTokenIfNeeded(Key key, HttpServletResponse response, JWTokenUserGroupMapping jwTokenUserGroupMapping) {
+    public void refreshTokenIfNeeded(Key key, HttpServletResponse response, JWTokenUserGroupMapping jwTokenUserGroupMapping) {
 
         try {
             NumericDate expirationTime = jwTokenUserGroupMapping.getClaims().getExpirationTime();
@@ -173,22 +191,81 @@ public class JWTokenFactory {
 
     }
 
-    public static String createEntityToken(Key key, String entityKey) {
+    /**
+     * Consumers are thread safe, one is kept for the current key. A key change drops the
+     * tokens validated with the previous one.
+     */
+    private synchronized JwtConsumer getConsumer(Key key) {
+        if (!key.equals(currentKey)) {
+            consumer = new JwtConsumerBuilder()
+                    .setVerificationKey(key)
+                    .setRelaxVerificationKeyValidation()
+                    .build();
+            currentKey = key;
+            validatedTokens.clear();
+        }
+        return consumer;
+    }
+
+    private synchronized JWTokenUserGroupMapping getValidatedToken(Key key, String jwt) {
+        if (!key.equals(currentKey)) {
+            return null;
+        }
+        ValidatedToken validatedToken = validatedTokens.get(jwt);
+        if (validatedToken == null) {
+            return null;
+        }
+        if (validatedToken.expirationTime <= System.currentTimeMillis()) {
+            validatedTokens.remove(jwt);
+            return null;
+        }
+        return validatedToken.jwTokenUserGroupMapping;
+    }
+
+    synchronized int getValidatedTokensCount() {
+        return validatedTokens.size();
+    }
+
+    private void putValidatedToken(Key key, String jwt, JWTokenUserGroupMapping jwTokenUserGroupMapping) {
+        long expirationTime = System.currentTimeMillis() + VALIDATED_TOKENS_TTL;
+        try {
+            NumericDate tokenExpirationTime = jwTokenUserGroupMapping.getClaims().getExpirationTime();
+            if (tokenExpirationTime != null) {
+                expirationTime = Math.min(expirationTime, tokenExpirationTime.getValueInMillis());
+            }
+        } catch (MalformedClaimException e) {
+            return;
+        }
+        synchronized (this) {
+            // Not validated with the current key if it changed meanwhile
+            if (key.equals(currentKey)) {
+                validatedTokens.put(jwt, new ValidatedToken(jwTokenUserGroupMapping, expirationTime));
+            }
+        }
+    }
+
+    private static final class ValidatedToken {
+
+        private final JWTokenUserGroupMapping jwTokenUserGroupMapping;
+        private final long expirationTime;
+
+        private ValidatedToken(JWTokenUserGroupMapping jwTokenUserGroupMapping, long expirationTime) {
+            this.jwTokenUserGroupMapping = jwTokenUserGroupMapping;
+            this.expirationTime = expirationTime;
+        }
+    }
+
+    public String createEntityToken(Key key, String entityKey) {
         JsonObjectBuilder subjectBuilder = Json.createObjectBuilder();
         subjectBuilder.add(ENTITY_KEY, entityKey);
         JsonObject build = subjectBuilder.build();
         return createToken(key, build);
     }
 
-    public static String validateEntityToken(Key key, String jwt) {
-
-        JwtConsumer jwtConsumer = new JwtConsumerBuilder()
-                .setVerificationKey(key)
-                .setRelaxVerificationKeyValidation()
-                .build();
+    public String validateEntityToken(Key key, String jwt) {
 
         try {
-            JwtClaims jwtClaims = jwtConsumer.processToClaims(jwt);
+            JwtClaims jwtClaims = getConsumer(key).processToClaims(jwt);
             String subject = jwtClaims.getSubject();
             try (JsonReader reader = Json.createReader(new StringReader(subject))) {
                 JsonObject subjectObject = reader.readObject(); // JsonParsingException
@@ -38,9 +38,11 @@ import java.util.logging.Logger;
 public class JWTSAM extends CustomSAM {
 
     private static final Logger LOGGER = Logger.getLogger(JWTSAM.class.getName());
+    private JWTokenFactory jwTokenFactory;
     private Key key;
 
-    public JWTSAM(Key key) {
+    public JWTSAM(JWTokenFactory jwTokenFactory, Key key) {
+        this.jwTokenFactory = jwTokenFactory;
         this.key = key;
     }
 
@@ -56,7 +58,7 @@ public class JWTSAM extends CustomSAM {
         String[] splitAuthorization = authorization.split(" ");
         String jwt = splitAuthorization[1];
 
-        JWTokenUserGroupMapping jwTokenUserGroupMapping = JWTokenFactory.validateAuthToken(key, jwt);
+        JWTokenUserGroupMapping jwTokenUserGroupMapping = jwTokenFactory.validateAuthToken(key, jwt);
 
         if (jwTokenUserGroupMapping != null) {
 
@@ -71,7 +73,7 @@ public class JWTSAM extends CustomSAM {
                 throw new AuthException(e.getMessage());
             }
 
-            JWTokenFactory.refreshTokenIfNeeded(key, response, jwTokenUserGroupMapping);
+            jwTokenFactory.refreshTokenIfNeeded(key, response, jwTokenUserGroupMapping);
 
             return AuthStatus.SUCCESS;
         }
@@ -12,8 +12,7 @@
 package org.polarsys.eplmp.server.export;
 
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFSheet;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.dozer.DozerBeanMapperSingletonWrapper;
 import org.dozer.Mapper;
 import org.polarsys.eplmp.core.common.User;
@@ -35,89 +34,36 @@ import org.polarsys.eplmp.server.rest.collections.QueryResult;
 import org.polarsys.eplmp.server.rest.dto.InstanceAttributeDTO;
 import org.polarsys.eplmp.server.rest.dto.InstanceAttributeType;
 
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 /**
  * @author Chadid Asmae
  */
 public class ExcelGenerator {
 
-    private static final Logger LOGGER = Logger.getLogger(ExcelGenerator.class.getName());
+    private static final int ROW_ACCESS_WINDOW_SIZE = 100;
 
     private Mapper mapper = DozerBeanMapperSingletonWrapper.getInstance();
 
-    public File generateXLSResponse(QueryResult queryResult, Locale locale, String baseURL) {
-        File excelFile = new File("export_parts.xls");
-        //Blank workbook
-        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
-
-
-            //Create a blank sheet
-            XSSFSheet sheet = workbook.createSheet("Parts Data");
-
-            String header = String.join(";", queryResult.getQuery().getSelects());
-            String[] columns = header.split(";");
-
-            Map<Integer, String[]> data = new HashMap<>();
-            String[] headerFormatted = createXLSHeaderRow(header, columns, locale);
-            data.put(1, headerFormatted);
-
-            Map<Integer, String[]> commentsData = new HashMap<>();
-            String[] headerComments = createXLSHeaderRowComments(header, columns);
-            commentsData.put(1, headerComments);
+    /**
+     * Writes the query result as an OOXML workbook to the given stream.
+     *
+     * Only a window of rows is kept in memory, the other ones are flushed to a compressed temporary file
+     * until the workbook is written. Cell comments (the attribute ids used by the importer) stay in memory.
+     */
+    public void generateXLSResponse(QueryResult queryResult, Locale locale, String baseURL, OutputStream outputStream) throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_ACCESS_WINDOW_SIZE);
+        workbook.setCompressTempFiles(true);
+
+        try {
+            Sheet sheet = workbook.createSheet("Parts Data");
+            CreationHelper factory = workbook.getCreationHelper();
+            Drawing drawing = sheet.createDrawingPatriarch();
 
             List<String> selects = queryResult.getQuery().getSelects();
-            int i = 1;
-            for (QueryResultRow row : queryResult.getRows()) {
-                i++;
-                data.put(i, createXLSRow(selects, row, baseURL));
-                commentsData.put(i, createXLSRowComments(selects, row));
-            }
-
-            //Iterate over data and write to sheet
-            Set<Integer> keySet = data.keySet();
-            int rowNum = 0;
-
-            for (Integer key : keySet) {
-
-                Row row = sheet.createRow(rowNum++);
-                String[] objArr = data.get(key);
-                int cellNum = 0;
-                for (String obj : objArr) {
-                    Cell cell = row.createCell(cellNum++);
-                    cell.setCellValue(obj);
-                }
-
-                CreationHelper factory = workbook.getCreationHelper();
-                Drawing drawing = sheet.createDrawingPatriarch();
-                String[] commentsObjArr = commentsData.get(key);
-                cellNum = 0;
-                for (String commentsObj : commentsObjArr) {
-                    if (commentsObj.length() > 0) {
-                        Cell cell = row.getCell(cellNum) != null ? row.getCell(cellNum) : row.createCell(cellNum);
-
-                        // When the comment box is visible, have it show in a 1x3 space
-                        ClientAnchor anchor = factory.createClientAnchor();
-                        anchor.setCol1(cell.getColumnIndex());
-                        anchor.setCol2(cell.getColumnIndex() + 1);
-                        anchor.setRow1(row.getRowNum());
-                        anchor.setRow2(row.getRowNum() + 1);
-
-                        Comment comment = drawing.createCellComment(anchor);
-                        RichTextString str = factory.createRichTextString(commentsObj);
-                        comment.setString(str);
-
-                        // Assign the comment to the cell
-                        cell.setCellComment(comment);
-                    }
-                    cellNum++;
-                }
-            }
+            int columnCount = selects.size();
 
             // Define header style
             Font headerFont = workbook.createFont();
@@ -131,41 +77,101 @@ public class ExcelGenerator {
             headerStyle.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
             headerStyle.setFillPattern(CellStyle.SOLID_FOREGROUND);
 
-            // Set header style
-            for (int j = 0; j < columns.length; j++) {
-                Cell cell = sheet.getRow(0).getCell(j);
-                cell.setCellStyle(headerStyle);
+            // Identification columns are grayed on every row
+            List<String> headerComments = createXLSHeaderRowComments(selects);
+            boolean[] grayColumns = new boolean[columnCount];
+            for (int j = 0; j < columnCount; j++) {
+                String comment = headerComments.get(j);
+                grayColumns[j] = comment.equals(QueryField.CTX_PRODUCT_ID) || comment.equals(QueryField.CTX_SERIAL_NUMBER) || comment.equals(QueryField.PART_MASTER_NUMBER);
+            }
 
-                if (cell.getCellComment() != null) {
-                    String comment = cell.getCellComment().getString().toString();
+            Row headerRow = writeXLSRow(sheet, factory, drawing, 0, columnCount, createXLSHeaderRow(selects, locale), headerComments);
+            for (int j = 0; j < columnCount; j++) {
+                headerRow.getCell(j).setCellStyle(headerStyle);
+            }
 
-                    if (comment.equals(QueryField.CTX_PRODUCT_ID) || comment.equals(QueryField.CTX_SERIAL_NUMBER) || comment.equals(QueryField.PART_MASTER_NUMBER)) {
-                        for (int k = 0; k < queryResult.getRows().size(); k++) {
-                            Cell grayCell = sheet.getRow(k + 1).getCell(j) != null ? sheet.getRow(k + 1).getCell(j) : sheet.getRow(k + 1).createCell(j);
-                            grayCell.setCellStyle(headerStyle);
-                        }
+            int rowNum = 1;
+            for (QueryResultRow row : queryResult.getRows()) {
+                Row sheetRow = writeXLSRow(sheet, factory, drawing, rowNum++, columnCount, createXLSRow(selects, row, baseURL), createXLSRowComments(selects, row));
+                for (int j = 0; j < columnCount; j++) {
+                    if (grayColumns[j]) {
+                        sheetRow.getCell(j).setCellStyle(headerStyle);
                     }
                 }
             }
 
-            //Write the workbook in file system
-            try (FileOutputStream out = new FileOutputStream(excelFile)) {
-                workbook.write(out);
-            } catch (IOException e) {
-                LOGGER.log(Level.SEVERE, "Cannot write file to file system", e);
-            }
+            workbook.write(outputStream);
+            outputStream.flush();
 
-        } catch (IOException e) {
-            LOGGER.log(Level.SEVERE, "Cannot initialize workbook", e);
+        } finally {
+            workbook.dispose();
         }
+    }
 
-        return excelFile;
+    /**
+     * Writes the query result as CSV (semicolon separated, UTF-8) to the given stream, row after row.
+     */
+    public void generateCSVResponse(QueryResult queryResult, Locale locale, String baseURL, OutputStream outputStream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
 
+        List<String> selects = queryResult.getQuery().getSelects();
+        int columnCount = selects.size();
+
+        writeCSVRow(writer, columnCount, createXLSHeaderRow(selects, locale));
+        for (QueryResultRow row : queryResult.getRows()) {
+            writeCSVRow(writer, columnCount, createXLSRow(selects, row, baseURL));
+        }
+
+        writer.flush();
+    }
+
+    private Row writeXLSRow(Sheet sheet, CreationHelper factory, Drawing drawing, int rowNum, int columnCount, List<String> values, List<String> comments) {
+        Row row = sheet.createRow(rowNum);
+
+        for (int cellNum = 0; cellNum < columnCount; cellNum++) {
+            Cell cell = row.createCell(cellNum);
+            cell.setCellValue(cellNum < values.size() ? values.get(cellNum) : "");
+
+            String commentsObj = cellNum < comments.size() ? comments.get(cellNum) : "";
+            if (commentsObj.length() > 0) {
+                // When the comment box is visible, have it show in a 1x3 space
+                ClientAnchor anchor = factory.createClientAnchor();
+                anchor.setCol1(cellNum);
+                anchor.setCol2(cellNum + 1);
+                anchor.setRow1(rowNum);
+                anchor.setRow2(rowNum + 1);
+
+                Comment comment = drawing.createCellComment(anchor);
+                RichTextString str = factory.createRichTextString(commentsObj);
+                comment.setString(str);
+
+                // Assign the comment to the cell
+                cell.setCellComment(comment);
+            }
+        }
+
+        return row;
+    }
+
+    private void writeCSVRow(Writer writer, int columnCount, List<String> values) throws IOException {
+        for (int i = 0; i < columnCount; i++) {
+            if (i > 0) {
+                writer.write(';');
+            }
+            String value = i < values.size() && values.get(i) != null ? values.get(i) : "";
+            if (value.indexOf(';') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(value.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(value);
+            }
+        }
+        writer.write("\r\n");
     }
 
-    private String[] createXLSHeaderRow(String header, String[] columns, Locale locale) {
-        String[] headerFormatted = new String[header.split(";").length];
-        int headerIndex = 0;
+    private List<String> createXLSHeaderRow(List<String> columns, Locale locale) {
+        List<String> headerFormatted = new ArrayList<>();
 
         for (String column : columns) {
             String columnTranslated;
@@ -177,33 +183,34 @@ public class ExcelGenerator {
                 } else {
                     columnTranslated = new LangHelper(locale).getLocalizedMessage(column.trim());
                 }
-                headerFormatted[headerIndex++] = columnTranslated.isEmpty() ? column : columnTranslated;
+                headerFormatted.add(columnTranslated.isEmpty() ? column : columnTranslated);
+            } else {
+                headerFormatted.add("");
             }
         }
 
         return headerFormatted;
     }
 
-    private String[] createXLSHeaderRowComments(String header, String[] columns) {
-        String[] headerComments = new String[header.split(";").length];
-        int headerIndex = 0;
+    private List<String> createXLSHeaderRowComments(List<String> columns) {
+        List<String> headerComments = new ArrayList<>();
 
         for (String column : columns) {
             if (column.equals(QueryField.CTX_PRODUCT_ID) || column.equals(QueryField.CTX_SERIAL_NUMBER) || column.equals(QueryField.PART_MASTER_NUMBER)) {
-                headerComments[headerIndex++] = column;
+                headerComments.add(column);
             } else if (column.startsWith(QueryField.PART_REVISION_ATTRIBUTES_PREFIX)) {
-                headerComments[headerIndex++] = column.substring(0, column.indexOf(".")).substring(QueryField.PART_REVISION_ATTRIBUTES_PREFIX.length());
+                headerComments.add(column.substring(0, column.indexOf(".")).substring(QueryField.PART_REVISION_ATTRIBUTES_PREFIX.length()));
             } else if (column.startsWith(QueryField.PATH_DATA_ATTRIBUTES_PREFIX)) {
-                headerComments[headerIndex++] = column.substring(0, column.indexOf(".")).substring(QueryField.PATH_DATA_ATTRIBUTES_PREFIX.length());
+                headerComments.add(column.substring(0, column.indexOf(".")).substring(QueryField.PATH_DATA_ATTRIBUTES_PREFIX.length()));
             } else {
-                headerComments[headerIndex++] = "";
+                headerComments.add("");
             }
         }
 
         return headerComments;
     }
 
-    private String[] createXLSRow(List<String> selects, QueryResultRow row, String baseURL) {
+    private List<String> createXLSRow(List<String> selects, QueryResultRow row, String baseURL) {
         List<String> data = new ArrayList<>();
         PartRevision part = row.getPartRevision();
         PartIteration lastCheckedInIteration = part.getLastCheckedInIteration();
@@ -372,11 +379,10 @@ public class ExcelGenerator {
 
         }
 
-        String rowData = String.join(";", data);
-        return rowData.split(";");
+        return data;
     }
 
-    private String[] createXLSRowComments(List<String> selects, QueryResultRow row) {
+    private List<String> createXLSRowComments(List<String> selects, QueryResultRow row) {
         List<String> commentsData = new ArrayList<>();
         PartRevision part = row.getPartRevision();
         PartIteration lastIteration = part.getLastIteration();
@@ -385,9 +391,7 @@ public class ExcelGenerator {
 
             if (select.equals(QueryField.CTX_SERIAL_NUMBER)) {
                 String path = row.getPath();
-                if (path != null && !path.isEmpty()) {
-                    commentsData.add(path);
-                }
+                commentsData.add(path != null ? path : "");
 
             } else if (select.startsWith(QueryField.PART_REVISION_ATTRIBUTES_PREFIX)) {
                 String attributeSelectType = select.substring(0, select.indexOf(".")).substring(QueryField.PART_REVISION_ATTRIBUTES_PREFIX.length());
@@ -446,8 +450,7 @@ public class ExcelGenerator {
 
         }
 
-        String commentsRowData = String.join(";", commentsData);
-        return commentsRowData.split(";");
+        return commentsData;
     }
 
 }
@@ -65,6 +65,9 @@ public class AccountResource {
     @Inject
     private AuthConfig authConfig;
 
+    @Inject
+    private JWTokenFactory jwTokenFactory;
+
     private static final Logger LOGGER = Logger.getLogger(AccountResource.class.getName());
     private Mapper mapper;
 
@@ -123,7 +126,7 @@ public class AccountResource {
         } else {
             if (authorizationString == null
                     || !authorizationString.startsWith("Bearer ")
-                    || !JWTokenFactory.isJWTValidBefore(authConfig.getJWTKey(), 2 * 60, authorizationString.substring("Bearer ".length()))) {
+                    || !jwTokenFactory.isJWTValidBefore(authConfig.getJWTKey(), 2 * 60, authorizationString.substring("Bearer ".length()))) {
                 return Response.status(Response.Status.FORBIDDEN).build();
             }
         }
@@ -176,7 +179,7 @@ public class AccountResource {
                     .entity(mapper.map(account, AccountDTO.class));
 
             if (authConfig.isJwtEnabled()) {
-                responseBuilder.header("jwt", JWTokenFactory.createAuthToken(authConfig.getJWTKey(), new UserGroupMapping(login, UserGroupMapping.REGULAR_USER_ROLE_ID)));
+                responseBuilder.header("jwt", jwTokenFactory.createAuthToken(authConfig.getJWTKey(), new UserGroupMapping(login, UserGroupMapping.REGULAR_USER_ROLE_ID)));
             }
 
             return responseBuilder
@@ -81,6 +81,9 @@ public class AdminResource implements Serializable {
     @Inject
     private IOAuthManagerLocal oAuthManager;
 
+    @Inject
+    private IOnDemandConverterManagerLocal onDemandConverterManager;
+
     private Mapper mapper;
 
     public AdminResource() {
@@ -226,6 +229,47 @@ public class AdminResource implements Serializable {
     }
 
 
+    @GET
+    @Path("indexation-stats")
+    @ApiOperation(value = "Get indexation queue stats",
+            response = String.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Successful retrieval of indexation queue statistics"),
+            @ApiResponse(code = 401, message = "Unauthorized"),
+            @ApiResponse(code = 403, message = "Forbidden"),
+            @ApiResponse(code = 500, message = "Internal server error")
+    })
+    @Produces(MediaType.APPLICATION_JSON)
+    public JsonObject getIndexationStats() {
+        return Json.createObjectBuilder()
+                .add("queueDepth", indexManager.getIndexationQueueDepth())
+                .add("lag", indexManager.getIndexationLag())
+                .build();
+    }
+
+
+    @GET
+    @Path("conversion-stats")
+    @ApiOperation(value = "Get file conversion stats",
+            response = String.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Successful retrieval of file conversion statistics"),
+            @ApiResponse(code = 401, message = "Unauthorized"),
+            @ApiResponse(code = 403, message = "Forbidden"),
+            @ApiResponse(code = 500, message = "Internal server error")
+    })
+    @Produces(MediaType.APPLICATION_JSON)
+    public JsonObject getConversionStats() {
+        JsonObjectBuilder conversionStats = Json.createObjectBuilder();
+        onDemandConverterManager.getConverterStats().forEach((converter, stats) -> {
+            JsonObjectBuilder converterStats = Json.createObjectBuilder();
+            stats.forEach(converterStats::add);
+            conversionStats.add(converter, converterStats);
+        });
+        return conversionStats.build();
+    }
+
+
     @PUT
     @ApiOperation(value = "Synchronize index for given workspace",
             response = Response.class)
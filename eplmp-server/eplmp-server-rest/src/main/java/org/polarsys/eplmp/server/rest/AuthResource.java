@@ -87,6 +87,9 @@ public class AuthResource {
     @Inject
     private AuthConfig authConfig;
 
+    @Inject
+    private JWTokenFactory jwTokenFactory;
+
     private static final Logger LOGGER = Logger.getLogger(AuthResource.class.getName());
     private Mapper mapper;
 
@@ -142,7 +145,7 @@ public class AuthResource {
             accountDTO.setAdmin(UserGroupMapping.ADMIN_ROLE_ID.equals(userGroupMapping.getGroupName()));
             Response.ResponseBuilder responseBuilder = Response.ok().entity(accountDTO);
             if (authConfig.isJwtEnabled()) {
-                responseBuilder.header("jwt", JWTokenFactory.createAuthToken(authConfig.getJWTKey(), userGroupMapping));
+                responseBuilder.header("jwt", jwTokenFactory.createAuthToken(authConfig.getJWTKey(), userGroupMapping));
             }
 
             return responseBuilder.build();
@@ -341,7 +344,7 @@ public class AuthResource {
         UserGroupMapping userGroupMapping = AuthServices.getUserGroupMapping(account.getLogin());
 
         if (authConfig.isJwtEnabled()) {
-            responseBuilder.header("jwt", JWTokenFactory.createAuthToken(authConfig.getJWTKey(), userGroupMapping));
+            responseBuilder.header("jwt", jwTokenFactory.createAuthToken(authConfig.getJWTKey(), userGroupMapping));
         }
 
         return responseBuilder.build();
@@ -36,6 +36,7 @@ import org.polarsys.eplmp.server.rest.collections.VirtualInstanceCollection;
 import org.polarsys.eplmp.server.rest.dto.*;
 import org.polarsys.eplmp.server.rest.dto.baseline.ProductBaselineDTO;
 import org.polarsys.eplmp.server.rest.dto.product.ProductInstanceMasterDTO;
+import org.polarsys.eplmp.server.rest.util.BinaryInstanceLeafWriter;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.security.DeclareRoles;
@@ -801,7 +802,7 @@ public class PartResource {
             @ApiResponse(code = 500, message = "Internal server error")
     })
     @Path("/instances")
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, BinaryInstanceLeafWriter.MEDIA_TYPE})
     public Response getInstancesUnderPart(
             @ApiParam(required = true, value = "Workspace id") @PathParam("workspaceId") String workspaceId,
             @ApiParam(required = true, value = "Part number") @PathParam("partNumber") String partNumber,
@@ -31,7 +31,9 @@ import org.polarsys.eplmp.core.services.IUserManagerLocal;
 import org.polarsys.eplmp.core.util.FileIO;
 import org.polarsys.eplmp.server.export.ExcelGenerator;
 import org.polarsys.eplmp.server.rest.collections.QueryResult;
+import org.polarsys.eplmp.server.rest.collections.QueryResultCursor;
 import org.polarsys.eplmp.server.rest.dto.*;
+import org.polarsys.eplmp.server.rest.file.util.BinaryResourceDownloadMeta;
 import org.polarsys.eplmp.server.rest.file.util.BinaryResourceUpload;
 import org.polarsys.eplmp.server.rest.util.SearchQueryParser;
 
@@ -59,6 +61,8 @@ import java.util.*;
 @RolesAllowed(UserGroupMapping.REGULAR_USER_ROLE_ID)
 public class PartsResource {
 
+    private static final String QUERY_NEXT_AFTER_HEADER = "x-query-next-after";
+
     @Inject
     private IProductManagerLocal productService;
 
@@ -278,19 +282,45 @@ public class PartsResource {
             @ApiParam(required = true, value = "Workspace id") @PathParam("workspaceId") String workspaceId,
             @ApiParam(required = false, value = "Save the query flag", defaultValue = "false") @QueryParam("save") boolean save,
             @ApiParam(required = false, value = "Choose export type", defaultValue = "JSON") @QueryParam("export") String exportType,
+            @ApiParam(required = false, value = "Part key (number-version) of the last row of the previous page, ignored for queries with contexts") @QueryParam("after") String after,
+            @ApiParam(required = false, value = "Max rows of the page, all the rows are returned if not set", defaultValue = "0") @QueryParam("limit") int limit,
             @ApiParam(required = true, value = "Query to run") QueryDTO queryDTO)
             throws EntityNotFoundException, UserNotActiveException, AccessRightException, CreationException,
             EntityAlreadyExistsException, EntityConstraintException, NotAllowedException, WorkspaceNotEnabledException {
 
+        PartRevisionKey afterKey = null;
+        if (after != null && !after.isEmpty()) {
+            int versionIndex = after.lastIndexOf('-');
+            if (versionIndex <= 0) {
+                return Response.status(Response.Status.BAD_REQUEST).build();
+            }
+            afterKey = new PartRevisionKey(workspaceId, after.substring(0, versionIndex), after.substring(versionIndex + 1));
+        }
+
         Query query = mapper.map(queryDTO, Query.class);
-        QueryResult queryResult = getQueryResult(workspaceId, query, exportType);
+        QueryResult queryResult = getQueryResult(workspaceId, query, exportType, afterKey, limit);
 
         if (save) {
             productService.createQuery(workspaceId, query);
         }
 
-        return Response.ok(new GenericEntity<QueryResult>((QueryResult) queryResult) {
-        }).build();
+        Response.ResponseBuilder responseBuilder = Response.ok(new GenericEntity<QueryResult>((QueryResult) queryResult) {
+        });
+
+        // Full page: give the key to use for the next one
+        if (limit > 0 && !query.hasContext()) {
+            PartRevision last = null;
+            int count = 0;
+            for (QueryResultRow row : queryResult.getRows()) {
+                last = row.getPartRevision();
+                count++;
+            }
+            if (count == limit) {
+                responseBuilder.header(QUERY_NEXT_AFTER_HEADER, last.getPartNumber() + '-' + last.getVersion());
+            }
+        }
+
+        return responseBuilder.build();
     }
 
 
@@ -536,6 +566,44 @@ public class PartsResource {
         return Tools.mapPartRevisionToPartDTO(partMaster.getLastRevision());
     }
 
+    @POST
+    @ApiOperation(value = "Revalidate cached part files",
+            response = FileETagDTO.class,
+            responseContainer = "List")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Successful retrieval of the changed files. It can be an empty list."),
+            @ApiResponse(code = 401, message = "Unauthorized"),
+            @ApiResponse(code = 500, message = "Internal server error")
+    })
+    @Path("files/revalidation")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public FileETagDTO[] revalidatePartFiles(
+            @ApiParam(required = true, value = "Workspace id") @PathParam("workspaceId") String workspaceId,
+            @ApiParam(required = true, value = "Cached files and their entity tags") List<FileETagDTO> files)
+            throws EntityNotFoundException, UserNotActiveException, WorkspaceNotEnabledException {
+
+        List<String> fullNames = new ArrayList<>();
+        for (FileETagDTO file : files) {
+            fullNames.add(file.getFullName());
+        }
+
+        Map<String, String> contentHashes = productService.getBinaryResourceContentHashes(workspaceId, fullNames);
+
+        // Only return the files whose tag changed, with their new tag. A null tag means the file
+        // cannot be revalidated this way (missing, not readable, or stored without hash).
+        List<FileETagDTO> changedFiles = new ArrayList<>();
+        for (FileETagDTO file : files) {
+            String contentHash = contentHashes.get(file.getFullName());
+            String eTag = contentHash != null ? BinaryResourceDownloadMeta.getContentETag(contentHash, null).getValue() : null;
+            if (eTag == null || !eTag.equals(unquote(file.getEtag()))) {
+                changedFiles.add(new FileETagDTO(file.getFullName(), eTag));
+            }
+        }
+
+        return changedFiles.toArray(new FileETagDTO[changedFiles.size()]);
+    }
+
     @GET
     @ApiOperation(value = "Search documents last iteration to link",
             response = PartIterationDTO.class,
@@ -746,11 +814,24 @@ public class PartsResource {
     }
 
     private QueryResult getQueryResult(String workspaceId, Query query, String pExportType) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, EntityConstraintException, BaselineNotFoundException, ProductInstanceMasterNotFoundException, NotAllowedException, ConfigurationItemNotFoundException, PartMasterNotFoundException, WorkspaceNotEnabledException {
-        List<PartRevision> partRevisions = productService.searchPartRevisions(workspaceId, query);
-        QueryResult queryResult = new QueryResult(partRevisions, query);
+        return getQueryResult(workspaceId, query, pExportType, null, 0);
+    }
+
+    /**
+     * Rows of queries without context are streamed from a cursor, or limited to a single page if a limit is given.
+     * Queries with contexts are merged with the product breakdown structure, and thus fully loaded.
+     */
+    private QueryResult getQueryResult(String workspaceId, Query query, String pExportType, PartRevisionKey after, int limit) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, EntityConstraintException, BaselineNotFoundException, ProductInstanceMasterNotFoundException, NotAllowedException, ConfigurationItemNotFoundException, PartMasterNotFoundException, WorkspaceNotEnabledException {
+        QueryResult queryResult;
         if (query.hasContext()) {
+            List<PartRevision> partRevisions = productService.searchPartRevisions(workspaceId, query);
+            queryResult = new QueryResult(partRevisions, query);
             List<QueryResultRow> rows = productService.filterProductBreakdownStructure(workspaceId, query);
             queryResult.mergeRows(rows);
+        } else if (limit > 0) {
+            queryResult = new QueryResult(productService.searchPartRevisions(workspaceId, query, after, limit), query);
+        } else {
+            queryResult = new QueryResult(query, new QueryResultCursor(productService, workspaceId, query, after, QueryResultCursor.BATCH_SIZE));
         }
         String exportType = pExportType != null ? pExportType : "JSON";
         queryResult.setExportType(QueryResult.ExportType.valueOf(exportType));
@@ -759,9 +840,22 @@ public class PartsResource {
 
     private Response makeQueryResponse(QueryResult queryResult, Locale locale, String baseURL) {
         ExcelGenerator excelGenerator = new ExcelGenerator();
-        String contentType = "application/vnd.ms-excel";
-        String contentDisposition = "attachment; filename=export_parts.xls";
-        Response.ResponseBuilder responseBuilder = Response.ok(excelGenerator.generateXLSResponse(queryResult, locale, baseURL));
+        String contentType;
+        String contentDisposition;
+        StreamingOutput output;
+
+        // Rows are written to the response as they are read
+        if (queryResult.getExportType() == QueryResult.ExportType.CSV) {
+            contentType = "text/csv; charset=UTF-8";
+            contentDisposition = "attachment; filename=export_parts.csv";
+            output = outputStream -> excelGenerator.generateCSVResponse(queryResult, locale, baseURL, outputStream);
+        } else {
+            contentType = "application/vnd.ms-excel";
+            contentDisposition = "attachment; filename=export_parts.xls";
+            output = outputStream -> excelGenerator.generateXLSResponse(queryResult, locale, baseURL, outputStream);
+        }
+
+        Response.ResponseBuilder responseBuilder = Response.ok(output);
         responseBuilder
                 .header("Content-Type", contentType)
                 .header("Content-Disposition", contentDisposition);
@@ -787,4 +881,14 @@ public class PartsResource {
         return Tools.mapModificationNotificationsToModificationNotificationDTO(notifications);
     }
 
+    private static String unquote(String eTag) {
+        if (eTag == null) {
+            return null;
+        }
+        String value = eTag.startsWith("W/") ? eTag.substring(2) : eTag;
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            value = value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
 }
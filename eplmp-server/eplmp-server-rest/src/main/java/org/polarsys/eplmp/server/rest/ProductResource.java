@@ -33,6 +33,7 @@ import org.polarsys.eplmp.server.rest.dto.*;
 import org.polarsys.eplmp.server.rest.dto.baseline.BaselinedPartDTO;
 import org.polarsys.eplmp.server.rest.dto.baseline.PathChoiceDTO;
 import org.polarsys.eplmp.server.rest.interceptors.Compress;
+import org.polarsys.eplmp.server.rest.util.BinaryInstanceLeafWriter;
 import org.polarsys.eplmp.server.rest.util.FileDownloadTools;
 import org.polarsys.eplmp.server.rest.util.ProductFileExport;
 
@@ -452,7 +453,7 @@ public class ProductResource {
             @ApiResponse(code = 500, message = "Internal server error")
     })
     @Path("{ciId}/instances")
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, BinaryInstanceLeafWriter.MEDIA_TYPE})
     public Response getFilteredInstances(
             @Context Request request,
             @ApiParam(required = true, value = "Workspace id") @PathParam("workspaceId") String workspaceId,
@@ -464,7 +465,7 @@ public class ProductResource {
 
         Response.ResponseBuilder rb = fakeSimilarBehavior(request);
         if (rb != null) {
-            return rb.build();
+            return rb.header(HttpHeaders.VARY, HttpHeaders.ACCEPT).build();
         } else {
             CacheControl cc = new CacheControl();
             //this request is resources consuming so we cache the response for 30 minutes
@@ -481,7 +482,8 @@ public class ProductResource {
 
             InstanceCollection instanceCollection = new InstanceCollection(ciKey, filter, paths);
 
-            return Response.ok().lastModified(new Date()).cacheControl(cc).entity(instanceCollection).build();
+            // JSON and binary representations are served from the same URL
+            return Response.ok().lastModified(new Date()).cacheControl(cc).header(HttpHeaders.VARY, HttpHeaders.ACCEPT).entity(instanceCollection).build();
         }
     }
 
@@ -497,7 +499,7 @@ public class ProductResource {
     })
     @Path("{ciId}/instances")
     @Consumes(MediaType.APPLICATION_JSON)
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, BinaryInstanceLeafWriter.MEDIA_TYPE})
     public Response getInstancesForMultiplePath(
             @Context Request request,
             @ApiParam(required = true, value = "Workspace id") @PathParam("workspaceId") String workspaceId,
@@ -508,7 +510,7 @@ public class ProductResource {
 
         Response.ResponseBuilder rb = fakeSimilarBehavior(request);
         if (rb != null) {
-            return rb.build();
+            return rb.header(HttpHeaders.VARY, HttpHeaders.ACCEPT).build();
         } else {
             CacheControl cc = new CacheControl();
             //this request is resources consuming so we cache the response for 30 minutes
@@ -529,7 +531,8 @@ public class ProductResource {
 
             InstanceCollection instanceCollection = new InstanceCollection(ciKey, filter, paths);
 
-            return Response.ok().lastModified(new Date()).cacheControl(cc).entity(instanceCollection).build();
+            // JSON and binary representations are served from the same URL
+            return Response.ok().lastModified(new Date()).cacheControl(cc).header(HttpHeaders.VARY, HttpHeaders.ACCEPT).entity(instanceCollection).build();
         }
     }
 
@@ -59,6 +59,9 @@ public class SharedResource {
     @Inject
     private AuthConfig authConfig;
 
+    @Inject
+    private JWTokenFactory jwTokenFactory;
+
     private Mapper mapper;
 
     public SharedResource() {
@@ -99,7 +102,7 @@ public class SharedResource {
         if (documentRevision != null) {
             DocumentRevisionDTO documentRevisionDTO = mapper.map(documentRevision, DocumentRevisionDTO.class);
             documentRevisionDTO.setRoutePath(documentRevision.getLocation().getRoutePath());
-            String entityToken = JWTokenFactory.createEntityToken(authConfig.getJWTKey(), documentRevision.getKey().toString());
+            String entityToken = jwTokenFactory.createEntityToken(authConfig.getJWTKey(), documentRevision.getKey().toString());
             return Response.ok().header("entity-token", entityToken).entity(documentRevisionDTO).build();
         } else {
             return Response.status(Response.Status.FORBIDDEN).build();
@@ -134,7 +137,7 @@ public class SharedResource {
         }
 
         if (partRevision != null) {
-            String entityToken = JWTokenFactory.createEntityToken(authConfig.getJWTKey(), partRevision.getKey().toString());
+            String entityToken = jwTokenFactory.createEntityToken(authConfig.getJWTKey(), partRevision.getKey().toString());
             return Response.ok().header("entity-token", entityToken).entity(Tools.mapPartRevisionToPartDTO(partRevision)).build();
         } else {
             return Response.status(Response.Status.FORBIDDEN).build();
@@ -169,7 +172,7 @@ public class SharedResource {
             return createPasswordProtectedResponse();
         }
 
-        String sharedEntityToken = JWTokenFactory.createSharedEntityToken(authConfig.getJWTKey(), sharedEntity);
+        String sharedEntityToken = jwTokenFactory.createSharedEntityToken(authConfig.getJWTKey(), sharedEntity);
         DocumentRevision documentRevision = ((SharedDocument) sharedEntity).getDocumentRevision();
         return Response.ok().header("shared-entity-token", sharedEntityToken).entity(mapper.map(documentRevision, DocumentRevisionDTO.class)).build();
     }
@@ -201,7 +204,7 @@ public class SharedResource {
             return createPasswordProtectedResponse();
         }
 
-        String sharedEntityToken = JWTokenFactory.createSharedEntityToken(authConfig.getJWTKey(), sharedEntity);
+        String sharedEntityToken = jwTokenFactory.createSharedEntityToken(authConfig.getJWTKey(), sharedEntity);
         PartRevision partRevision = ((SharedPart) sharedEntity).getPartRevision();
         return Response.ok().header("shared-entity-token", sharedEntityToken).entity(Tools.mapPartRevisionToPartDTO(partRevision)).build();
 
@@ -857,7 +857,7 @@ public class WorkspaceResource {
             @ApiParam(value = "Workspace id", required = true) @PathParam("workspaceId") String workspaceId,
             @ApiParam(value = "Option values", required = true) WorkspaceBackOptionsDTO workspaceBackOptionsDTO
     ) throws EntityNotFoundException, AccessRightException {
-        workspaceManager.updateWorkspaceBackOptions(new WorkspaceBackOptions(new Workspace(workspaceId), workspaceBackOptionsDTO.isSendEmails()));
+        workspaceManager.updateWorkspaceBackOptions(new WorkspaceBackOptions(new Workspace(workspaceId), workspaceBackOptionsDTO.isSendEmails(), workspaceBackOptionsDTO.isPreConvertFiles()));
         return Response.noContent().build();
     }
 
@@ -25,23 +25,25 @@ import java.util.List;
 public class QueryResult {
 
     private Query query;
-    private List<QueryResultRow> rows = new ArrayList<>();
+    private Iterable<QueryResultRow> rows = new ArrayList<>();
 
     private ExportType exportType = ExportType.JSON;
 
     public QueryResult() {
     }
 
-    public QueryResult(Query query, List<QueryResultRow> rows) {
+    public QueryResult(Query query, Iterable<QueryResultRow> rows) {
         this.query = query;
         this.rows = rows;
     }
 
     public QueryResult(List<PartRevision> partRevisions, Query query) {
         this.query = query;
+        List<QueryResultRow> partRows = new ArrayList<>();
         for (PartRevision partRevision : partRevisions) {
-            rows.add(new QueryResultRow(partRevision));
+            partRows.add(new QueryResultRow(partRevision));
         }
+        this.rows = partRows;
     }
 
     public ExportType getExportType() {
@@ -60,11 +62,14 @@ public class QueryResult {
         this.query = query;
     }
 
-    public List<QueryResultRow> getRows() {
+    /**
+     * The rows may be a {@link QueryResultCursor}, which can only be iterated once.
+     */
+    public Iterable<QueryResultRow> getRows() {
         return rows;
     }
 
-    public void setRows(List<QueryResultRow> rows) {
+    public void setRows(Iterable<QueryResultRow> rows) {
         this.rows = rows;
     }
 
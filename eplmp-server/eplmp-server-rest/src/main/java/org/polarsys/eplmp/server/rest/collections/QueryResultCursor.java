@@ -0,0 +1,106 @@
+/*******************************************************************************
+  * Copyright (c) 2017-2019 DocDoku.
+  * All rights reserved. This program and the accompanying materials
+  * are made available under the terms of the Eclipse Public License v1.0
+  * which accompanies this distribution, and is available at
+  * http://www.eclipse.org/legal/epl-v10.html
+  *
+  * Contributors:
+  *    DocDoku - initial API and implementation
+  *******************************************************************************/
+
+package org.polarsys.eplmp.server.rest.collections;
+
+import org.polarsys.eplmp.core.exceptions.UserNotActiveException;
+import org.polarsys.eplmp.core.exceptions.UserNotFoundException;
+import org.polarsys.eplmp.core.exceptions.WorkspaceNotEnabledException;
+import org.polarsys.eplmp.core.exceptions.WorkspaceNotFoundException;
+import org.polarsys.eplmp.core.product.PartRevision;
+import org.polarsys.eplmp.core.product.PartRevisionKey;
+import org.polarsys.eplmp.core.query.Query;
+import org.polarsys.eplmp.core.query.QueryResultRow;
+import org.polarsys.eplmp.core.services.IProductManagerLocal;
+
+import javax.ws.rs.WebApplicationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Rows of a custom query, fetched lazily batch after batch with keyset pagination.
+ *
+ * Each batch is loaded by its own call to the product service, hence its own persistence context, so that
+ * only one batch of revisions is held in memory while the rows are written.
+ *
+ * The first batch is loaded on creation, so that access errors are raised before the response is written.
+ */
+public class QueryResultCursor implements Iterable<QueryResultRow> {
+
+    public static final int BATCH_SIZE = 500;
+
+    private final IProductManagerLocal productService;
+    private final String workspaceId;
+    private final Query query;
+    private final int batchSize;
+
+    private List<PartRevision> firstBatch;
+
+    public QueryResultCursor(IProductManagerLocal productService, String workspaceId, Query query, PartRevisionKey after, int batchSize)
+            throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, WorkspaceNotEnabledException {
+        this.productService = productService;
+        this.workspaceId = workspaceId;
+        this.query = query;
+        this.batchSize = batchSize;
+        this.firstBatch = productService.searchPartRevisions(workspaceId, query, after, batchSize);
+    }
+
+    /**
+     * The cursor can only be iterated once.
+     */
+    @Override
+    public Iterator<QueryResultRow> iterator() {
+        if (firstBatch == null) {
+            throw new IllegalStateException("Query result cursor already consumed");
+        }
+        Iterator<QueryResultRow> iterator = new RowIterator(firstBatch);
+        firstBatch = null;
+        return iterator;
+    }
+
+    private class RowIterator implements Iterator<QueryResultRow> {
+
+        private List<PartRevision> batch;
+        private int index = 0;
+
+        private RowIterator(List<PartRevision> batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (index < batch.size()) {
+                return true;
+            }
+            if (batch.size() < batchSize) {
+                return false;
+            }
+
+            PartRevisionKey lastKey = batch.get(batch.size() - 1).getKey();
+            try {
+                batch = productService.searchPartRevisions(workspaceId, query, lastKey, batchSize);
+            } catch (UserNotFoundException | UserNotActiveException | WorkspaceNotFoundException | WorkspaceNotEnabledException e) {
+                throw new WebApplicationException(e);
+            }
+            index = 0;
+            return !batch.isEmpty();
+        }
+
+        @Override
+        public QueryResultRow next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return new QueryResultRow(batch.get(index++));
+        }
+    }
+}
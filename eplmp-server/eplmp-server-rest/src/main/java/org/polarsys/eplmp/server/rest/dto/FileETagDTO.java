@@ -0,0 +1,53 @@
+/*******************************************************************************
+  * Copyright (c) 2017-2019 DocDoku.
+  * All rights reserved. This program and the accompanying materials
+  * are made available under the terms of the Eclipse Public License v1.0
+  * which accompanies this distribution, and is available at
+  * http://www.eclipse.org/legal/epl-v10.html
+  *
+  * Contributors:
+  *    DocDoku - initial API and implementation
+  *******************************************************************************/
+
+package org.polarsys.eplmp.server.rest.dto;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+import javax.xml.bind.annotation.XmlRootElement;
+import java.io.Serializable;
+
+@XmlRootElement
+@ApiModel(value = "FileETagDTO", description = "This class is the representation of a file and its entity tag")
+public class FileETagDTO implements Serializable {
+
+    @ApiModelProperty(value = "File full name")
+    private String fullName;
+
+    @ApiModelProperty(value = "File entity tag, null if the file cannot be revalidated")
+    private String etag;
+
+    public FileETagDTO() {
+    }
+
+    public FileETagDTO(String fullName, String etag) {
+        this.fullName = fullName;
+        this.etag = etag;
+    }
+
+    public String getFullName() {
+        return fullName;
+    }
+
+    public void setFullName(String fullName) {
+        this.fullName = fullName;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
+}
@@ -15,6 +15,7 @@ import io.swagger.annotations.ApiModelProperty;
 
 import javax.xml.bind.annotation.XmlRootElement;
 import java.io.Serializable;
+import java.util.Date;
 import java.util.List;
 
 @XmlRootElement
@@ -36,6 +37,21 @@ public class WebhookDTO implements Serializable {
     @ApiModelProperty(value = "Webhook app name")
     private String appName;
 
+    @ApiModelProperty(value = "Number of notifications delivered")
+    private long deliveredCount;
+
+    @ApiModelProperty(value = "Number of notifications abandoned after their last attempt")
+    private long failedCount;
+
+    @ApiModelProperty(value = "Date of the last delivered notification")
+    private Date lastDeliveryDate;
+
+    @ApiModelProperty(value = "Date of the last failed attempt")
+    private Date lastFailureDate;
+
+    @ApiModelProperty(value = "Error of the last failed attempt")
+    private String lastError;
+
     public WebhookDTO() {
     }
 
@@ -87,5 +103,44 @@ public class WebhookDTO implements Serializable {
         this.appName = appName;
     }
 
-}
 
+    public long getDeliveredCount() {
+        return deliveredCount;
+    }
+
+    public void setDeliveredCount(long deliveredCount) {
+        this.deliveredCount = deliveredCount;
+    }
+
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    public void setFailedCount(long failedCount) {
+        this.failedCount = failedCount;
+    }
+
+    public Date getLastDeliveryDate() {
+        return lastDeliveryDate;
+    }
+
+    public void setLastDeliveryDate(Date lastDeliveryDate) {
+        this.lastDeliveryDate = lastDeliveryDate;
+    }
+
+    public Date getLastFailureDate() {
+        return lastFailureDate;
+    }
+
+    public void setLastFailureDate(Date lastFailureDate) {
+        this.lastFailureDate = lastFailureDate;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+}
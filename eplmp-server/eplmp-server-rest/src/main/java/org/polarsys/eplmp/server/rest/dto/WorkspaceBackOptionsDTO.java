@@ -27,6 +27,9 @@ public class WorkspaceBackOptionsDTO implements Serializable {
     @ApiModelProperty(value = "Send emails flag")
     private boolean sendEmails;
 
+    @ApiModelProperty(value = "Convert office files in advance flag")
+    private boolean preConvertFiles;
+
     public WorkspaceBackOptionsDTO() {
     }
 
@@ -45,4 +48,12 @@ public class WorkspaceBackOptionsDTO implements Serializable {
     public void setSendEmails(boolean sendEmails) {
         this.sendEmails = sendEmails;
     }
+
+    public boolean isPreConvertFiles() {
+        return preConvertFiles;
+    }
+
+    public void setPreConvertFiles(boolean preConvertFiles) {
+        this.preConvertFiles = preConvertFiles;
+    }
 }
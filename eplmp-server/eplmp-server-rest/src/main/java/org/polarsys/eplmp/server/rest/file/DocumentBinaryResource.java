@@ -82,6 +82,8 @@ public class DocumentBinaryResource {
     @Inject
     private AuthConfig authConfig;
     @Inject
+    private JWTokenFactory jwTokenFactory;
+    @Inject
     private Locale userLocale;
 
     public DocumentBinaryResource() {
@@ -180,7 +182,7 @@ public class DocumentBinaryResource {
 
             if (accessToken != null && !accessToken.isEmpty()) {
 
-                String decodedUUID = JWTokenFactory.validateSharedResourceToken(authConfig.getJWTKey(), accessToken);
+                String decodedUUID = jwTokenFactory.validateSharedResourceToken(authConfig.getJWTKey(), accessToken);
 
                 if (null == decodedUUID || !decodedUUID.equals(sharedEntity.getUuid())) {
                     throw new NotAllowedException("NotAllowedException73");
@@ -211,7 +213,7 @@ public class DocumentBinaryResource {
             // Check access right
 
             if (accessToken != null && !accessToken.isEmpty()) {
-                String decodedEntityKey = JWTokenFactory.validateEntityToken(authConfig.getJWTKey(), accessToken);
+                String decodedEntityKey = jwTokenFactory.validateEntityToken(authConfig.getJWTKey(), accessToken);
                 boolean tokenValid = new DocumentRevisionKey(workspaceId, documentId, version).toString().equals(decodedEntityKey);
                 if (!tokenValid) {
                     throw new NotAllowedException("NotAllowedException73");
@@ -50,6 +50,7 @@ import java.net.URLEncoder;
 import java.security.NoSuchAlgorithmException;
 import java.text.Normalizer;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Locale;
 import java.util.logging.Level;
@@ -80,6 +81,8 @@ public class PartBinaryResource {
     @Inject
     private AuthConfig authConfig;
     @Inject
+    private JWTokenFactory jwTokenFactory;
+    @Inject
     private Locale userLocale;
 
     public PartBinaryResource() {
@@ -204,12 +207,13 @@ public class PartBinaryResource {
             @ApiParam(required = false, value = "Type") @QueryParam("type") String type,
             @ApiParam(required = false, value = "Output") @QueryParam("output") String output,
             @ApiParam(required = false, value = "Range") @HeaderParam("Range") String range,
+            @ApiParam(required = false, value = "Entity tags of the cached file") @HeaderParam("If-None-Match") String ifNoneMatch,
             @ApiParam(required = false, value = "Shared entity uuid") @QueryParam("uuid") final String uuid,
             @ApiParam(required = false, value = "Password for private resource") @HeaderParam("password") String password,
             @ApiParam(required = false, value = "Shared entity token") @QueryParam("token") String accessToken)
             throws EntityNotFoundException, UserNotActiveException, AccessRightException, NotAllowedException,
             PreconditionFailedException, RequestedRangeNotSatisfiableException, WorkspaceNotEnabledException {
-        return downloadPartFile(request, workspaceId, partNumber, version, iteration, null, fileName, type, output, range, uuid, password, accessToken);
+        return downloadPartFile(request, workspaceId, partNumber, version, iteration, null, fileName, type, output, range, ifNoneMatch, uuid, password, accessToken);
     }
 
     @GET
@@ -234,6 +238,7 @@ public class PartBinaryResource {
             @ApiParam(required = false, value = "Type") @QueryParam("type") String type,
             @ApiParam(required = false, value = "Output") @QueryParam("output") String output,
             @ApiParam(required = false, value = "Range") @HeaderParam("Range") String range,
+            @ApiParam(required = false, value = "Entity tags of the cached file") @HeaderParam("If-None-Match") String ifNoneMatch,
             @ApiParam(required = false, value = "Shared entity uuid") @QueryParam("uuid") final String uuid,
             @ApiParam(required = false, value = "Password for private resource") @HeaderParam("password") String password,
             @ApiParam(required = false, value = "Shared entity token") @QueryParam("token") String accessToken)
@@ -259,12 +264,20 @@ public class PartBinaryResource {
 
         fullName = fullName + decodedFileName;
 
+        // Revalidation of a cached file: answer from the content hash, before any other lookup
+        if (isContentRevalidation(ifNoneMatch, uuid, accessToken, output)) {
+            Response.ResponseBuilder rb = evaluateContentPreconditions(request, workspaceId, fullName);
+            if (rb != null) {
+                return rb.build();
+            }
+        }
+
         if (uuid != null && !uuid.isEmpty()) {
 
             SharedEntity sharedEntity = shareService.findSharedEntityForGivenUUID(uuid);
 
             if (accessToken != null && !accessToken.isEmpty()) {
-                String decodedUUID = JWTokenFactory.validateSharedResourceToken(authConfig.getJWTKey(), accessToken);
+                String decodedUUID = jwTokenFactory.validateSharedResourceToken(authConfig.getJWTKey(), accessToken);
                 if (null == decodedUUID || !decodedUUID.equals(sharedEntity.getUuid())) {
                     throw new NotAllowedException("NotAllowedException73");
                 }
@@ -291,7 +304,7 @@ public class PartBinaryResource {
             // Check access right
 
             if (accessToken != null && !accessToken.isEmpty()) {
-                String decodedEntityKey = JWTokenFactory.validateEntityToken(authConfig.getJWTKey(), accessToken);
+                String decodedEntityKey = jwTokenFactory.validateEntityToken(authConfig.getJWTKey(), accessToken);
                 boolean tokenValid = new PartRevisionKey(workspaceId, partNumber, version).toString().equals(decodedEntityKey);
                 if (!tokenValid) {
                     throw new NotAllowedException("NotAllowedException73");
@@ -352,6 +365,24 @@ public class PartBinaryResource {
         }
     }
 
+    private boolean isContentRevalidation(String ifNoneMatch, String uuid, String accessToken, String output) {
+        return ifNoneMatch != null && !ifNoneMatch.isEmpty()
+                && (uuid == null || uuid.isEmpty())
+                && (accessToken == null || accessToken.isEmpty())
+                && (output == null || output.isEmpty())
+                && contextManager.isCallerInRole(UserGroupMapping.REGULAR_USER_ROLE_ID);
+    }
+
+    private Response.ResponseBuilder evaluateContentPreconditions(Request request, String workspaceId, String fullName)
+            throws EntityNotFoundException, UserNotActiveException, WorkspaceNotEnabledException {
+        String contentHash = productService.getBinaryResourceContentHashes(workspaceId, Collections.singletonList(fullName)).get(fullName);
+        if (contentHash == null) {
+            // Unknown hash or no access: let the full path decide
+            return null;
+        }
+        return request.evaluatePreconditions(BinaryResourceDownloadMeta.getContentETag(contentHash, null));
+    }
+
     private boolean canAccess(PartIterationKey partIKey) throws UserNotActiveException, EntityNotFoundException, WorkspaceNotEnabledException {
         return publicEntityManager.canAccess(partIKey) || contextManager.isCallerInRole(UserGroupMapping.REGULAR_USER_ROLE_ID) && productService.canAccess(partIKey);
     }
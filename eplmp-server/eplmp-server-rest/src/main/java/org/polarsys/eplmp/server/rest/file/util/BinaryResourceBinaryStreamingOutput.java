@@ -12,23 +12,77 @@
 package org.polarsys.eplmp.server.rest.file.util;
 
 import org.apache.poi.util.IOUtils;
+import org.polarsys.eplmp.core.util.FileBackedInputStream;
 import org.polarsys.eplmp.server.rest.exceptions.InterruptedStreamException;
 
 import javax.ws.rs.core.StreamingOutput;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Streams a binary content, or some ranges of it.
+ *
+ * When the content is backed by a file, the ranges are sent with {@link FileChannel#transferTo}
+ * from their position in the file. Other streams are skipped up to each range, then copied
+ * through a buffer.
+ *
+ * Several ranges are sent as a multipart/byteranges body. They must be sorted and must not
+ * overlap, see {@link ByteRange#parse}.
+ */
 public class BinaryResourceBinaryStreamingOutput implements StreamingOutput {
     private static final Logger LOGGER = Logger.getLogger(BinaryResourceBinaryStreamingOutput.class.getName());
+    private static final int BUFFER_SIZE = 1024 * 8;
+    private static final String CRLF = "\r\n";
+
     private final InputStream binaryContentInputStream;
-    private final Range fullRange;
+    private final List<ByteRange> ranges;
+    private final long total;
+    private final String boundary;
+    private final String contentType;
 
     public BinaryResourceBinaryStreamingOutput(InputStream binaryContentInputStream, long start, long end, long length) {
+        this(binaryContentInputStream, Collections.singletonList(new ByteRange(start, end)), length, null, null);
+    }
+
+    /**
+     * @param binaryContentInputStream The stream of the binary content.
+     * @param ranges                   The ranges to send, sorted and not overlapping.
+     * @param length                   The length of the whole content.
+     * @param boundary                 The boundary of the multipart body, null to send a single range.
+     * @param contentType              The content type of each part of the multipart body.
+     */
+    public BinaryResourceBinaryStreamingOutput(InputStream binaryContentInputStream, List<ByteRange> ranges, long length, String boundary, String contentType) {
         this.binaryContentInputStream = binaryContentInputStream;
-        this.fullRange = new Range(start, end, length);
+        this.ranges = ranges;
+        this.total = length;
+        this.boundary = boundary;
+        this.contentType = contentType;
+    }
+
+    /**
+     * @return The number of bytes written by this output, framing of the multipart body included.
+     */
+    public long getContentLength() {
+        long contentLength = 0;
+        for (ByteRange range : ranges) {
+            contentLength += range.getLength();
+            if (boundary != null) {
+                contentLength += getPartHeader(range).length;
+            }
+        }
+        if (boundary != null) {
+            contentLength += getClosingBoundary().length;
+        }
+        return contentLength;
     }
 
     @Override
@@ -37,7 +91,7 @@ public class BinaryResourceBinaryStreamingOutput implements StreamingOutput {
             if (binaryContentInputStream == null) {
                 LOGGER.log(Level.SEVERE, "The file input stream is null");
             } else {
-                copy(binaryContentInputStream, outputStream, fullRange.start, fullRange.length);
+                copy(binaryContentInputStream, outputStream);
             }
         } catch (InterruptedStreamException e) {
             LOGGER.log(Level.WARNING, "Downloading file interrupted");
@@ -45,27 +99,31 @@ public class BinaryResourceBinaryStreamingOutput implements StreamingOutput {
         }
     }
 
-    private void copy(final InputStream input, OutputStream output, long start, long length) throws InterruptedStreamException {
-        // Slice the input stream considering offset and length
+    private void copy(final InputStream input, OutputStream output) throws InterruptedStreamException {
         try (InputStream in = input) {
-            if (length > 0) {
-                long skip = in.skip(start);
-                if (skip != start) {
-                    LOGGER.log(Level.WARNING, "Could not skip requested bytes (skipped: " + skip + " on " + start + ")");
+            if (boundary == null && ranges.get(0).getLength() <= 0) {
+                // Unknown length, e.g. converted content
+                IOUtils.copy(in, output);
+                return;
+            }
+
+            // Only used for file backed content, must not be closed as it would close the output
+            WritableByteChannel target = in instanceof FileBackedInputStream ? Channels.newChannel(output) : null;
+            long position = 0;
+
+            for (ByteRange range : ranges) {
+                if (boundary != null) {
+                    output.write(getPartHeader(range));
                 }
-                byte[] data = new byte[1024 * 8];
-                long remaining = length;
-                int nr;
-                while (remaining > 0) {
-                    nr = in.read(data);
-                    if (nr < 0) {
-                        break;
-                    }
-                    remaining -= nr;
-                    output.write(data, 0, nr);
+                if (target != null) {
+                    transfer(((FileBackedInputStream) in).getChannel(), range, target);
+                } else {
+                    position = copy(in, output, position, range);
                 }
-            } else {
-                IOUtils.copy(in, output);
+            }
+
+            if (boundary != null) {
+                output.write(getClosingBoundary());
             }
         } catch (IOException e) {
             // may be caused by a client side cancel
@@ -74,15 +132,55 @@ public class BinaryResourceBinaryStreamingOutput implements StreamingOutput {
         }
     }
 
-    private static class Range {
-        long start;
-        long length;
-        long total;
+    private void transfer(FileChannel channel, ByteRange range, WritableByteChannel target) throws IOException {
+        long position = range.getStart();
+        long remaining = range.getLength();
+        while (remaining > 0) {
+            long transferred = channel.transferTo(position, remaining, target);
+            if (transferred <= 0) {
+                LOGGER.log(Level.WARNING, "Could not transfer requested bytes (remaining: " + remaining + " at " + position + ")");
+                break;
+            }
+            position += transferred;
+            remaining -= transferred;
+        }
+    }
 
-        public Range(long start, long end, long total) {
-            this.start = start;
-            this.length = end - start + 1;
-            this.total = total;
+    /**
+     * Copy a range of a stream which is at the given position, and return the new position.
+     */
+    private long copy(InputStream in, OutputStream output, long position, ByteRange range) throws IOException {
+        long toSkip = range.getStart() - position;
+        long skip = toSkip > 0 ? in.skip(toSkip) : 0;
+        if (skip != toSkip) {
+            LOGGER.log(Level.WARNING, "Could not skip requested bytes (skipped: " + skip + " on " + toSkip + ")");
         }
+
+        byte[] data = new byte[BUFFER_SIZE];
+        long remaining = range.getLength();
+        long read = 0;
+        int nr;
+        while (remaining > 0) {
+            nr = in.read(data, 0, (int) Math.min(data.length, remaining));
+            if (nr < 0) {
+                break;
+            }
+            remaining -= nr;
+            read += nr;
+            output.write(data, 0, nr);
+        }
+        return position + skip + read;
+    }
+
+    private byte[] getPartHeader(ByteRange range) {
+        String header = CRLF + "--" + boundary + CRLF
+                + "Content-Type: " + contentType + CRLF
+                + "Content-Range: " + range.toContentRange(total) + CRLF
+                + CRLF;
+        return header.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private byte[] getClosingBoundary() {
+        return (CRLF + "--" + boundary + "--" + CRLF).getBytes(StandardCharsets.US_ASCII);
     }
 }
@@ -32,6 +32,7 @@ public class BinaryResourceDownloadMeta {
     private String downloadType;
     private long length;
     private Date lastModified;
+    private String contentHash;
 
     public BinaryResourceDownloadMeta(BinaryResource binaryResource, String outputFormat, String downloadType) {
         this.fullName = binaryResource.getName();
@@ -39,6 +40,7 @@ public class BinaryResourceDownloadMeta {
         this.downloadType = downloadType;
         this.length = binaryResource.getContentLength();
         this.lastModified = binaryResource.getLastModified();
+        this.contentHash = binaryResource.getContentHash();
         if (fileTypeMap == null) {
             BinaryResourceDownloadMeta.initFileTypeMap();
         }
@@ -129,11 +131,28 @@ public class BinaryResourceDownloadMeta {
      * @return Unique Entity Tag for the file
      */
     public EntityTag getETag() {
-        //Todo add iteration and version
+        if (contentHash != null) {
+            // Same tag for the same content, whatever the iteration holding it
+            return getContentETag(contentHash, outputFormat);
+        }
         //Todo remove special char from full Name
         return new EntityTag(fullName + "_" + length + "_" + lastModified.getTime());
     }
 
+    /**
+     * Get the tag of a content, given its hash.
+     *
+     * @param contentHash  The hash of the content.
+     * @param outputFormat The format the content is converted to, null if it is not.
+     * @return The entity tag of the content.
+     */
+    public static EntityTag getContentETag(String contentHash, String outputFormat) {
+        if (outputFormat != null && !outputFormat.isEmpty()) {
+            return new EntityTag(contentHash + "_" + outputFormat);
+        }
+        return new EntityTag(contentHash);
+    }
+
 
     /**
      * Get the Content type for this file
@@ -168,7 +187,7 @@ public class BinaryResourceDownloadMeta {
         return FileDownloadTools.getContentDisposition(downloadType, fileName);
     }
 
-    public void setLength(int length) {
+    public void setLength(long length) {
         this.length = length;
     }
 }
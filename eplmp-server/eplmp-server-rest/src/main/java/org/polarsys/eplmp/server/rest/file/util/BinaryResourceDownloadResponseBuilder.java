@@ -19,6 +19,8 @@ import javax.ws.rs.core.Response;
 import java.io.InputStream;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.List;
+import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -31,6 +33,7 @@ public class BinaryResourceDownloadResponseBuilder {
 
     private static final Logger LOGGER = Logger.getLogger(BinaryResourceDownloadResponseBuilder.class.getName());
     private static final int CACHE_SECOND = 60 * 60 * 24;
+    private static final String MULTIPART_BYTERANGES = "multipart/byteranges";
 
 
     private BinaryResourceDownloadResponseBuilder() {
@@ -74,31 +77,27 @@ public class BinaryResourceDownloadResponseBuilder {
 
     private static Response.ResponseBuilder prepareStreamingDownloadResponse(BinaryResourceDownloadMeta binaryResourceDownloadMeta, InputStream binaryContentInputStream, String range) throws RequestedRangeNotSatisfiableException {
         long length = binaryResourceDownloadMeta.getLength();
+        List<ByteRange> ranges = ByteRange.parse(range, length);
 
-        // Range header should match format "bytes=n-n,n-n,n-n...". If not, then return 416.
-        if (!range.matches("^bytes=\\d*-\\d*(,\\d*-\\d*)*$")) {
-            throw new RequestedRangeNotSatisfiableException("", length);
-        }
+        Response.ResponseBuilder responseBuilder = Response.status(Response.Status.PARTIAL_CONTENT)
+                .header("Content-Disposition", binaryResourceDownloadMeta.getContentDisposition())
+                .header("Accept-Ranges", "bytes");
+
+        BinaryResourceBinaryStreamingOutput streamingOutput;
 
-        String[] ranges = range.split("=")[1].split("-");
-        final long from = Integer.parseInt(ranges[0]);
-        long to;
-        if (ranges.length > 1) {
-            to = Integer.parseInt(ranges[1]);
-            to = (to > length - 1) ? length - 1 : to;
+        if (ranges.size() == 1) {
+            ByteRange byteRange = ranges.get(0);
+            streamingOutput = new BinaryResourceBinaryStreamingOutput(binaryContentInputStream, byteRange.getStart(), byteRange.getEnd(), length);
+            responseBuilder.header("Content-Range", byteRange.toContentRange(length))
+                    .header("Content-Type", binaryResourceDownloadMeta.getContentType());
         } else {
-            to = length - 1;
+            String boundary = UUID.randomUUID().toString();
+            streamingOutput = new BinaryResourceBinaryStreamingOutput(binaryContentInputStream, ranges, length, boundary, binaryResourceDownloadMeta.getContentType());
+            responseBuilder.header("Content-Type", MULTIPART_BYTERANGES + "; boundary=" + boundary);
         }
 
-        final String responseRange = String.format("bytes %d-%d/%d", from, to, length);
-
-        return Response.status(Response.Status.PARTIAL_CONTENT)
-                .header("Content-Disposition", binaryResourceDownloadMeta.getContentDisposition())
-                .header("Accept-Ranges", "bytes")
-                .header("Content-Length", length - from)
-                .header("Content-Range", responseRange)
-                .header("Content-Type", binaryResourceDownloadMeta.getContentType())
-                .entity(new BinaryResourceBinaryStreamingOutput(binaryContentInputStream, from, length - 1, length));
+        return responseBuilder.header("Content-Length", streamingOutput.getContentLength())
+                .entity(streamingOutput);
     }
 
     /**
@@ -0,0 +1,137 @@
+/*******************************************************************************
+  * Copyright (c) 2017-2019 DocDoku.
+  * All rights reserved. This program and the accompanying materials
+  * are made available under the terms of the Eclipse Public License v1.0
+  * which accompanies this distribution, and is available at
+  * http://www.eclipse.org/legal/epl-v10.html
+  *
+  * Contributors:
+  *    DocDoku - initial API and implementation
+  *******************************************************************************/
+
+package org.polarsys.eplmp.server.rest.file.util;
+
+import org.polarsys.eplmp.server.rest.exceptions.RequestedRangeNotSatisfiableException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * A range of bytes of a binary content, both bounds included.
+ */
+public class ByteRange {
+
+    // Range header should match format "bytes=n-n,n-n,n-n..."
+    private static final Pattern RANGE_PATTERN = Pattern.compile("^bytes=\\d*-\\d*(,\\d*-\\d*)*$");
+
+    private final long start;
+    private final long end;
+
+    public ByteRange(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public long getLength() {
+        return end - start + 1;
+    }
+
+    public String toContentRange(long total) {
+        return String.format("bytes %d-%d/%d", start, end, total);
+    }
+
+    /**
+     * Parse the value of a Range header ("bytes=0-499", "bytes=500-", "bytes=-500", ...).
+     *
+     * Ranges starting after the end of the content are ignored, the others are clamped to the content.
+     * The ranges are sorted, and overlapping or adjacent ranges are coalesced, so that they can be
+     * served in a single pass over the content.
+     *
+     * @param range  The value of the Range header.
+     * @param length The length of the content.
+     * @return The satisfiable ranges, sorted by start, never empty.
+     * @throws RequestedRangeNotSatisfiableException If the header is malformed or no range is satisfiable.
+     */
+    public static List<ByteRange> parse(String range, long length) throws RequestedRangeNotSatisfiableException {
+
+        if (!RANGE_PATTERN.matcher(range).matches()) {
+            throw new RequestedRangeNotSatisfiableException("", length);
+        }
+
+        List<ByteRange> ranges = new ArrayList<>();
+
+        for (String byteRange : range.substring("bytes=".length()).split(",")) {
+            int separator = byteRange.indexOf('-');
+            String first = byteRange.substring(0, separator);
+            String last = byteRange.substring(separator + 1);
+
+            long start;
+            long end;
+
+            try {
+                if (first.isEmpty() && last.isEmpty()) {
+                    throw new RequestedRangeNotSatisfiableException("", length);
+                } else if (first.isEmpty()) {
+                    // Suffix range: the last n bytes
+                    start = Math.max(0, length - Long.parseLong(last));
+                    end = length - 1;
+                } else if (last.isEmpty()) {
+                    start = Long.parseLong(first);
+                    end = length - 1;
+                } else {
+                    start = Long.parseLong(first);
+                    end = Long.parseLong(last);
+                    if (end < start) {
+                        throw new RequestedRangeNotSatisfiableException("", length);
+                    }
+                    end = Math.min(end, length - 1);
+                }
+            } catch (NumberFormatException e) {
+                // Offsets beyond Long.MAX_VALUE
+                throw new RequestedRangeNotSatisfiableException("", length);
+            }
+
+            if (start <= end) {
+                ranges.add(new ByteRange(start, end));
+            }
+        }
+
+        if (ranges.isEmpty()) {
+            throw new RequestedRangeNotSatisfiableException("", length);
+        }
+
+        return coalesce(ranges);
+    }
+
+    private static List<ByteRange> coalesce(List<ByteRange> ranges) {
+        if (ranges.size() == 1) {
+            return ranges;
+        }
+
+        Collections.sort(ranges, Comparator.comparingLong(ByteRange::getStart));
+
+        List<ByteRange> coalesced = new ArrayList<>();
+        ByteRange current = ranges.get(0);
+        for (ByteRange next : ranges.subList(1, ranges.size())) {
+            if (next.start <= current.end + 1) {
+                current = new ByteRange(current.start, Math.max(current.end, next.end));
+            } else {
+                coalesced.add(current);
+                current = next;
+            }
+        }
+        coalesced.add(current);
+        return coalesced;
+    }
+}
@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * Copyright (c) 2017-2019 DocDoku.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    DocDoku - initial API and implementation
+ *******************************************************************************/
+
+package org.polarsys.eplmp.server.rest.util;
+
+import org.dozer.DozerBeanMapperSingletonWrapper;
+import org.dozer.Mapper;
+import org.polarsys.eplmp.core.meta.InstanceAttribute;
+import org.polarsys.eplmp.core.product.Geometry;
+import org.polarsys.eplmp.core.product.PartIteration;
+import org.polarsys.eplmp.core.product.PartLink;
+import org.polarsys.eplmp.server.rest.dto.InstanceAttributeDTO;
+
+import javax.vecmath.Matrix4d;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary alternative to {@link JsonInstanceLeafWriter}, served as {@link #MEDIA_TYPE}.
+ *
+ * The stream starts with the "EPIS" magic number and a version byte, followed by records,
+ * each one starting with a tag byte. Integers are unsigned LEB128 varints, floats are big
+ * endian IEEE 754 single precision.
+ * <ul>
+ * <li>{@link #STRING}: length and UTF-8 bytes. Strings are numbered in order of appearance and
+ * referenced by that number afterwards.</li>
+ * <li>{@link #PART}: a part iteration, sent once and numbered in order of appearance: its id
+ * (string), the number of geometry qualities, the bounding box of the first quality (6 floats,
+ * only if there is at least one quality), the file of each quality (strings), then the number
+ * of attributes and for each one its name, type and value (strings).</li>
+ * <li>{@link #LEAF}: an instance: its part number, its path (string), the number of instance ids
+ * and the ids, then the first three rows of its matrix (12 floats, the last row being 0 0 0 1).
+ * The JSON id of the leaf interleaves the ids of the path with the instance ids.</li>
+ * <li>{@link #END}: end of the stream.</li>
+ * </ul>
+ * The output is flushed every {@link #LEAVES_PER_CHUNK} leaves, so that the client can start
+ * loading geometries before the end of the walk.
+ */
+public class BinaryInstanceLeafWriter implements InstanceLeafWriter {
+
+    public static final String MEDIA_TYPE = "application/vnd.eplmp.instances";
+
+    static final byte[] MAGIC = {'E', 'P', 'I', 'S'};
+    static final int VERSION = 1;
+
+    static final int END = 0;
+    static final int STRING = 1;
+    static final int PART = 2;
+    static final int LEAF = 3;
+
+    private static final int LEAVES_PER_CHUNK = 256;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static Mapper mapper = DozerBeanMapperSingletonWrapper.getInstance();
+
+    private final DataOutputStream out;
+
+    private final Map<String, Integer> strings = new HashMap<>();
+    private final Map<PartIteration, Integer> parts = new IdentityHashMap<>();
+    private int pendingLeaves = 0;
+
+    public BinaryInstanceLeafWriter(OutputStream outputStream) {
+        this.out = new DataOutputStream(new BufferedOutputStream(outputStream, BUFFER_SIZE));
+    }
+
+    @Override
+    public void start() throws IOException {
+        out.write(MAGIC);
+        out.writeByte(VERSION);
+    }
+
+    @Override
+    public void writeLeaf(List<PartLink> path, String pathAsString, List<Integer> instanceIds, PartIteration partI, Matrix4d matrix) throws IOException {
+        int part = getPart(partI);
+        int pathString = getString(pathAsString);
+
+        out.writeByte(LEAF);
+        writeVarInt(part);
+        writeVarInt(pathString);
+        writeVarInt(instanceIds.size());
+        for (Integer instanceId : instanceIds) {
+            writeVarInt(instanceId);
+        }
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 4; j++) {
+                out.writeFloat((float) matrix.getElement(i, j));
+            }
+        }
+
+        if (++pendingLeaves == LEAVES_PER_CHUNK) {
+            pendingLeaves = 0;
+            out.flush();
+        }
+    }
+
+    @Override
+    public void end() throws IOException {
+        out.writeByte(END);
+        out.flush();
+    }
+
+    private int getPart(PartIteration partI) throws IOException {
+        Integer part = parts.get(partI);
+        if (part != null) {
+            return part;
+        }
+
+        // Strings first, the part record must only reference known strings
+        int id = getString(partI.toString());
+        List<Geometry> geometries = partI.getSortedGeometries();
+        int[] files = new int[geometries.size()];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = getString("api/files/" + geometries.get(i).getFullName());
+        }
+        List<InstanceAttribute> instanceAttributes = partI.getInstanceAttributes();
+        int[] attributes = new int[instanceAttributes.size() * 3];
+        for (int i = 0; i < instanceAttributes.size(); i++) {
+            InstanceAttributeDTO attribute = mapper.map(instanceAttributes.get(i), InstanceAttributeDTO.class);
+            attributes[3 * i] = getString(attribute.getName());
+            attributes[3 * i + 1] = getString(attribute.getType().toString());
+            attributes[3 * i + 2] = getString(attribute.getValue());
+        }
+
+        out.writeByte(PART);
+        writeVarInt(id);
+        writeVarInt(files.length);
+        if (!geometries.isEmpty()) {
+            Geometry geometry = geometries.get(0);
+            out.writeFloat((float) geometry.getxMin());
+            out.writeFloat((float) geometry.getyMin());
+            out.writeFloat((float) geometry.getzMin());
+            out.writeFloat((float) geometry.getxMax());
+            out.writeFloat((float) geometry.getyMax());
+            out.writeFloat((float) geometry.getzMax());
+        }
+        for (int file : files) {
+            writeVarInt(file);
+        }
+        writeVarInt(instanceAttributes.size());
+        for (int attribute : attributes) {
+            writeVarInt(attribute);
+        }
+
+        part = parts.size();
+        parts.put(partI, part);
+        return part;
+    }
+
+    private int getString(String value) throws IOException {
+        String string = value == null ? "" : value;
+        Integer index = strings.get(string);
+        if (index == null) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            out.writeByte(STRING);
+            writeVarInt(bytes.length);
+            out.write(bytes);
+            index = strings.size();
+            strings.put(string, index);
+        }
+        return index;
+    }
+
+    private void writeVarInt(int value) throws IOException {
+        int remaining = value;
+        while ((remaining & ~0x7F) != 0) {
+            out.writeByte((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        out.writeByte(remaining);
+    }
+}
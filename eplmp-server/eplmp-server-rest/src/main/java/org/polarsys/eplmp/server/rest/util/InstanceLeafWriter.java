@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Copyright (c) 2017-2019 DocDoku.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    DocDoku - initial API and implementation
+ *******************************************************************************/
+
+package org.polarsys.eplmp.server.rest.util;
+
+import org.polarsys.eplmp.core.product.PartIteration;
+import org.polarsys.eplmp.core.product.PartLink;
+
+import javax.vecmath.Matrix4d;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Output format of the instances streamed to the 3D viewer.
+ *
+ * @see JsonInstanceLeafWriter
+ * @see BinaryInstanceLeafWriter
+ */
+public interface InstanceLeafWriter {
+
+    void start() throws IOException;
+
+    /**
+     * Write one instance of a part.
+     *
+     * @param path         the path to the instance, from the root of the structure
+     * @param pathAsString the path, as given by {@link org.polarsys.eplmp.core.util.Tools#getPathAsString}
+     * @param instanceIds  the CAD instance ids, one for each link of the path
+     * @param partI        the retained iteration of the part
+     * @param matrix       the global transformation of the instance
+     */
+    void writeLeaf(List<PartLink> path, String pathAsString, List<Integer> instanceIds, PartIteration partI, Matrix4d matrix) throws IOException;
+
+    void end() throws IOException;
+}
@@ -0,0 +1,203 @@
+/*******************************************************************************
+ * Copyright (c) 2017-2019 DocDoku.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    DocDoku - initial API and implementation
+ *******************************************************************************/
+
+package org.polarsys.eplmp.server.rest.util;
+
+import org.polarsys.eplmp.core.exceptions.*;
+import org.polarsys.eplmp.core.product.*;
+import org.polarsys.eplmp.core.services.IProductManagerLocal;
+import org.polarsys.eplmp.core.util.Tools;
+import org.polarsys.eplmp.server.rest.collections.InstanceCollection;
+
+import javax.vecmath.Matrix3d;
+import javax.vecmath.Matrix4d;
+import javax.vecmath.Vector3d;
+import java.io.IOException;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Streams the leaves of an {@link InstanceCollection} to an {@link InstanceLeafWriter}.
+ *
+ * The product structure is resolved one subtree at a time: the root and its children first, then
+ * the whole structure under each child in turn, which is walked in memory and released before
+ * the next one. Subtrees out of the requested paths are not resolved. Each leaf is written and
+ * flushed as soon as it is reached. Access rights are checked once per part revision, and the
+ * instance matrices are composed in place, one matrix per depth level.
+ *
+ * An instance holds the state of a single request and is not thread safe.
+ */
+public class InstanceStreamWriter {
+
+    private static final Logger LOGGER = Logger.getLogger(InstanceStreamWriter.class.getName());
+
+    private final IProductManagerLocal productService;
+    private final InstanceCollection instanceCollection;
+    private final InstanceLeafWriter leafWriter;
+
+    private final List<String> filteredPaths = new ArrayList<>();
+    private final Map<PartRevisionKey, Boolean> accessRights = new HashMap<>();
+
+    // Global matrix of each depth level, reused from one branch to another
+    private final List<Matrix4d> matrices = new ArrayList<>();
+    private final List<Integer> instanceIds = new ArrayList<>();
+    private final Matrix4d transformation = new Matrix4d();
+    private final Matrix3d rotation = new Matrix3d();
+    private final Vector3d translation = new Vector3d();
+
+    public InstanceStreamWriter(IProductManagerLocal productService, InstanceCollection instanceCollection, InstanceLeafWriter leafWriter) {
+        this.productService = productService;
+        this.instanceCollection = instanceCollection;
+        this.leafWriter = leafWriter;
+    }
+
+    public void write(Matrix4d matrix) throws IOException {
+        try {
+            PartLink rootPartUsageLink = productService.getRootPartUsageLink(instanceCollection.getCiKey());
+            List<PartLink> rootPath = Collections.singletonList(rootPartUsageLink);
+
+            Component root = resolve(rootPath, 1);
+
+            for (List<PartLink> path : instanceCollection.getPaths()) {
+                filteredPaths.add(Tools.getPathAsString(path));
+            }
+
+            matrices.add(new Matrix4d(matrix));
+            writeComponent(root, 0, true);
+
+        } catch (PartMasterNotFoundException | PartUsageLinkNotFoundException | UserNotFoundException | WorkspaceNotFoundException | WorkspaceNotEnabledException | ConfigurationItemNotFoundException e) {
+            LOGGER.log(Level.SEVERE, null, e);
+        } catch (AccessRightException | EntityConstraintException | NotAllowedException | UserNotActiveException e) {
+            LOGGER.log(Level.FINEST, null, e);
+        }
+    }
+
+    /**
+     * @param shallow whether the children of the component are resolved without their own children
+     */
+    private void writeComponent(Component component, int depth, boolean shallow) throws IOException, ConfigurationItemNotFoundException, WorkspaceNotFoundException, NotAllowedException, UserNotFoundException, UserNotActiveException, PartUsageLinkNotFoundException, AccessRightException, PartMasterNotFoundException, EntityConstraintException, WorkspaceNotEnabledException {
+        List<PartLink> path = component.getPath();
+        String pathAsString = Tools.getPathAsString(path);
+
+        // No leaf of this branch can be under the requested paths
+        if (!isOnFilteredPath(pathAsString)) {
+            return;
+        }
+
+        PartIteration partI = component.getRetainedIteration();
+        if (partI == null || !canAccess(partI.getPartRevision().getKey())) {
+            return;
+        }
+
+        boolean leaf = !partI.isAssembly() && !partI.getGeometries().isEmpty() && isUnderFilteredPath(pathAsString);
+        if (!leaf && component.getComponents().isEmpty()) {
+            return;
+        }
+
+        if (matrices.size() == depth + 1) {
+            matrices.add(new Matrix4d());
+        }
+        Matrix4d parentMatrix = matrices.get(depth);
+        Matrix4d combinedMatrix = matrices.get(depth + 1);
+
+        for (CADInstance instance : component.getPartLink().getCadInstances()) {
+            instanceIds.add(instance.getId());
+            combineTransformation(parentMatrix, instance, combinedMatrix);
+
+            if (leaf) {
+                leafWriter.writeLeaf(path, pathAsString, instanceIds, partI, combinedMatrix);
+            } else {
+                for (Component subComponent : component.getComponents()) {
+                    if (!shallow) {
+                        writeComponent(subComponent, depth + 1, false);
+                    } else if (isOnFilteredPath(Tools.getPathAsString(subComponent.getPath()))) {
+                        writeComponent(resolve(subComponent.getPath(), -1), depth + 1, false);
+                    }
+                }
+            }
+
+            instanceIds.remove(instanceIds.size() - 1);
+        }
+    }
+
+    private Component resolve(List<PartLink> path, int depth) throws ConfigurationItemNotFoundException, WorkspaceNotFoundException, NotAllowedException, UserNotFoundException, UserNotActiveException, PartUsageLinkNotFoundException, AccessRightException, PartMasterNotFoundException, EntityConstraintException, WorkspaceNotEnabledException {
+        return productService.filterProductStructure(instanceCollection.getCiKey(), instanceCollection.getFilter(), path, depth);
+    }
+
+    private boolean isUnderFilteredPath(String pathAsString) {
+        for (String filteredPath : filteredPaths) {
+            if (pathAsString.startsWith(filteredPath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isOnFilteredPath(String pathAsString) {
+        for (String filteredPath : filteredPaths) {
+            if (pathAsString.startsWith(filteredPath) || filteredPath.startsWith(pathAsString)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean canAccess(PartRevisionKey partRevisionKey) {
+        Boolean access = accessRights.get(partRevisionKey);
+        if (access == null) {
+            try {
+                access = productService.canAccess(partRevisionKey);
+            } catch (PartRevisionNotFoundException | UserNotFoundException | WorkspaceNotFoundException | WorkspaceNotEnabledException e) {
+                LOGGER.log(Level.SEVERE, null, e);
+                access = false;
+            } catch (UserNotActiveException e) {
+                LOGGER.log(Level.FINEST, null, e);
+                access = false;
+            }
+            accessRights.put(partRevisionKey, access);
+        }
+        return access;
+    }
+
+    /**
+     * Same transformation than {@link InstanceBodyWriterTools#combineTransformation}, computed into the given matrix.
+     */
+    private void combineTransformation(Matrix4d matrix, CADInstance instance, Matrix4d result) {
+        translation.set(instance.getTx(), instance.getTy(), instance.getTz());
+        switch (instance.getRotationType()) {
+            case ANGLE:
+                result.set(matrix);
+
+                transformation.setIdentity();
+                transformation.setTranslation(translation);
+                result.mul(transformation);
+
+                transformation.rotZ(instance.getRz());
+                result.mul(transformation);
+
+                transformation.rotY(instance.getRy());
+                result.mul(transformation);
+
+                transformation.rotX(instance.getRx());
+                result.mul(transformation);
+                break;
+            case MATRIX:
+                rotation.set(instance.getRotationMatrix().getValues());
+                transformation.set(rotation, translation, 1);
+                result.mul(matrix, transformation);
+                break;
+            default:
+                LOGGER.log(Level.SEVERE, "Unknown rotation Type, matrix not calculated");
+                result.set(matrix);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2017-2019 DocDoku.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    DocDoku - initial API and implementation
+ *******************************************************************************/
+
+package org.polarsys.eplmp.server.rest.util;
+
+import org.dozer.DozerBeanMapperSingletonWrapper;
+import org.dozer.Mapper;
+import org.polarsys.eplmp.core.meta.InstanceAttribute;
+import org.polarsys.eplmp.core.product.Geometry;
+import org.polarsys.eplmp.core.product.PartIteration;
+import org.polarsys.eplmp.core.product.PartLink;
+import org.polarsys.eplmp.core.util.Tools;
+import org.polarsys.eplmp.server.rest.dto.InstanceAttributeDTO;
+
+import javax.json.stream.JsonGenerator;
+import javax.vecmath.Matrix4d;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the instances as a JSON array of leaves, each leaf being flushed once written.
+ */
+public class JsonInstanceLeafWriter implements InstanceLeafWriter {
+
+    private static Mapper mapper = DozerBeanMapperSingletonWrapper.getInstance();
+
+    private final JsonGenerator jg;
+
+    private final Map<PartIteration, List<InstanceAttributeDTO>> attributes = new IdentityHashMap<>();
+
+    public JsonInstanceLeafWriter(JsonGenerator jg) {
+        this.jg = jg;
+    }
+
+    @Override
+    public void start() {
+        jg.writeStartArray();
+    }
+
+    @Override
+    public void writeLeaf(List<PartLink> path, String pathAsString, List<Integer> instanceIds, PartIteration partI, Matrix4d matrix) {
+        jg.writeStartObject();
+        jg.write("id", Tools.getPathInstanceAsString(path, instanceIds));
+        jg.write("partIterationId", partI.toString());
+        jg.write("path", pathAsString);
+
+        writeMatrix(matrix);
+        writeGeometries(partI.getSortedGeometries());
+        writeAttributes(getAttributes(partI));
+
+        jg.writeEnd();
+        jg.flush();
+    }
+
+    @Override
+    public void end() {
+        jg.writeEnd();
+        jg.flush();
+    }
+
+    private List<InstanceAttributeDTO> getAttributes(PartIteration partI) {
+        return attributes.computeIfAbsent(partI, partIteration -> {
+            List<InstanceAttributeDTO> dtos = new ArrayList<>();
+            for (InstanceAttribute attr : partIteration.getInstanceAttributes()) {
+                dtos.add(mapper.map(attr, InstanceAttributeDTO.class));
+            }
+            return dtos;
+        });
+    }
+
+    private void writeMatrix(Matrix4d matrix) {
+        jg.writeStartArray("matrix");
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 4; j++) {
+                jg.write(matrix.getElement(i, j));
+            }
+        }
+        jg.writeEnd();
+    }
+
+    private void writeGeometries(List<Geometry> files) {
+        jg.write("qualities", files.size());
+
+        if (!files.isEmpty()) {
+            Geometry geometry = files.get(0);
+            jg.write("xMin", geometry.getxMin());
+            jg.write("yMin", geometry.getyMin());
+            jg.write("zMin", geometry.getzMin());
+            jg.write("xMax", geometry.getxMax());
+            jg.write("yMax", geometry.getyMax());
+            jg.write("zMax", geometry.getzMax());
+        }
+
+        jg.writeStartArray("files");
+
+        for (Geometry g : files) {
+            jg.writeStartObject();
+            jg.write("fullName", "api/files/" + g.getFullName());
+            jg.writeEnd();
+        }
+        jg.writeEnd();
+    }
+
+    private void writeAttributes(List<InstanceAttributeDTO> attributes) {
+        jg.writeStartArray("attributes");
+        for (InstanceAttributeDTO a : attributes) {
+            jg.writeStartObject();
+            jg.write("name", a.getName());
+            jg.write("type", a.getType().toString());
+            jg.write("value", a.getValue());
+            jg.writeEnd();
+        }
+        jg.writeEnd();
+    }
+}
@@ -12,7 +12,10 @@ package org.polarsys.eplmp.server.rest.writers;
 
 import org.polarsys.eplmp.core.services.IProductManagerLocal;
 import org.polarsys.eplmp.server.rest.collections.InstanceCollection;
-import org.polarsys.eplmp.server.rest.util.InstanceBodyWriterTools;
+import org.polarsys.eplmp.server.rest.util.BinaryInstanceLeafWriter;
+import org.polarsys.eplmp.server.rest.util.InstanceLeafWriter;
+import org.polarsys.eplmp.server.rest.util.InstanceStreamWriter;
+import org.polarsys.eplmp.server.rest.util.JsonInstanceLeafWriter;
 
 import javax.inject.Inject;
 import javax.json.Json;
@@ -23,18 +26,17 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.ext.MessageBodyWriter;
 import javax.ws.rs.ext.Provider;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.io.UnsupportedEncodingException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
-import java.util.ArrayList;
 
 /**
  * @author Florent Garin
  */
 @Provider
-@Produces(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, BinaryInstanceLeafWriter.MEDIA_TYPE})
 public class InstanceCollectionMessageBodyWriter implements MessageBodyWriter<InstanceCollection> {
 
     @Inject
@@ -51,15 +53,20 @@ public class InstanceCollectionMessageBodyWriter implements MessageBodyWriter<In
     }
 
     @Override
-    public void writeTo(InstanceCollection instanceCollection, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws UnsupportedEncodingException {
-        String charSet = "UTF-8";
-        JsonGenerator jg = Json.createGenerator(new OutputStreamWriter(entityStream, charSet));
-        jg.writeStartArray();
+    public void writeTo(InstanceCollection instanceCollection, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException {
+        InstanceLeafWriter leafWriter;
+        if (mediaType.isCompatible(MediaType.valueOf(BinaryInstanceLeafWriter.MEDIA_TYPE))) {
+            leafWriter = new BinaryInstanceLeafWriter(entityStream);
+        } else {
+            String charSet = "UTF-8";
+            JsonGenerator jg = Json.createGenerator(new OutputStreamWriter(entityStream, charSet));
+            leafWriter = new JsonInstanceLeafWriter(jg);
+        }
+        leafWriter.start();
 
         Matrix4d gM = new Matrix4d();
         gM.setIdentity();
-        InstanceBodyWriterTools.generateInstanceStreamWithGlobalMatrix(productService, null, gM, instanceCollection, new ArrayList<>(), jg);
-        jg.writeEnd();
-        jg.flush();
+        new InstanceStreamWriter(productService, instanceCollection, leafWriter).write(gM);
+        leafWriter.end();
     }
 }
@@ -92,9 +92,14 @@ public class QueryResultMessageBodyWriter implements MessageBodyWriter<QueryResu
             generateJSONResponse(outputStream, queryResult);
         } else if (queryResult.getExportType().equals(QueryResult.ExportType.XLS)) {
             httpHeaders.putSingle("Content-Type", "application/octet-stream");
+            httpHeaders.putSingle("Content-Disposition", "attachment; filename=\"TSR.xlsx\"");
+            User author = queryResult.getQuery().getAuthor();
+            excelGenerator.generateXLSResponse(queryResult, author.getLocale(), "", outputStream);
+        } else if (queryResult.getExportType().equals(QueryResult.ExportType.CSV)) {
+            httpHeaders.putSingle("Content-Type", "text/csv; charset=UTF-8");
             httpHeaders.putSingle("Content-Disposition", "attachment; filename=\"TSR.csv\"");
             User author = queryResult.getQuery().getAuthor();
-            excelGenerator.generateXLSResponse(queryResult, author.getLocale(), "");
+            excelGenerator.generateCSVResponse(queryResult, author.getLocale(), "", outputStream);
         } else {
             throw new IllegalArgumentException();
         }
@@ -16,7 +16,10 @@ import org.polarsys.eplmp.core.product.PartMaster;
 import org.polarsys.eplmp.core.product.PartSubstituteLink;
 import org.polarsys.eplmp.core.services.IProductManagerLocal;
 import org.polarsys.eplmp.server.rest.collections.VirtualInstanceCollection;
+import org.polarsys.eplmp.server.rest.util.BinaryInstanceLeafWriter;
 import org.polarsys.eplmp.server.rest.util.InstanceBodyWriterTools;
+import org.polarsys.eplmp.server.rest.util.InstanceLeafWriter;
+import org.polarsys.eplmp.server.rest.util.JsonInstanceLeafWriter;
 
 import javax.inject.Inject;
 import javax.json.Json;
@@ -27,9 +30,9 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.ext.MessageBodyWriter;
 import javax.ws.rs.ext.Provider;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.io.UnsupportedEncodingException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
@@ -39,7 +42,7 @@ import java.util.List;
  * @author Morgan Guimard
  */
 @Provider
-@Produces(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, BinaryInstanceLeafWriter.MEDIA_TYPE})
 public class VirtualInstanceCollectionMessageBodyWriter implements MessageBodyWriter<VirtualInstanceCollection> {
 
     @Inject
@@ -56,10 +59,16 @@ public class VirtualInstanceCollectionMessageBodyWriter implements MessageBodyWr
     }
 
     @Override
-    public void writeTo(VirtualInstanceCollection virtualInstanceCollection, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws UnsupportedEncodingException {
-        String charSet = "UTF-8";
-        JsonGenerator jg = Json.createGenerator(new OutputStreamWriter(entityStream, charSet));
-        jg.writeStartArray();
+    public void writeTo(VirtualInstanceCollection virtualInstanceCollection, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException {
+        InstanceLeafWriter leafWriter;
+        if (mediaType.isCompatible(MediaType.valueOf(BinaryInstanceLeafWriter.MEDIA_TYPE))) {
+            leafWriter = new BinaryInstanceLeafWriter(entityStream);
+        } else {
+            String charSet = "UTF-8";
+            JsonGenerator jg = Json.createGenerator(new OutputStreamWriter(entityStream, charSet));
+            leafWriter = new JsonInstanceLeafWriter(jg);
+        }
+        leafWriter.start();
 
         Matrix4d gM = new Matrix4d();
         gM.setIdentity();
@@ -67,9 +76,8 @@ public class VirtualInstanceCollectionMessageBodyWriter implements MessageBodyWr
         PartLink virtualRootPartLink = getVirtualRootPartLink(virtualInstanceCollection);
         List<PartLink> path = new ArrayList<>();
         path.add(virtualRootPartLink);
-        InstanceBodyWriterTools.generateInstanceStreamWithGlobalMatrix(productService, path, gM, virtualInstanceCollection, new ArrayList<>(), jg);
-        jg.writeEnd();
-        jg.flush();
+        InstanceBodyWriterTools.generateInstanceStreamWithGlobalMatrix(productService, path, gM, virtualInstanceCollection, new ArrayList<>(), leafWriter);
+        leafWriter.end();
     }
 
 
@@ -62,6 +62,9 @@ public class WebSocketApplication {
     @Inject
     private AuthConfig authConfig;
 
+    @Inject
+    private JWTokenFactory jwTokenFactory;
+
     public WebSocketApplication() {
     }
 
@@ -111,7 +114,7 @@ public class WebSocketApplication {
         if (AUTH.equals(type)) {
             String jwt = message.getString("jwt");
 
-            JWTokenUserGroupMapping jwTokenUserGroupMapping = JWTokenFactory.validateAuthToken(authConfig.getJWTKey(), jwt);
+            JWTokenUserGroupMapping jwTokenUserGroupMapping = jwTokenFactory.validateAuthToken(authConfig.getJWTKey(), jwt);
 
             if (null != jwTokenUserGroupMapping) {
                 UserGroupMapping userGroupMapping = jwTokenUserGroupMapping.getUserGroupMapping();
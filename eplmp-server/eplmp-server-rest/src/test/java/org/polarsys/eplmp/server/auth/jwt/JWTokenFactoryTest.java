@@ -0,0 +1,59 @@
+/*******************************************************************************
+  * Copyright (c) 2017-2019 DocDoku.
+  * All rights reserved. This program and the accompanying materials
+  * are made available under the terms of the Eclipse Public License v1.0
+  * which accompanies this distribution, and is available at
+  * http://www.eclipse.org/legal/epl-v10.html
+  *
+  * Contributors:
+  *    DocDoku - initial API and implementation
+  *******************************************************************************/
+
+package org.polarsys.eplmp.server.auth.jwt;
+
+import org.jose4j.keys.HmacKey;
+import org.junit.Assert;
+import org.junit.Test;
+import org.polarsys.eplmp.core.security.UserGroupMapping;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+
+public class JWTokenFactoryTest {
+
+    private JWTokenFactory jwTokenFactory = new JWTokenFactory();
+
+    private Key key = new HmacKey("verySecretPhrase".getBytes(StandardCharsets.UTF_8));
+    private Key otherKey = new HmacKey("anotherSecretPhrase".getBytes(StandardCharsets.UTF_8));
+
+    @Test
+    public void validateAuthTokenTest() {
+        //Given
+        String jwt = jwTokenFactory.createAuthToken(key, new UserGroupMapping("FooBar", UserGroupMapping.REGULAR_USER_ROLE_ID));
+
+        //When
+        JWTokenUserGroupMapping validated = jwTokenFactory.validateAuthToken(key, jwt);
+
+        //Then
+        Assert.assertNotNull(validated);
+        Assert.assertEquals("FooBar", validated.getUserGroupMapping().getLogin());
+        Assert.assertSame(validated, jwTokenFactory.validateAuthToken(key, jwt));
+        Assert.assertEquals(1, jwTokenFactory.getValidatedTokensCount());
+        Assert.assertNull(jwTokenFactory.validateAuthToken(key, jwt + "x"));
+    }
+
+    @Test
+    public void keyChangeDropsValidatedTokensTest() {
+        //Given
+        String jwt = jwTokenFactory.createAuthToken(key, new UserGroupMapping("FooBar", UserGroupMapping.REGULAR_USER_ROLE_ID));
+        jwTokenFactory.validateAuthToken(key, jwt);
+
+        //When
+        JWTokenUserGroupMapping validated = jwTokenFactory.validateAuthToken(otherKey, jwt);
+
+        //Then
+        Assert.assertNull(validated);
+        Assert.assertEquals(0, jwTokenFactory.getValidatedTokensCount());
+        Assert.assertNull(jwTokenFactory.validateSharedResourceToken(otherKey, jwt));
+    }
+}
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2017-2019 DocDoku.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    DocDoku - initial API and implementation
+ *******************************************************************************/
+
+package org.polarsys.eplmp.server.export;
+
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.polarsys.eplmp.core.common.Account;
+import org.polarsys.eplmp.core.common.User;
+import org.polarsys.eplmp.core.common.Workspace;
+import org.polarsys.eplmp.core.product.PartMaster;
+import org.polarsys.eplmp.core.product.PartRevision;
+import org.polarsys.eplmp.core.query.Query;
+import org.polarsys.eplmp.core.query.QueryField;
+import org.polarsys.eplmp.core.query.QueryResultRow;
+import org.polarsys.eplmp.server.rest.collections.QueryResult;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+public class ExcelGeneratorTest {
+
+    private static final int ROWS = 1000;
+
+    private ExcelGenerator excelGenerator = new ExcelGenerator();
+    private QueryResult queryResult;
+
+    @Before
+    public void setup() {
+        Workspace workspace = new Workspace("workspace01");
+        User user = new User(workspace, new Account("user1", "user1", "user1@docdoku.com", "en", new Date(), null));
+
+        Query query = new Query();
+        query.setSelects(Arrays.asList(QueryField.PART_MASTER_NUMBER, QueryField.PART_MASTER_NAME, QueryField.PART_REVISION_VERSION));
+
+        // Rows are created on demand, as they would be read from a cursor
+        Iterable<QueryResultRow> rows = () -> new Iterator<QueryResultRow>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < ROWS;
+            }
+
+            @Override
+            public QueryResultRow next() {
+                PartMaster partMaster = new PartMaster(workspace, String.format("PART-%04d", index++), user);
+                partMaster.setName("Bolt \"M6\"; steel");
+                PartRevision partRevision = partMaster.createNextRevision(user);
+                return new QueryResultRow(partRevision);
+            }
+        };
+
+        queryResult = new QueryResult(query, rows);
+    }
+
+    @Test
+    public void generateXLSResponseShouldWriteEveryRow() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        excelGenerator.generateXLSResponse(queryResult, Locale.ENGLISH, "", output);
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(output.toByteArray()))) {
+            Sheet sheet = workbook.getSheet("Parts Data");
+            Assert.assertEquals(ROWS, sheet.getLastRowNum());
+            Assert.assertEquals("Part number", sheet.getRow(0).getCell(0).getStringCellValue());
+            Assert.assertEquals(QueryField.PART_MASTER_NUMBER, sheet.getRow(0).getCell(0).getCellComment().getString().getString());
+            Assert.assertEquals("PART-0999", sheet.getRow(ROWS).getCell(0).getStringCellValue());
+            Assert.assertEquals("A", sheet.getRow(ROWS).getCell(2).getStringCellValue());
+
+            // Part numbers are grayed like the header, other columns are not
+            Assert.assertEquals(sheet.getRow(0).getCell(0).getCellStyle().getIndex(), sheet.getRow(ROWS).getCell(0).getCellStyle().getIndex());
+            Assert.assertNotEquals(sheet.getRow(0).getCell(0).getCellStyle().getIndex(), sheet.getRow(ROWS).getCell(2).getCellStyle().getIndex());
+        }
+    }
+
+    @Test
+    public void generateXLSResponseShouldKeepRowCommentsInTheirCells() throws Exception {
+        Workspace workspace = new Workspace("workspace01");
+        User user = new User(workspace, new Account("user1", "user1", "user1@docdoku.com", "en", new Date(), null));
+        Query query = new Query();
+        query.setSelects(Arrays.asList(QueryField.CTX_SERIAL_NUMBER, QueryField.PART_MASTER_NUMBER));
+
+        QueryResultRow row = new QueryResultRow(new PartMaster(workspace, "PART-0000", user).createNextRevision(user));
+        row.setPath("u1;u2");
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        excelGenerator.generateXLSResponse(new QueryResult(query, Collections.singletonList(row)), Locale.ENGLISH, "", output);
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(output.toByteArray()))) {
+            Sheet sheet = workbook.getSheet("Parts Data");
+            Assert.assertEquals("u1;u2", sheet.getRow(1).getCell(0).getCellComment().getString().getString());
+            Assert.assertNull(sheet.getRow(1).getCell(1).getCellComment());
+        }
+    }
+
+    @Test
+    public void generateCSVResponseShouldQuoteValues() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        excelGenerator.generateCSVResponse(queryResult, Locale.ENGLISH, "", output);
+
+        String[] lines = new String(output.toByteArray(), StandardCharsets.UTF_8).split("\r\n");
+        Assert.assertEquals(ROWS + 1, lines.length);
+        Assert.assertEquals("Part number;Part name;Version", lines[0]);
+        Assert.assertEquals("PART-0000;\"Bolt \"\"M6\"\"; steel\";A", lines[1]);
+    }
+}
@@ -19,6 +19,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Matchers;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.polarsys.eplmp.core.common.Account;
 import org.polarsys.eplmp.core.common.Workspace;
 import org.polarsys.eplmp.core.exceptions.ApplicationException;
@@ -69,6 +70,9 @@ public class AccountResourceTest {
     @Mock
     private AuthConfig authConfig;
 
+    @Spy
+    private JWTokenFactory jwTokenFactory = new JWTokenFactory();
+
     @Mock
     private IUserManagerLocal userManager;
 
@@ -104,7 +108,7 @@ public class AccountResourceTest {
 
         Key key = new HmacKey("verySecretPhrase".getBytes("UTF-8"));
         UserGroupMapping groupMapping = new UserGroupMapping("FooBar", UserGroupMapping.REGULAR_USER_ROLE_ID);
-        String authToken = JWTokenFactory.createAuthToken(key, groupMapping);
+        String authToken = jwTokenFactory.createAuthToken(key, groupMapping);
         Account account = new Account("FooBar");
         Mockito.when(authConfig.getJWTKey()).thenReturn(key);
 
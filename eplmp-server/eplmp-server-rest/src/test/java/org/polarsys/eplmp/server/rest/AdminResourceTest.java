@@ -20,8 +20,13 @@ import org.polarsys.eplmp.core.exceptions.EntityNotFoundException;
 import org.polarsys.eplmp.core.exceptions.NotAllowedException;
 import org.polarsys.eplmp.core.security.UserGroupMapping;
 import org.polarsys.eplmp.core.services.IAccountManagerLocal;
+import org.polarsys.eplmp.core.services.IIndexerManagerLocal;
+import org.polarsys.eplmp.core.services.IOnDemandConverterManagerLocal;
 import org.polarsys.eplmp.server.rest.dto.AccountDTO;
 
+import javax.json.JsonObject;
+import java.util.Collections;
+
 public class AdminResourceTest {
 
     @InjectMocks
@@ -30,6 +35,12 @@ public class AdminResourceTest {
     @Mock
     private IAccountManagerLocal accountManager;
 
+    @Mock
+    private IIndexerManagerLocal indexManager;
+
+    @Mock
+    private IOnDemandConverterManagerLocal onDemandConverterManager;
+
     @Mock
     private UserGroupMapping userGroupMapping;
     @Spy
@@ -57,4 +68,23 @@ public class AdminResourceTest {
         AccountDTO accountDTOResult = adminResource.updateAccount(accountDTO);
         Assert.assertTrue(accountDTOResult.isAdmin());
     }
+
+    @Test
+    public void getIndexationStats() {
+        Mockito.when(indexManager.getIndexationQueueDepth()).thenReturn(3L);
+        Mockito.when(indexManager.getIndexationLag()).thenReturn(1500L);
+
+        JsonObject indexationStats = adminResource.getIndexationStats();
+        Assert.assertEquals(3L, indexationStats.getJsonNumber("queueDepth").longValue());
+        Assert.assertEquals(1500L, indexationStats.getJsonNumber("lag").longValue());
+    }
+
+    @Test
+    public void getConversionStats() {
+        Mockito.when(onDemandConverterManager.getConverterStats())
+                .thenReturn(Collections.singletonMap("OfficeOnDemandConverter", Collections.singletonMap("rejected", 2L)));
+
+        JsonObject conversionStats = adminResource.getConversionStats();
+        Assert.assertEquals(2L, conversionStats.getJsonObject("OfficeOnDemandConverter").getJsonNumber("rejected").longValue());
+    }
 }
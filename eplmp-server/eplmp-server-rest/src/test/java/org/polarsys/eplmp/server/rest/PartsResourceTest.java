@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright (c) 2017-2019 DocDoku.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    DocDoku - initial API and implementation
+ *******************************************************************************/
+
+package org.polarsys.eplmp.server.rest;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.polarsys.eplmp.core.services.IProductManagerLocal;
+import org.polarsys.eplmp.server.rest.dto.FileETagDTO;
+import org.polarsys.eplmp.server.util.ResourceUtil;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class PartsResourceTest {
+
+    @InjectMocks
+    private PartsResource partsResource = new PartsResource();
+    @Mock
+    private IProductManagerLocal productService;
+
+    @Before
+    public void setup() throws Exception {
+        initMocks(this);
+        partsResource.init();
+    }
+
+    @Test
+    public void revalidatePartFilesShouldOnlyReturnChangedFiles() throws Exception {
+        //Given
+        String unchanged = ResourceUtil.WORKSPACE_ID + "/parts/PART/A/2/unchanged.obj";
+        String quoted = ResourceUtil.WORKSPACE_ID + "/parts/PART/A/2/quoted.obj";
+        String changed = ResourceUtil.WORKSPACE_ID + "/parts/PART/A/2/changed.obj";
+        String unknown = ResourceUtil.WORKSPACE_ID + "/parts/PART/A/2/unknown.obj";
+
+        Map<String, String> contentHashes = new HashMap<>();
+        contentHashes.put(unchanged, "hash1");
+        contentHashes.put(quoted, "hash2");
+        contentHashes.put(changed, "hash3");
+        Mockito.when(productService.getBinaryResourceContentHashes(ResourceUtil.WORKSPACE_ID, Arrays.asList(unchanged, quoted, changed, unknown)))
+                .thenReturn(contentHashes);
+
+        //When
+        FileETagDTO[] changedFiles = partsResource.revalidatePartFiles(ResourceUtil.WORKSPACE_ID, Arrays.asList(
+                new FileETagDTO(unchanged, "hash1"),
+                new FileETagDTO(quoted, "\"hash2\""),
+                new FileETagDTO(changed, "\"old\""),
+                new FileETagDTO(unknown, "\"hash4\"")));
+
+        //Then
+        assertEquals(2, changedFiles.length);
+        assertEquals(changed, changedFiles[0].getFullName());
+        assertEquals("hash3", changedFiles[0].getEtag());
+        assertEquals(unknown, changedFiles[1].getFullName());
+        assertNull(changedFiles[1].getEtag());
+    }
+}
@@ -18,6 +18,7 @@ import org.junit.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.polarsys.eplmp.core.common.User;
 import org.polarsys.eplmp.core.common.Workspace;
 import org.polarsys.eplmp.core.document.DocumentRevision;
@@ -34,6 +35,7 @@ import org.polarsys.eplmp.core.sharing.SharedEntity;
 import org.polarsys.eplmp.core.sharing.SharedPart;
 import org.polarsys.eplmp.core.util.HashUtils;
 import org.polarsys.eplmp.server.auth.AuthConfig;
+import org.polarsys.eplmp.server.auth.jwt.JWTokenFactory;
 
 import javax.ws.rs.core.Response;
 
@@ -62,6 +64,8 @@ public class SharedResourceTest {
     private IContextManagerLocal contextManager;
     @Mock
     private AuthConfig authConfig;
+    @Spy
+    private JWTokenFactory jwTokenFactory = new JWTokenFactory();
 
     private String workspaceId = "wks";
     private String partNumber = "partM";
@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) 2017-2019 DocDoku.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    DocDoku - initial API and implementation
+ *******************************************************************************/
+
+package org.polarsys.eplmp.server.rest.collections;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.polarsys.eplmp.core.common.Account;
+import org.polarsys.eplmp.core.common.User;
+import org.polarsys.eplmp.core.common.Workspace;
+import org.polarsys.eplmp.core.product.PartMaster;
+import org.polarsys.eplmp.core.product.PartRevision;
+import org.polarsys.eplmp.core.query.Query;
+import org.polarsys.eplmp.core.query.QueryResultRow;
+import org.polarsys.eplmp.core.services.IProductManagerLocal;
+
+import java.util.*;
+
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class QueryResultCursorTest {
+
+    @Mock
+    private IProductManagerLocal productService;
+
+    private Workspace workspace = new Workspace("workspace01");
+    private User user = new User(workspace, new Account("user1", "user1", "user1@docdoku.com", "en", new Date(), null));
+    private Query query = new Query();
+
+    private PartRevision part1;
+    private PartRevision part2;
+    private PartRevision part3;
+
+    @Before
+    public void setup() throws Exception {
+        initMocks(this);
+        part1 = createPartRevision("PART-001");
+        part2 = createPartRevision("PART-002");
+        part3 = createPartRevision("PART-003");
+    }
+
+    @Test
+    public void cursorShouldFetchBatchesAfterTheLastKey() throws Exception {
+        Mockito.when(productService.searchPartRevisions("workspace01", query, null, 2)).thenReturn(Arrays.asList(part1, part2));
+        Mockito.when(productService.searchPartRevisions("workspace01", query, part2.getKey(), 2)).thenReturn(Collections.singletonList(part3));
+
+        QueryResultCursor cursor = new QueryResultCursor(productService, "workspace01", query, null, 2);
+
+        Assert.assertEquals(Arrays.asList(part1, part2, part3), read(cursor));
+        Mockito.verify(productService, Mockito.times(2)).searchPartRevisions(Mockito.eq("workspace01"), Mockito.eq(query), Mockito.any(), Mockito.eq(2));
+    }
+
+    @Test
+    public void cursorShouldStopOnEmptyBatch() throws Exception {
+        Mockito.when(productService.searchPartRevisions("workspace01", query, null, 2)).thenReturn(Arrays.asList(part1, part2));
+        Mockito.when(productService.searchPartRevisions("workspace01", query, part2.getKey(), 2)).thenReturn(Collections.emptyList());
+
+        Assert.assertEquals(Arrays.asList(part1, part2), read(new QueryResultCursor(productService, "workspace01", query, null, 2)));
+    }
+
+    @Test
+    public void cursorShouldLoadFirstBatchOnCreation() throws Exception {
+        Mockito.when(productService.searchPartRevisions("workspace01", query, part1.getKey(), 2)).thenReturn(Collections.singletonList(part2));
+
+        QueryResultCursor cursor = new QueryResultCursor(productService, "workspace01", query, part1.getKey(), 2);
+        Mockito.verify(productService).searchPartRevisions("workspace01", query, part1.getKey(), 2);
+
+        Assert.assertEquals(Collections.singletonList(part2), read(cursor));
+        Mockito.verifyNoMoreInteractions(productService);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void cursorShouldOnlyBeIteratedOnce() throws Exception {
+        Mockito.when(productService.searchPartRevisions("workspace01", query, null, 2)).thenReturn(Collections.emptyList());
+
+        QueryResultCursor cursor = new QueryResultCursor(productService, "workspace01", query, null, 2);
+        read(cursor);
+        read(cursor);
+    }
+
+    //############################## HELPER METHODS ##############################
+
+    private List<PartRevision> read(QueryResultCursor cursor) {
+        List<PartRevision> partRevisions = new ArrayList<>();
+        for (QueryResultRow row : cursor) {
+            partRevisions.add(row.getPartRevision());
+        }
+        return partRevisions;
+    }
+
+    private PartRevision createPartRevision(String number) {
+        return new PartMaster(workspace, number, user).createNextRevision(user);
+    }
+}
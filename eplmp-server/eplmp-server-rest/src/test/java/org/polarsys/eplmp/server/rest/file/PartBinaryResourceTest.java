@@ -32,6 +32,7 @@ import org.polarsys.eplmp.server.util.ResourceUtil;
 
 import javax.servlet.http.HttpServletRequestWrapper;
 import javax.servlet.http.Part;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import java.io.File;
@@ -41,6 +42,7 @@ import java.io.OutputStream;
 import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
@@ -227,7 +229,7 @@ public class PartBinaryResourceTest {
         Mockito.when(publicEntityManager.getPublicBinaryResourceForPart(Matchers.anyString())).thenReturn(binaryResource);
         Response response = partBinaryResource.downloadPartFile(request, ResourceUtil.WORKSPACE_ID,
                 ResourceUtil.PART_NUMBER, ResourceUtil.VERSION, ResourceUtil.ITERATION, "attached-files",
-                ResourceUtil.TEST_PART_FILENAME1, ResourceUtil.FILE_TYPE, null, ResourceUtil.RANGE, null, null, null);
+                ResourceUtil.TEST_PART_FILENAME1, ResourceUtil.FILE_TYPE, null, ResourceUtil.RANGE, null, null, null, null);
         //Then
         assertNotNull(response);
         assertEquals(response.getStatus(), 206);
@@ -271,7 +273,7 @@ public class PartBinaryResourceTest {
         //When
         Response response = partBinaryResource.downloadPartFile(request, ResourceUtil.WORKSPACE_ID,
                 ResourceUtil.PART_NUMBER, ResourceUtil.VERSION, ResourceUtil.ITERATION, "attached-files",
-                ResourceUtil.TEST_PART_FILENAME1, ResourceUtil.FILE_TYPE, null, ResourceUtil.RANGE, ResourceUtil.SHARED_PART_ENTITY_UUID, "password", null);
+                ResourceUtil.TEST_PART_FILENAME1, ResourceUtil.FILE_TYPE, null, ResourceUtil.RANGE, null, ResourceUtil.SHARED_PART_ENTITY_UUID, "password", null);
         //Then
         assertNotNull(response);
         assertEquals(response.getStatus(), 206);
@@ -303,7 +305,7 @@ public class PartBinaryResourceTest {
         //When
         Response response = partBinaryResource.downloadPartFile(request, ResourceUtil.WORKSPACE_ID,
                 ResourceUtil.PART_NUMBER, ResourceUtil.VERSION, ResourceUtil.ITERATION, "attached-files",
-                ResourceUtil.TEST_PART_FILENAME1, ResourceUtil.FILE_TYPE, null, ResourceUtil.RANGE, null, null, null);
+                ResourceUtil.TEST_PART_FILENAME1, ResourceUtil.FILE_TYPE, null, ResourceUtil.RANGE, null, null, null, null);
         //Then
         assertNotNull(response);
         assertEquals(response.getStatus(), 206);
@@ -312,6 +314,31 @@ public class PartBinaryResourceTest {
 
     }
 
+    /**
+     * Test to revalidate a cached part file from its content hash
+     *
+     * @throws Exception
+     */
+    @Test
+    public void downloadPartFileNotModified() throws Exception {
+        //Given
+        Request request = Mockito.mock(Request.class);
+        String fullName = ResourceUtil.WORKSPACE_ID + "/parts/" + ResourceUtil.PART_NUMBER + "/" + ResourceUtil.VERSION + "/" + ResourceUtil.ITERATION + "/attached-files/" + ResourceUtil.TEST_PART_FILENAME1;
+        Mockito.when(contextManager.isCallerInRole(UserGroupMapping.REGULAR_USER_ROLE_ID)).thenReturn(true);
+        Mockito.when(productService.getBinaryResourceContentHashes(ResourceUtil.WORKSPACE_ID, Collections.singletonList(fullName)))
+                .thenReturn(Collections.singletonMap(fullName, "hash"));
+        Mockito.when(request.evaluatePreconditions(new EntityTag("hash"))).thenReturn(Response.notModified());
+        //When
+        Response response = partBinaryResource.downloadPartFile(request, ResourceUtil.WORKSPACE_ID,
+                ResourceUtil.PART_NUMBER, ResourceUtil.VERSION, ResourceUtil.ITERATION, "attached-files",
+                ResourceUtil.TEST_PART_FILENAME1, ResourceUtil.FILE_TYPE, null, null, "\"hash\"", null, null, null);
+        //Then
+        assertEquals(304, response.getStatus());
+        Mockito.verify(productService, Mockito.never()).getBinaryResource(Matchers.anyString());
+        Mockito.verify(productService, Mockito.never()).getPartRevision(Matchers.any(PartRevisionKey.class));
+        Mockito.verify(storageManager, Mockito.never()).getBinaryResourceInputStream(Matchers.any(BinaryResource.class));
+    }
+
     /**
      * Test to download a part file as a regular user who has no access
      *
@@ -335,7 +362,7 @@ public class PartBinaryResourceTest {
         try {
             partBinaryResource.downloadPartFile(request, ResourceUtil.WORKSPACE_ID,
                     ResourceUtil.PART_NUMBER, ResourceUtil.VERSION, ResourceUtil.ITERATION, "attached-files",
-                    ResourceUtil.TEST_PART_FILENAME1, ResourceUtil.FILE_TYPE, null, ResourceUtil.RANGE, null, null, null);
+                    ResourceUtil.TEST_PART_FILENAME1, ResourceUtil.FILE_TYPE, null, ResourceUtil.RANGE, null, null, null, null);
             assertTrue(false);
         } catch (NotAllowedException e) {
             assertTrue(true);
@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (c) 2017-2019 DocDoku.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    DocDoku - initial API and implementation
+ *******************************************************************************/
+
+package org.polarsys.eplmp.server.rest.file.util;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.polarsys.eplmp.core.util.FileBackedInputStream;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BinaryResourceBinaryStreamingOutputTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private byte[] content;
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        content = new byte[100000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 31);
+        }
+        file = folder.newFile("binary.bin");
+        Files.write(file.toPath(), content);
+    }
+
+    @Test
+    public void writeShouldSendWholeContent() throws Exception {
+        for (InputStream in : Arrays.asList(openFile(), openStream())) {
+            BinaryResourceBinaryStreamingOutput output = new BinaryResourceBinaryStreamingOutput(in, 0, content.length - 1, content.length);
+            byte[] written = write(output);
+            assertArrayEquals(content, written);
+            assertEquals(output.getContentLength(), written.length);
+        }
+    }
+
+    @Test
+    public void writeShouldSendSingleRange() throws Exception {
+        for (InputStream in : Arrays.asList(openFile(), openStream())) {
+            BinaryResourceBinaryStreamingOutput output = new BinaryResourceBinaryStreamingOutput(in, 70000, 89999, content.length);
+            byte[] written = write(output);
+            assertArrayEquals(Arrays.copyOfRange(content, 70000, 90000), written);
+            assertEquals(output.getContentLength(), written.length);
+        }
+    }
+
+    @Test
+    public void writeShouldSendUnknownLengthContent() throws Exception {
+        BinaryResourceBinaryStreamingOutput output = new BinaryResourceBinaryStreamingOutput(openStream(), 0, -1, 0);
+        assertArrayEquals(content, write(output));
+    }
+
+    @Test
+    public void writeShouldSendMultipartByteRanges() throws Exception {
+        List<ByteRange> ranges = ByteRange.parse("bytes=10-19,-5,50000-50009", content.length);
+
+        byte[] fromFile = write(new BinaryResourceBinaryStreamingOutput(openFile(), ranges, content.length, "BOUNDARY", "application/octet-stream"));
+        byte[] fromStream = write(new BinaryResourceBinaryStreamingOutput(openStream(), ranges, content.length, "BOUNDARY", "application/octet-stream"));
+        assertArrayEquals(fromFile, fromStream);
+        assertEquals(new BinaryResourceBinaryStreamingOutput(null, ranges, content.length, "BOUNDARY", "application/octet-stream").getContentLength(), fromFile.length);
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (ByteRange range : ranges) {
+            expected.write(("\r\n--BOUNDARY\r\nContent-Type: application/octet-stream\r\nContent-Range: "
+                    + range.toContentRange(content.length) + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            expected.write(content, (int) range.getStart(), (int) range.getLength());
+        }
+        expected.write("\r\n--BOUNDARY--\r\n".getBytes(StandardCharsets.US_ASCII));
+        assertArrayEquals(expected.toByteArray(), fromFile);
+    }
+
+    //############################## HELPER METHODS ##############################
+
+    private InputStream openFile() throws IOException {
+        return new FileBackedInputStream(new FileInputStream(file));
+    }
+
+    private InputStream openStream() {
+        return new ByteArrayInputStream(content);
+    }
+
+    private byte[] write(BinaryResourceBinaryStreamingOutput output) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        output.write(outputStream);
+        return outputStream.toByteArray();
+    }
+}
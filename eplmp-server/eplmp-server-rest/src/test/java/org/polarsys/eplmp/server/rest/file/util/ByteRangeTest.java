@@ -0,0 +1,84 @@
+/*******************************************************************************
+ * Copyright (c) 2017-2019 DocDoku.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    DocDoku - initial API and implementation
+ *******************************************************************************/
+
+package org.polarsys.eplmp.server.rest.file.util;
+
+import org.junit.Test;
+import org.polarsys.eplmp.server.rest.exceptions.RequestedRangeNotSatisfiableException;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ByteRangeTest {
+
+    private static final long FOUR_GIGABYTES = 4L * 1024 * 1024 * 1024;
+
+    @Test
+    public void parseShouldHandleEveryRangeForm() throws Exception {
+        assertRange(ByteRange.parse("bytes=0-499", 1000).get(0), 0, 499);
+        assertRange(ByteRange.parse("bytes=500-", 1000).get(0), 500, 999);
+        assertRange(ByteRange.parse("bytes=-200", 1000).get(0), 800, 999);
+        assertRange(ByteRange.parse("bytes=-2000", 1000).get(0), 0, 999);
+        assertRange(ByteRange.parse("bytes=900-5000", 1000).get(0), 900, 999);
+    }
+
+    @Test
+    public void parseShouldHandleOffsetsOverTwoGigabytes() throws Exception {
+        ByteRange range = ByteRange.parse("bytes=3221225472-", FOUR_GIGABYTES).get(0);
+        assertRange(range, 3221225472L, FOUR_GIGABYTES - 1);
+        assertEquals(1073741824L, range.getLength());
+        assertEquals("bytes 3221225472-4294967295/4294967296", range.toContentRange(FOUR_GIGABYTES));
+    }
+
+    @Test
+    public void parseShouldSortAndCoalesceRanges() throws Exception {
+        List<ByteRange> ranges = ByteRange.parse("bytes=500-599,0-99,50-149,150-199,-100", 1000);
+        assertEquals(3, ranges.size());
+        assertRange(ranges.get(0), 0, 199);
+        assertRange(ranges.get(1), 500, 599);
+        assertRange(ranges.get(2), 900, 999);
+    }
+
+    @Test
+    public void parseShouldIgnoreUnsatisfiableRanges() throws Exception {
+        List<ByteRange> ranges = ByteRange.parse("bytes=2000-3000,0-9", 1000);
+        assertEquals(1, ranges.size());
+        assertRange(ranges.get(0), 0, 9);
+    }
+
+    @Test(expected = RequestedRangeNotSatisfiableException.class)
+    public void parseShouldRejectRangesAfterTheEnd() throws Exception {
+        ByteRange.parse("bytes=1000-", 1000);
+    }
+
+    @Test(expected = RequestedRangeNotSatisfiableException.class)
+    public void parseShouldRejectMalformedHeader() throws Exception {
+        ByteRange.parse("bytes=a-b", 1000);
+    }
+
+    @Test(expected = RequestedRangeNotSatisfiableException.class)
+    public void parseShouldRejectReversedRange() throws Exception {
+        ByteRange.parse("bytes=500-100", 1000);
+    }
+
+    @Test(expected = RequestedRangeNotSatisfiableException.class)
+    public void parseShouldRejectEmptyRange() throws Exception {
+        ByteRange.parse("bytes=-", 1000);
+    }
+
+    //############################## HELPER METHODS ##############################
+
+    private void assertRange(ByteRange range, long start, long end) {
+        assertEquals(start, range.getStart());
+        assertEquals(end, range.getEnd());
+    }
+}
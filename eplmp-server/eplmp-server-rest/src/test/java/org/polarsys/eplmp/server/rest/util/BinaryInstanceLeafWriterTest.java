@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * Copyright (c) 2017-2019 DocDoku.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    DocDoku - initial API and implementation
+ *******************************************************************************/
+
+package org.polarsys.eplmp.server.rest.util;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.polarsys.eplmp.core.common.Account;
+import org.polarsys.eplmp.core.common.User;
+import org.polarsys.eplmp.core.common.Workspace;
+import org.polarsys.eplmp.core.product.*;
+import org.polarsys.eplmp.core.util.Tools;
+
+import javax.json.Json;
+import javax.vecmath.Matrix4d;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class BinaryInstanceLeafWriterTest {
+
+    private Workspace workspace = new Workspace("workspace01");
+    private User user = new User(workspace, new Account("user1", "user1", "user1@docdoku.com", "en", new Date(), null));
+
+    private PartIteration bolt;
+    private PartIteration nut;
+    private List<PartLink> boltPath;
+    private List<PartLink> nutPath;
+    private Matrix4d matrix;
+
+    @Before
+    public void setUp() {
+        bolt = createPartIteration("BOLT");
+        nut = createPartIteration("NUT");
+        PartUsageLink root = createLink(1, null);
+        boltPath = Arrays.asList(root, createLink(2, bolt.getPartRevision().getPartMaster()));
+        nutPath = Arrays.asList(root, createLink(3, nut.getPartRevision().getPartMaster()));
+
+        matrix = new Matrix4d();
+        matrix.setIdentity();
+        matrix.setElement(0, 3, 12.5);
+        matrix.setElement(2, 1, -0.5);
+    }
+
+    @Test
+    public void writeLeafShouldSendPartsAndStringsOnlyOnce() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        BinaryInstanceLeafWriter leafWriter = new BinaryInstanceLeafWriter(output);
+        leafWriter.start();
+        leafWriter.writeLeaf(boltPath, Tools.getPathAsString(boltPath), Arrays.asList(0, 0), bolt, matrix);
+        leafWriter.writeLeaf(boltPath, Tools.getPathAsString(boltPath), Arrays.asList(0, 1), bolt, matrix);
+        leafWriter.writeLeaf(nutPath, Tools.getPathAsString(nutPath), Arrays.asList(0, 200), nut, matrix);
+        leafWriter.end();
+
+        Decoded decoded = decode(output.toByteArray());
+
+        assertEquals(2, decoded.parts.size());
+        assertEquals(3, decoded.leaves.size());
+        assertEquals(new HashSet<>(decoded.strings).size(), decoded.strings.size());
+
+        assertEquals(bolt.toString(), decoded.strings.get(decoded.parts.get(0).id));
+        assertEquals(1, decoded.parts.get(0).files.size());
+        assertEquals("api/files/workspace01/parts/BOLT/A/1/BOLT.obj", decoded.strings.get(decoded.parts.get(0).files.get(0)));
+
+        Leaf last = decoded.leaves.get(2);
+        assertEquals(1, last.part);
+        assertEquals("u1-u3", decoded.strings.get(last.path));
+        assertEquals(Arrays.asList(0, 200), last.instanceIds);
+        assertEquals(12.5f, last.matrix[3], 0);
+        assertEquals(-0.5f, last.matrix[9], 0);
+        assertEquals(1f, last.matrix[10], 0);
+    }
+
+    @Test
+    public void binaryStreamShouldBeSmallerThanJson() throws Exception {
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        StringWriter json = new StringWriter();
+        InstanceLeafWriter binaryWriter = new BinaryInstanceLeafWriter(binary);
+        InstanceLeafWriter jsonWriter = new JsonInstanceLeafWriter(Json.createGenerator(json));
+
+        for (InstanceLeafWriter leafWriter : Arrays.asList(binaryWriter, jsonWriter)) {
+            leafWriter.start();
+            for (int i = 0; i < 1000; i++) {
+                leafWriter.writeLeaf(boltPath, Tools.getPathAsString(boltPath), Arrays.asList(0, i), bolt, matrix);
+            }
+            leafWriter.end();
+        }
+
+        assertEquals(1000, decode(binary.toByteArray()).leaves.size());
+        assertTrue(binary.size() * 4 < json.toString().getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    //############################## HELPER METHODS ##############################
+
+    private PartIteration createPartIteration(String number) {
+        PartMaster partMaster = new PartMaster(workspace, number, user);
+        PartIteration partIteration = partMaster.createNextRevision(user).createNextIteration(user);
+        Geometry geometry = new Geometry(0, "workspace01/parts/" + number + "/A/1/" + number + ".obj", 0, new Date());
+        geometry.setBox(0, 0, 0, 1, 2, 3);
+        partIteration.addGeometry(geometry);
+        return partIteration;
+    }
+
+    private PartUsageLink createLink(int id, PartMaster component) {
+        PartUsageLink link = new PartUsageLink(component, 1, null, false);
+        link.setId(id);
+        return link;
+    }
+
+    private static Decoded decode(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        byte[] magic = new byte[4];
+        in.readFully(magic);
+        assertArrayEquals(BinaryInstanceLeafWriter.MAGIC, magic);
+        assertEquals(BinaryInstanceLeafWriter.VERSION, in.readUnsignedByte());
+
+        Decoded decoded = new Decoded();
+        int tag;
+        while ((tag = in.readUnsignedByte()) != BinaryInstanceLeafWriter.END) {
+            switch (tag) {
+                case BinaryInstanceLeafWriter.STRING:
+                    byte[] string = new byte[readVarInt(in)];
+                    in.readFully(string);
+                    decoded.strings.add(new String(string, StandardCharsets.UTF_8));
+                    break;
+                case BinaryInstanceLeafWriter.PART:
+                    Part part = new Part();
+                    part.id = readVarInt(in);
+                    int qualities = readVarInt(in);
+                    if (qualities > 0) {
+                        for (int i = 0; i < 6; i++) {
+                            in.readFloat();
+                        }
+                    }
+                    for (int i = 0; i < qualities; i++) {
+                        part.files.add(readVarInt(in));
+                    }
+                    int attributes = readVarInt(in);
+                    for (int i = 0; i < attributes * 3; i++) {
+                        readVarInt(in);
+                    }
+                    decoded.parts.add(part);
+                    break;
+                case BinaryInstanceLeafWriter.LEAF:
+                    Leaf leaf = new Leaf();
+                    leaf.part = readVarInt(in);
+                    leaf.path = readVarInt(in);
+                    int instances = readVarInt(in);
+                    for (int i = 0; i < instances; i++) {
+                        leaf.instanceIds.add(readVarInt(in));
+                    }
+                    for (int i = 0; i < 12; i++) {
+                        leaf.matrix[i] = in.readFloat();
+                    }
+                    decoded.leaves.add(leaf);
+                    break;
+                default:
+                    fail("Unknown tag " + tag);
+            }
+        }
+        assertEquals(0, in.available());
+        return decoded;
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static class Decoded {
+        private List<String> strings = new ArrayList<>();
+        private List<Part> parts = new ArrayList<>();
+        private List<Leaf> leaves = new ArrayList<>();
+    }
+
+    private static class Part {
+        private int id;
+        private List<Integer> files = new ArrayList<>();
+    }
+
+    private static class Leaf {
+        private int part;
+        private int path;
+        private List<Integer> instanceIds = new ArrayList<>();
+        private float[] matrix = new float[12];
+    }
+}
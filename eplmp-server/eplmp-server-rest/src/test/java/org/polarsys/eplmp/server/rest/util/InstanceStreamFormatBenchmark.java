@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright (c) 2017-2019 DocDoku.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    DocDoku - initial API and implementation
+ *******************************************************************************/
+
+package org.polarsys.eplmp.server.rest.util;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.polarsys.eplmp.core.common.Account;
+import org.polarsys.eplmp.core.common.User;
+import org.polarsys.eplmp.core.common.Workspace;
+import org.polarsys.eplmp.core.product.*;
+import org.polarsys.eplmp.core.util.Tools;
+
+import javax.json.Json;
+import javax.vecmath.Matrix4d;
+import javax.vecmath.Vector3d;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the JSON and binary instance formats on a synthetic assembly.
+ *
+ * Run it from the IDE or with the test classpath, surefire does not pick it up.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class InstanceStreamFormatBenchmark {
+
+    @Param({"10000"})
+    private int leaves;
+
+    @Param({"50"})
+    private int distinctParts;
+
+    private List<List<PartLink>> paths;
+    private List<String> pathsAsString;
+    private List<PartIteration> parts;
+    private Matrix4d matrix;
+
+    private ByteArrayOutputStream output;
+
+    @Setup
+    public void setUp() {
+        Workspace workspace = new Workspace("workspace01");
+        User user = new User(workspace, new Account("user1", "user1", "user1@docdoku.com", "en", new Date(), null));
+
+        parts = new ArrayList<>();
+        List<PartUsageLink> links = new ArrayList<>();
+        for (int i = 0; i < distinctParts; i++) {
+            PartMaster partMaster = new PartMaster(workspace, "PART-" + i, user);
+            PartIteration partIteration = partMaster.createNextRevision(user).createNextIteration(user);
+            Geometry geometry = new Geometry(0, "workspace01/parts/PART-" + i + "/A/1/part.obj", 0, new Date());
+            geometry.setBox(0, 0, 0, 1, 1, 1);
+            partIteration.addGeometry(geometry);
+            parts.add(partIteration);
+
+            PartUsageLink link = new PartUsageLink(partMaster, 1, null, false);
+            link.setId(i + 2);
+            links.add(link);
+        }
+
+        PartUsageLink root = new PartUsageLink(null, 1, null, false);
+        root.setId(1);
+        paths = new ArrayList<>();
+        pathsAsString = new ArrayList<>();
+        for (PartUsageLink link : links) {
+            List<PartLink> path = Arrays.asList(root, link);
+            paths.add(path);
+            pathsAsString.add(Tools.getPathAsString(path));
+        }
+
+        matrix = new Matrix4d();
+        matrix.setIdentity();
+        matrix.setTranslation(new Vector3d(12.5, -3.25, 100));
+
+        output = new ByteArrayOutputStream(16 * 1024 * 1024);
+    }
+
+    @Benchmark
+    public int json() throws IOException {
+        output.reset();
+        OutputStreamWriter writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+        write(new JsonInstanceLeafWriter(Json.createGenerator(writer)));
+        return output.size();
+    }
+
+    @Benchmark
+    public int binary() throws IOException {
+        output.reset();
+        write(new BinaryInstanceLeafWriter(output));
+        return output.size();
+    }
+
+    private void write(InstanceLeafWriter leafWriter) throws IOException {
+        leafWriter.start();
+        for (int i = 0; i < leaves; i++) {
+            int part = i % distinctParts;
+            leafWriter.writeLeaf(paths.get(part), pathsAsString.get(part), Arrays.asList(0, i), parts.get(part), matrix);
+        }
+        leafWriter.end();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(InstanceStreamFormatBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
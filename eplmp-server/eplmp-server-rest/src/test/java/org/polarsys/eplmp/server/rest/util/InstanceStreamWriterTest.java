@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * Copyright (c) 2017-2019 DocDoku.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    DocDoku - initial API and implementation
+ *******************************************************************************/
+
+package org.polarsys.eplmp.server.rest.util;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.polarsys.eplmp.core.common.Account;
+import org.polarsys.eplmp.core.common.User;
+import org.polarsys.eplmp.core.common.Workspace;
+import org.polarsys.eplmp.core.configuration.ProductStructureFilter;
+import org.polarsys.eplmp.core.product.*;
+import org.polarsys.eplmp.core.services.IProductManagerLocal;
+import org.polarsys.eplmp.server.rest.collections.InstanceCollection;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.vecmath.Matrix4d;
+import javax.vecmath.Vector3d;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.*;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class InstanceStreamWriterTest {
+
+    @Mock
+    private IProductManagerLocal productService;
+
+    @Mock
+    private ProductStructureFilter filter;
+
+    private ConfigurationItemKey ciKey = new ConfigurationItemKey("workspace01", "CI");
+    private Workspace workspace = new Workspace("workspace01");
+    private User user = new User(workspace, new Account("user1", "user1", "user1@docdoku.com", "en", new Date(), null));
+
+    private PartUsageLink rootLink;
+    private PartUsageLink subLink;
+    private PartUsageLink leafLink;
+    private PartIteration leafIteration;
+
+    /**
+     * Structure used in tests :
+     *
+     *      ROOT
+     *       |--> SUB (2 instances)
+     *              |--> LEAF (1 instance, with geometry)
+     */
+    @Before
+    public void setUp() throws Exception {
+        initMocks(this);
+
+        PartIteration rootIteration = createPartIteration("ROOT");
+        PartIteration subIteration = createPartIteration("SUB");
+        leafIteration = createPartIteration("LEAF");
+        leafIteration.addGeometry(new Geometry(0, "workspace01/parts/LEAF/A/1/leaf.obj", 0, new Date()));
+
+        rootLink = createLink(1, rootIteration.getPartRevision().getPartMaster(), new CADInstance(0, 0, 0, 0, 0, 0));
+        subLink = createLink(2, subIteration.getPartRevision().getPartMaster(),
+                new CADInstance(10, 0, 0, 0, 0, Math.PI / 2), new CADInstance(0, 20, 0, Math.PI, 0, 0));
+        leafLink = createLink(3, leafIteration.getPartRevision().getPartMaster(), new CADInstance(1, 2, 3, 0, Math.PI / 4, 0));
+        rootIteration.setComponents(new ArrayList<>(Collections.singletonList(subLink)));
+        subIteration.setComponents(new ArrayList<>(Collections.singletonList(leafLink)));
+
+        Component leaf = createComponent(leafIteration, Arrays.asList(rootLink, subLink, leafLink));
+        Component sub = createComponent(subIteration, Arrays.asList(rootLink, subLink), leaf);
+        Component root = createComponent(rootIteration, Collections.singletonList(rootLink), sub);
+
+        Mockito.when(productService.getRootPartUsageLink(ciKey)).thenReturn(rootLink);
+        Mockito.when(productService.filterProductStructure(ciKey, filter, Collections.singletonList(rootLink), 1)).thenReturn(root);
+        Mockito.when(productService.filterProductStructure(ciKey, filter, Arrays.asList(rootLink, subLink), -1)).thenReturn(sub);
+        Mockito.when(productService.canAccess(any(PartRevisionKey.class))).thenReturn(true);
+    }
+
+    @Test
+    public void writeShouldStreamEveryLeafInstanceWithItsGlobalMatrix() throws Exception {
+        JsonArray leaves = write(Collections.singletonList(Collections.singletonList(rootLink)));
+
+        assertEquals(2, leaves.size());
+        JsonObject first = leaves.getJsonObject(0);
+        assertEquals("u1-0-u2-0-u3-0", first.getString("id"));
+        assertEquals(leafIteration.toString(), first.getString("partIterationId"));
+        assertEquals("u1-u2-u3", first.getString("path"));
+        assertEquals("u1-u2-u3", leaves.getJsonObject(1).getString("path"));
+        assertEquals("u1-0-u2-1-u3-0", leaves.getJsonObject(1).getString("id"));
+
+        // Same matrices than the former recursive writer
+        Matrix4d identity = new Matrix4d();
+        identity.setIdentity();
+        for (int i = 0; i < 2; i++) {
+            CADInstance subInstance = subLink.getCadInstances().get(i);
+            CADInstance leafInstance = leafLink.getCadInstances().get(0);
+            Matrix4d expected = combine(combine(combine(identity, rootLink.getCadInstances().get(0)), subInstance), leafInstance);
+            JsonArray matrix = leaves.getJsonObject(i).getJsonArray("matrix");
+            for (int j = 0; j < 16; j++) {
+                assertEquals(expected.getElement(j / 4, j % 4), matrix.getJsonNumber(j).doubleValue(), 0);
+            }
+        }
+
+        // Rights are checked once per revision, whatever the number of instances
+        Mockito.verify(productService, Mockito.times(3)).canAccess(any(PartRevisionKey.class));
+        // The root is resolved with its children, then each child with its whole subtree
+        Mockito.verify(productService, Mockito.times(1)).filterProductStructure(ciKey, filter, Collections.singletonList(rootLink), 1);
+        Mockito.verify(productService, Mockito.times(1)).filterProductStructure(ciKey, filter, Arrays.asList(rootLink, subLink), -1);
+    }
+
+    @Test
+    public void writeShouldOnlyStreamLeavesUnderRequestedPaths() throws Exception {
+        assertEquals(2, write(Collections.singletonList(Arrays.asList(rootLink, subLink))).size());
+        assertEquals(0, write(Collections.singletonList(Arrays.asList(rootLink, createLink(4, null)))).size());
+        // Only the first write resolved the subtree of SUB
+        Mockito.verify(productService, Mockito.times(1)).filterProductStructure(eq(ciKey), eq(filter), anyListOf(PartLink.class), eq(-1));
+    }
+
+    @Test
+    public void writeShouldSkipBranchesWithoutAccess() throws Exception {
+        Mockito.when(productService.canAccess(leafIteration.getPartRevision().getKey())).thenReturn(false);
+        assertEquals(0, write(Collections.singletonList(Collections.singletonList(rootLink))).size());
+    }
+
+    //############################## HELPER METHODS ##############################
+
+    private JsonArray write(List<List<PartLink>> paths) throws Exception {
+        StringWriter output = new StringWriter();
+        InstanceLeafWriter leafWriter = new JsonInstanceLeafWriter(Json.createGenerator(output));
+        leafWriter.start();
+        Matrix4d gM = new Matrix4d();
+        gM.setIdentity();
+        new InstanceStreamWriter(productService, new InstanceCollection(ciKey, filter, paths), leafWriter).write(gM);
+        leafWriter.end();
+        return Json.createReader(new StringReader(output.toString())).readArray();
+    }
+
+    private Matrix4d combine(Matrix4d matrix, CADInstance instance) {
+        return InstanceBodyWriterTools.combineTransformation(matrix,
+                new Vector3d(instance.getTx(), instance.getTy(), instance.getTz()),
+                new Vector3d(instance.getRx(), instance.getRy(), instance.getRz()));
+    }
+
+    private PartIteration createPartIteration(String number) {
+        PartMaster partMaster = new PartMaster(workspace, number, user);
+        PartRevision partRevision = partMaster.createNextRevision(user);
+        return partRevision.createNextIteration(user);
+    }
+
+    private PartUsageLink createLink(int id, PartMaster component, CADInstance... instances) {
+        PartUsageLink link = new PartUsageLink(component, 1, null, false);
+        link.setId(id);
+        for (int i = 0; i < instances.length; i++) {
+            instances[i].setId(i);
+        }
+        link.setCadInstances(new ArrayList<>(Arrays.asList(instances)));
+        return link;
+    }
+
+    private Component createComponent(PartIteration partIteration, List<PartLink> path, Component... components) {
+        Component component = new Component(user, partIteration.getPartRevision().getPartMaster(), path, new ArrayList<>(Arrays.asList(components)));
+        component.setRetainedIteration(partIteration);
+        return component;
+    }
+}